@@ -16,38 +16,272 @@
  * limitations under the License.
  */
 
-const int MAX_JOINTS = 50;//max joints allowed in a skeleton
-const int MAX_WEIGHTS = 3;//max number of joints that can affect a vertex
+// Max joints allowed in a skeleton. Must match SkinningPalette.MAX_JOINTS.
+#ifndef MAX_JOINTS
+#define MAX_JOINTS 50
+#endif
 
-uniform mat4 u_ModelView;
-uniform mat4 u_ModelViewProjection;
-uniform mat4 jointTransforms[MAX_JOINTS];
+// Define to skin with dual quaternions instead of matrices. Must match the
+// SkinningPalette.Mode the palette is packed with.
+// #define DUAL_QUATERNION_SKINNING
+
+// Define to read joint matrices from a BakedAnimation texture instead of the
+// palette block. Each instance then picks its clip and time offset with
+// a_AnimationInstance, and no poses are evaluated on the CPU.
+// #define BAKED_ANIMATION
+
+// Define to draw many instances with one draw call. Each instance then reads its
+// model matrix and tint from instanced vertex attributes instead of u_Model, so
+// all uniforms, including the palette block, are shared by the instances. Must
+// match INSTANCE_LAYOUT in HelloArActivity.
+// #define INSTANCING
+
+// Max number of clips in the baked animation texture.
+#ifndef MAX_CLIPS
+#define MAX_CLIPS 8
+#endif
+
+#if defined(BAKED_ANIMATION) && defined(DUAL_QUATERNION_SKINNING)
+#error Baked animation only supports linear skinning
+#endif
+
+// Max number of joints that can affect a vertex, 1 to 8. Must match the
+// maxWeights the mesh was loaded with. The first 4 are in a_jointIndices and
+// a_weights, the rest in a_extraJointIndices and a_extraWeights.
+#ifndef MAX_WEIGHTS
+#define MAX_WEIGHTS 3
+#endif
+
+#if MAX_WEIGHTS >= 4
+#define JOINT_INDICES_TYPE ivec4
+#define WEIGHTS_TYPE vec4
+#elif MAX_WEIGHTS == 3
+#define JOINT_INDICES_TYPE ivec3
+#define WEIGHTS_TYPE vec3
+#elif MAX_WEIGHTS == 2
+#define JOINT_INDICES_TYPE ivec2
+#define WEIGHTS_TYPE vec2
+#else
+#define JOINT_INDICES_TYPE int
+#define WEIGHTS_TYPE float
+#endif
+
+#if MAX_WEIGHTS == 1
+#define JOINT_INDEX(i) a_jointIndices
+#define WEIGHT(i) a_weights
+#else
+#define JOINT_INDEX(i) a_jointIndices[i]
+#define WEIGHT(i) a_weights[i]
+#endif
+
+#if MAX_WEIGHTS == 5
+#define EXTRA_JOINT_INDEX(i) a_extraJointIndices
+#define EXTRA_WEIGHT(i) a_extraWeights
+#else
+#define EXTRA_JOINT_INDEX(i) a_extraJointIndices[i]
+#define EXTRA_WEIGHT(i) a_extraWeights[i]
+#endif
+
+#if MAX_WEIGHTS == 8
+#define EXTRA_JOINT_INDICES_TYPE ivec4
+#define EXTRA_WEIGHTS_TYPE vec4
+#elif MAX_WEIGHTS == 7
+#define EXTRA_JOINT_INDICES_TYPE ivec3
+#define EXTRA_WEIGHTS_TYPE vec3
+#elif MAX_WEIGHTS == 6
+#define EXTRA_JOINT_INDICES_TYPE ivec2
+#define EXTRA_WEIGHTS_TYPE vec2
+#elif MAX_WEIGHTS == 5
+#define EXTRA_JOINT_INDICES_TYPE int
+#define EXTRA_WEIGHTS_TYPE float
+#endif
+
+// The camera, shared by all shaders and uploaded once per frame. Every shader
+// declaring it must declare it the same way, and its layout must match
+// CAMERA_LAYOUT in HelloArActivity.
+layout(std140) uniform Camera {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+};
+
+#ifdef INSTANCING
+#define MODEL_MATRIX a_Model
+#else
+// The only uniform set for every draw.
+uniform mat4 u_Model;
+#define MODEL_MATRIX u_Model
+#endif
+
+// The skinning palette, uploaded once per object per frame. See
+// SkinningPalette for how it is packed.
+#ifdef DUAL_QUATERNION_SKINNING
+layout(std140) uniform JointDualQuaternions {
+  // The rotation and then the dual part of each joint.
+  vec4 u_JointDualQuaternions[2 * MAX_JOINTS];
+};
+#elif defined(BAKED_ANIMATION)
+// Three texels per joint with the top rows of its matrix, one row per frame.
+uniform highp sampler2D u_AnimationTexture;
+// Per clip: first row, frame count, frames per second, unused.
+uniform vec4 u_AnimationClips[MAX_CLIPS];
+// Seconds since any point in time; keep it small enough for float precision.
+uniform float u_AnimationTime;
+#else
+layout(std140) uniform JointMatrices {
+  mat4 u_JointMatrices[MAX_JOINTS];
+};
+#endif
 
 layout(location = 0) in vec4 a_Position;
 layout(location = 1) in vec2 a_TexCoord;
 layout(location = 2) in vec3 a_Normal;
-layout(location = 3) in ivec3 a_jointIndices;
-layout(location = 4) in vec3 a_weights;
+layout(location = 3) in JOINT_INDICES_TYPE a_jointIndices;
+layout(location = 4) in WEIGHTS_TYPE a_weights;
+#if MAX_WEIGHTS > 4
+layout(location = 5) in EXTRA_JOINT_INDICES_TYPE a_extraJointIndices;
+layout(location = 6) in EXTRA_WEIGHTS_TYPE a_extraWeights;
+#endif
+#ifdef BAKED_ANIMATION
+// Per instance: the clip to play and how many seconds ahead of u_AnimationTime.
+layout(location = 7) in vec2 a_AnimationInstance;
+#endif
+#ifdef INSTANCING
+// Per instance: the model matrix, at locations 8 to 11, and the tint of the
+// albedo.
+layout(location = 8) in mat4 a_Model;
+layout(location = 12) in vec4 a_Tint;
+#endif
 
 out vec3 v_ViewPosition;
 out vec3 v_ViewNormal;
 out vec2 v_TexCoord;
+#ifdef INSTANCING
+out vec4 v_Tint;
+#endif
 
-void main() {
+// Vertices whose weights add up to less than this, like those of meshes
+// without a skin, are left unskinned.
+const float MIN_TOTAL_WEIGHT = 1e-4;
 
-//    for(int i=0;i<MAX_WEIGHTS;i++){
-//        mat4 jointTransform = jointTransforms[in_jointIndices[i]];
-//        vec4 posePosition = jointTransform * vec4(in_position, 1.0);
-//        totalLocalPos += posePosition * in_weights[i];
-//
-//        vec4 worldNormal = jointTransform * vec4(in_normal, 0.0);
-//        totalNormal += worldNormal * in_weights[i];
-//    }
+void getInfluence(int i, out int jointIndex, out float weight) {
+#if MAX_WEIGHTS > 4
+  if (i >= 4) {
+    jointIndex = EXTRA_JOINT_INDEX(i - 4);
+    weight = EXTRA_WEIGHT(i - 4);
+    return;
+  }
+#endif
+  jointIndex = JOINT_INDEX(i);
+  weight = WEIGHT(i);
+}
 
+#ifdef DUAL_QUATERNION_SKINNING
+vec3 rotate(vec4 q, vec3 v) {
+  return v + 2.0 * cross(q.xyz, cross(q.xyz, v) + q.w * v);
+}
+
+void skin(inout vec4 position, inout vec3 normal) {
+  vec4 real = vec4(0.0);
+  vec4 dual = vec4(0.0);
+  float totalWeight = 0.0;
+  int firstJoint;
+  float firstWeight;
+  getInfluence(0, firstJoint, firstWeight);
+  vec4 firstReal = u_JointDualQuaternions[2 * firstJoint];
+  for (int i = 0; i < MAX_WEIGHTS; i++) {
+    int jointIndex;
+    float weight;
+    getInfluence(i, jointIndex, weight);
+    totalWeight += weight;
+    vec4 jointReal = u_JointDualQuaternions[2 * jointIndex];
+    // Keep all rotations on the same side as the first, or the blend takes the long way round.
+    if (dot(firstReal, jointReal) < 0.0) {
+      weight = -weight;
+    }
+    real += jointReal * weight;
+    dual += u_JointDualQuaternions[2 * jointIndex + 1] * weight;
+  }
+  if (totalWeight < MIN_TOTAL_WEIGHT) {
+    return;
+  }
+  float len = length(real);
+  real /= len;
+  dual /= len;
+  vec3 translation = 2.0 * (real.w * dual.xyz - dual.w * real.xyz + cross(real.xyz, dual.xyz));
+  position = vec4(rotate(real, position.xyz) + translation, 1.0);
+  normal = rotate(real, normal);
+}
+#else
+#ifdef BAKED_ANIMATION
+// The rows of the frames either side of the instance's time, and the blend between them. Set by
+// findAnimationFrames(), the same way as in BakedAnimation.getPalette().
+int g_AnimationRow0;
+int g_AnimationRow1;
+float g_AnimationBlend;
 
-    v_ViewPosition = (u_ModelView * a_Position).xyz;
-    v_ViewNormal = normalize((u_ModelView * vec4(a_Normal, 0.0)).xyz);
-    v_TexCoord = a_TexCoord;
-    gl_Position = u_ModelViewProjection * a_Position;
+void findAnimationFrames() {
+  vec4 clip = u_AnimationClips[int(a_AnimationInstance.x)];
+  float frame = mod((u_AnimationTime + a_AnimationInstance.y) * clip.z, clip.y);
+  int frames = int(clip.y);
+  int frame0 = min(int(frame), frames - 1);
+  g_AnimationRow0 = int(clip.x) + frame0;
+  g_AnimationRow1 = int(clip.x) + (frame0 + 1) % frames;
+  g_AnimationBlend = frame - float(frame0);
 }
 
+mat4 getBakedMatrix(int jointIndex, int row) {
+  int x = jointIndex * 3;
+  vec4 row0 = texelFetch(u_AnimationTexture, ivec2(x, row), 0);
+  vec4 row1 = texelFetch(u_AnimationTexture, ivec2(x + 1, row), 0);
+  vec4 row2 = texelFetch(u_AnimationTexture, ivec2(x + 2, row), 0);
+  return transpose(mat4(row0, row1, row2, vec4(0.0, 0.0, 0.0, 1.0)));
+}
+
+mat4 getJointMatrix(int jointIndex) {
+  mat4 matrix0 = getBakedMatrix(jointIndex, g_AnimationRow0);
+  mat4 matrix1 = getBakedMatrix(jointIndex, g_AnimationRow1);
+  return matrix0 + (matrix1 - matrix0) * g_AnimationBlend;
+}
+#else
+mat4 getJointMatrix(int jointIndex) {
+  return u_JointMatrices[jointIndex];
+}
+#endif
+
+void skin(inout vec4 position, inout vec3 normal) {
+  mat4 skinMatrix = mat4(0.0);
+  float totalWeight = 0.0;
+  for (int i = 0; i < MAX_WEIGHTS; i++) {
+    int jointIndex;
+    float weight;
+    getInfluence(i, jointIndex, weight);
+    totalWeight += weight;
+    skinMatrix += getJointMatrix(jointIndex) * weight;
+  }
+  if (totalWeight < MIN_TOTAL_WEIGHT) {
+    return;
+  }
+  position = skinMatrix * position;
+  normal = mat3(skinMatrix) * normal;
+}
+#endif
+
+void main() {
+  vec4 position = a_Position;
+  vec3 normal = a_Normal;
+#ifdef BAKED_ANIMATION
+  findAnimationFrames();
+#endif
+  skin(position, normal);
+
+  vec4 worldPosition = MODEL_MATRIX * position;
+  v_ViewPosition = (u_View * worldPosition).xyz;
+  v_ViewNormal = normalize((u_View * (MODEL_MATRIX * vec4(normal, 0.0))).xyz);
+  v_TexCoord = a_TexCoord;
+#ifdef INSTANCING
+  v_Tint = a_Tint;
+#endif
+  gl_Position = u_ViewProjection * worldPosition;
+}
@@ -52,19 +52,6 @@ const int kNumberOfRoughnessLevels = NUMBER_OF_MIPMAP_LEVELS;
 uniform sampler2D u_AlbedoTexture;
 uniform sampler2D u_RoughnessMetallicAmbientOcclusionTexture;
 
-// The intensity of the main directional light.
-uniform vec3 u_LightIntensity;
-
-// The direction of the main directional light in view space.
-uniform vec4 u_ViewLightDirection;
-
-// The coefficients for the spherical harmonic function which models the diffuse
-// irradiance of a distant environmental light for a given surface normal in
-// world space. These coefficients must be premultiplied with their
-// corresponding spherical harmonics constants. See
-// HelloArActivity.updateSphericalHarmonicsCoefficients for more information.
-uniform vec3 u_SphericalHarmonicsCoefficients[9];
-
 // The filtered cubemap texture which models the LD term (i.e. radiance (L)
 // times distribution function (D)) of the environmental specular calculation as
 // a function of direction and roughness.
@@ -75,13 +62,38 @@ uniform samplerCube u_Cubemap;
 // perceptual roughness.
 uniform sampler2D u_DfgTexture;
 
-// Inverse view matrix. Used for converting normals back into world space for
-// environmental radiance calculations.
-uniform mat4 u_ViewInverse;
+// The camera, shared by all shaders and uploaded once per frame. Every shader
+// declaring it must declare it the same way, and its layout must match
+// CAMERA_LAYOUT in HelloArActivity.
+layout(std140) uniform Camera {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  // Inverse view matrix. Used for converting normals back into world space for
+  // environmental radiance calculations.
+  highp mat4 u_ViewInverse;
+};
 
-// If the current light estimate is valid. Used to short circuit the entire
-// shader when the light estimate is not valid.
-uniform bool u_LightEstimateIsValid;
+// The light estimate, shared by all shaders and uploaded once per frame. Its
+// layout must match LIGHTING_LAYOUT in HelloArActivity.
+layout(std140) uniform Lighting {
+  // The direction of the main directional light in view space.
+  vec4 u_ViewLightDirection;
+
+  // The intensity of the main directional light.
+  vec3 u_LightIntensity;
+
+  // If the current light estimate is valid. Used to short circuit the entire
+  // shader when the light estimate is not valid.
+  bool u_LightEstimateIsValid;
+
+  // The coefficients for the spherical harmonic function which models the
+  // diffuse irradiance of a distant environmental light for a given surface
+  // normal in world space. These coefficients must be premultiplied with their
+  // corresponding spherical harmonics constants. See
+  // HelloArActivity.updateSphericalHarmonicsCoefficients for more information.
+  vec3 u_SphericalHarmonicsCoefficients[9];
+};
 
 struct MaterialParameters {
   vec3 diffuse;
@@ -112,6 +124,14 @@ in vec3 v_ViewPosition;
 in vec3 v_ViewNormal;
 in vec2 v_TexCoord;
 
+// Instanced draws tint the albedo of each instance, see TestShader.vert.
+#ifdef INSTANCING
+in vec4 v_Tint;
+#define ALBEDO_TINT v_Tint.rgb
+#else
+#define ALBEDO_TINT vec3(1.0)
+#endif
+
 layout(location = 0) out vec4 o_FragColor;
 
 const float kPi = 3.14159265359;
@@ -222,7 +242,7 @@ void Pbr_CreateMaterialParameters(const in vec2 texCoord,
                                   const in ShadingParameters shading,
                                   out MaterialParameters material) {
   // Read the material parameters from the textures
-  vec3 albedo = texture(albedoTexture, texCoord).rgb;
+  vec3 albedo = texture(albedoTexture, texCoord).rgb * ALBEDO_TINT;
   vec3 roughnessMetallicAmbientOcclusion = texture(pbrTexture, texCoord).rgb;
   // Roughness inputs are perceptually linear; convert them to regular roughness
   // values. Roughness levels approaching 0 will make specular reflections
@@ -270,7 +290,7 @@ void main() {
 
   // Skip all lighting calculations if the estimation is not valid.
   if (!u_LightEstimateIsValid) {
-    o_FragColor = vec4(texture(u_AlbedoTexture, texCoord).rgb, 1.0);
+    o_FragColor = vec4(texture(u_AlbedoTexture, texCoord).rgb * ALBEDO_TINT, 1.0);
     return;
   }
 
@@ -15,8 +15,18 @@
  * limitations under the License.
  */
 
-uniform mat4 u_ModelView;
-uniform mat4 u_ModelViewProjection;
+// The camera, shared by all shaders and uploaded once per frame. Every shader
+// declaring it must declare it the same way, and its layout must match
+// CAMERA_LAYOUT in HelloArActivity.
+layout(std140) uniform Camera {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+};
+
+// The only uniform set for every draw.
+uniform mat4 u_Model;
 
 layout(location = 0) in vec4 a_Position;
 layout(location = 1) in vec2 a_TexCoord;
@@ -27,8 +37,9 @@ out vec3 v_ViewNormal;
 out vec2 v_TexCoord;
 
 void main() {
-  v_ViewPosition = (u_ModelView * a_Position).xyz;
-  v_ViewNormal = normalize((u_ModelView * vec4(a_Normal, 0.0)).xyz);
+  vec4 worldPosition = u_Model * a_Position;
+  v_ViewPosition = (u_View * worldPosition).xyz;
+  v_ViewNormal = normalize((u_View * (u_Model * vec4(a_Normal, 0.0))).xyz);
   v_TexCoord = a_TexCoord;
-  gl_Position = u_ModelViewProjection * a_Position;
+  gl_Position = u_ViewProjection * worldPosition;
 }
@@ -15,12 +15,21 @@
  * limitations under the License.
  */
 
-uniform mat4 u_ModelViewProjection;
+// The camera, shared by all shaders and uploaded once per frame. Every shader
+// declaring it must declare it the same way, and its layout must match
+// CAMERA_LAYOUT in HelloArActivity.
+layout(std140) uniform Camera {
+  highp mat4 u_View;
+  highp mat4 u_Projection;
+  highp mat4 u_ViewProjection;
+  highp mat4 u_ViewInverse;
+};
+
 uniform float u_PointSize;
 
 layout(location = 0) in vec4 a_Position;
 
 void main() {
-  gl_Position = u_ModelViewProjection * vec4(a_Position.xyz, 1.0);
+  gl_Position = u_ViewProjection * vec4(a_Position.xyz, 1.0);
   gl_PointSize = u_PointSize;
 }
@@ -0,0 +1,307 @@
+package com.google.ar.core.examples.java.common.colladaParser;
+
+
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.FloatArrayList;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SymbolTable;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlNode;
+import com.google.ar.core.examples.java.common.math.Matrices;
+import com.google.ar.core.examples.java.common.math.Quaternions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Loads the animation clips of a collada file.
+ *
+ * Each channel that animates the matrix of a joint node is decomposed into a
+ * translation and a rotation per key and stored in an {@link AnimationClip},
+ * by the joint's index. The clips come from {@code library_animation_clips}
+ * if the file has one. Otherwise every top-level {@code <animation>} that
+ * groups other animations (as Blender writes one per action) is a clip, and
+ * any loose channels form one more clip called {@link #DEFAULT_CLIP_NAME}.
+ *
+ * If the channels of a clip don't share their key times, all of them are
+ * resampled at the union of the times.
+ *
+ * @author Karl
+ *
+ */
+public class AnimationLoader {
+
+    /** The name of the clip holding channels that aren't part of any clip. */
+    public static final String DEFAULT_CLIP_NAME = "default";
+
+    private static final int MATRIX_SIZE = Matrices.SIZE;
+    private static final float TIME_EPSILON = 1e-5f;
+
+    private static final float[] CORRECTION = new float[Matrices.SIZE];
+
+    static {
+        //because in Blender z is up, but in our game y is up.
+        Matrices.setRotate(CORRECTION, 0, -90, 1, 0, 0);
+    }
+
+    private final XmlNode animationsNode;
+    private final XmlNode clipsNode;
+    private final SymbolTable jointOrder;
+    private final Collection<String> rootJointNames;
+
+    /**
+     * @param animationsNode
+     *            - the "library_animations" node.
+     * @param clipsNode
+     *            - the "library_animation_clips" node, or null if the file
+     *            has none.
+     * @param jointOrder
+     *            - the joint names, by joint index. Channels of other nodes
+     *            are ignored.
+     * @param rootJointNames
+     *            - the names of the joints without a parent, which get the
+     *            same axis correction as in the skeleton.
+     */
+    public AnimationLoader(XmlNode animationsNode, XmlNode clipsNode, SymbolTable jointOrder,
+                           Collection<String> rootJointNames) {
+        this.animationsNode = animationsNode;
+        this.clipsNode = clipsNode;
+        this.jointOrder = jointOrder;
+        this.rootJointNames = rootJointNames;
+    }
+
+    public List<AnimationClip> extractAnimations() {
+        List<AnimationClip> clips = new ArrayList<AnimationClip>();
+        if (clipsNode != null) {
+            for (XmlNode clipNode : clipsNode.getChildren("animation_clip")) {
+                List<Channel> channels = new ArrayList<Channel>();
+                for (XmlNode instance : clipNode.getChildren("instance_animation")) {
+                    XmlNode animation = clipNode.resolveUrl(instance.getAttribute("url"));
+                    if (animation != null) {
+                        loadChannels(animation, channels);
+                    }
+                }
+                float start = parseTime(clipNode.getAttribute("start"), 0);
+                float end = parseTime(clipNode.getAttribute("end"), Float.NaN);
+                addClip(clips, getName(clipNode), channels, start, end);
+            }
+            return clips;
+        }
+        List<Channel> looseChannels = new ArrayList<Channel>();
+        for (XmlNode animation : animationsNode.getChildren("animation")) {
+            if (animation.getChildren("animation").isEmpty()) {
+                loadChannels(animation, looseChannels);
+            } else {
+                List<Channel> channels = new ArrayList<Channel>();
+                loadChannels(animation, channels);
+                addClip(clips, getName(animation), channels, 0, Float.NaN);
+            }
+        }
+        addClip(clips, DEFAULT_CLIP_NAME, looseChannels, 0, Float.NaN);
+        return clips;
+    }
+
+    private static String getName(XmlNode node) {
+        String name = node.getAttribute("name");
+        return name != null ? name : node.getAttribute("id");
+    }
+
+    private static float parseTime(String value, float defaultValue) {
+        return value != null ? Float.parseFloat(value) : defaultValue;
+    }
+
+    /**
+     * Adds the channels of an animation and of all animations nested in it.
+     */
+    private void loadChannels(XmlNode animation, List<Channel> channels) {
+        for (XmlNode channelNode : animation.getChildren("channel")) {
+            Channel channel = loadChannel(animation, channelNode);
+            if (channel != null) {
+                channels.add(channel);
+            }
+        }
+        for (XmlNode child : animation.getChildren("animation")) {
+            loadChannels(child, channels);
+        }
+    }
+
+    /**
+     * @return The channel, or null if it doesn't animate the whole matrix of
+     *         a joint.
+     */
+    private Channel loadChannel(XmlNode animation, XmlNode channelNode) {
+        String target = channelNode.getAttribute("target");
+        int slash = target.indexOf('/');
+        if (slash < 0) {
+            return null;
+        }
+        XmlNode node = animation.getElementById(target.substring(0, slash));
+        if (node == null || node.getChildWithAttribute("matrix", "sid", target.substring(slash + 1)) == null) {
+            // Only full matrix channels are supported, not single components.
+            return null;
+        }
+        String jointName = node.getAttribute("sid");
+        if (jointName == null) {
+            jointName = node.getAttribute("id");
+        }
+        int joint = jointOrder.indexOf(jointName);
+        if (joint == SymbolTable.NOT_FOUND) {
+            return null;
+        }
+        XmlNode sampler = animation.resolveUrl(channelNode.getAttribute("source"));
+        float[] times = readSamplerInput(animation, sampler, "INPUT");
+        float[] matrices = readSamplerInput(animation, sampler, "OUTPUT");
+        if (times.length == 0 || matrices.length != times.length * MATRIX_SIZE) {
+            return null;
+        }
+        return new Channel(joint, times, decompose(matrices, times.length, rootJointNames.contains(jointName)));
+    }
+
+    private static float[] readSamplerInput(XmlNode animation, XmlNode sampler, String semantic) {
+        String sourceUrl = sampler.getChildWithAttribute("input", "semantic", semantic).getAttribute("source");
+        return animation.resolveUrl(sourceUrl).getChild("float_array").getFloatData();
+    }
+
+    /**
+     * Splits row-major collada matrices into translation and rotation keys,
+     * {@link AnimationClip#SAMPLE_SIZE} floats per key. Scale is removed from
+     * the rotation. Consecutive quaternions are kept in the same hemisphere so
+     * they interpolate the short way.
+     */
+    private float[] decompose(float[] matrices, int keyCount, boolean isRoot) {
+        float[] keys = new float[keyCount * AnimationClip.SAMPLE_SIZE];
+        float[] matrix = new float[MATRIX_SIZE];
+        for (int key = 0; key < keyCount; key++) {
+            Matrices.transpose(matrix, 0, matrices, key * MATRIX_SIZE);
+            if (isRoot) {
+                //because in Blender z is up, but in our game y is up.
+                Matrices.multiplyAffine(matrix, 0, CORRECTION, 0, matrix, 0);
+            }
+            int offset = key * AnimationClip.SAMPLE_SIZE;
+            keys[offset] = matrix[12];
+            keys[offset + 1] = matrix[13];
+            keys[offset + 2] = matrix[14];
+            Quaternions.fromMatrix(matrix, 0, keys, offset + AnimationClip.TRANSLATION_SIZE);
+            if (key > 0 && Quaternions.dot(keys, offset - AnimationClip.SAMPLE_SIZE + AnimationClip.TRANSLATION_SIZE,
+                    keys, offset + AnimationClip.TRANSLATION_SIZE) < 0) {
+                for (int i = 0; i < AnimationClip.ROTATION_SIZE; i++) {
+                    keys[offset + AnimationClip.TRANSLATION_SIZE + i] *= -1;
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Builds a clip out of the channels, keeping the keys between
+     * {@code start} and {@code end} and moving them so the clip starts at 0.
+     *
+     * @param end
+     *            - the end time, or NaN to keep all keys after the start.
+     */
+    private void addClip(List<AnimationClip> clips, String name, List<Channel> channels, float start, float end) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        float[] keyTimes = mergeKeyTimes(channels, start, end);
+        if (keyTimes.length == 0) {
+            return;
+        }
+        float[][] translations = new float[jointOrder.size()][];
+        float[][] rotations = new float[jointOrder.size()][];
+        float[] sample = new float[AnimationClip.SAMPLE_SIZE];
+        for (Channel channel : channels) {
+            float[] translation = new float[keyTimes.length * AnimationClip.TRANSLATION_SIZE];
+            float[] rotation = new float[keyTimes.length * AnimationClip.ROTATION_SIZE];
+            for (int key = 0; key < keyTimes.length; key++) {
+                channel.sample(keyTimes[key], sample);
+                System.arraycopy(sample, 0, translation, key * AnimationClip.TRANSLATION_SIZE,
+                        AnimationClip.TRANSLATION_SIZE);
+                System.arraycopy(sample, AnimationClip.TRANSLATION_SIZE, rotation, key * AnimationClip.ROTATION_SIZE,
+                        AnimationClip.ROTATION_SIZE);
+            }
+            // If several channels animate a joint the last one wins.
+            translations[channel.joint] = translation;
+            rotations[channel.joint] = rotation;
+        }
+        for (int key = 0; key < keyTimes.length; key++) {
+            keyTimes[key] -= start;
+        }
+        float length = Float.isNaN(end) ? keyTimes[keyTimes.length - 1] : end - start;
+        clips.add(new AnimationClip(name, length, keyTimes, translations, rotations));
+    }
+
+    /**
+     * @return The sorted union of the key times of all channels within the
+     *         range, merging times closer than {@link #TIME_EPSILON}.
+     */
+    private static float[] mergeKeyTimes(List<Channel> channels, float start, float end) {
+        FloatArrayList all = new FloatArrayList();
+        for (Channel channel : channels) {
+            all.addAll(channel.times, 0, channel.times.length);
+        }
+        float[] sorted = all.toArray();
+        Arrays.sort(sorted);
+        FloatArrayList merged = new FloatArrayList();
+        for (float time : sorted) {
+            if (time < start - TIME_EPSILON || (!Float.isNaN(end) && time > end + TIME_EPSILON)) {
+                continue;
+            }
+            if (merged.isEmpty() || time - merged.get(merged.size() - 1) > TIME_EPSILON) {
+                merged.add(time);
+            }
+        }
+        return merged.toArray();
+    }
+
+    /**
+     * The decomposed keys of one animated joint, before resampling.
+     */
+    private static class Channel {
+
+        private final int joint;
+        private final float[] times;
+        private final float[] keys;
+
+        private Channel(int joint, float[] times, float[] keys) {
+            this.joint = joint;
+            this.times = times;
+            this.keys = keys;
+        }
+
+        /**
+         * Interpolates the keys at a time, clamping to the first and last key.
+         */
+        private void sample(float time, float[] dest) {
+            int index = Arrays.binarySearch(times, time);
+            if (index >= 0) {
+                System.arraycopy(keys, index * AnimationClip.SAMPLE_SIZE, dest, 0, AnimationClip.SAMPLE_SIZE);
+                return;
+            }
+            int next = -index - 1;
+            if (next == 0 || next == times.length) {
+                int clamped = next == 0 ? 0 : times.length - 1;
+                System.arraycopy(keys, clamped * AnimationClip.SAMPLE_SIZE, dest, 0, AnimationClip.SAMPLE_SIZE);
+                return;
+            }
+            int previous = next - 1;
+            float progression = (time - times[previous]) / (times[next] - times[previous]);
+            int a = previous * AnimationClip.SAMPLE_SIZE;
+            int b = next * AnimationClip.SAMPLE_SIZE;
+            for (int i = 0; i < AnimationClip.TRANSLATION_SIZE; i++) {
+                dest[i] = keys[a + i] + (keys[b + i] - keys[a + i]) * progression;
+            }
+            // Neighbouring keys are in the same hemisphere already, see decompose().
+            float magnitude = 0;
+            for (int i = AnimationClip.TRANSLATION_SIZE; i < AnimationClip.SAMPLE_SIZE; i++) {
+                dest[i] = keys[a + i] + (keys[b + i] - keys[a + i]) * progression;
+                magnitude += dest[i] * dest[i];
+            }
+            magnitude = (float) Math.sqrt(magnitude);
+            for (int i = AnimationClip.TRANSLATION_SIZE; i < AnimationClip.SAMPLE_SIZE; i++) {
+                dest[i] /= magnitude;
+            }
+        }
+    }
+
+}
@@ -1,16 +1,23 @@
 package com.google.ar.core.examples.java.common.colladaParser;
 
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.JointData;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlNode;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlParser;
 import com.google.ar.core.examples.java.common.samplerender.Joint;
+import com.google.ar.core.examples.java.common.samplerender.Submesh;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import org.w3c.dom.Document;
@@ -21,6 +28,7 @@ import org.w3c.dom.NodeList;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.MeshData;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SkeletonData;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SkinningData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SubmeshData;
 
 public class ColladaParser {
 
@@ -30,78 +38,158 @@ public class ColladaParser {
     private FloatBuffer normals = null;
     private IntBuffer jointIDs = null;
     private FloatBuffer vw = null;
-    private Joint rootJoint = null;
+    private IntBuffer extraJointIDs = null;
+    private FloatBuffer extraVw = null;
+    private List<Joint> rootJoints = new ArrayList<Joint>();
+    private int jointCount = 0;
+    private Submesh[] submeshes = new Submesh[0];
+    private List<AnimationClip> animationClips = new ArrayList<AnimationClip>();
 
-    private int maxWeights = 3;
+    /** The number of joints that can affect a vertex unless told otherwise. */
+    public static final int DEFAULT_MAX_WEIGHTS = 3;
+    /** The most joints that can affect a vertex, as two attributes of 4. */
+    public static final int MAX_SUPPORTED_WEIGHTS = 8;
+    /** The most components a single vertex attribute can have. */
+    private static final int MAX_ATTRIBUTE_SIZE = 4;
 
-    public ColladaParser(InputStream path){
-        try {
-            // Assign the Class Variables the values from the Collada DAE file.
-            //DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            //DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-            //Document doc = dBuilder.parse(inputStream);
-            //doc.getDocumentElement().normalize();
+    private final int maxWeights;
 
-            XmlNode node = XmlParser.loadXmlFile(path);
+    public ColladaParser(InputStream path) throws IOException {
+        this(path, DEFAULT_MAX_WEIGHTS);
+    }
 
-            SkinLoader skinLoader = new SkinLoader(node.getChild("library_controllers"), maxWeights);
-            SkinningData skinningData = skinLoader.extractSkinData();
+    /**
+     * @param path
+     *            - the Collada file.
+     * @param maxWeights
+     *            - the number of joints that can affect a vertex, from 1 to
+     *            {@link #MAX_SUPPORTED_WEIGHTS}. Must match the MAX_WEIGHTS
+     *            define of the shader the mesh is drawn with.
+     * @throws IOException
+     *             if the file can't be read.
+     * @throws IllegalArgumentException
+     *             if the file isn't well-formed XML.
+     */
+    public ColladaParser(InputStream path, int maxWeights) throws IOException {
+        if (maxWeights < 1 || maxWeights > MAX_SUPPORTED_WEIGHTS) {
+            throw new IllegalArgumentException("maxWeights must be between 1 and " + MAX_SUPPORTED_WEIGHTS);
+        }
+        this.maxWeights = maxWeights;
+        // Assign the Class Variables the values from the Collada DAE file.
+        //DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        //DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        //Document doc = dBuilder.parse(inputStream);
+        //doc.getDocumentElement().normalize();
 
-            SkeletonLoader jointsLoader = new SkeletonLoader(node.getChild("library_visual_scenes"), skinningData.jointOrder);
-            SkeletonData jointsData = jointsLoader.extractBoneData();
+        XmlNode node = XmlParser.loadXmlFile(path);
 
+        SkinLoader skinLoader = new SkinLoader(node.getChild("library_controllers"), maxWeights);
+        SkinningData skinningData = skinLoader.extractSkinData();
 
-            GeometryLoader g = new GeometryLoader(node.getChild("library_geometries"), skinningData.verticesSkinData);
-            MeshData meshData = g.extractModelData();
+        SkeletonLoader jointsLoader = new SkeletonLoader(node.getChild("library_visual_scenes"), skinningData.jointOrder);
+        SkeletonData jointsData = jointsLoader.extractBoneData();
 
+        if (node.getChild("library_animations") != null) {
+            Set<String> rootJointNames = new HashSet<String>();
+            for (JointData rootJoint : jointsData.rootJoints) {
+                rootJointNames.add(rootJoint.nameId);
+            }
+            AnimationLoader animationLoader = new AnimationLoader(node.getChild("library_animations"),
+                    node.getChild("library_animation_clips"), skinningData.jointOrder, rootJointNames);
+            animationClips = animationLoader.extractAnimations();
+        }
 
 
-            // Assign stuff
-            // Saw allocateDirect(meshData.getIndices().length * 4) maybe needed
-            //fvi = IntBuffer.allocate(meshData.getIndices().length);
-            fvi = ByteBuffer.allocateDirect(meshData.getIndices().length * 4)
-                    .order(ByteOrder.nativeOrder()).asIntBuffer();
-            fvi.put(meshData.getIndices());
-            fvi.rewind();
+        GeometryLoader g = new GeometryLoader(node.getChild("library_geometries"), skinningData.geometrySkinData, maxWeights);
+        MeshData meshData = g.extractModelData();
 
-            //jointIDs = IntBuffer.allocate(meshData.getJointIds().length);
-            jointIDs = ByteBuffer.allocateDirect(meshData.getJointIds().length * 4)
-                    .order(ByteOrder.nativeOrder()).asIntBuffer();
-            jointIDs.put(meshData.getJointIds());
-            jointIDs.rewind();
 
-            vertices =  ByteBuffer.allocateDirect(meshData.getVertices().length * 4)
-                    .order(ByteOrder.nativeOrder())
-                    .asFloatBuffer();
-            //vertices = FloatBuffer.allocate(meshData.getVertices().length);
-            vertices.put(meshData.getVertices());
-            vertices.rewind();
 
-            //texCoords = FloatBuffer.allocate(meshData.getTextureCoords().length);
-            texCoords = ByteBuffer.allocateDirect(meshData.getTextureCoords().length * 4)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            texCoords.put(meshData.getTextureCoords());
-            texCoords.rewind();
+        // Assign stuff
+        // Saw allocateDirect(meshData.getIndices().length * 4) maybe needed
+        //fvi = IntBuffer.allocate(meshData.getIndices().length);
+        fvi = ByteBuffer.allocateDirect(meshData.getIndices().length * 4)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        fvi.put(meshData.getIndices());
+        fvi.rewind();
 
-            //normals = FloatBuffer.allocate(meshData.getNormals().length);
-            normals = ByteBuffer.allocateDirect(meshData.getNormals().length * 4)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            normals.put(meshData.getNormals());
-            normals.rewind();
+        // Vertex attributes hold at most 4 components, so more than 4
+        // weights per vertex are split over a second pair of buffers.
+        int firstWeights = Math.min(maxWeights, MAX_ATTRIBUTE_SIZE);
+        int extraWeights = maxWeights - firstWeights;
+        jointIDs = splitInts(meshData.getJointIds(), 0, firstWeights);
+        vw = splitFloats(meshData.getVertexWeights(), 0, firstWeights);
+        if (extraWeights > 0) {
+            extraJointIDs = splitInts(meshData.getJointIds(), firstWeights, extraWeights);
+            extraVw = splitFloats(meshData.getVertexWeights(), firstWeights, extraWeights);
+        }
 
-            //vw = FloatBuffer.allocate(meshData.getVertexWeights().length);
-            vw = ByteBuffer.allocateDirect(meshData.getVertexWeights().length * 4)
-                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
-            vw.put(meshData.getVertexWeights());
-            vw.rewind();
+        vertices =  ByteBuffer.allocateDirect(meshData.getVertices().length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        //vertices = FloatBuffer.allocate(meshData.getVertices().length);
+        vertices.put(meshData.getVertices());
+        vertices.rewind();
 
+        //texCoords = FloatBuffer.allocate(meshData.getTextureCoords().length);
+        texCoords = ByteBuffer.allocateDirect(meshData.getTextureCoords().length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        texCoords.put(meshData.getTextureCoords());
+        texCoords.rewind();
 
-            rootJoint = createJoints(jointsData.headJoint);
+        //normals = FloatBuffer.allocate(meshData.getNormals().length);
+        normals = ByteBuffer.allocateDirect(meshData.getNormals().length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        normals.put(meshData.getNormals());
+        normals.rewind();
 
-        } catch (Exception e) {e.printStackTrace();}
+        submeshes = new Submesh[meshData.getSubmeshes().size()];
+        for (int i = 0; i < submeshes.length; i++) {
+            SubmeshData submesh = meshData.getSubmeshes().get(i);
+            submeshes[i] = new Submesh(submesh.indexOffset, submesh.indexCount, submesh.material);
+        }
+
+        for (JointData rootJointData : jointsData.rootJoints) {
+            rootJoints.add(createJoints(rootJointData));
+        }
+        jointCount = skinningData.jointOrder.size();
 
     }
 
+    /**
+     * Copies {@code components} values out of every {@code maxWeights} values
+     * of the array, starting at {@code first}, into a new direct buffer.
+     */
+    private IntBuffer splitInts(int[] data, int first, int components) {
+        int vertexCount = data.length / maxWeights;
+        IntBuffer buffer = ByteBuffer.allocateDirect(vertexCount * components * 4)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        if (components == maxWeights) {
+            buffer.put(data);
+        } else {
+            for (int i = 0; i < vertexCount; i++) {
+                buffer.put(data, i * maxWeights + first, components);
+            }
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    private FloatBuffer splitFloats(float[] data, int first, int components) {
+        int vertexCount = data.length / maxWeights;
+        FloatBuffer buffer = ByteBuffer.allocateDirect(vertexCount * components * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        if (components == maxWeights) {
+            buffer.put(data);
+        } else {
+            for (int i = 0; i < vertexCount; i++) {
+                buffer.put(data, i * maxWeights + first, components);
+            }
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
     Joint createJoints(JointData data){
         Joint joint = new Joint(data.index, data.nameId, data.bindLocalTransform);
         for (JointData child : data.children) {
@@ -130,10 +218,72 @@ public class ColladaParser {
         return vw;
     }
 
-    public Joint getRootJoint() {
-        return rootJoint;
+    /**
+     * @return The joint ids beyond the first 4 of each vertex, or null if
+     *         {@link #getMaxWeights()} is 4 or less.
+     */
+    public IntBuffer getExtraJointIDs(){
+        return extraJointIDs;
+    }
+
+    /**
+     * @return The weights beyond the first 4 of each vertex, or null if
+     *         {@link #getMaxWeights()} is 4 or less.
+     */
+    public FloatBuffer getExtraVertexWeights(){
+        return extraVw;
+    }
+
+    /**
+     * @return The number of joints that can affect a vertex. This is the
+     *         combined number of components of the joint id (and weight)
+     *         buffers.
+     */
+    public int getMaxWeights() {
+        return maxWeights;
+    }
+
+    /**
+     * @return The index ranges of the mesh, one per {@code <triangles>} or
+     *         {@code <polylist>} element, each with its material.
+     */
+    public Submesh[] getSubmeshes() {
+        return submeshes;
+    }
+
+    /**
+     * @return The animation clips of the file, see {@link AnimationLoader}.
+     *         Empty if the file isn't animated.
+     */
+    public List<AnimationClip> getAnimationClips() {
+        return animationClips;
+    }
+
+    /**
+     * @return The animation clip with the given name, or null if there is
+     *         none.
+     */
+    public AnimationClip getAnimationClip(String name) {
+        for (AnimationClip clip : animationClips) {
+            if (clip.getName().equals(name)) {
+                return clip;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The joints without a parent, each with its descendants. Empty
+     *         if the file has no skeleton.
+     */
+    public List<Joint> getRootJoints() {
+        return rootJoints;
     }
+    /**
+     * @return The number of joints the skin refers to. Joint indices are
+     *         below this number.
+     */
     public int getJointCount() {
-        return 0;
+        return jointCount;
     }
 }
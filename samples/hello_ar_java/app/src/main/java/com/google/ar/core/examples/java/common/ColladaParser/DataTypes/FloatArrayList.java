@@ -0,0 +1,109 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of floats, stored in a plain float array so that nothing gets
+ * boxed. Only has the operations the loaders need.
+ *
+ * @author Karl
+ *
+ */
+public class FloatArrayList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private float[] data;
+    private int size = 0;
+
+    public FloatArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *            - the number of values the list can hold before it has to
+     *            grow.
+     */
+    public FloatArrayList(int capacity) {
+        this.data = new float[Math.max(capacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float get(int index) {
+        checkIndex(index);
+        return data[index];
+    }
+
+    public void set(int index, float value) {
+        checkIndex(index);
+        data[index] = value;
+    }
+
+    public void add(float value) {
+        ensureCapacity(size + 1);
+        data[size++] = value;
+    }
+
+    /**
+     * Appends {@code count} values of an array, starting at {@code offset}.
+     */
+    public void addAll(float[] values, int offset, int count) {
+        ensureCapacity(size + count);
+        System.arraycopy(values, offset, data, size, count);
+        size += count;
+    }
+
+    /**
+     * Inserts a value, shifting the values at and after {@code index} up by
+     * one.
+     */
+    public void add(int index, float value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = value;
+        size++;
+    }
+
+    /**
+     * Shrinks the list to the given size. Does nothing if it is already
+     * smaller.
+     */
+    public void truncate(int newSize) {
+        size = Math.min(size, Math.max(newSize, 0));
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return A copy of the values, exactly {@link #size()} long.
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+
+}
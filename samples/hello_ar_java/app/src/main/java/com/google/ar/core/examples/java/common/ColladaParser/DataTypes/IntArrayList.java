@@ -0,0 +1,74 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, stored in a plain int array so that nothing gets
+ * boxed. Only has the operations the loaders need.
+ *
+ * @author Karl
+ *
+ */
+public class IntArrayList {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] data;
+    private int size = 0;
+
+    public IntArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity
+     *            - the number of values the list can hold before it has to
+     *            grow.
+     */
+    public IntArrayList(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return data[index];
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        data[index] = value;
+    }
+
+    public void add(int value) {
+        ensureCapacity(size + 1);
+        data[size++] = value;
+    }
+
+    /**
+     * @return A copy of the values, exactly {@link #size()} long.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Makes room for at least {@code capacity} values, so that adding up to
+     * that many doesn't have to grow the list again.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+    }
+
+}
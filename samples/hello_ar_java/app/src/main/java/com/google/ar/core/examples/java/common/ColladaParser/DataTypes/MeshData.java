@@ -1,5 +1,7 @@
 package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
 
+import java.util.List;
+
 public class MeshData {
 
     private static final int DIMENSIONS = 3;
@@ -10,15 +12,17 @@ public class MeshData {
     private int[] indices;
     private int[] jointIds;
     private float[] vertexWeights;
+    private List<SubmeshData> submeshes;
 
     public MeshData(float[] vertices, float[] textureCoords, float[] normals, int[] indices,
-                    int[] jointIds, float[] vertexWeights) {
+                    int[] jointIds, float[] vertexWeights, List<SubmeshData> submeshes) {
         this.vertices = vertices;
         this.textureCoords = textureCoords;
         this.normals = normals;
         this.indices = indices;
         this.jointIds = jointIds;
         this.vertexWeights = vertexWeights;
+        this.submeshes = submeshes;
     }
 
     public int[] getJointIds() {
@@ -45,6 +49,14 @@ public class MeshData {
         return indices;
     }
 
+    /**
+     * @return The index ranges of the mesh, one per primitive element of the
+     *         file, in the order they appear in the index buffer.
+     */
+    public List<SubmeshData> getSubmeshes() {
+        return submeshes;
+    }
+
     public int getVertexCount() {
         return vertices.length / DIMENSIONS;
     }
@@ -0,0 +1,216 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+/**
+ * Decodes whitespace separated lists of numbers, like the contents of a
+ * COLLADA float_array, p, v or vcount element, directly from a character
+ * buffer into primitive arrays. No String is created per number.
+ *
+ * Floats are parsed into an integer mantissa and a decimal exponent. When the
+ * mantissa fits into a float exactly and the power of ten does too, a single
+ * (correctly rounded) float multiplication or division gives the result. This
+ * covers the 6-7 significant digit numbers exporters like Blender write. Any
+ * other number falls back to {@link Float#parseFloat}, so the result is
+ * always the same as parsing the token as a String.
+ *
+ * @author Karl
+ *
+ */
+class NumberReader {
+
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final int MAX_EXCERPT_LENGTH = 20;
+
+    private static final float[] POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private NumberReader() {
+    }
+
+    /**
+     * @return The number of whitespace separated tokens in the range.
+     */
+    static int countTokens(char[] buf, int start, int end) {
+        int count = 0;
+        boolean inToken = false;
+        for (int i = start; i < end; i++) {
+            boolean space = isWhitespace(buf[i]);
+            if (!space && !inToken) {
+                count++;
+            }
+            inToken = !space;
+        }
+        return count;
+    }
+
+    /**
+     * Reads up to {@code dest.length} floats from the range.
+     *
+     * @return The number of floats read.
+     */
+    static int readFloats(char[] buf, int start, int end, float[] dest) {
+        int pos = start;
+        int n = 0;
+        while (n < dest.length) {
+            while (pos < end && isWhitespace(buf[pos])) {
+                pos++;
+            }
+            if (pos >= end) {
+                break;
+            }
+            int tokenStart = pos;
+            while (pos < end && !isWhitespace(buf[pos])) {
+                pos++;
+            }
+            dest[n++] = parseFloat(buf, tokenStart, pos);
+        }
+        return n;
+    }
+
+    /**
+     * Reads up to {@code dest.length} ints from the range.
+     *
+     * @return The number of ints read.
+     * @throws NumberFormatException
+     *             if a token isn't a decimal int, or doesn't fit into one.
+     */
+    static int readInts(char[] buf, int start, int end, int[] dest) {
+        int pos = start;
+        int n = 0;
+        while (n < dest.length) {
+            while (pos < end && isWhitespace(buf[pos])) {
+                pos++;
+            }
+            if (pos >= end) {
+                break;
+            }
+            int tokenStart = pos;
+            boolean negative = false;
+            if (buf[pos] == '-' || buf[pos] == '+') {
+                negative = buf[pos] == '-';
+                pos++;
+            }
+            // Accumulated negatively, so that Integer.MIN_VALUE fits too.
+            int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int value = 0;
+            int digitsStart = pos;
+            while (pos < end && !isWhitespace(buf[pos])) {
+                int digit = buf[pos] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw intError("Not an int", buf, tokenStart, end);
+                }
+                if (value < limit / 10 || value * 10 < limit + digit) {
+                    throw intError("Int out of range", buf, tokenStart, end);
+                }
+                value = value * 10 - digit;
+                pos++;
+            }
+            if (pos == digitsStart) {
+                throw intError("Not an int", buf, tokenStart, end);
+            }
+            dest[n++] = negative ? value : -value;
+        }
+        return n;
+    }
+
+    /**
+     * @return An exception naming the offset of the token and no more than
+     *         its first {@link #MAX_EXCERPT_LENGTH} characters, so that a bad
+     *         number near the start of a large array doesn't copy all of it.
+     */
+    private static NumberFormatException intError(String problem, char[] buf, int tokenStart, int end) {
+        int tokenEnd = tokenStart;
+        while (tokenEnd < end && !isWhitespace(buf[tokenEnd]) && tokenEnd - tokenStart < MAX_EXCERPT_LENGTH) {
+            tokenEnd++;
+        }
+        String excerpt = new String(buf, tokenStart, tokenEnd - tokenStart);
+        if (tokenEnd < end && !isWhitespace(buf[tokenEnd])) {
+            excerpt += "...";
+        }
+        return new NumberFormatException(problem + " at offset " + tokenStart + ": \"" + excerpt + "\"");
+    }
+
+    /**
+     * Parses a single float token.
+     */
+    static float parseFloat(char[] buf, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+            anyDigit = true;
+            if (mantissa != 0 || buf[pos] != '0') {
+                if (digits++ >= MAX_MANTISSA_DIGITS) {
+                    return slowParse(buf, start, end);
+                }
+                mantissa = mantissa * 10 + (buf[pos] - '0');
+            }
+            pos++;
+        }
+        if (pos < end && buf[pos] == '.') {
+            pos++;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                anyDigit = true;
+                if (mantissa != 0 || buf[pos] != '0') {
+                    if (digits++ >= MAX_MANTISSA_DIGITS) {
+                        return slowParse(buf, start, end);
+                    }
+                    mantissa = mantissa * 10 + (buf[pos] - '0');
+                }
+                exponent--;
+                pos++;
+            }
+        }
+        if (!anyDigit) {
+            return slowParse(buf, start, end);
+        }
+        if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+                negativeExponent = buf[pos] == '-';
+                pos++;
+            }
+            int exp = 0;
+            int expStart = pos;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9' && exp < 10000) {
+                exp = exp * 10 + (buf[pos] - '0');
+                pos++;
+            }
+            if (pos == expStart) {
+                return slowParse(buf, start, end);
+            }
+            exponent += negativeExponent ? -exp : exp;
+        }
+        if (pos != end) {
+            return slowParse(buf, start, end);
+        }
+        if (mantissa == 0) {
+            return negative ? -0f : 0f;
+        }
+        if (mantissa > MAX_EXACT_FLOAT_MANTISSA || exponent < -10 || exponent > 10) {
+            return slowParse(buf, start, end);
+        }
+        float value = exponent < 0
+                ? (float) mantissa / POWERS_OF_TEN[-exponent]
+                : (float) mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private static float slowParse(char[] buf, int start, int end) {
+        return Float.parseFloat(new String(buf, start, end - start));
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+}
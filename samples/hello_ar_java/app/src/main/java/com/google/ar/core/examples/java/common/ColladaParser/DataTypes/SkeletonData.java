@@ -1,13 +1,16 @@
 package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
 
+import java.util.List;
+
 public class SkeletonData {
 
     public final int jointCount;
-    public final JointData headJoint;
+    /** The joints without a parent; an armature can have several. */
+    public final List<JointData> rootJoints;
 
-    public SkeletonData(int jointCount, JointData headJoint){
+    public SkeletonData(int jointCount, List<JointData> rootJoints){
         this.jointCount = jointCount;
-        this.headJoint = headJoint;
+        this.rootJoints = rootJoints;
     }
 
 }
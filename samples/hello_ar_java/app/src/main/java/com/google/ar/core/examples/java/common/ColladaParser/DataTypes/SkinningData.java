@@ -1,15 +1,18 @@
 package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
 
 import java.util.List;
+import java.util.Map;
 
 public class SkinningData {
 
-    public final List<String> jointOrder;
-    public final List<VertexSkinData> verticesSkinData;
+    /** The joint names, indexed by the joint ids used in the skinning data. */
+    public final SymbolTable jointOrder;
+    /** The skinning data of each position, by the id of the skinned geometry. */
+    public final Map<String, List<VertexSkinData>> geometrySkinData;
 
-    public SkinningData(List<String> jointOrder, List<VertexSkinData> verticesSkinData){
+    public SkinningData(SymbolTable jointOrder, Map<String, List<VertexSkinData>> geometrySkinData){
         this.jointOrder = jointOrder;
-        this.verticesSkinData = verticesSkinData;
+        this.geometrySkinData = geometrySkinData;
     }
 
 
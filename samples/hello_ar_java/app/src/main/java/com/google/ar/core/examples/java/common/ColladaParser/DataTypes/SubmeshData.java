@@ -0,0 +1,32 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+/**
+ * A range of the index buffer that is drawn with one material. Each
+ * {@code <triangles>} or {@code <polylist>} element of the file becomes one
+ * submesh.
+ *
+ * @author Karl
+ *
+ */
+public class SubmeshData {
+
+    public final int indexOffset;
+    public final int indexCount;
+    public final String material;
+
+    /**
+     * @param indexOffset
+     *            - the first index of the submesh in the index buffer.
+     * @param indexCount
+     *            - the number of indices in the submesh.
+     * @param material
+     *            - the material symbol of the primitive, or {@code null} if it
+     *            has none.
+     */
+    public SubmeshData(int indexOffset, int indexCount, String material) {
+        this.indexOffset = indexOffset;
+        this.indexCount = indexCount;
+        this.material = material;
+    }
+
+}
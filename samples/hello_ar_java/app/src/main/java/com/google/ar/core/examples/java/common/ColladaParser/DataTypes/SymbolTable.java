@@ -0,0 +1,63 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns names (like joint names) and gives each distinct name a dense index,
+ * in the order they were first added. Looking up the index of a name is a
+ * hash lookup instead of a search through a list.
+ *
+ * @author Karl
+ *
+ */
+public class SymbolTable {
+
+    public static final int NOT_FOUND = -1;
+
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+    private final List<String> names = new ArrayList<String>();
+
+    /**
+     * Adds a name if it isn't in the table yet.
+     *
+     * @param name
+     *            - the name.
+     * @return The index of the name.
+     */
+    public int intern(String name) {
+        Integer index = indices.get(name);
+        if (index == null) {
+            index = names.size();
+            indices.put(name, index);
+            names.add(name);
+        }
+        return index;
+    }
+
+    /**
+     * @return The index of the name, or {@link #NOT_FOUND} if it isn't in the
+     *         table.
+     */
+    public int indexOf(String name) {
+        Integer index = indices.get(name);
+        return index != null ? index : NOT_FOUND;
+    }
+
+    /**
+     * @return The name with the given index.
+     */
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * @return The number of distinct names in the table.
+     */
+    public int size() {
+        return names.size();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import java.util.Arrays;
+
+/**
+ * Maps a (position, normal, texture coordinate) index triple, as found in the
+ * "p" element of a COLLADA primitive, to the index of the vertex that was
+ * created for it. Used to weld together the corners of faces that share all
+ * three attributes.
+ *
+ * This is an open-addressing hash map with linear probing over flat int
+ * arrays, so lookups don't box anything and never recurse, however many
+ * different normals or texture coordinates share one position.
+ *
+ * @author Karl
+ *
+ */
+public class VertexIndexMap {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * @param expectedSize
+     *            - the number of entries the map should hold without having
+     *            to grow.
+     */
+    public VertexIndexMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return The vertex index stored for the triple, or {@link #NOT_FOUND}.
+     */
+    public int get(int positionIndex, int normalIndex, int textureIndex) {
+        int slot = hash(positionIndex, normalIndex, textureIndex) & mask;
+        while (values[slot] != NOT_FOUND) {
+            int k = slot * 3;
+            if (keys[k] == positionIndex && keys[k + 1] == normalIndex && keys[k + 2] == textureIndex) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Stores the vertex index for a triple that is not in the map yet.
+     */
+    public void put(int positionIndex, int normalIndex, int textureIndex, int vertexIndex) {
+        if ((size + 1) * 2 > values.length) {
+            grow();
+        }
+        insert(positionIndex, normalIndex, textureIndex, vertexIndex);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of slots {@link #get} looks at to find the triple,
+     *         or to find that it isn't there. Used to check that chains stay
+     *         short however the keys are distributed.
+     */
+    int probeLength(int positionIndex, int normalIndex, int textureIndex) {
+        int slot = hash(positionIndex, normalIndex, textureIndex) & mask;
+        int probes = 1;
+        while (values[slot] != NOT_FOUND) {
+            int k = slot * 3;
+            if (keys[k] == positionIndex && keys[k + 1] == normalIndex && keys[k + 2] == textureIndex) {
+                return probes;
+            }
+            slot = (slot + 1) & mask;
+            probes++;
+        }
+        return probes;
+    }
+
+    private void insert(int positionIndex, int normalIndex, int textureIndex, int vertexIndex) {
+        int slot = hash(positionIndex, normalIndex, textureIndex) & mask;
+        while (values[slot] != NOT_FOUND) {
+            slot = (slot + 1) & mask;
+        }
+        int k = slot * 3;
+        keys[k] = positionIndex;
+        keys[k + 1] = normalIndex;
+        keys[k + 2] = textureIndex;
+        values[slot] = vertexIndex;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldValues.length * 2);
+        for (int slot = 0; slot < oldValues.length; slot++) {
+            if (oldValues[slot] != NOT_FOUND) {
+                int k = slot * 3;
+                insert(oldKeys[k], oldKeys[k + 1], oldKeys[k + 2], oldValues[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity * 3];
+        values = new int[capacity];
+        Arrays.fill(values, NOT_FOUND);
+        mask = capacity - 1;
+    }
+
+    private static int hash(int a, int b, int c) {
+        int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+        // Spread the high bits down, the table only uses the low ones.
+        return h ^ (h >>> 15);
+    }
+
+}
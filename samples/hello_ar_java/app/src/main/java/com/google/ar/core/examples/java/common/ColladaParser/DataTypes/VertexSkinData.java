@@ -1,66 +1,81 @@
 package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
 
+/**
+ * The joints affecting a single vertex, and how strongly they affect it.
+ *
+ * Only the {@code maxWeights} strongest influences are kept, strongest first,
+ * in fixed size arrays. Weaker ones are dropped as they are added, so nothing
+ * gets allocated after construction however many joints the file lists for
+ * the vertex. Unused slots keep joint 0 with a weight of 0.
+ *
+ * @author Karl
+ *
+ */
+public class VertexSkinData {
 
-import java.util.ArrayList;
-import java.util.List;
+    public final int[] jointIds;
+    public final float[] weights;
 
-public class VertexSkinData {
+    private int count = 0;
+    private int effectCount = 0;
 
-    public final List<Integer> jointIds = new ArrayList<Integer>();
-    public final List<Float> weights = new ArrayList<Float>();
+    /**
+     * @param maxWeights
+     *            - the number of influences to keep for the vertex.
+     */
+    public VertexSkinData(int maxWeights) {
+        if (maxWeights < 1) {
+            throw new IllegalArgumentException("maxWeights must be at least 1, was " + maxWeights);
+        }
+        this.jointIds = new int[maxWeights];
+        this.weights = new float[maxWeights];
+    }
 
     public void addJointEffect(int jointId, float weight){
-        for(int i=0;i<weights.size();i++){
-            if(weight > weights.get(i)){
-                jointIds.add(i, jointId);
-                weights.add(i, weight);
-                return;
+        effectCount++;
+        int insertAt = count;
+        for(int i=0;i<count;i++){
+            if(weight > weights[i]){
+                insertAt = i;
+                break;
             }
         }
-        jointIds.add(jointId);
-        weights.add(weight);
-    }
-
-    public void limitJointNumber(int max){
-        if(jointIds.size() > max){
-            float[] topWeights = new float[max];
-            float total = saveTopWeights(topWeights);
-            refillWeightList(topWeights, total);
-            removeExcessJointIds(max);
-        }else if(jointIds.size() < max){
-            fillEmptyWeights(max);
+        if (insertAt == weights.length) {
+            return;
         }
-    }
-
-    private void fillEmptyWeights(int max){
-        while(jointIds.size() < max){
-            jointIds.add(0);
-            weights.add(0f);
+        int last = Math.min(count, weights.length - 1);
+        for (int i = last; i > insertAt; i--) {
+            jointIds[i] = jointIds[i - 1];
+            weights[i] = weights[i - 1];
         }
+        jointIds[insertAt] = jointId;
+        weights[insertAt] = weight;
+        count = Math.min(count + 1, weights.length);
     }
 
-    private float saveTopWeights(float[] topWeightsArray){
+    /**
+     * Must be called once all effects have been added. If some had to be
+     * dropped, the remaining weights are scaled (in place) so that they add up
+     * to 1 again.
+     */
+    public void limitJointNumber(){
+        if(effectCount <= weights.length){
+            return;
+        }
         float total = 0;
-        for(int i=0;i<topWeightsArray.length;i++){
-            topWeightsArray[i] = weights.get(i);
-            total += topWeightsArray[i];
+        for(int i=0;i<weights.length;i++){
+            total += weights[i];
         }
-        return total;
-    }
-
-    private void refillWeightList(float[] topWeights, float total){
-        weights.clear();
-        for(int i=0;i<topWeights.length;i++){
-            weights.add(Math.min(topWeights[i]/total, 1));
+        for(int i=0;i<weights.length;i++){
+            weights[i] = Math.min(weights[i]/total, 1);
         }
     }
 
-    private void removeExcessJointIds(int max){
-        while(jointIds.size() > max){
-            jointIds.remove(jointIds.size()-1);
-        }
+    /**
+     * @return The number of influences kept for the vertex.
+     */
+    public int getCount() {
+        return count;
     }
 
-
-
-}
\ No newline at end of file
+}
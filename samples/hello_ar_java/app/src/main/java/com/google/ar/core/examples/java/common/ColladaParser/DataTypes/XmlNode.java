@@ -20,6 +20,15 @@ public class XmlNode {
     private String data;
     private Map<String, List<XmlNode>> childNodes;
 
+    // Shared by all nodes of a document: every element with an id attribute, by id.
+    private Map<String, XmlNode> idIndex;
+
+    // The text data is kept as a range into the parser's character buffer and
+    // only turned into a String when someone asks for it.
+    private char[] source;
+    private int dataStart;
+    private int dataEnd;
+
     protected XmlNode(String name) {
         this.name = name;
     }
@@ -36,9 +45,87 @@ public class XmlNode {
      *         node.
      */
     public String getData() {
+        if (data == null && source != null) {
+            data = new String(source, dataStart, dataEnd - dataStart);
+        }
         return data;
     }
 
+    /**
+     * Decodes the text data of the node as a whitespace separated list of
+     * floats, without creating a String for each number. The array is sized
+     * from the node's {@code count} attribute if it has one, otherwise from
+     * the number of values in the data.
+     *
+     * @return The values, or an empty array if the node has no data.
+     */
+    public float[] getFloatData() {
+        if (!hasData()) {
+            return new float[0];
+        }
+        char[] buf = dataBuffer();
+        int start = dataStart;
+        int end = dataEnd;
+        float[] values = new float[expectedCount(buf, start, end)];
+        int read = NumberReader.readFloats(buf, start, end, values);
+        if (read != values.length) {
+            throw new IllegalStateException(
+                    "Expected " + values.length + " floats in <" + name + "> but found " + read);
+        }
+        return values;
+    }
+
+    /**
+     * Decodes the text data of the node as a whitespace separated list of
+     * ints, without creating a String for each number. The array is sized the
+     * same way as in {@link #getFloatData()}.
+     *
+     * @return The values, or an empty array if the node has no data.
+     */
+    public int[] getIntData() {
+        if (!hasData()) {
+            return new int[0];
+        }
+        char[] buf = dataBuffer();
+        int start = dataStart;
+        int end = dataEnd;
+        int[] values = new int[expectedCount(buf, start, end)];
+        int read = NumberReader.readInts(buf, start, end, values);
+        if (read != values.length) {
+            throw new IllegalStateException(
+                    "Expected " + values.length + " ints in <" + name + "> but found " + read);
+        }
+        return values;
+    }
+
+    private int expectedCount(char[] buf, int start, int end) {
+        String count = getAttribute("count");
+        if (count != null) {
+            return Integer.parseInt(count);
+        }
+        return NumberReader.countTokens(buf, start, end);
+    }
+
+    /**
+     * @return The buffer holding the data, creating one from the String data
+     *         if it didn't come from the parser's buffer.
+     */
+    private char[] dataBuffer() {
+        if (source == null) {
+            source = data.toCharArray();
+            dataStart = 0;
+            dataEnd = source.length;
+        }
+        return source;
+    }
+
+    /**
+     * @return Whether any text data has been set for this node.
+     */
+    protected boolean hasData() {
+        return data != null || source != null;
+    }
+
     /**
      * Gets the value of a certain attribute of the node. Returns {@code null}
      * if the attribute doesn't exist.
@@ -101,6 +188,35 @@ public class XmlNode {
         return null;
     }
 
+    /**
+     * Finds the element with the given id anywhere in the document this node
+     * belongs to. This is a hash lookup, not a search.
+     *
+     * @param id
+     *            - the value of the element's id attribute.
+     * @return The element, or {@code null} if there is none.
+     */
+    public XmlNode getElementById(String id) {
+        return idIndex != null ? idIndex.get(id) : null;
+    }
+
+    /**
+     * Resolves a reference to an element of the same document, like the
+     * {@code source} attribute of an {@code input} or the {@code url} of an
+     * instance ({@code "#some-id"}).
+     *
+     * @param url
+     *            - the reference. Only the fragment after the '#' is used.
+     * @return The referenced element, or {@code null} if there is none.
+     */
+    public XmlNode resolveUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        int hash = url.indexOf('#');
+        return getElementById(hash >= 0 ? url.substring(hash + 1) : url);
+    }
+
     /**
      * Get the child nodes of this node that have a given name.
      *
@@ -154,6 +270,16 @@ public class XmlNode {
         list.add(child);
     }
 
+    /**
+     * Sets the id index of the document this node belongs to.
+     *
+     * @param idIndex
+     *            - all the elements of the document that have an id, by id.
+     */
+    protected void setIdIndex(Map<String, XmlNode> idIndex) {
+        this.idIndex = idIndex;
+    }
+
     /**
      * Sets some data for this node.
      *
@@ -163,6 +289,25 @@ public class XmlNode {
      */
     protected void setData(String data) {
         this.data = data;
+        this.source = null;
+    }
+
+    /**
+     * Sets the data for this node as a range of a character buffer, without
+     * copying it. The buffer must not be modified afterwards.
+     *
+     * @param source
+     *            - the buffer holding the text of the whole document.
+     * @param start
+     *            - index of the first character of the data.
+     * @param end
+     *            - index one past the last character of the data.
+     */
+    protected void setData(char[] source, int start, int end) {
+        this.data = null;
+        this.source = source;
+        this.dataStart = start;
+        this.dataEnd = end;
     }
 
 }
@@ -1,28 +1,48 @@
 package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
 
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
  * Reads an XML file and stores all the data in {@link XmlNode} objects,
  * allowing for easy access to the data contained in the XML file.
  *
+ * The whole file is read into a single character buffer which is then scanned
+ * once from start to end. Elements are tracked on an explicit stack rather
+ * than by recursion, so the layout of the file (line breaks, indentation,
+ * several tags on one line) doesn't matter. Text data isn't copied out of the
+ * buffer; each node just remembers where its data starts and ends.
+ *
+ * While parsing, every element with an {@code id} attribute is put into a
+ * hash index shared by all nodes of the document, so references like
+ * {@code source="#mesh-positions"} resolve in constant time through
+ * {@link XmlNode#resolveUrl(String)}.
+ *
  * @author Karl
  *
  */
 public class XmlParser {
 
-    private static final Pattern DATA = Pattern.compile(">(.+?)<");
-    private static final Pattern START_TAG = Pattern.compile("<(.+?)>");
-    private static final Pattern ATTR_NAME = Pattern.compile("(.+?)=");
-    private static final Pattern ATTR_VAL = Pattern.compile("\"(.+?)\"");
-    private static final Pattern CLOSED = Pattern.compile("(</|/>)");
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    private final char[] buf;
+    private final int length;
+    private int pos = 0;
+    private final Map<String, XmlNode> idIndex = new HashMap<String, XmlNode>();
+
+    private XmlParser(char[] buf, int length) {
+        this.buf = buf;
+        this.length = length;
+    }
 
     /**
      * Reads an XML file and stores all the data in {@link XmlNode} objects,
@@ -30,85 +50,302 @@ public class XmlParser {
      *
      * @param path- the XML file
      * @return The root node of the XML structure.
+     * @throws IOException
+     *             if the file can't be read.
+     * @throws IllegalArgumentException
+     *             if the file isn't well-formed XML; the message gives the
+     *             character offset of the problem.
+     */
+    public static XmlNode loadXmlFile(InputStream path) throws IOException {
+        Reader reader = new InputStreamReader(path, "UTF-8");
+        char[] chars = new char[READ_CHUNK_SIZE];
+        int length = 0;
+        while (true) {
+            // Grow only when there's more to read, so a file that fills the buffer isn't doubled at the end.
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            int read = reader.read(chars, length, chars.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        reader.close();
+        // The nodes keep the buffer, so don't keep the spare room with it.
+        if (length < chars.length) {
+            chars = Arrays.copyOf(chars, length);
+        }
+        return loadXml(chars, length);
+    }
+
+    /**
+     * Parses an XML document that is already in memory. The buffer is kept by
+     * the returned nodes and must not be modified afterwards.
+     *
+     * @param chars
+     *            - the characters of the document.
+     * @param length
+     *            - the number of valid characters in {@code chars}.
+     * @return The root node of the XML structure.
+     * @throws IllegalArgumentException
+     *             if the document isn't well-formed XML; the message gives
+     *             the character offset of the problem.
+     */
+    public static XmlNode loadXml(char[] chars, int length) {
+        return new XmlParser(chars, length).parse();
+    }
+
+    private XmlNode parse() {
+        List<XmlNode> stack = new ArrayList<XmlNode>();
+        XmlNode root = null;
+        while (pos < length) {
+            int textStart = pos;
+            while (pos < length && buf[pos] != '<') {
+                pos++;
+            }
+            if (!stack.isEmpty()) {
+                addData(stack.get(stack.size() - 1), textStart, pos);
+            }
+            if (pos >= length) {
+                break;
+            }
+            // buf[pos] == '<'
+            char next = peek(1);
+            if (next == '?') {
+                skipPast("?>");
+            } else if (next == '!') {
+                if (startsWith("<!--")) {
+                    skipPast("-->");
+                } else if (startsWith("<![CDATA[")) {
+                    int dataStart = pos + 9;
+                    skipPast("]]>");
+                    if (!stack.isEmpty() && !stack.get(stack.size() - 1).hasData()) {
+                        stack.get(stack.size() - 1).setData(buf, dataStart, pos - 3);
+                    }
+                } else {
+                    skipPast(">");
+                }
+            } else if (next == '/') {
+                int tagStart = pos;
+                pos += 2;
+                String name = readName();
+                skipWhitespace();
+                if (pos >= length || buf[pos] != '>') {
+                    throw error("Unterminated end tag </" + name, tagStart);
+                }
+                pos++;
+                if (stack.isEmpty()) {
+                    throw error("Unexpected end tag </" + name + ">", tagStart);
+                }
+                XmlNode open = stack.remove(stack.size() - 1);
+                if (!open.getName().equals(name)) {
+                    throw error("End tag </" + name + "> doesn't close <" + open.getName() + ">", tagStart);
+                }
+            } else {
+                int tagStart = pos;
+                pos++;
+                XmlNode node = new XmlNode(readName());
+                boolean closed = readAttributes(node);
+                node.setIdIndex(idIndex);
+                String id = node.getAttribute("id");
+                if (id != null && !idIndex.containsKey(id)) {
+                    idIndex.put(id, node);
+                }
+                if (stack.isEmpty()) {
+                    if (root != null) {
+                        throw error("More than one root element", tagStart);
+                    }
+                    root = node;
+                } else {
+                    stack.get(stack.size() - 1).addChild(node);
+                }
+                if (!closed) {
+                    stack.add(node);
+                }
+            }
+        }
+        if (!stack.isEmpty()) {
+            throw error("Unclosed element <" + stack.get(stack.size() - 1).getName() + "> at end of file", length);
+        }
+        return root;
+    }
+
+    /**
+     * Reads the attributes of a start tag up to and including the closing
+     * {@code >}.
+     *
+     * @return {@code true} if the tag closed itself ({@code />}).
+     */
+    private boolean readAttributes(XmlNode node) {
+        while (true) {
+            skipWhitespace();
+            if (pos >= length) {
+                throw error("Unterminated tag <" + node.getName() + ">", pos);
+            }
+            char c = buf[pos];
+            if (c == '>') {
+                pos++;
+                return false;
+            }
+            if (c == '/') {
+                if (peek(1) != '>') {
+                    throw error("Expected '>' after '/' in <" + node.getName() + ">", pos);
+                }
+                pos += 2;
+                return true;
+            }
+            String name = readName();
+            if (name.isEmpty()) {
+                throw error("Unexpected '" + c + "' in <" + node.getName() + ">", pos);
+            }
+            skipWhitespace();
+            if (pos >= length || buf[pos] != '=') {
+                throw error("Expected '=' after attribute " + name, pos);
+            }
+            pos++;
+            skipWhitespace();
+            if (pos >= length || (buf[pos] != '"' && buf[pos] != '\'')) {
+                throw error("Expected a quoted value for attribute " + name, pos);
+            }
+            char quote = buf[pos++];
+            int valueStart = pos;
+            while (pos < length && buf[pos] != quote) {
+                pos++;
+            }
+            if (pos >= length) {
+                throw error("Unterminated value of attribute " + name, valueStart);
+            }
+            node.addAttribute(name, decode(valueStart, pos));
+            pos++;
+        }
+    }
+
+    private String readName() {
+        int start = pos;
+        while (pos < length) {
+            char c = buf[pos];
+            if (c == '>' || c == '/' || c == '=' || isWhitespace(c)) {
+                break;
+            }
+            pos++;
+        }
+        return new String(buf, start, pos - start);
+    }
+
+    /**
+     * Sets the trimmed text between {@code start} and {@code end} as the data
+     * of the node, unless it is only whitespace or the node already has data.
      */
-    public static XmlNode loadXmlFile(InputStream path) {
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new InputStreamReader(path, "UTF-8"));
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Can't find the XML file: " );
-            System.err.println(path );
-            System.err.println("hi " );
-            System.err.println("hi " );
-            System.err.println("hi " );
-            System.err.println("hi " );
-            System.err.println("hi " );
-            System.err.println("hi " );
-
-
-            System.exit(0);
-            return null;
-        }
-        try {
-            reader.readLine();
-            XmlNode node = loadNode(reader);
-            reader.close();
-            return node;
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("Error with XML file format for: " );
-            System.exit(0);
-            return null;
+    private void addData(XmlNode node, int start, int end) {
+        while (start < end && isWhitespace(buf[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(buf[end - 1])) {
+            end--;
+        }
+        if (start == end || node.hasData()) {
+            return;
+        }
+        if (indexOf('&', start, end) < 0) {
+            node.setData(buf, start, end);
+        } else {
+            node.setData(decode(start, end));
         }
     }
 
-    private static XmlNode loadNode(BufferedReader reader) throws Exception {
-        String line = reader.readLine().trim();
-        if (line.startsWith("</")) {
-            return null;
+    /**
+     * Creates a string from a range of the buffer, replacing the predefined
+     * XML entities and character references.
+     */
+    private String decode(int start, int end) {
+        int amp = indexOf('&', start, end);
+        if (amp < 0) {
+            return new String(buf, start, end - start);
         }
-        String[] startTagParts = getStartTag(line).split(" ");
-        XmlNode node = new XmlNode(startTagParts[0].replace("/", ""));
-        addAttributes(startTagParts, node);
-        addData(line, node);
-        if (CLOSED.matcher(line).find()) {
-            return node;
+        StringBuilder builder = new StringBuilder(end - start);
+        builder.append(buf, start, amp - start);
+        int i = amp;
+        while (i < end) {
+            char c = buf[i];
+            int semicolon = c == '&' ? indexOf(';', i, end) : -1;
+            if (semicolon < 0) {
+                builder.append(c);
+                i++;
+                continue;
+            }
+            String entity = new String(buf, i + 1, semicolon - i - 1);
+            if (entity.equals("lt")) {
+                builder.append('<');
+            } else if (entity.equals("gt")) {
+                builder.append('>');
+            } else if (entity.equals("amp")) {
+                builder.append('&');
+            } else if (entity.equals("quot")) {
+                builder.append('"');
+            } else if (entity.equals("apos")) {
+                builder.append('\'');
+            } else if (entity.startsWith("#x")) {
+                builder.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+            } else if (entity.startsWith("#")) {
+                builder.appendCodePoint(Integer.parseInt(entity.substring(1)));
+            } else {
+                builder.append(buf, i, semicolon + 1 - i);
+            }
+            i = semicolon + 1;
         }
-        XmlNode child = null;
-        while ((child = loadNode(reader)) != null) {
-            node.addChild(child);
+        return builder.toString();
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
         }
-        return node;
+        return -1;
     }
 
-    private static void addData(String line, XmlNode node) {
-        Matcher matcher = DATA.matcher(line);
-        if (matcher.find()) {
-            node.setData(matcher.group(1));
+    private char peek(int offset) {
+        return pos + offset < length ? buf[pos + offset] : 0;
+    }
+
+    private boolean startsWith(String prefix) {
+        if (pos + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf[pos + i] != prefix.charAt(i)) {
+                return false;
+            }
         }
+        return true;
     }
 
-    private static void addAttributes(String[] titleParts, XmlNode node) {
-        for (int i = 1; i < titleParts.length; i++) {
-            if (titleParts[i].contains("=")) {
-                addAttribute(titleParts[i], node);
+    /** Moves the position to just after the next occurrence of {@code end}. */
+    private void skipPast(String end) {
+        while (pos < length) {
+            if (startsWith(end)) {
+                pos += end.length();
+                return;
             }
+            pos++;
         }
+        throw error("Expected " + end + " before end of file", length);
     }
 
-    private static void addAttribute(String attributeLine, XmlNode node) {
-        Matcher nameMatch = ATTR_NAME.matcher(attributeLine);
-        nameMatch.find();
-        Matcher valMatch = ATTR_VAL.matcher(attributeLine);
-        valMatch.find();
-        node.addAttribute(nameMatch.group(1), valMatch.group(1));
+    private static IllegalArgumentException error(String problem, int offset) {
+        return new IllegalArgumentException(problem + " at offset " + offset);
+    }
+
+    private void skipWhitespace() {
+        while (pos < length && isWhitespace(buf[pos])) {
+            pos++;
+        }
     }
 
-    private static String getStartTag(String line) {
-        Matcher match = START_TAG.matcher(line);
-        match.find();
-        return match.group(1);
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
     }
 
 }
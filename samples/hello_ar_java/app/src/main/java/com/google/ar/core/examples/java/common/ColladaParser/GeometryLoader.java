@@ -1,31 +1,46 @@
 package com.google.ar.core.examples.java.common.colladaParser;
 
-import android.opengl.Matrix;
-
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.FloatArrayList;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.IntArrayList;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.MeshData;
-import com.google.ar.core.examples.java.common.colladaParser.dataTypes.Vertex;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SubmeshData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.VertexIndexMap;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.VertexSkinData;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlNode;
-
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import com.google.ar.core.examples.java.common.math.Matrices;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
  * Loads the mesh data for a model from a collada XML file.
+ *
+ * All {@code <triangles>} and {@code <polylist>} elements of all geometries
+ * are merged into one vertex and index buffer pair. Polygons are triangulated
+ * as fans. Every primitive element becomes a {@link SubmeshData}, so the parts
+ * can still be drawn with their own materials.
+ *
  * @author Karl
  *
  */
 public class GeometryLoader {
 
-    private static final float[] CORRECTION = new float[16];
+    private static final float[] CORRECTION = new float[Matrices.SIZE];
+    private static final int NO_INDEX = -1;
 
-    private final XmlNode meshData;
+    static {
+        //because in Blender z is up, but in our game y is up.
+        Matrices.setRotate(CORRECTION, 0, -90, 1, 0, 0);
+    }
+
+    private final XmlNode geometryLibrary;
 
-    private final List<VertexSkinData> vertexWeights;
+    private final Map<String, List<VertexSkinData>> geometryWeights;
+    private final int maxWeights;
+    private final VertexSkinData noWeights;
 
     private float[] verticesArray;
     private float[] normalsArray;
@@ -34,225 +49,325 @@ public class GeometryLoader {
     private int[] jointIdsArray;
     private float[] weightsArray;
 
-    List<Vertex> vertices = new ArrayList<Vertex>();
-    List<float[]> textures = new ArrayList<float[]>();
-    List<float[]> normals = new ArrayList<float[]>();
-    List<Integer> indices = new ArrayList<Integer>();
+    // Raw attribute data of all geometries, three floats per position and normal, two per
+    // texture coordinate. Sources shared by several primitives are only added once.
+    private final FloatArrayList positions = new FloatArrayList();
+    private final FloatArrayList normals = new FloatArrayList();
+    private final FloatArrayList textures = new FloatArrayList();
+    private final List<VertexSkinData> positionWeights = new ArrayList<VertexSkinData>();
+    private final Map<String, Integer> normalSources = new HashMap<String, Integer>();
+    private final Map<String, Integer> textureSources = new HashMap<String, Integer>();
+    private int defaultNormal = NO_INDEX;
+    private int defaultTexture = NO_INDEX;
+
+    // One entry per output vertex: the raw position, normal and texture coordinate it uses.
+    // The first vertices are the raw positions in order; duplicates are appended after them.
+    private final IntArrayList vertexPositions = new IntArrayList();
+    private final IntArrayList vertexNormals = new IntArrayList();
+    private final IntArrayList vertexTextures = new IntArrayList();
+
+    private final IntArrayList indices = new IntArrayList();
+    private final List<SubmeshData> submeshes = new ArrayList<SubmeshData>();
+    private VertexIndexMap weldedVertices;
 
-    public GeometryLoader(XmlNode geometryNode, List<VertexSkinData> vertexWeights) {
-        Matrix.rotateM(CORRECTION,0, (float) Math.toRadians(-90), 1, 0, 0);
-        this.vertexWeights = vertexWeights;
-        this.meshData = geometryNode.getChild("geometry").getChild("mesh");
+    /**
+     * @param geometryLibrary
+     *            - the "library_geometries" node.
+     * @param geometryWeights
+     *            - the skinning data of each position, by the id of the
+     *            geometry. Geometries without a skin aren't affected by any
+     *            joint.
+     * @param maxWeights
+     *            - the number of joint ids and weights to output per vertex.
+     */
+    public GeometryLoader(XmlNode geometryLibrary, Map<String, List<VertexSkinData>> geometryWeights,
+                          int maxWeights) {
+        this.geometryLibrary = geometryLibrary;
+        this.geometryWeights = geometryWeights;
+        this.maxWeights = maxWeights;
+        this.noWeights = new VertexSkinData(maxWeights);
     }
 
     public MeshData extractModelData(){
-        readRawData();
-        assembleVertices();
+        List<XmlNode> meshes = new ArrayList<XmlNode>();
+        List<Integer> positionOffsets = new ArrayList<Integer>();
+        // All positions go first, so that the first vertices are the raw positions of all
+        // geometries and duplicates come after them.
+        for (XmlNode geometry : geometryLibrary.getChildren("geometry")) {
+            XmlNode mesh = geometry.getChild("mesh");
+            if (mesh == null) {
+                continue;
+            }
+            meshes.add(mesh);
+            positionOffsets.add(readPositions(geometry.getAttribute("id"), mesh));
+        }
+        weldedVertices = new VertexIndexMap(vertexPositions.size());
+        for (int i = 0; i < meshes.size(); i++) {
+            XmlNode mesh = meshes.get(i);
+            for (XmlNode triangles : mesh.getChildren("triangles")) {
+                assembleVertices(mesh, triangles, positionOffsets.get(i), null);
+            }
+            for (XmlNode polylist : mesh.getChildren("polylist")) {
+                assembleVertices(mesh, polylist, positionOffsets.get(i), polylist.getChild("vcount").getIntData());
+            }
+        }
         removeUnusedVertices();
         initArrays();
         convertDataToArrays();
         convertIndicesListToArray();
-        return new MeshData(verticesArray, texturesArray, normalsArray, indicesArray, jointIdsArray, weightsArray);
-    }
-
-    private void readRawData() {
-        readPositions();
-        readNormals();
-        readTextureCoords();
+        return new MeshData(verticesArray, texturesArray, normalsArray, indicesArray, jointIdsArray, weightsArray,
+                submeshes);
     }
 
-    private void readPositions() {
-        String positionsId = meshData.getChild("vertices").getChild("input").getAttribute("source").substring(1);
-        XmlNode positionsData = meshData.getChildWithAttribute("source", "id", positionsId).getChild("float_array");
-        int count = Integer.parseInt(positionsData.getAttribute("count"));
-        String[] posData = positionsData.getData().split(" ");
-        for (int i = 0; i < count/3; i++) {
-            float x = Float.parseFloat(posData[i * 3]);
-            float y = Float.parseFloat(posData[i * 3 + 1]);
-            float z = Float.parseFloat(posData[i * 3 + 2]);
-            float[] position = new float[]{x, y, z, 1f};
-            // Matrix math
-            position = transform(CORRECTION, position, position);
-            vertices.add(new Vertex(vertices.size(), new float[]{position[0], position[1], position[2]}, vertexWeights.get(vertices.size())));
+    /**
+     * Adds the positions of a geometry, and a vertex for each of them.
+     *
+     * @return The index of the geometry's first position.
+     */
+    private int readPositions(String geometryId, XmlNode mesh) {
+        String positionsUrl = mesh.getChild("vertices").getChildWithAttribute("input", "semantic", "POSITION")
+                .getAttribute("source");
+        float[] data = readSource(mesh.resolveUrl(positionsUrl), 3);
+        Matrices.transformPoints(CORRECTION, 0, data, 0, data, 0, data.length / 3);
+        int offset = positions.size() / 3;
+        int count = data.length / 3;
+        positions.addAll(data, 0, data.length);
+        List<VertexSkinData> weights = geometryWeights.get(geometryId);
+        if (weights != null && weights.size() < count) {
+            throw new IllegalStateException("Skin of " + geometryId + " has fewer vertices than the geometry");
+        }
+        for (int i = 0; i < count; i++) {
+            positionWeights.add(weights != null ? weights.get(i) : noWeights);
+            vertexPositions.add(offset + i);
+            vertexNormals.add(NO_INDEX);
+            vertexTextures.add(NO_INDEX);
         }
+        return offset;
     }
 
-    private void readNormals() {
-        String normalsId = meshData.getChild("triangles").getChildWithAttribute("input", "semantic", "NORMAL")
-                .getAttribute("source").substring(1);
-        XmlNode normalsData = meshData.getChildWithAttribute("source", "id", normalsId).getChild("float_array");
-        int count = Integer.parseInt(normalsData.getAttribute("count"));
-        String[] normData = normalsData.getData().split(" ");
-        for (int i = 0; i < count/3; i++) {
-            float x = Float.parseFloat(normData[i * 3]);
-            float y = Float.parseFloat(normData[i * 3 + 1]);
-            float z = Float.parseFloat(normData[i * 3 + 2]);
-            float[] norm = new float[]{x, y, z, 0f};
-            // Matrix math
-            norm = transform(CORRECTION, norm, norm);
-            normals.add(new float[]{norm[0], norm[1], norm[2]});
+    /**
+     * @return The index of the source's first normal. A source is only read
+     *         once however many primitives use it.
+     */
+    private int readNormals(XmlNode mesh, String normalsUrl) {
+        Integer offset = normalSources.get(normalsUrl);
+        if (offset == null) {
+            float[] data = readSource(mesh.resolveUrl(normalsUrl), 3);
+            Matrices.transformDirections(CORRECTION, 0, data, 0, data, 0, data.length / 3);
+            offset = normals.size() / 3;
+            normals.addAll(data, 0, data.length);
+            normalSources.put(normalsUrl, offset);
         }
+        return offset;
     }
 
-    private void readTextureCoords() {
-        String texCoordsId = meshData.getChild("triangles").getChildWithAttribute("input", "semantic", "TEXCOORD")
-                .getAttribute("source").substring(1);
-        XmlNode texCoordsData = meshData.getChildWithAttribute("source", "id", texCoordsId).getChild("float_array");
-        int count = Integer.parseInt(texCoordsData.getAttribute("count"));
-        String[] texData = texCoordsData.getData().split(" ");
-        for (int i = 0; i < count/2; i++) {
-            float s = Float.parseFloat(texData[i * 2]);
-            float t = Float.parseFloat(texData[i * 2 + 1]);
-            textures.add(new float[]{s, t});
+    private int readTextureCoords(XmlNode mesh, String texCoordsUrl) {
+        Integer offset = textureSources.get(texCoordsUrl);
+        if (offset == null) {
+            float[] data = readSource(mesh.resolveUrl(texCoordsUrl), 2);
+            offset = textures.size() / 2;
+            textures.addAll(data, 0, data.length);
+            textureSources.put(texCoordsUrl, offset);
         }
+        return offset;
     }
 
-    private void assembleVertices(){
-        XmlNode poly = meshData.getChild("triangles");
-        int typeCount = poly.getChildren("input").size();
-        String[] indexData = poly.getChild("p").getData().split(" ");
-        for(int i=0;i<indexData.length/typeCount;i++){
-            int positionIndex = Integer.parseInt(indexData[i * typeCount]);
-            int normalIndex = Integer.parseInt(indexData[i * typeCount + 1]);
-            int texCoordIndex = Integer.parseInt(indexData[i * typeCount + 2]);
-            processVertex(positionIndex, normalIndex, texCoordIndex);
+    /**
+     * Reads the first {@code components} values of each element of a source,
+     * skipping any others (like the third texture coordinate some exporters
+     * write).
+     */
+    private float[] readSource(XmlNode source, int components) {
+        float[] data = source.getChild("float_array").getFloatData();
+        int stride = components;
+        XmlNode technique = source.getChild("technique_common");
+        if (technique != null && technique.getChild("accessor") != null
+                && technique.getChild("accessor").getAttribute("stride") != null) {
+            stride = Integer.parseInt(technique.getChild("accessor").getAttribute("stride"));
+        }
+        if (stride == components) {
+            return data;
+        }
+        int count = data.length / stride;
+        float[] packed = new float[count * components];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(data, i * stride, packed, i * components, Math.min(components, stride));
         }
+        return packed;
     }
 
+    /**
+     * Adds the corners of a {@code <triangles>} or {@code <polylist>} element
+     * to the index buffer, as one submesh.
+     *
+     * @param polygonSizes
+     *            - the vcount of a polylist, or {@code null} for triangles.
+     */
+    private void assembleVertices(XmlNode mesh, XmlNode primitive, int positionOffset, int[] polygonSizes){
+        // Each corner in "p" has one index per distinct input offset. Several inputs can
+        // share an offset, so the stride is the largest offset plus one, not the input count.
+        int stride = 0;
+        int vertexOffset = NO_INDEX;
+        int normalOffset = NO_INDEX;
+        int texCoordOffset = NO_INDEX;
+        int normalBase = NO_INDEX;
+        int texCoordBase = NO_INDEX;
+        for (XmlNode input : primitive.getChildren("input")) {
+            int offset = Integer.parseInt(input.getAttribute("offset"));
+            stride = Math.max(stride, offset + 1);
+            String semantic = input.getAttribute("semantic");
+            if ("VERTEX".equals(semantic)) {
+                vertexOffset = offset;
+            } else if ("NORMAL".equals(semantic) && normalOffset == NO_INDEX) {
+                normalOffset = offset;
+                normalBase = readNormals(mesh, input.getAttribute("source"));
+            } else if ("TEXCOORD".equals(semantic) && texCoordOffset == NO_INDEX) {
+                texCoordOffset = offset;
+                texCoordBase = readTextureCoords(mesh, input.getAttribute("source"));
+            }
+        }
+        if (vertexOffset == NO_INDEX) {
+            throw new IllegalStateException("<" + primitive.getName() + "> has no VERTEX input");
+        }
+        if (normalOffset == NO_INDEX) {
+            normalBase = getDefaultNormal();
+        }
+        if (texCoordOffset == NO_INDEX) {
+            texCoordBase = getDefaultTexture();
+        }
 
-    private Vertex processVertex(int posIndex, int normIndex, int texIndex) {
-        Vertex currentVertex = vertices.get(posIndex);
-        if (!currentVertex.isSet()) {
-            currentVertex.setTextureIndex(texIndex);
-            currentVertex.setNormalIndex(normIndex);
-            indices.add(posIndex);
-            return currentVertex;
+        int[] indexData = primitive.getChild("p") != null ? primitive.getChild("p").getIntData() : new int[0];
+        int indexOffset = indices.size();
+        if (polygonSizes == null) {
+            int cornerCount = indexData.length / stride;
+            indices.ensureCapacity(indexOffset + cornerCount);
+            for (int i = 0; i < cornerCount; i++) {
+                addCorner(indexData, i * stride, positionOffset + indexData[i * stride + vertexOffset],
+                        normalOffset, normalBase, texCoordOffset, texCoordBase);
+            }
         } else {
-            return dealWithAlreadyProcessedVertex(currentVertex, texIndex, normIndex);
+            // A fan of n corners is n - 2 triangles.
+            int triangulatedCount = 0;
+            for (int size : polygonSizes) {
+                triangulatedCount += Math.max(size - 2, 0) * 3;
+            }
+            indices.ensureCapacity(indexOffset + triangulatedCount);
+            int first = 0;
+            for (int size : polygonSizes) {
+                for (int k = 1; k < size - 1; k++) {
+                    addCorner(indexData, first * stride, positionOffset + indexData[first * stride + vertexOffset],
+                            normalOffset, normalBase, texCoordOffset, texCoordBase);
+                    int second = (first + k) * stride;
+                    addCorner(indexData, second, positionOffset + indexData[second + vertexOffset],
+                            normalOffset, normalBase, texCoordOffset, texCoordBase);
+                    int third = (first + k + 1) * stride;
+                    addCorner(indexData, third, positionOffset + indexData[third + vertexOffset],
+                            normalOffset, normalBase, texCoordOffset, texCoordBase);
+                }
+                first += size;
+            }
         }
+        submeshes.add(new SubmeshData(indexOffset, indices.size() - indexOffset, primitive.getAttribute("material")));
     }
 
-    private int[] convertIndicesListToArray() {
-        this.indicesArray = new int[indices.size()];
-        for (int i = 0; i < indicesArray.length; i++) {
-            indicesArray[i] = indices.get(i);
-        }
-        return indicesArray;
+    private void addCorner(int[] indexData, int corner, int posIndex, int normalOffset, int normalBase,
+                           int texCoordOffset, int texCoordBase) {
+        int normIndex = normalOffset != NO_INDEX ? normalBase + indexData[corner + normalOffset] : normalBase;
+        int texIndex = texCoordOffset != NO_INDEX ? texCoordBase + indexData[corner + texCoordOffset] : texCoordBase;
+        processVertex(posIndex, normIndex, texIndex);
     }
 
-    private float convertDataToArrays() {
-        float furthestPoint = 0;
-        for (int i = 0; i < vertices.size(); i++) {
-            Vertex currentVertex = vertices.get(i);
-            if (currentVertex.getLength() > furthestPoint) {
-                furthestPoint = currentVertex.getLength();
-            }
-            float[] position = currentVertex.getPosition();
-            float[] textureCoord = textures.get(currentVertex.getTextureIndex());
-            float[] normalVector = normals.get(currentVertex.getNormalIndex());
-            verticesArray[i * 3] = position[0];
-            verticesArray[i * 3 + 1] = position[1];
-            verticesArray[i * 3 + 2] = position[2];
-            texturesArray[i * 2] = textureCoord[0];
-            texturesArray[i * 2 + 1] = 1 - textureCoord[1];
-            normalsArray[i * 3] = normalVector[0];
-            normalsArray[i * 3 + 1] = normalVector[1];
-            normalsArray[i * 3 + 2] = normalVector[2];
-            VertexSkinData weights = currentVertex.getWeightsData();
-            jointIdsArray[i * 3] = weights.jointIds.get(0);
-            jointIdsArray[i * 3 + 1] = weights.jointIds.get(1);
-            jointIdsArray[i * 3 + 2] = weights.jointIds.get(2);
-            weightsArray[i * 3] = weights.weights.get(0);
-            weightsArray[i * 3 + 1] = weights.weights.get(1);
-            weightsArray[i * 3 + 2] = weights.weights.get(2);
+    /**
+     * @return The index of a zero normal, for primitives that have none.
+     */
+    private int getDefaultNormal() {
+        if (defaultNormal == NO_INDEX) {
+            defaultNormal = normals.size() / 3;
+            normals.addAll(new float[3], 0, 3);
+        }
+        return defaultNormal;
+    }
 
+    private int getDefaultTexture() {
+        if (defaultTexture == NO_INDEX) {
+            defaultTexture = textures.size() / 2;
+            textures.addAll(new float[2], 0, 2);
         }
-        return furthestPoint;
+        return defaultTexture;
     }
 
-    private Vertex dealWithAlreadyProcessedVertex(Vertex previousVertex, int newTextureIndex, int newNormalIndex) {
-        if (previousVertex.hasSameTextureAndNormal(newTextureIndex, newNormalIndex)) {
-            indices.add(previousVertex.getIndex());
-            return previousVertex;
-        } else {
-            Vertex anotherVertex = previousVertex.getDuplicateVertex();
-            if (anotherVertex != null) {
-                return dealWithAlreadyProcessedVertex(anotherVertex, newTextureIndex, newNormalIndex);
+    /**
+     * Adds the index of the vertex with the given attributes. The first time a
+     * position is used, its own vertex takes the normal and texture
+     * coordinate. Any other combination with the same position gets a new
+     * vertex at the end of the list.
+     */
+    private void processVertex(int posIndex, int normIndex, int texIndex) {
+        int index = weldedVertices.get(posIndex, normIndex, texIndex);
+        if (index == VertexIndexMap.NOT_FOUND) {
+            if (!isSet(posIndex)) {
+                index = posIndex;
+                vertexNormals.set(index, normIndex);
+                vertexTextures.set(index, texIndex);
             } else {
-                Vertex duplicateVertex = new Vertex(vertices.size(), previousVertex.getPosition(), previousVertex.getWeightsData());
-                duplicateVertex.setTextureIndex(newTextureIndex);
-                duplicateVertex.setNormalIndex(newNormalIndex);
-                previousVertex.setDuplicateVertex(duplicateVertex);
-                vertices.add(duplicateVertex);
-                indices.add(duplicateVertex.getIndex());
-                return duplicateVertex;
+                index = vertexPositions.size();
+                vertexPositions.add(posIndex);
+                vertexNormals.add(normIndex);
+                vertexTextures.add(texIndex);
             }
-
+            weldedVertices.put(posIndex, normIndex, texIndex, index);
         }
+        indices.add(index);
     }
 
-    private void initArrays(){
-        this.verticesArray = new float[vertices.size() * 3];
-        this.texturesArray = new float[vertices.size() * 2];
-        this.normalsArray = new float[vertices.size() * 3];
-        this.jointIdsArray = new int[vertices.size() * 3];
-        this.weightsArray = new float[vertices.size() * 3];
+    private boolean isSet(int vertex) {
+        return vertexTextures.get(vertex) != NO_INDEX && vertexNormals.get(vertex) != NO_INDEX;
     }
 
-    private void removeUnusedVertices() {
-        for (Vertex vertex : vertices) {
-            //vertex.averageTangents();
-            if (!vertex.isSet()) {
-                vertex.setTextureIndex(0);
-                vertex.setNormalIndex(0);
-            }
+    private int[] convertIndicesListToArray() {
+        this.indicesArray = indices.toArray();
+        return indicesArray;
+    }
+
+    private void convertDataToArrays() {
+        for (int i = 0; i < vertexPositions.size(); i++) {
+            int position = vertexPositions.get(i);
+            int textureCoord = vertexTextures.get(i);
+            int normalVector = vertexNormals.get(i);
+            verticesArray[i * 3] = positions.get(position * 3);
+            verticesArray[i * 3 + 1] = positions.get(position * 3 + 1);
+            verticesArray[i * 3 + 2] = positions.get(position * 3 + 2);
+            texturesArray[i * 2] = textures.get(textureCoord * 2);
+            texturesArray[i * 2 + 1] = 1 - textures.get(textureCoord * 2 + 1);
+            normalsArray[i * 3] = normals.get(normalVector * 3);
+            normalsArray[i * 3 + 1] = normals.get(normalVector * 3 + 1);
+            normalsArray[i * 3 + 2] = normals.get(normalVector * 3 + 2);
+            VertexSkinData weights = positionWeights.get(position);
+            System.arraycopy(weights.jointIds, 0, jointIdsArray, i * maxWeights, maxWeights);
+            System.arraycopy(weights.weights, 0, weightsArray, i * maxWeights, maxWeights);
         }
     }
 
+    private void initArrays(){
+        int vertexCount = vertexPositions.size();
+        this.verticesArray = new float[vertexCount * 3];
+        this.texturesArray = new float[vertexCount * 2];
+        this.normalsArray = new float[vertexCount * 3];
+        this.jointIdsArray = new int[vertexCount * maxWeights];
+        this.weightsArray = new float[vertexCount * maxWeights];
+    }
 
     /**
-     * 4x4 matrix to float array helper
-    m00 = matrix[0];
-    m01 = matrix[4];
-    m02 = matrix[8];
-    m03 = matrix[12];
-    m10 = matrix[1];
-    m11 = matrix[5];
-    m12 = matrix[9];
-    m13 = matrix[13];
-    m20 = matrix[2];
-    m21 = matrix[6];
-    m22 = matrix[10];
-    m23 = matrix[14];
-    m30 = matrix[3];
-    m31 = matrix[7];
-    m32 = matrix[11];
-    m33 = matrix[15];
-
-     * Transform a Vector by a matrix and return the result in a destination
-     * vector.
-     * @param left The left matrix
-     * @param right The right vector
-     * @param dest The destination vector, or null if a new one is to be created
-     * @return the destination vector
+     * Positions no primitive uses still get a vertex, give them the first
+     * normal and texture coordinate.
      */
-    private float[] transform(float[] left, float[] right, float[] dest) {
-        if (dest == null)
-            dest = new float[4];
-
-        // Math might not be correct here
-
-        float x = left[0] * right[0] + left[1] * right[1] + left[2] * right[2] + left[3] * right[3];
-        float y = left[4] * right[0] + left[5] * right[1] + left[6] * right[2] + left[7] * right[3];
-        float z = left[8] * right[0] + left[9] * right[1] + left[10] * right[2] + left[11] * right[3];
-        float w = left[12] * right[0] + left[13] * right[1] + left[14] * right[2] + left[15] * right[3];
-
-        dest[0] = x;
-        dest[1] = y;
-        dest[2] = z;
-        dest[3] = w;
-
-        return dest;
+    private void removeUnusedVertices() {
+        for (int i = 0; i < vertexPositions.size(); i++) {
+            if (!isSet(i)) {
+                vertexTextures.set(i, textures.size() > 0 ? 0 : getDefaultTexture());
+                vertexNormals.set(i, normals.size() > 0 ? 0 : getDefaultNormal());
+            }
+        }
     }
 
 }
@@ -1,40 +1,48 @@
 package com.google.ar.core.examples.java.common.colladaParser;
 
 
-import android.opengl.Matrix;
-
-import java.util.List;
-
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SkeletonData;
-import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SkinningData;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.JointData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SymbolTable;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlNode;
+import com.google.ar.core.examples.java.common.math.Matrices;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SkeletonLoader {
 
     private XmlNode armatureData;
 
-    private List<String> boneOrder;
+    private SymbolTable boneOrder;
 
     private int jointCount = 0;
 
-    private static final float[] CORRECTION = new float[16];
+    private static final float[] CORRECTION = new float[Matrices.SIZE];
+
+    static {
+        //because in Blender z is up, but in our game y is up.
+        Matrices.setRotate(CORRECTION, 0, -90, 1, 0, 0);
+    }
 
 
-    public SkeletonLoader(XmlNode visualSceneNode, List<String> boneOrder) {
-        Matrix.rotateM(CORRECTION,0, (float) Math.toRadians(-90), 1, 0, 0);
-        this.armatureData = visualSceneNode.getChild("visual_scene").getChildWithAttribute("node", "id", "Armature");
+    public SkeletonLoader(XmlNode visualSceneNode, SymbolTable boneOrder) {
+        this.armatureData = visualSceneNode.getElementById("Armature");
         this.boneOrder = boneOrder;
     }
 
+    /**
+     * Loads every joint node directly under the armature as a root, with its
+     * descendants. Other nodes there, like the skinned mesh, are skipped.
+     */
     public SkeletonData extractBoneData(){
-        XmlNode headNode = armatureData.getChild("node");
-        JointData headJoint = loadJointData(headNode, true);
-        return new SkeletonData(jointCount, headJoint);
+        List<JointData> rootJoints = new ArrayList<JointData>();
+        for (XmlNode node : armatureData.getChildren("node")) {
+            if ("JOINT".equals(node.getAttribute("type"))) {
+                rootJoints.add(loadJointData(node, true));
+            }
+        }
+        return new SkeletonData(jointCount, rootJoints);
     }
 
     private JointData loadJointData(XmlNode jointNode, boolean isRoot){
@@ -46,27 +54,21 @@ public class SkeletonLoader {
     }
 
     private JointData extractMainJointData(XmlNode jointNode, boolean isRoot){
-        String nameId = jointNode.getAttribute("id");
+        // The skin refers to joints by sid; the id is prefixed with the armature name.
+        String nameId = jointNode.getAttribute("sid");
+        if (nameId == null) {
+            nameId = jointNode.getAttribute("id");
+        }
         int index = boneOrder.indexOf(nameId);
-        String[] matrixData = jointNode.getChild("matrix").getData().split(" ");
         //Matrix4f matrix = new Matrix4f();
-        float[] matrix = convertData(matrixData);
-        Matrix.transposeM(matrix,0, matrix,0);
+        float[] matrix = jointNode.getChild("matrix").getFloatData();
+        Matrices.transpose(matrix, 0, matrix, 0);
         if(isRoot){
-            //because in Blender z is up, but in our game y is up.
-            Matrix.multiplyMM(matrix, 0, CORRECTION, 0, matrix, 0);
+            // Every joint without a parent is relative to the z-up armature, not just the first.
+            Matrices.multiplyAffine(matrix, 0, CORRECTION, 0, matrix, 0);
         }
         jointCount++;
         return new JointData(index, nameId, matrix);
     }
 
-    private float[] convertData(String[] rawData){
-        float[] matrixData = new float[16];
-        for(int i=0;i<matrixData.length;i++){
-            matrixData[i] = Float.parseFloat(rawData[i]);
-        }
-
-        return matrixData;
-    }
-
 }
@@ -1,82 +1,107 @@
 package com.google.ar.core.examples.java.common.colladaParser;
 
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SkinningData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SymbolTable;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.VertexSkinData;
 import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlNode;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
+/**
+ * Loads the skin of every controller in the file. The joints of all skins
+ * share one joint order, so a joint used by several skins has a single id.
+ *
+ * @author Karl
+ *
+ */
 public class SkinLoader {
 
-    private final XmlNode skinningData;
+    private final XmlNode controllersNode;
     private final int maxWeights;
+    private final SymbolTable jointOrder = new SymbolTable();
 
     public SkinLoader(XmlNode controllersNode, int maxWeights) {
-        this.skinningData = controllersNode.getChild("controller").getChild("skin");
+        this.controllersNode = controllersNode;
         this.maxWeights = maxWeights;
     }
 
     public SkinningData extractSkinData() {
-        List<String> jointsList = loadJointsList();
-        float[] weights = loadWeights();
-        XmlNode weightsDataNode = skinningData.getChild("vertex_weights");
-        int[] effectorJointCounts = getEffectiveJointsCounts(weightsDataNode);
-        List<VertexSkinData> vertexWeights = getSkinData(weightsDataNode, effectorJointCounts, weights);
-        return new SkinningData(jointsList, vertexWeights);
+        Map<String, List<VertexSkinData>> geometrySkinData = new HashMap<String, List<VertexSkinData>>();
+        if (controllersNode != null) {
+            for (XmlNode controller : controllersNode.getChildren("controller")) {
+                XmlNode skin = controller.getChild("skin");
+                if (skin == null) {
+                    continue;
+                }
+                String geometryId = skin.getAttribute("source");
+                if (geometryId.startsWith("#")) {
+                    geometryId = geometryId.substring(1);
+                }
+                geometrySkinData.put(geometryId, loadSkin(skin));
+            }
+        }
+        return new SkinningData(jointOrder, geometrySkinData);
     }
 
-    private List<String> loadJointsList() {
-        XmlNode inputNode = skinningData.getChild("vertex_weights");
-        String jointDataId = inputNode.getChildWithAttribute("input", "semantic", "JOINT").getAttribute("source")
-                .substring(1);
-        XmlNode jointsNode = skinningData.getChildWithAttribute("source", "id", jointDataId).getChild("Name_array");
-        String[] names = jointsNode.getData().split(" ");
-        List<String> jointsList = new ArrayList<String>();
-        for (String name : names) {
-            jointsList.add(name);
+    private List<VertexSkinData> loadSkin(XmlNode skin) {
+        XmlNode weightsDataNode = skin.getChild("vertex_weights");
+        XmlNode jointInput = weightsDataNode.getChildWithAttribute("input", "semantic", "JOINT");
+        XmlNode weightInput = weightsDataNode.getChildWithAttribute("input", "semantic", "WEIGHT");
+        int[] jointIds = loadJointsList(skin, jointInput.getAttribute("source"));
+        float[] weights = loadWeights(skin, weightInput.getAttribute("source"));
+        int jointOffset = Integer.parseInt(jointInput.getAttribute("offset"));
+        int weightOffset = Integer.parseInt(weightInput.getAttribute("offset"));
+        int stride = 0;
+        for (XmlNode input : weightsDataNode.getChildren("input")) {
+            stride = Math.max(stride, Integer.parseInt(input.getAttribute("offset")) + 1);
         }
-        return jointsList;
+        int[] effectorJointCounts = getEffectiveJointsCounts(weightsDataNode);
+        return getSkinData(weightsDataNode, effectorJointCounts, jointIds, weights, jointOffset, weightOffset, stride);
     }
 
-    private float[] loadWeights() {
-        XmlNode inputNode = skinningData.getChild("vertex_weights");
-        String weightsDataId = inputNode.getChildWithAttribute("input", "semantic", "WEIGHT").getAttribute("source")
-                .substring(1);
-        XmlNode weightsNode = skinningData.getChildWithAttribute("source", "id", weightsDataId).getChild("float_array");
-        String[] rawData = weightsNode.getData().split(" ");
-        float[] weights = new float[rawData.length];
-        for (int i = 0; i < weights.length; i++) {
-            weights[i] = Float.parseFloat(rawData[i]);
+    /**
+     * @return The global id of each joint the skin refers to, by its index in
+     *         the skin's own joint list.
+     */
+    private int[] loadJointsList(XmlNode skin, String jointDataUrl) {
+        XmlNode jointsNode = skin.resolveUrl(jointDataUrl).getChild("Name_array");
+        String[] names = jointsNode.getData().trim().split("\\s+");
+        int[] jointIds = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            jointIds[i] = jointOrder.intern(names[i]);
         }
-        return weights;
+        return jointIds;
+    }
+
+    private float[] loadWeights(XmlNode skin, String weightsDataUrl) {
+        XmlNode weightsNode = skin.resolveUrl(weightsDataUrl).getChild("float_array");
+        return weightsNode.getFloatData();
     }
 
     private int[] getEffectiveJointsCounts(XmlNode weightsDataNode) {
-        String[] rawData = weightsDataNode.getChild("vcount").getData().split(" ");
-        int[] counts = new int[rawData.length];
-        for (int i = 0; i < rawData.length; i++) {
-            counts[i] = Integer.parseInt(rawData[i]);
-        }
-        return counts;
+        return weightsDataNode.getChild("vcount").getIntData();
     }
 
-    private List<VertexSkinData> getSkinData(XmlNode weightsDataNode, int[] counts, float[] weights) {
-        String[] rawData = weightsDataNode.getChild("v").getData().split(" ");
-        List<VertexSkinData> skinningData = new ArrayList<VertexSkinData>();
+    private List<VertexSkinData> getSkinData(XmlNode weightsDataNode, int[] counts, int[] jointIds, float[] weights,
+                                             int jointOffset, int weightOffset, int stride) {
+        int[] rawData = weightsDataNode.getChild("v").getIntData();
+        List<VertexSkinData> skinningData = new ArrayList<VertexSkinData>(counts.length);
         int pointer = 0;
         for (int count : counts) {
-            VertexSkinData skinData = new VertexSkinData();
+            VertexSkinData skinData = new VertexSkinData(maxWeights);
             for (int i = 0; i < count; i++) {
-                int jointId = Integer.parseInt(rawData[pointer++]);
-                int weightId = Integer.parseInt(rawData[pointer++]);
-                skinData.addJointEffect(jointId, weights[weightId]);
+                int jointId = rawData[pointer + jointOffset];
+                int weightId = rawData[pointer + weightOffset];
+                pointer += stride;
+                // -1 binds to the bind shape itself rather than a joint.
+                if (jointId >= 0) {
+                    skinData.addJointEffect(jointIds[jointId], weights[weightId]);
+                }
             }
-            skinData.limitJointNumber(maxWeights);
+            skinData.limitJointNumber();
             skinningData.add(skinData);
         }
         return skinningData;
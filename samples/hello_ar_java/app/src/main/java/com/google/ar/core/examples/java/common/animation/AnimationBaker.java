@@ -0,0 +1,96 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples animation clips at a fixed rate into a {@link BakedAnimation}.
+ *
+ * Each clip is cut into a whole number of frames spread evenly over its
+ * length, as close to the requested rate as possible, so that the last frame
+ * blends back into the first one without a jump when the clip loops. The
+ * poses come from an {@link Animator}, so baked and live animation look the
+ * same.
+ *
+ * @author Karl
+ *
+ */
+public class AnimationBaker {
+
+    /**
+     * The most rows the baked texture may have. OpenGL ES 3.0 guarantees
+     * textures this size.
+     */
+    public static final int MAX_FRAMES = 2048;
+
+    private static final int MATRIX_SIZE = Skeleton.MATRIX_SIZE;
+
+    private AnimationBaker() {
+    }
+
+    /**
+     * @param skeleton
+     *            - the skeleton the clips animate.
+     * @param clips
+     *            - the clips to bake, which get the indices of this list.
+     * @param framesPerSecond
+     *            - about how many frames to bake per second of animation.
+     * @throws IllegalArgumentException
+     *             if the frames don't fit in a texture.
+     */
+    public static BakedAnimation bake(Skeleton skeleton, List<AnimationClip> clips, float framesPerSecond) {
+        int jointCount = skeleton.getJointCount();
+        int rowSize = jointCount * BakedAnimation.TEXELS_PER_JOINT * BakedAnimation.TEXEL_SIZE;
+        float[] clipTable = new float[clips.size() * BakedAnimation.CLIP_INFO_SIZE];
+        List<String> clipNames = new ArrayList<String>();
+        int rows = 0;
+        for (int clip = 0; clip < clips.size(); clip++) {
+            float length = clips.get(clip).getLength();
+            int frames = Math.max(1, Math.round(length * framesPerSecond));
+            int info = clip * BakedAnimation.CLIP_INFO_SIZE;
+            clipTable[info] = rows;
+            clipTable[info + 1] = frames;
+            clipTable[info + 2] = length > 0 ? frames / length : 0;
+            clipNames.add(clips.get(clip).getName());
+            rows += frames;
+        }
+        if (rows > MAX_FRAMES) {
+            throw new IllegalArgumentException(
+                    "Baking " + rows + " frames, at most " + MAX_FRAMES + " fit in a texture");
+        }
+
+        float[] texels = new float[rows * rowSize];
+        // A clock that stands still, so that update() poses exactly the time that was set.
+        FrameTimeSource stoppedClock = new FrameTimeSource();
+        Animator animator = new Animator(skeleton);
+        animator.setTimeSource(stoppedClock);
+        for (int clip = 0; clip < clips.size(); clip++) {
+            int info = clip * BakedAnimation.CLIP_INFO_SIZE;
+            int firstRow = (int) clipTable[info];
+            int frames = (int) clipTable[info + 1];
+            animator.doAnimation(clips.get(clip));
+            for (int frame = 0; frame < frames; frame++) {
+                animator.setAnimationTime(clips.get(clip).getLength() * frame / frames);
+                animator.update();
+                writeRow(animator.getJointTransforms(), jointCount, texels, (firstRow + frame) * rowSize);
+            }
+        }
+        return new BakedAnimation(jointCount, texels, clipNames, clipTable);
+    }
+
+    /**
+     * Writes the top three rows of each column-major joint transform.
+     */
+    private static void writeRow(float[] jointTransforms, int jointCount, float[] dest, int destOffset) {
+        int texel = destOffset;
+        for (int joint = 0; joint < jointCount; joint++) {
+            int m = joint * MATRIX_SIZE;
+            for (int row = 0; row < BakedAnimation.TEXELS_PER_JOINT; row++) {
+                for (int column = 0; column < 4; column++) {
+                    dest[texel++] = jointTransforms[m + column * 4 + row];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,530 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import com.google.ar.core.examples.java.common.math.Quaternions;
+
+/**
+ * A named animation clip, stored as structure-of-arrays tracks.
+ *
+ * All tracks of a clip share one array of key times. The local transform of
+ * each animated joint is split into a translation track (3 floats per key)
+ * and a rotation track (a unit quaternion x, y, z, w per key), indexed by the
+ * joint's index. Joints the clip doesn't animate have no tracks and keep
+ * their bind pose.
+ *
+ * Compared with a map of joint transforms per key frame, a sample is a
+ * binary search over one float array and a few reads from two more, and the
+ * whole clip is a handful of arrays no matter how many keys and joints it
+ * has.
+ *
+ * A clip can also be stored compressed (see {@link AnimationCompressor}),
+ * with each rotation key packed into 48 bits and each translation key into
+ * 16 bits per axis. Sampling unpacks the keys on the fly, without allocating,
+ * and behaves the same either way.
+ *
+ * Instances are immutable, so a clip can be shared by any number of
+ * animated models.
+ *
+ * @author Karl
+ *
+ */
+public class AnimationClip {
+
+    /** Floats per key in a translation track. */
+    public static final int TRANSLATION_SIZE = 3;
+    /** Floats per key in a rotation track. */
+    public static final int ROTATION_SIZE = 4;
+    /** Floats written by {@link #sample}: a translation followed by a rotation. */
+    public static final int SAMPLE_SIZE = TRANSLATION_SIZE + ROTATION_SIZE;
+
+    // How many keys findKey(time, hint) steps forward before it gives up and searches.
+    private static final int MAX_CURSOR_STEPS = 4;
+
+    /** Shorts per key in a packed translation track. */
+    /* package-private */ static final int PACKED_TRANSLATION_SIZE = 3;
+    /** Shorts per key in a packed rotation track. */
+    /* package-private */ static final int PACKED_ROTATION_SIZE = 3;
+    /** Floats per packed translation track in its range: the minimum and extent of each axis. */
+    /* package-private */ static final int TRANSLATION_RANGE_SIZE = 6;
+    // The largest packed value, for translations and for the rotation components.
+    private static final float TRANSLATION_STEPS = 0xFFFF;
+    private static final float ROTATION_STEPS = 0x7FFF;
+    // The range of the three smaller components of a unit quaternion is +-1/sqrt(2).
+    private static final float SQRT_2 = (float) Math.sqrt(2);
+
+    private final String name;
+    private final float length;
+    private final float[] keyTimes;
+    // Either these, when the clip is stored as floats,
+    private final float[][] translations;
+    private final float[][] rotations;
+    // or these, when it is packed.
+    private final short[][] packedTranslations;
+    private final float[][] translationRanges;
+    private final short[][] packedRotations;
+
+    /**
+     * @param name
+     *            - the name of the clip.
+     * @param length
+     *            - the length of the clip in seconds.
+     * @param keyTimes
+     *            - the time of each key in seconds, in increasing order.
+     * @param translations
+     *            - the translation track of each joint, by joint index, or
+     *            null for joints the clip doesn't animate.
+     * @param rotations
+     *            - the rotation track of each joint, by joint index, or null
+     *            for joints the clip doesn't animate.
+     */
+    public AnimationClip(String name, float length, float[] keyTimes, float[][] translations,
+                         float[][] rotations) {
+        if (keyTimes.length == 0) {
+            throw new IllegalArgumentException("Animation clip " + name + " has no keys");
+        }
+        if (translations.length != rotations.length) {
+            throw new IllegalArgumentException("Translation and rotation tracks must cover the same joints");
+        }
+        for (int joint = 0; joint < translations.length; joint++) {
+            if ((translations[joint] == null) != (rotations[joint] == null)) {
+                throw new IllegalArgumentException("Joint " + joint + " has only half a track");
+            }
+            if (translations[joint] != null
+                    && (translations[joint].length != keyTimes.length * TRANSLATION_SIZE
+                    || rotations[joint].length != keyTimes.length * ROTATION_SIZE)) {
+                throw new IllegalArgumentException("Track of joint " + joint + " has the wrong number of keys");
+            }
+        }
+        this.name = name;
+        this.length = length;
+        this.keyTimes = keyTimes;
+        this.translations = translations;
+        this.rotations = rotations;
+        this.packedTranslations = null;
+        this.translationRanges = null;
+        this.packedRotations = null;
+    }
+
+    /**
+     * Creates a packed clip, as made by {@link AnimationCompressor} or read
+     * back from the tracks of one (see {@link #getPackedTranslations}).
+     *
+     * @param packedTranslations
+     *            - the translation track of each joint, by joint index, or
+     *            null for joints the clip doesn't animate. Each axis is an
+     *            unsigned 16 bit fraction of the track's range on that axis.
+     * @param translationRanges
+     *            - the minimum x, y, z and the extent x, y, z of each
+     *            translation track.
+     * @param packedRotations
+     *            - the rotation track of each joint, see
+     *            {@link #packRotation}.
+     */
+    public AnimationClip(String name, float length, float[] keyTimes, short[][] packedTranslations,
+                         float[][] translationRanges, short[][] packedRotations) {
+        if (keyTimes.length == 0) {
+            throw new IllegalArgumentException("Animation clip " + name + " has no keys");
+        }
+        if (packedTranslations.length != packedRotations.length
+                || translationRanges.length != packedRotations.length) {
+            throw new IllegalArgumentException("Translation and rotation tracks must cover the same joints");
+        }
+        for (int joint = 0; joint < packedTranslations.length; joint++) {
+            if ((packedTranslations[joint] == null) != (packedRotations[joint] == null)
+                    || (packedTranslations[joint] == null) != (translationRanges[joint] == null)) {
+                throw new IllegalArgumentException("Joint " + joint + " has only part of a track");
+            }
+            if (packedTranslations[joint] != null
+                    && (packedTranslations[joint].length != keyTimes.length * PACKED_TRANSLATION_SIZE
+                    || packedRotations[joint].length != keyTimes.length * PACKED_ROTATION_SIZE
+                    || translationRanges[joint].length != TRANSLATION_RANGE_SIZE)) {
+                throw new IllegalArgumentException("Track of joint " + joint + " has the wrong number of keys");
+            }
+        }
+        this.name = name;
+        this.length = length;
+        this.keyTimes = keyTimes;
+        this.translations = null;
+        this.rotations = null;
+        this.packedTranslations = packedTranslations;
+        this.translationRanges = translationRanges;
+        this.packedRotations = packedRotations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public float getLength() {
+        return length;
+    }
+
+    public int getKeyCount() {
+        return keyTimes.length;
+    }
+
+    public float getKeyTime(int key) {
+        return keyTimes[key];
+    }
+
+    /**
+     * @return The number of joints the tracks are indexed by. Joints with an
+     *         index at or above this number aren't animated.
+     */
+    public int getJointCount() {
+        return isPacked() ? packedTranslations.length : translations.length;
+    }
+
+    public boolean hasTrack(int joint) {
+        if (isPacked()) {
+            return joint < packedTranslations.length && packedTranslations[joint] != null;
+        }
+        return joint < translations.length && translations[joint] != null;
+    }
+
+    /**
+     * @return Whether the keys are packed, see {@link AnimationCompressor}.
+     */
+    public boolean isPacked() {
+        return packedRotations != null;
+    }
+
+    /**
+     * @return A copy of the packed translation track of a joint, 3 unsigned
+     *         16 bit fractions of the track's range per key.
+     * @throws IllegalStateException
+     *             if the clip isn't packed.
+     */
+    public short[] getPackedTranslations(int joint) {
+        checkPacked();
+        return packedTranslations[joint].clone();
+    }
+
+    /**
+     * @return A copy of the range of the translation track of a joint: the
+     *         minimum x, y, z followed by the extent x, y, z.
+     * @throws IllegalStateException
+     *             if the clip isn't packed.
+     */
+    public float[] getTranslationRange(int joint) {
+        checkPacked();
+        return translationRanges[joint].clone();
+    }
+
+    /**
+     * @return A copy of the packed rotation track of a joint, 3 shorts per
+     *         key.
+     * @throws IllegalStateException
+     *             if the clip isn't packed.
+     */
+    public short[] getPackedRotations(int joint) {
+        checkPacked();
+        return packedRotations[joint].clone();
+    }
+
+    private void checkPacked() {
+        if (!isPacked()) {
+            throw new IllegalStateException("Animation clip " + name + " isn't packed");
+        }
+    }
+
+    /**
+     * @return The number of bytes the key times and tracks take up, not
+     *         counting object and array headers.
+     */
+    public int getDataSize() {
+        int size = keyTimes.length * 4;
+        for (int joint = 0; joint < getJointCount(); joint++) {
+            if (!hasTrack(joint)) {
+                continue;
+            }
+            if (isPacked()) {
+                size += (packedTranslations[joint].length + packedRotations[joint].length) * 2
+                        + TRANSLATION_RANGE_SIZE * 4;
+            } else {
+                size += (translations[joint].length + rotations[joint].length) * 4;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Finds the key at or before a time.
+     *
+     * @param time
+     *            - the time in seconds.
+     * @return The index of the last key whose time is not after {@code time},
+     *         or 0 if the time is before the first key.
+     */
+    public int findKey(float time) {
+        int low = 0;
+        int high = keyTimes.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (keyTimes[mid] <= time) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the key at or before a time, starting from the key found for an
+     * earlier time. Playing forwards, the key is at most a few steps ahead of
+     * the hint, so this costs O(1) however long the clip is. If it's further
+     * away (after a seek or a jump in time) or behind the hint (after
+     * looping) this falls back to a binary search.
+     *
+     * @param time
+     *            - the time in seconds.
+     * @param hint
+     *            - the key returned for an earlier time, or any key.
+     * @return The same as {@link #findKey(float)}.
+     */
+    public int findKey(float time, int hint) {
+        if (hint >= 0 && hint < keyTimes.length && keyTimes[hint] <= time) {
+            for (int step = 0; step < MAX_CURSOR_STEPS; step++) {
+                if (hint + 1 == keyTimes.length || keyTimes[hint + 1] > time) {
+                    return hint;
+                }
+                hint++;
+            }
+        }
+        return findKey(time);
+    }
+
+    /**
+     * @param key
+     *            - the key at or before the time, see {@link #findKey}.
+     * @param time
+     *            - the time in seconds.
+     * @return How far between the key and the next one the time is, from 0
+     *         to 1. Times outside the clip give 0 or 1.
+     */
+    public float getProgression(int key, float time) {
+        int next = key + 1;
+        if (next == keyTimes.length || time <= keyTimes[key]) {
+            return 0;
+        }
+        return Math.min(1, (time - keyTimes[key]) / (keyTimes[next] - keyTimes[key]));
+    }
+
+    /**
+     * Samples the local transform of a joint at a time, interpolating
+     * between the keys around it. The translation is interpolated linearly,
+     * the rotation with nlerp (see {@link Quaternions#nlerp}). Nothing is
+     * allocated.
+     *
+     * @param joint
+     *            - the index of the joint, which must have a track.
+     * @param time
+     *            - the time in seconds. Times outside the clip are clamped to
+     *            the first or last key.
+     * @param dest
+     *            - receives the translation (x, y, z) followed by the
+     *            rotation (x, y, z, w).
+     * @param destOffset
+     *            - where in {@code dest} to write the {@link #SAMPLE_SIZE}
+     *            floats.
+     */
+    public void sample(int joint, float time, float[] dest, int destOffset) {
+        int key = findKey(time);
+        sample(joint, key, getProgression(key, time), dest, destOffset);
+    }
+
+    /**
+     * Samples the local transform of a joint between a key and the next one.
+     * Animating many joints, find the key and progression once and use them
+     * for all of them.
+     *
+     * @param joint
+     *            - the index of the joint, which must have a track.
+     * @param key
+     *            - the key at or before the time, see {@link #findKey}.
+     * @param progression
+     *            - how far between the key and the next one to sample, see
+     *            {@link #getProgression}.
+     * @param dest
+     *            - receives the translation (x, y, z) followed by the
+     *            rotation (x, y, z, w).
+     * @param destOffset
+     *            - where in {@code dest} to write the {@link #SAMPLE_SIZE}
+     *            floats.
+     */
+    public void sample(int joint, int key, float progression, float[] dest, int destOffset) {
+        int next = Math.min(key + 1, keyTimes.length - 1);
+        if (isPacked()) {
+            samplePacked(joint, key, next, progression, dest, destOffset);
+            return;
+        }
+        float[] translation = translations[joint];
+        int a = key * TRANSLATION_SIZE;
+        int b = next * TRANSLATION_SIZE;
+        for (int i = 0; i < TRANSLATION_SIZE; i++) {
+            dest[destOffset + i] = translation[a + i] + (translation[b + i] - translation[a + i]) * progression;
+        }
+        float[] rotation = rotations[joint];
+        a = key * ROTATION_SIZE;
+        b = next * ROTATION_SIZE;
+        float dot = rotation[a] * rotation[b] + rotation[a + 1] * rotation[b + 1]
+                + rotation[a + 2] * rotation[b + 2] + rotation[a + 3] * rotation[b + 3];
+        // Take the shorter way round.
+        float blend = dot < 0 ? -progression : progression;
+        float blendI = 1f - progression;
+        float magnitude = 0;
+        for (int i = 0; i < ROTATION_SIZE; i++) {
+            float value = blendI * rotation[a + i] + blend * rotation[b + i];
+            dest[destOffset + TRANSLATION_SIZE + i] = value;
+            magnitude += value * value;
+        }
+        magnitude = (float) Math.sqrt(magnitude);
+        for (int i = 0; i < ROTATION_SIZE; i++) {
+            dest[destOffset + TRANSLATION_SIZE + i] /= magnitude;
+        }
+    }
+
+    /**
+     * Copies the translation of a joint at a key.
+     */
+    public void getTranslation(int joint, int key, float[] dest, int destOffset) {
+        if (isPacked()) {
+            unpackTranslation(joint, key, dest, destOffset);
+        } else {
+            System.arraycopy(translations[joint], key * TRANSLATION_SIZE, dest, destOffset, TRANSLATION_SIZE);
+        }
+    }
+
+    /**
+     * Copies the rotation of a joint at a key, as a unit quaternion (x, y, z,
+     * w).
+     */
+    public void getRotation(int joint, int key, float[] dest, int destOffset) {
+        if (isPacked()) {
+            unpackRotation(packedRotations[joint], key * PACKED_ROTATION_SIZE, dest, destOffset);
+        } else {
+            System.arraycopy(rotations[joint], key * ROTATION_SIZE, dest, destOffset, ROTATION_SIZE);
+        }
+    }
+
+    /**
+     * Samples packed tracks. The first rotation key is unpacked into
+     * {@code dest} and the second one into local variables, so that nothing
+     * has to be allocated and clips stay safe to share between threads.
+     */
+    private void samplePacked(int joint, int key, int next, float progression, float[] dest, int destOffset) {
+        short[] rotation = packedRotations[joint];
+        int rotationOffset = destOffset + TRANSLATION_SIZE;
+        unpackRotation(rotation, key * PACKED_ROTATION_SIZE, dest, rotationOffset);
+        int b = next * PACKED_ROTATION_SIZE;
+        float bx = unpackComponent(rotation, b, 0);
+        float by = unpackComponent(rotation, b, 1);
+        float bz = unpackComponent(rotation, b, 2);
+        float bw = unpackComponent(rotation, b, 3);
+        float ax = dest[rotationOffset], ay = dest[rotationOffset + 1];
+        float az = dest[rotationOffset + 2], aw = dest[rotationOffset + 3];
+        // Take the shorter way round.
+        float blend = ax * bx + ay * by + az * bz + aw * bw < 0 ? -progression : progression;
+        float blendI = 1f - progression;
+        float x = blendI * ax + blend * bx;
+        float y = blendI * ay + blend * by;
+        float z = blendI * az + blend * bz;
+        float w = blendI * aw + blend * bw;
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        dest[rotationOffset] = x / magnitude;
+        dest[rotationOffset + 1] = y / magnitude;
+        dest[rotationOffset + 2] = z / magnitude;
+        dest[rotationOffset + 3] = w / magnitude;
+
+        short[] translation = packedTranslations[joint];
+        float[] range = translationRanges[joint];
+        int a = key * PACKED_TRANSLATION_SIZE;
+        b = next * PACKED_TRANSLATION_SIZE;
+        for (int i = 0; i < TRANSLATION_SIZE; i++) {
+            float valueA = translation[a + i] & 0xFFFF;
+            float valueB = translation[b + i] & 0xFFFF;
+            float value = valueA + (valueB - valueA) * progression;
+            dest[destOffset + i] = range[i] + value / TRANSLATION_STEPS * range[TRANSLATION_SIZE + i];
+        }
+    }
+
+    private void unpackTranslation(int joint, int key, float[] dest, int destOffset) {
+        short[] translation = packedTranslations[joint];
+        float[] range = translationRanges[joint];
+        for (int i = 0; i < TRANSLATION_SIZE; i++) {
+            float value = translation[key * PACKED_TRANSLATION_SIZE + i] & 0xFFFF;
+            dest[destOffset + i] = range[i] + value / TRANSLATION_STEPS * range[TRANSLATION_SIZE + i];
+        }
+    }
+
+    /**
+     * Packs a unit quaternion into 48 bits with the "smallest three" method:
+     * the largest component is left out, since it follows from the others,
+     * and is made positive by negating the quaternion if need be, which
+     * leaves the rotation the same. The other three components lie within
+     * +-1/sqrt(2) and are stored in 15 bits each. The two bits saying which
+     * component was left out go in the top bits of the first two shorts.
+     */
+    /* package-private */
+    static void packRotation(float[] q, int offset, short[] dest, int destOffset) {
+        int largest = 0;
+        for (int i = 1; i < ROTATION_SIZE; i++) {
+            if (Math.abs(q[offset + i]) > Math.abs(q[offset + largest])) {
+                largest = i;
+            }
+        }
+        float sign = q[offset + largest] < 0 ? -1 : 1;
+        int packed = 0;
+        for (int i = 0; i < ROTATION_SIZE; i++) {
+            if (i == largest) {
+                continue;
+            }
+            float value = (q[offset + i] * sign * SQRT_2 + 1) / 2;
+            int quantized = Math.round(Math.max(0, Math.min(1, value)) * ROTATION_STEPS);
+            int topBit = packed < 2 ? (largest >> packed) & 1 : 0;
+            dest[destOffset + packed] = (short) (topBit << 15 | quantized);
+            packed++;
+        }
+    }
+
+    /**
+     * @return One component of a rotation packed by {@link #packRotation}.
+     */
+    private static float unpackComponent(short[] packed, int offset, int component) {
+        int largest = (packed[offset] >> 15 & 1) | (packed[offset + 1] >> 15 & 1) << 1;
+        if (component != largest) {
+            return unpackValue(packed[offset + (component < largest ? component : component - 1)]);
+        }
+        float sum = 0;
+        for (int i = 0; i < PACKED_ROTATION_SIZE; i++) {
+            float value = unpackValue(packed[offset + i]);
+            sum += value * value;
+        }
+        return (float) Math.sqrt(Math.max(0, 1 - sum));
+    }
+
+    private static float unpackValue(short packed) {
+        return ((packed & 0x7FFF) / ROTATION_STEPS * 2 - 1) / SQRT_2;
+    }
+
+    /**
+     * Unpacks a rotation packed by {@link #packRotation}.
+     */
+    /* package-private */
+    static void unpackRotation(short[] packed, int offset, float[] dest, int destOffset) {
+        int largest = (packed[offset] >> 15 & 1) | (packed[offset + 1] >> 15 & 1) << 1;
+        float sum = 0;
+        int next = 0;
+        for (int i = 0; i < ROTATION_SIZE; i++) {
+            if (i == largest) {
+                continue;
+            }
+            float value = unpackValue(packed[offset + next]);
+            dest[destOffset + i] = value;
+            sum += value * value;
+            next++;
+        }
+        dest[destOffset + largest] = (float) Math.sqrt(Math.max(0, 1 - sum));
+    }
+
+}
@@ -0,0 +1,262 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import com.google.ar.core.examples.java.common.math.Quaternions;
+
+/**
+ * Shrinks {@link AnimationClip}s in two steps.
+ *
+ * First, keys that interpolating between their neighbours reproduces within
+ * a position and an angle tolerance are removed. All tracks of a clip share
+ * their key times, so a key only goes if every track can do without it; that
+ * keeps sampling a single key search per clip.
+ *
+ * Then the remaining keys are packed: each rotation into 48 bits (see
+ * {@link AnimationClip#packRotation}) and each translation into 16 bits per
+ * axis, as a fraction of the range the track covers on that axis. Packing
+ * moves rotations by a few hundredths of a degree at most and translations
+ * by 1/131070 of their range, on top of the tolerances.
+ *
+ * {@link #measure} compares a compressed clip with the original.
+ *
+ * @author Karl
+ *
+ */
+public class AnimationCompressor {
+
+    /** Default largest position error of a removed key, in model units. */
+    public static final float DEFAULT_MAX_POSITION_ERROR = 1e-3f;
+    /** Default largest rotation error of a removed key, in radians (0.1 degrees). */
+    public static final float DEFAULT_MAX_ANGLE_ERROR = (float) Math.toRadians(0.1);
+
+    private static final int TRANSLATION_SIZE = AnimationClip.TRANSLATION_SIZE;
+    private static final int ROTATION_SIZE = AnimationClip.ROTATION_SIZE;
+    private static final int SAMPLE_SIZE = AnimationClip.SAMPLE_SIZE;
+
+    /**
+     * How much a clip shrank and how far it moved; see {@link #measure}.
+     */
+    public static class Report {
+        public final int originalKeyCount;
+        public final int keyCount;
+        public final int originalDataSize;
+        public final int dataSize;
+        public final float maxPositionError;
+        public final float maxAngleError;
+
+        private Report(int originalKeyCount, int keyCount, int originalDataSize, int dataSize,
+                       float maxPositionError, float maxAngleError) {
+            this.originalKeyCount = originalKeyCount;
+            this.keyCount = keyCount;
+            this.originalDataSize = originalDataSize;
+            this.dataSize = dataSize;
+            this.maxPositionError = maxPositionError;
+            this.maxAngleError = maxAngleError;
+        }
+
+        /**
+         * @return How many times smaller the compressed clip is.
+         */
+        public float getCompressionRatio() {
+            return (float) originalDataSize / dataSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d -> %d keys, %d -> %d bytes (%.1fx), max error %.5f units, %.4f degrees",
+                    originalKeyCount, keyCount, originalDataSize, dataSize, getCompressionRatio(),
+                    maxPositionError, Math.toDegrees(maxAngleError));
+        }
+    }
+
+    private AnimationCompressor() {
+    }
+
+    /**
+     * Compresses a clip with the default tolerances.
+     */
+    public static AnimationClip compress(AnimationClip clip) {
+        return compress(clip, DEFAULT_MAX_POSITION_ERROR, DEFAULT_MAX_ANGLE_ERROR);
+    }
+
+    /**
+     * @param clip
+     *            - the clip to compress; a clip that is packed already is
+     *            returned as it is.
+     * @param maxPositionError
+     *            - the largest distance a joint may move from where a
+     *            removed key had it, in model units.
+     * @param maxAngleError
+     *            - the largest angle a joint may turn from where a removed
+     *            key had it, in radians.
+     * @return A packed clip with the same name, length and tracks.
+     */
+    public static AnimationClip compress(AnimationClip clip, float maxPositionError, float maxAngleError) {
+        if (clip.isPacked()) {
+            return clip;
+        }
+        int[] keys = reduceKeys(clip, maxPositionError, maxAngleError);
+        float[] keyTimes = new float[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keyTimes[i] = clip.getKeyTime(keys[i]);
+        }
+
+        int jointCount = clip.getJointCount();
+        short[][] translations = new short[jointCount][];
+        float[][] ranges = new float[jointCount][];
+        short[][] rotations = new short[jointCount][];
+        float[] value = new float[ROTATION_SIZE];
+        for (int joint = 0; joint < jointCount; joint++) {
+            if (!clip.hasTrack(joint)) {
+                continue;
+            }
+            float[] range = translationRange(clip, joint, keys);
+            translations[joint] = new short[keys.length * AnimationClip.PACKED_TRANSLATION_SIZE];
+            rotations[joint] = new short[keys.length * AnimationClip.PACKED_ROTATION_SIZE];
+            for (int i = 0; i < keys.length; i++) {
+                clip.getTranslation(joint, keys[i], value, 0);
+                for (int axis = 0; axis < TRANSLATION_SIZE; axis++) {
+                    float extent = range[TRANSLATION_SIZE + axis];
+                    float fraction = extent > 0 ? (value[axis] - range[axis]) / extent : 0;
+                    translations[joint][i * AnimationClip.PACKED_TRANSLATION_SIZE + axis] =
+                            (short) Math.round(Math.max(0, Math.min(1, fraction)) * 0xFFFF);
+                }
+                clip.getRotation(joint, keys[i], value, 0);
+                AnimationClip.packRotation(value, 0, rotations[joint], i * AnimationClip.PACKED_ROTATION_SIZE);
+            }
+            ranges[joint] = range;
+        }
+        return new AnimationClip(clip.getName(), clip.getLength(), keyTimes, translations, ranges, rotations);
+    }
+
+    /**
+     * Compares a compressed clip with its original at each key of the
+     * original.
+     */
+    public static Report measure(AnimationClip original, AnimationClip compressed) {
+        float[] a = new float[SAMPLE_SIZE];
+        float[] b = new float[SAMPLE_SIZE];
+        float maxPositionError = 0;
+        float maxAngleError = 0;
+        for (int key = 0; key < original.getKeyCount(); key++) {
+            float time = original.getKeyTime(key);
+            for (int joint = 0; joint < original.getJointCount(); joint++) {
+                if (!original.hasTrack(joint)) {
+                    continue;
+                }
+                original.sample(joint, key, 0, a, 0);
+                compressed.sample(joint, time, b, 0);
+                maxPositionError = Math.max(maxPositionError, distance(a, 0, b, 0));
+                maxAngleError = Math.max(maxAngleError, angle(a, TRANSLATION_SIZE, b, TRANSLATION_SIZE));
+            }
+        }
+        return new Report(original.getKeyCount(), compressed.getKeyCount(), original.getDataSize(),
+                compressed.getDataSize(), maxPositionError, maxAngleError);
+    }
+
+    /**
+     * Picks the keys to keep, greedily: starting from a kept key, the span
+     * to the next kept key grows for as long as every key inside it can be
+     * interpolated within the tolerances. The first and last keys are always
+     * kept.
+     *
+     * @return The indices of the keys to keep, in order.
+     */
+    private static int[] reduceKeys(AnimationClip clip, float maxPositionError, float maxAngleError) {
+        int keyCount = clip.getKeyCount();
+        int[] kept = new int[keyCount];
+        int keptCount = 0;
+        kept[keptCount++] = 0;
+        int start = 0;
+        // The start and end keys, the interpolated key and the actual one.
+        float[] scratch = new float[SAMPLE_SIZE * 4];
+        for (int end = 2; end < keyCount; end++) {
+            if (!canSkip(clip, start, end, maxPositionError, maxAngleError, scratch)) {
+                start = end - 1;
+                kept[keptCount++] = start;
+            }
+        }
+        if (keyCount > 1) {
+            kept[keptCount++] = keyCount - 1;
+        }
+        int[] keys = new int[keptCount];
+        System.arraycopy(kept, 0, keys, 0, keptCount);
+        return keys;
+    }
+
+    /**
+     * @return Whether interpolating from key {@code start} to key
+     *         {@code end} reproduces every key between them.
+     */
+    private static boolean canSkip(AnimationClip clip, int start, int end, float maxPositionError,
+                                   float maxAngleError, float[] scratch) {
+        int a = 0, b = SAMPLE_SIZE, interpolated = SAMPLE_SIZE * 2, actual = SAMPLE_SIZE * 3;
+        float startTime = clip.getKeyTime(start);
+        float span = clip.getKeyTime(end) - startTime;
+        for (int joint = 0; joint < clip.getJointCount(); joint++) {
+            if (!clip.hasTrack(joint)) {
+                continue;
+            }
+            clip.getTranslation(joint, start, scratch, a);
+            clip.getRotation(joint, start, scratch, a + TRANSLATION_SIZE);
+            clip.getTranslation(joint, end, scratch, b);
+            clip.getRotation(joint, end, scratch, b + TRANSLATION_SIZE);
+            for (int key = start + 1; key < end; key++) {
+                float progression = span > 0 ? (clip.getKeyTime(key) - startTime) / span : 0;
+                for (int i = 0; i < TRANSLATION_SIZE; i++) {
+                    scratch[interpolated + i] = scratch[a + i] + (scratch[b + i] - scratch[a + i]) * progression;
+                }
+                Quaternions.nlerp(scratch, a + TRANSLATION_SIZE, scratch, b + TRANSLATION_SIZE, progression,
+                        scratch, interpolated + TRANSLATION_SIZE);
+                clip.sample(joint, key, 0, scratch, actual);
+                if (distance(scratch, interpolated, scratch, actual) > maxPositionError
+                        || angle(scratch, interpolated + TRANSLATION_SIZE, scratch, actual + TRANSLATION_SIZE)
+                        > maxAngleError) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The minimum x, y, z and the extent x, y, z of a translation
+     *         track over the given keys.
+     */
+    private static float[] translationRange(AnimationClip clip, int joint, int[] keys) {
+        float[] range = new float[AnimationClip.TRANSLATION_RANGE_SIZE];
+        float[] max = new float[TRANSLATION_SIZE];
+        float[] value = new float[TRANSLATION_SIZE];
+        for (int i = 0; i < keys.length; i++) {
+            clip.getTranslation(joint, keys[i], value, 0);
+            for (int axis = 0; axis < TRANSLATION_SIZE; axis++) {
+                if (i == 0 || value[axis] < range[axis]) {
+                    range[axis] = value[axis];
+                }
+                if (i == 0 || value[axis] > max[axis]) {
+                    max[axis] = value[axis];
+                }
+            }
+        }
+        for (int axis = 0; axis < TRANSLATION_SIZE; axis++) {
+            range[TRANSLATION_SIZE + axis] = max[axis] - range[axis];
+        }
+        return range;
+    }
+
+    private static float distance(float[] a, int aOffset, float[] b, int bOffset) {
+        float dx = a[aOffset] - b[bOffset];
+        float dy = a[aOffset + 1] - b[bOffset + 1];
+        float dz = a[aOffset + 2] - b[bOffset + 2];
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * @return The angle between two unit quaternion rotations, in radians.
+     */
+    private static float angle(float[] a, int aOffset, float[] b, int bOffset) {
+        float dot = Math.abs(a[aOffset] * b[bOffset] + a[aOffset + 1] * b[bOffset + 1]
+                + a[aOffset + 2] * b[bOffset + 2] + a[aOffset + 3] * b[bOffset + 3]);
+        return 2 * (float) Math.acos(Math.min(1, dot));
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import com.google.ar.core.examples.java.common.math.Quaternions;
+
+/**
+ * One layer of animation in an {@link Animator}. Layers are applied on top of
+ * each other, starting from the bind pose: each one either replaces the pose
+ * beneath it ({@link BlendMode#OVERRIDE}) or adds its motion to it
+ * ({@link BlendMode#ADDITIVE}), by its weight and, optionally, only for the
+ * joints of a {@link JointMask}.
+ *
+ * A layer can cross-fade from the clip it is playing to a new one, blending
+ * the two while the fade lasts.
+ *
+ * @author Karl
+ *
+ */
+public class AnimationLayer {
+
+    /**
+     * How a layer combines with the pose of the layers beneath it.
+     */
+    public enum BlendMode {
+        /**
+         * Blends from the pose beneath to the layer's clip by the layer's
+         * weight.
+         */
+        OVERRIDE,
+        /**
+         * Adds how far the layer's clip has moved from its first key on top of
+         * the pose beneath, scaled by the layer's weight. Suits clips that
+         * only make sense on top of another, like breathing or a nod.
+         */
+        ADDITIVE
+    }
+
+    private static final int SAMPLE_SIZE = AnimationClip.SAMPLE_SIZE;
+    private static final int TRANSLATION_SIZE = AnimationClip.TRANSLATION_SIZE;
+    private static final float[] IDENTITY = {0, 0, 0, 1};
+
+    private final BlendMode blendMode;
+    private float weight = 1;
+    private JointMask mask;
+
+    private ClipPlayback current = new ClipPlayback();
+    private ClipPlayback previous = new ClipPlayback();
+    private float fadeDuration = 0;
+    private float fadeTime = 0;
+
+    // Scratch space for the first key of an additive clip and a weighted rotation.
+    private final float[] reference = new float[SAMPLE_SIZE];
+    private final float[] rotation = new float[AnimationClip.ROTATION_SIZE];
+
+    /* package-private */
+    AnimationLayer(BlendMode blendMode) {
+        this.blendMode = blendMode;
+    }
+
+    public BlendMode getBlendMode() {
+        return blendMode;
+    }
+
+    /**
+     * Starts playing a clip from the beginning, cutting off whatever was
+     * playing before.
+     *
+     * @param clip
+     *            - the clip, or null to stop the layer.
+     */
+    public void play(AnimationClip clip) {
+        current.play(clip);
+        previous.play(null);
+        fadeDuration = 0;
+    }
+
+    /**
+     * Starts playing a clip from the beginning, fading out the clip that was
+     * playing over the given time. The old clip keeps running while it fades.
+     *
+     * @param clip
+     *            - the new clip.
+     * @param duration
+     *            - how long the fade lasts in seconds.
+     */
+    public void crossFade(AnimationClip clip, float duration) {
+        if (current.getClip() == null || duration <= 0) {
+            play(clip);
+            return;
+        }
+        ClipPlayback faded = previous;
+        previous = current;
+        current = faded;
+        current.play(clip);
+        fadeDuration = duration;
+        fadeTime = 0;
+    }
+
+    /**
+     * @return The clip being played, or faded in, or null if there is none.
+     */
+    public AnimationClip getAnimation() {
+        return current.getClip();
+    }
+
+    /**
+     * @return Whether the layer is still fading out a previous clip.
+     */
+    public boolean isFading() {
+        return previous.getClip() != null;
+    }
+
+    public float getAnimationTime() {
+        return current.getTime();
+    }
+
+    /**
+     * Jumps to a time in the current clip.
+     *
+     * @param time
+     *            - the time in seconds, which is wrapped into the length of
+     *            the clip.
+     */
+    public void setAnimationTime(float time) {
+        current.setTime(time);
+    }
+
+    /**
+     * Sets how much the layer affects the pose, from 0 (not at all) to 1
+     * (fully).
+     */
+    public void setWeight(float weight) {
+        this.weight = weight;
+    }
+
+    public float getWeight() {
+        return weight;
+    }
+
+    /**
+     * Limits the layer to some joints.
+     *
+     * @param mask
+     *            - the joints the layer affects, or null for all of them.
+     */
+    public void setMask(JointMask mask) {
+        this.mask = mask;
+    }
+
+    public JointMask getMask() {
+        return mask;
+    }
+
+    /**
+     * Moves the clips of the layer, and any fade, on in time.
+     */
+    /* package-private */
+    void advance(float delta) {
+        current.advance(delta);
+        if (previous.getClip() != null) {
+            previous.advance(delta);
+            fadeTime += Math.abs(delta);
+            if (fadeTime >= fadeDuration) {
+                previous.play(null);
+            }
+        }
+    }
+
+    /**
+     * Applies the layer to the pose of the layers beneath it.
+     *
+     * @param pose
+     *            - the pose to change, {@link AnimationClip#SAMPLE_SIZE}
+     *            floats per node of the skeleton.
+     * @param pool
+     *            - where to borrow intermediate poses from. Two are needed.
+     * @param slerp
+     *            - whether to blend rotations with slerp instead of nlerp.
+     * @param maxDepth
+     *            - joints deeper than this keep the pose beneath.
+     */
+    /* package-private */
+    void apply(float[] pose, Skeleton skeleton, PosePool pool, boolean slerp, int maxDepth) {
+        if (current.getClip() == null || weight <= 0) {
+            return;
+        }
+        float[] layerPose = pool.obtain();
+        samplePose(current, pose, layerPose, skeleton, maxDepth);
+        if (previous.getClip() != null) {
+            float[] fadedPose = pool.obtain();
+            samplePose(previous, pose, fadedPose, skeleton, maxDepth);
+            // Blend from the old clip to the new one, and keep the result in layerPose.
+            float fade = fadeTime / fadeDuration;
+            for (int node = 0; node < skeleton.getNodeCount(); node++) {
+                blend(fadedPose, layerPose, node * SAMPLE_SIZE, fade, slerp, layerPose);
+            }
+            pool.release(fadedPose);
+        }
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            float nodeWeight = mask == null ? weight : weight * mask.getWeight(node);
+            if (nodeWeight <= 0) {
+                continue;
+            }
+            int offset = node * SAMPLE_SIZE;
+            if (blendMode == BlendMode.OVERRIDE) {
+                blend(pose, layerPose, offset, nodeWeight, slerp, pose);
+            } else {
+                add(pose, layerPose, offset, nodeWeight, slerp);
+            }
+        }
+        pool.release(layerPose);
+    }
+
+    /**
+     * Samples a clip into a pose. For an override layer the joints the clip
+     * doesn't animate, or that are deeper than {@code maxDepth}, keep the
+     * pose beneath; for an additive layer the pose holds how far each joint
+     * has moved from the clip's first key, and those joints don't move.
+     */
+    private void samplePose(ClipPlayback playback, float[] pose, float[] dest, Skeleton skeleton,
+                            int maxDepth) {
+        if (blendMode == BlendMode.OVERRIDE) {
+            System.arraycopy(pose, 0, dest, 0, skeleton.getNodeCount() * SAMPLE_SIZE);
+            playback.sample(skeleton, dest, maxDepth);
+            return;
+        }
+        AnimationClip clip = playback.getClip();
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            int offset = node * SAMPLE_SIZE;
+            dest[offset] = 0;
+            dest[offset + 1] = 0;
+            dest[offset + 2] = 0;
+            System.arraycopy(IDENTITY, 0, dest, offset + TRANSLATION_SIZE, IDENTITY.length);
+        }
+        playback.sample(skeleton, dest, maxDepth);
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            int joint = skeleton.getJointIndex(node);
+            if (joint < 0 || !clip.hasTrack(joint) || skeleton.getDepth(node) > maxDepth) {
+                continue;
+            }
+            int offset = node * SAMPLE_SIZE;
+            clip.getTranslation(joint, 0, reference, 0);
+            clip.getRotation(joint, 0, reference, TRANSLATION_SIZE);
+            for (int i = 0; i < TRANSLATION_SIZE; i++) {
+                dest[offset + i] -= reference[i];
+            }
+            Quaternions.conjugate(reference, TRANSLATION_SIZE, reference, TRANSLATION_SIZE);
+            Quaternions.multiply(reference, TRANSLATION_SIZE, dest, offset + TRANSLATION_SIZE, dest,
+                    offset + TRANSLATION_SIZE);
+        }
+    }
+
+    /**
+     * Blends one node from pose {@code a} towards pose {@code b} and writes
+     * it to {@code dest}, which may be either of them.
+     */
+    private static void blend(float[] a, float[] b, int offset, float blend, boolean slerp, float[] dest) {
+        for (int i = 0; i < TRANSLATION_SIZE; i++) {
+            dest[offset + i] = a[offset + i] + (b[offset + i] - a[offset + i]) * blend;
+        }
+        int r = offset + TRANSLATION_SIZE;
+        if (slerp) {
+            Quaternions.slerp(a, r, b, r, blend, dest, r);
+        } else {
+            Quaternions.nlerp(a, r, b, r, blend, dest, r);
+        }
+    }
+
+    /**
+     * Adds a weighted share of one node of an additive pose to a pose. The
+     * rotation is applied in the joint's local space, after the rotation
+     * beneath.
+     */
+    private void add(float[] pose, float[] additive, int offset, float blend, boolean slerp) {
+        for (int i = 0; i < TRANSLATION_SIZE; i++) {
+            pose[offset + i] += additive[offset + i] * blend;
+        }
+        int r = offset + TRANSLATION_SIZE;
+        if (slerp) {
+            Quaternions.slerp(IDENTITY, 0, additive, r, blend, rotation, 0);
+        } else {
+            Quaternions.nlerp(IDENTITY, 0, additive, r, blend, rotation, 0);
+        }
+        Quaternions.multiply(pose, r, rotation, 0, pose, r);
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks how much detail to animate a model in, from where it is relative to
+ * the camera. Nearby models are updated every frame with every joint; models
+ * further away fall into distance bands that update less often and can leave
+ * fine joints out; models that are tiny on screen get the last band; and
+ * models outside the view aren't updated at all, since nobody sees their
+ * pose. The joint transforms of an animator that isn't updated keep the last
+ * pose, which is what gets drawn.
+ *
+ * @author Karl
+ *
+ */
+public class AnimationLod {
+
+    private static class Band {
+        final float maxDistance;
+        final int updateInterval;
+        final int maxJointDepth;
+
+        Band(float maxDistance, int updateInterval, int maxJointDepth) {
+            this.maxDistance = maxDistance;
+            this.updateInterval = updateInterval;
+            this.maxJointDepth = maxJointDepth;
+        }
+    }
+
+    private final List<Band> bands = new ArrayList<Band>();
+    private float minScreenSize = 0;
+
+    /**
+     * @return Bands that update every frame up to 2 metres away, every 2nd
+     *         frame up to 5 metres, and every 4th frame without the joints
+     *         more than 1 below their root beyond that, which leaves out
+     *         the outer segments of fingers.
+     */
+    public static AnimationLod createDefault() {
+        return new AnimationLod()
+                .addBand(2, 1, Animator.ALL_JOINTS)
+                .addBand(5, 2, Animator.ALL_JOINTS)
+                .addBand(Float.POSITIVE_INFINITY, 4, 1)
+                .setMinScreenSize(0.05f);
+    }
+
+    /**
+     * Adds a distance band. Bands must be added nearest first; models beyond
+     * the last band use the last band.
+     *
+     * @param maxDistance
+     *            - how far from the camera the band reaches, in the units
+     *            of the view matrix (metres in ARCore).
+     * @param updateInterval
+     *            - see {@link Animator#setUpdateInterval}.
+     * @param maxJointDepth
+     *            - see {@link Animator#setMaxJointDepth}.
+     */
+    public AnimationLod addBand(float maxDistance, int updateInterval, int maxJointDepth) {
+        if (!bands.isEmpty() && maxDistance <= bands.get(bands.size() - 1).maxDistance) {
+            throw new IllegalArgumentException("Bands must be added nearest first");
+        }
+        bands.add(new Band(maxDistance, updateInterval, maxJointDepth));
+        return this;
+    }
+
+    /**
+     * Sets the screen size below which models get the last band however near
+     * they are.
+     *
+     * @param minScreenSize
+     *            - the height of the model's bounding sphere as a fraction of
+     *            the height of the screen.
+     */
+    public AnimationLod setMinScreenSize(float minScreenSize) {
+        this.minScreenSize = minScreenSize;
+        return this;
+    }
+
+    /**
+     * Sets the update interval and joint depth of an animator for where its
+     * model is.
+     *
+     * @param animator
+     *            - the animator to set up.
+     * @param modelViewMatrix
+     *            - the model-view matrix of the model.
+     * @param projectionMatrix
+     *            - the projection matrix of the camera.
+     * @param boundingRadius
+     *            - the radius of a sphere around the model's origin that
+     *            holds it, in view units.
+     * @return False if the model is outside the view, in which case the
+     *         animator needn't be updated at all.
+     */
+    public boolean apply(Animator animator, float[] modelViewMatrix, float[] projectionMatrix,
+                         float boundingRadius) {
+        // The model's origin in view space, where the camera looks down -z.
+        float x = modelViewMatrix[12];
+        float y = modelViewMatrix[13];
+        float z = modelViewMatrix[14];
+        float depth = -z;
+        // Clip space of a perspective projection, with the sphere's radius added on each side.
+        float clipX = projectionMatrix[0] * x + projectionMatrix[8] * z;
+        float clipY = projectionMatrix[5] * y + projectionMatrix[9] * z;
+        if (depth < -boundingRadius
+                || Math.abs(clipX) > depth + boundingRadius * projectionMatrix[0]
+                || Math.abs(clipY) > depth + boundingRadius * projectionMatrix[5]) {
+            return false;
+        }
+        if (bands.isEmpty()) {
+            animator.setUpdateInterval(1);
+            animator.setMaxJointDepth(Animator.ALL_JOINTS);
+            return true;
+        }
+
+        Band band = bands.get(bands.size() - 1);
+        // Normalised device coordinates span 2 units of screen height.
+        float screenSize = depth > 0 ? boundingRadius * projectionMatrix[5] / depth : Float.POSITIVE_INFINITY;
+        if (screenSize >= minScreenSize) {
+            float distance = (float) Math.sqrt(x * x + y * y + z * z);
+            for (int i = 0; i < bands.size(); i++) {
+                if (distance <= bands.get(i).maxDistance) {
+                    band = bands.get(i);
+                    break;
+                }
+            }
+        }
+        animator.setUpdateInterval(band.updateInterval);
+        animator.setMaxJointDepth(band.maxJointDepth);
+        return true;
+    }
+
+}
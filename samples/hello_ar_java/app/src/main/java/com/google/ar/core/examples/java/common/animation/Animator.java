@@ -1,24 +1,92 @@
 package com.google.ar.core.examples.java.common.animation;
 
-import java.util.HashMap;
-import java.util.Map;
-import com.google.ar.core.examples.java.common.samplerender.Joint;
-import com.google.ar.core.examples.java.common.samplerender.Mesh;
+import com.google.ar.core.examples.java.common.math.Matrices;
 
-import android.opengl.Matrix;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Plays {@link AnimationClip}s on a {@link Skeleton}.
+ *
+ * An animator holds the playback state of one animated model: the clips, the
+ * time, the speed and the resulting pose. The skeleton and clips it reads
+ * are immutable and can be shared, so each of many models drawn with the same
+ * mesh gets its own animator and moves independently.
+ *
+ * The pose is built up from {@link AnimationLayer}s, starting from the bind
+ * pose. The base layer, which {@link #doAnimation} and {@link #crossFade}
+ * play on, overrides it fully; further layers can override or add to the
+ * result by a weight, for all joints or some of them. Rotations are blended
+ * with nlerp unless {@link #setSlerp} asks for slerp.
+ *
+ * All pose data lives in flat float arrays that are allocated once, when the
+ * animator is created: a translation and rotation per node of the skeleton
+ * for the blended pose, one 4x4 matrix per node for the model-space pose,
+ * and one per joint index for the skinning palette. Layers borrow their
+ * intermediate poses from a {@link PosePool}. The skeleton is walked in its
+ * stored order, where parents come before their children, so no recursion is
+ * needed and {@link #update()} doesn't allocate anything.
+ *
+ * Models that are far away can be animated in less detail: see
+ * {@link #setUpdateInterval} and {@link #setMaxJointDepth}, and
+ * {@link AnimationLod} for picking them.
+ *
+ * @author Karl
+ *
+ */
 public class Animator {
-    private final Mesh entity;
+    private static final int MATRIX_SIZE = Skeleton.MATRIX_SIZE;
+    private static final int SAMPLE_SIZE = AnimationClip.SAMPLE_SIZE;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final float NANOS_PER_SECOND = 1e9f;
+    // Poses a layer has in use at once: its clip, and the one it fades out.
+    private static final int LAYER_POSES = 2;
+    /** Joint depth limit that leaves all joints animated. */
+    public static final int ALL_JOINTS = Integer.MAX_VALUE;
 
-    private Animation currentAnimation;
-    private float animationTime = 0;
+    // Spreads the updates of animators with the same interval over the frames.
+    private static final AtomicInteger nextPhase = new AtomicInteger();
+
+    private final Skeleton skeleton;
+    private final List<AnimationLayer> layers = new ArrayList<AnimationLayer>();
+    private final AnimationLayer baseLayer;
+    private final PosePool posePool;
+    private float speed = 1;
+    private boolean slerp = false;
+    private int updateInterval = 1;
+    private int maxJointDepth = ALL_JOINTS;
+    // Calls to update() so far, and an offset so that animators don't all evaluate on the same call.
+    private int frame = 0;
+    private final int phase;
+    private boolean poseOutdated = true;
+
+    private TimeSource timeSource = TimeSource.SYSTEM;
+    private long lastTimeNanos = NO_TIME;
+
+    // The blended local translation and rotation of each node.
+    private final float[] pose;
+    private final float[] localTransform = new float[MATRIX_SIZE];
+    // Model-space transform of each node in the current pose.
+    private final float[] modelTransforms;
+    // Model-space transform relative to the bind pose, by joint index.
+    private final float[] jointTransforms;
 
     /**
-     * @param entity
-     *            - the entity which will by animated by this animator.
+     * @param skeleton
+     *            - the skeleton which will by animated by this animator.
      */
-    public Animator(Mesh entity) {
-        this.entity = entity;
+    public Animator(Skeleton skeleton) {
+        this.skeleton = skeleton;
+        this.baseLayer = addLayer(AnimationLayer.BlendMode.OVERRIDE);
+        this.posePool = new PosePool(skeleton, LAYER_POSES);
+        this.pose = new float[skeleton.getNodeCount() * SAMPLE_SIZE];
+        this.modelTransforms = new float[skeleton.getNodeCount() * MATRIX_SIZE];
+        this.jointTransforms = new float[skeleton.getJointCount() * MATRIX_SIZE];
+        this.phase = nextPhase.getAndIncrement() & Integer.MAX_VALUE;
+        for (int joint = 0; joint < skeleton.getJointCount(); joint++) {
+            Matrices.setIdentity(jointTransforms, joint * MATRIX_SIZE);
+        }
     }
 
 
@@ -29,178 +97,263 @@ public class Animator {
      * @param animation
      *            - the new animation to carry out.
      */
-    public void doAnimation(Animation animation) {
-        this.animationTime = 0;
-        this.currentAnimation = animation;
+    public void doAnimation(AnimationClip animation) {
+        baseLayer.play(animation);
+        this.lastTimeNanos = NO_TIME;
+        this.poseOutdated = true;
     }
 
     /**
-     * This method should be called each frame to update the animation currently
-     * being played. This increases the animation time (and loops it back to
-     * zero if necessary), finds the pose that the entity should be in at that
-     * time of the animation, and then applies that pose to all the model's
-     * joints by setting the joint transforms.
+     * Like {@link #doAnimation}, but fades from the current animation to the
+     * new one instead of cutting over.
+     *
+     * @param animation
+     *            - the new animation to carry out.
+     * @param duration
+     *            - how long the fade lasts in seconds.
      */
-    public void update() {
-        if (currentAnimation == null) {
-            return;
-        }
-        increaseAnimationTime();
-        Map<String, float[]> currentPose = calculateCurrentAnimationPose();
-        applyPoseToJoints(currentPose, entity.getRootJoint(), new float[16]);
+    public void crossFade(AnimationClip animation, float duration) {
+        baseLayer.crossFade(animation, duration);
+        this.poseOutdated = true;
     }
 
     /**
-     * Increases the current animation time which allows the animation to
-     * progress. If the current animation has reached the end then the timer is
-     * reset, causing the animation to loop.
+     * Adds a layer on top of the existing ones. It plays nothing until told
+     * to.
+     *
+     * @param blendMode
+     *            - how the layer combines with the layers beneath.
+     * @return The new layer.
      */
-    //TODO FIX GET TIME
-    private void increaseAnimationTime() {
-        animationTime += 0;
-        if (animationTime > currentAnimation.getLength()) {
-            this.animationTime %= currentAnimation.getLength();
-        }
+    public AnimationLayer addLayer(AnimationLayer.BlendMode blendMode) {
+        AnimationLayer layer = new AnimationLayer(blendMode);
+        layers.add(layer);
+        return layer;
+    }
+
+    /**
+     * @return The bottom layer, which {@link #doAnimation} plays on.
+     */
+    public AnimationLayer getBaseLayer() {
+        return baseLayer;
     }
 
+    public int getLayerCount() {
+        return layers.size();
+    }
+
+    public AnimationLayer getLayer(int index) {
+        return layers.get(index);
+    }
 
     /**
-     * This method returns the current animation pose of the entity. It returns
-     * the desired local-space transforms for all the joints in a map, indexed
-     * by the name of the joint that they correspond to.
-     *
-     * The pose is calculated based on the previous and next keyframes in the
-     * current animation. Each keyframe provides the desired pose at a certain
-     * time in the animation, so the animated pose for the current time can be
-     * calculated by interpolating between the previous and next keyframe.
-     *
-     * This method first finds the preious and next keyframe, calculates how far
-     * between the two the current animation is, and then calculated the pose
-     * for the current animation time by interpolating between the transforms at
-     * those keyframes.
-     *
-     * @return The current pose as a map of the desired local-space transforms
-     *         for all the joints. The transforms are indexed by the name ID of
-     *         the joint that they should be applied to.
+     * Sets whether layers and cross-fades blend rotations with slerp, which
+     * keeps the angular speed constant between rotations that are far apart,
+     * instead of the cheaper nlerp. Keys within a clip are always close
+     * enough together for nlerp.
      */
-    private Map<String, float[]> calculateCurrentAnimationPose() {
-        KeyFrame[] frames = getPreviousAndNextFrames();
-        float progression = calculateProgression(frames[0], frames[1]);
-        return interpolatePoses(frames[0], frames[1], progression);
+    public void setSlerp(boolean slerp) {
+        this.slerp = slerp;
+    }
+
+    public boolean isSlerp() {
+        return slerp;
     }
 
     /**
-     * This is the method where the animator calculates and sets those all-
-     * important "joint transforms" that I talked about so much in the tutorial.
+     * Sets how often {@link #update()} actually evaluates the pose: every
+     * call, every 2nd, every 4th and so on. In between, the joint transforms
+     * keep the last pose, and the time that passed is caught up on the next
+     * evaluation. Changing the animation or the time always evaluates on the
+     * next call.
      *
-     * This method applies the current pose to a given joint, and all of its
-     * descendants. It does this by getting the desired local-transform for the
-     * current joint, before applying it to the joint. Before applying the
-     * transformations it needs to be converted from local-space to model-space
-     * (so that they are relative to the model's origin, rather than relative to
-     * the parent joint). This can be done by multiplying the local-transform of
-     * the joint with the model-space transform of the parent joint.
+     * @param updateInterval
+     *            - the number of calls per evaluation, at least 1.
+     */
+    public void setUpdateInterval(int updateInterval) {
+        if (updateInterval < 1) {
+            throw new IllegalArgumentException("Update interval must be at least 1, got " + updateInterval);
+        }
+        this.updateInterval = updateInterval;
+    }
+
+    public int getUpdateInterval() {
+        return updateInterval;
+    }
+
+    /**
+     * Stops animating joints deeper in the skeleton than a limit (see
+     * {@link Skeleton#getDepth}), such as fingers; they hold their bind pose
+     * but still follow their parents.
      *
-     * The same thing is then done to all the child joints.
+     * @param maxJointDepth
+     *            - the depth of the deepest joint to animate, or
+     *            {@link #ALL_JOINTS}.
+     */
+    public void setMaxJointDepth(int maxJointDepth) {
+        this.maxJointDepth = maxJointDepth;
+    }
+
+    public int getMaxJointDepth() {
+        return maxJointDepth;
+    }
+
+    /**
+     * Sets the clock the animation time follows. Defaults to
+     * {@link TimeSource#SYSTEM}; on a camera frame driven display use a
+     * {@link FrameTimeSource}. Setting the clock that is already in use
+     * changes nothing.
      *
-     * Finally the inverse of the joint's bind transform is multiplied with the
-     * model-space transform of the joint. This basically "subtracts" the
-     * joint's original bind (no animation applied) transform from the desired
-     * pose transform. The result of this is then the transform required to move
-     * the joint from its original model-space transform to it's desired
-     * model-space posed transform. This is the transform that needs to be
-     * loaded up to the vertex shader and used to transform the vertices into
-     * the current pose.
+     * @param timeSource
+     *            - the new clock.
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        if (this.timeSource != timeSource) {
+            this.timeSource = timeSource;
+            this.lastTimeNanos = NO_TIME;
+        }
+    }
+
+    /**
+     * Jumps to a time in the current animation of the base layer.
      *
-     * @param currentPose
-     *            - a map of the local-space transforms for all the joints for
-     *            the desired pose. The map is indexed by the name of the joint
-     *            which the transform corresponds to.
-     * @param joint
-     *            - the current joint which the pose should be applied to.
-     * @param parentTransform
-     *            - the desired model-space transform of the parent joint for
-     *            the pose.
-     */
-    private void applyPoseToJoints(Map<String, float[]> currentPose, Joint joint, float[] parentTransform) {
-        float[] currentLocalTransform = currentPose.get(joint.name);
-        float[] currentTransform = new float[16];
-        Matrix.multiplyMM(currentTransform, 0, parentTransform, 0, currentLocalTransform, 0);
-        for (Joint childJoint : joint.children) {
-            applyPoseToJoints(currentPose, childJoint, currentTransform);
+     * @param time
+     *            - the time in seconds, which is wrapped into the length of
+     *            the animation.
+     */
+    public void setAnimationTime(float time) {
+        baseLayer.setAnimationTime(time);
+        this.poseOutdated = true;
+    }
+
+    /**
+     * Sets how fast all layers play, 1 being their normal speed. Negative
+     * speeds play them backwards.
+     */
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return The animation the base layer is playing, or null if there is
+     *         none.
+     */
+    public AnimationClip getAnimation() {
+        return baseLayer.getAnimation();
+    }
+
+    /**
+     * @return The time in seconds into the current animation of the base
+     *         layer.
+     */
+    public float getAnimationTime() {
+        return baseLayer.getAnimationTime();
+    }
+
+    /**
+     * This method should be called each frame to update the animations being
+     * played. This moves every layer on by the time that passed on the time
+     * source since the last update (looping the clips if necessary), blends
+     * the layers into the pose that the entity should be in, and then writes
+     * it to the joint transforms. With an update interval above 1 most calls
+     * return straight away.
+     */
+    public void update() {
+        if (!isPlaying()) {
+            return;
+        }
+        frame = (frame + 1) & Integer.MAX_VALUE;
+        if (!poseOutdated && ((frame + phase) & Integer.MAX_VALUE) % updateInterval != 0) {
+            return;
         }
-        Matrix.multiplyMM(currentTransform, 0, joint.getInverseBindTransform(), 0, currentTransform,0);
-        joint.setAnimationTransform(currentTransform);
+        poseOutdated = false;
+        float delta = increaseAnimationTime();
+        for (int i = 0; i < layers.size(); i++) {
+            layers.get(i).advance(delta);
+        }
+        System.arraycopy(skeleton.getBindPose(), 0, pose, 0, pose.length);
+        for (int i = 0; i < layers.size(); i++) {
+            layers.get(i).apply(pose, skeleton, posePool, slerp, maxJointDepth);
+        }
+        applyPose();
     }
 
     /**
-     * Finds the previous keyframe in the animation and the next keyframe in the
-     * animation, and returns them in an array of length 2. If there is no
-     * previous frame (perhaps current animation time is 0.5 and the first
-     * keyframe is at time 1.5) then the first keyframe is used as both the
-     * previous and next keyframe. The last keyframe is used for both next and
-     * previous if there is no next keyframe.
+     * Gets the all important model-space transforms of all the joints (with
+     * the current animation pose applied), relative to their bind pose. These
+     * are the matrices that get loaded up to the vertex shader to deform the
+     * skin.
      *
-     * @return The previous and next keyframes, in an array which therefore will
-     *         always have a length of 2.
-     */
-    private KeyFrame[] getPreviousAndNextFrames() {
-        KeyFrame[] allFrames = currentAnimation.getKeyFrames();
-        KeyFrame previousFrame = allFrames[0];
-        KeyFrame nextFrame = allFrames[0];
-        for (int i = 1; i < allFrames.length; i++) {
-            nextFrame = allFrames[i];
-            if (nextFrame.getTimeStamp() > animationTime) {
-                break;
+     * @return The transforms as 16 floats per joint, in column-major order,
+     *         ordered by joint index. The array is reused by every update, so
+     *         copy it if it has to outlive the next one. Joints that no
+     *         animation has posed yet hold the identity.
+     */
+    public float[] getJointTransforms() {
+        return jointTransforms;
+    }
+
+    /**
+     * @return Whether any layer has an animation to play.
+     */
+    private boolean isPlaying() {
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i).getAnimation() != null) {
+                return true;
             }
-            previousFrame = allFrames[i];
         }
-        return new KeyFrame[] { previousFrame, nextFrame };
+        return false;
     }
 
-
     /**
-     * Calculates how far between the previous and next keyframe the current
-     * animation time is, and returns it as a value between 0 and 1.
-     *
-     * @param previousFrame
-     *            - the previous keyframe in the animation.
-     * @param nextFrame
-     *            - the next keyframe in the animation.
-     * @return A number between 0 and 1 indicating how far between the two
-     *         keyframes the current animation time is.
+     * @return The time in seconds, scaled by the speed, that passed on the
+     *         time source since the last update.
      */
-    private float calculateProgression(KeyFrame previousFrame, KeyFrame nextFrame) {
-        float totalTime = nextFrame.getTimeStamp() - previousFrame.getTimeStamp();
-        float currentTime = animationTime - previousFrame.getTimeStamp();
-        return currentTime / totalTime;
+    private float increaseAnimationTime() {
+        long timeNanos = timeSource.getTimeNanos();
+        float delta = 0;
+        if (lastTimeNanos != NO_TIME) {
+            delta = (timeNanos - lastTimeNanos) / NANOS_PER_SECOND * speed;
+        }
+        lastTimeNanos = timeNanos;
+        return delta;
     }
 
     /**
-     * Calculates all the local-space joint transforms for the desired current
-     * pose by interpolating between the transforms at the previous and next
-     * keyframes.
+     * Turns the blended pose into transforms.
      *
-     * @param previousFrame
-     *            - the previous keyframe in the animation.
-     * @param nextFrame
-     *            - the next keyframe in the animation.
-     * @param progression
-     *            - a number between 0 and 1 indicating how far between the
-     *            previous and next keyframes the current animation time is.
-     * @return The local-space transforms for all the joints for the desired
-     *         current pose. They are returned in a map, indexed by the name of
-     *         the joint to which they should be applied.
-     */
-    private Map<String, float[]> interpolatePoses(KeyFrame previousFrame, KeyFrame nextFrame, float progression) {
-        Map<String, float[]> currentPose = new HashMap<String, float[]>();
-        for (String jointName : previousFrame.getPose().keySet()) {
-            JointTransform previousTransform = previousFrame.getPose().get(jointName);
-            JointTransform nextTransform = nextFrame.getPose().get(jointName);
-            JointTransform currentTransform = JointTransform.interpolate(previousTransform, nextTransform, progression);
-            currentPose.put(jointName, currentTransform.getLocalTransform());
+     * Each node's local transform is built from its translation and rotation
+     * in the pose, and is multiplied with the model-space transform of its
+     * parent. Parents come first, so the parent's transform is always ready.
+     *
+     * Finally the model-space transform is multiplied with the inverse of the
+     * joint's bind transform. This basically "subtracts" the joint's original
+     * bind (no animation applied) transform from the desired pose transform,
+     * giving the transform that moves the skin from the bind pose into the
+     * current pose.
+     */
+    private void applyPose() {
+        float[] inverseBindTransforms = skeleton.getInverseBindTransforms();
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            Matrices.compose(localTransform, 0, pose, node * SAMPLE_SIZE, pose,
+                    node * SAMPLE_SIZE + AnimationClip.TRANSLATION_SIZE);
+            int parent = skeleton.getParent(node);
+            if (parent < 0) {
+                System.arraycopy(localTransform, 0, modelTransforms, node * MATRIX_SIZE, MATRIX_SIZE);
+            } else {
+                Matrices.multiplyAffine(modelTransforms, node * MATRIX_SIZE, modelTransforms, parent * MATRIX_SIZE,
+                        localTransform, 0);
+            }
+            int joint = skeleton.getJointIndex(node);
+            if (joint >= 0) {
+                Matrices.multiplyAffine(jointTransforms, joint * MATRIX_SIZE, modelTransforms, node * MATRIX_SIZE,
+                        inverseBindTransforms, node * MATRIX_SIZE);
+            }
         }
-        return currentPose;
     }
 
 }
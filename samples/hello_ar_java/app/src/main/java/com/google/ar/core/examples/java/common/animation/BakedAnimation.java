@@ -0,0 +1,219 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Animation clips sampled ahead of time into a table of joint matrices, laid
+ * out to be uploaded as an RGBA float texture (see
+ * {@link com.google.ar.core.examples.java.common.samplerender.Texture#createFromFloatData}),
+ * or as a half float texture of half the size (see {@link #getHalfTexels}).
+ * Built by {@link AnimationBaker}.
+ *
+ * Each row of the texture holds the skinning palette of one frame: for each
+ * joint index, three texels with the top three rows of its (affine) joint
+ * transform. The frames of each clip are consecutive rows; the clip table
+ * says where each clip starts, how many frames it has and how many frames
+ * there are per second.
+ *
+ * With the texture bound, the vertex shader looks up the pose of a vertex by
+ * clip, time and joint alone, so any number of models can play any of the
+ * clips without the CPU evaluating a single pose. {@link #getPalette} does
+ * the same lookup on the CPU, to check the baked data against an
+ * {@link Animator}.
+ *
+ * Instances are immutable.
+ *
+ * @author Karl
+ *
+ */
+public class BakedAnimation {
+
+    /** Texels per joint in a row: the top three rows of the matrix. */
+    public static final int TEXELS_PER_JOINT = 3;
+    /** Floats per texel (RGBA). */
+    public static final int TEXEL_SIZE = 4;
+    /** Floats per clip in {@link #getClipTable()}. */
+    public static final int CLIP_INFO_SIZE = 4;
+
+    private static final int MATRIX_SIZE = Skeleton.MATRIX_SIZE;
+
+    private final int jointCount;
+    private final int frameCount;
+    private final float[] texels;
+    private final String[] clipNames;
+    private final float[] clipTable;
+
+    /**
+     * @param jointCount
+     *            - the number of joints in each frame.
+     * @param texels
+     *            - the texture data, {@link #TEXEL_SIZE} floats per texel,
+     *            {@link #TEXELS_PER_JOINT} texels per joint and one row per
+     *            frame.
+     * @param clipNames
+     *            - the name of each clip.
+     * @param clipTable
+     *            - for each clip, the first row, the number of frames, the
+     *            frames per second and a spare 0.
+     */
+    /* package-private */
+    BakedAnimation(int jointCount, float[] texels, List<String> clipNames, float[] clipTable) {
+        this.jointCount = jointCount;
+        this.frameCount = texels.length / (jointCount * TEXELS_PER_JOINT * TEXEL_SIZE);
+        this.texels = texels;
+        this.clipNames = clipNames.toArray(new String[0]);
+        this.clipTable = clipTable;
+    }
+
+    public int getJointCount() {
+        return jointCount;
+    }
+
+    /**
+     * @return The width of the texture in texels.
+     */
+    public int getWidth() {
+        return jointCount * TEXELS_PER_JOINT;
+    }
+
+    /**
+     * @return The height of the texture in texels, which is the number of
+     *         frames of all clips together.
+     */
+    public int getHeight() {
+        return frameCount;
+    }
+
+    /**
+     * @return The texture data, row by row. Don't modify it.
+     */
+    public float[] getTexels() {
+        return texels;
+    }
+
+    /**
+     * Converts the texture data to half floats, for
+     * {@link com.google.ar.core.examples.java.common.samplerender.Texture#createFromHalfFloatData}.
+     * Half floats keep 11 significant bits, so a translation of 10 units is
+     * off by up to 0.004; fine for models about a meter in size, not for
+     * ones modelled in centimeters.
+     *
+     * @return A new array with the texels of {@link #getTexels()}, each as
+     *         the bits of the nearest half float.
+     */
+    public short[] getHalfTexels() {
+        short[] halfTexels = new short[texels.length];
+        for (int i = 0; i < texels.length; i++) {
+            halfTexels[i] = toHalfFloat(texels[i]);
+        }
+        return halfTexels;
+    }
+
+    public int getClipCount() {
+        return clipNames.length;
+    }
+
+    public String getClipName(int clip) {
+        return clipNames[clip];
+    }
+
+    /**
+     * @return The index of the clip with the given name, as used by the
+     *         shader, or -1 if there is none.
+     */
+    public int findClip(String name) {
+        return Arrays.asList(clipNames).indexOf(name);
+    }
+
+    /**
+     * @return For each clip, the first row, the number of frames, the frames
+     *         per second and a spare 0, ready for a {@code vec4} array
+     *         uniform. Don't modify it.
+     */
+    public float[] getClipTable() {
+        return clipTable;
+    }
+
+    /**
+     * Rounds a float to the nearest IEEE 754 half float, ties to even.
+     * Values too large for a half become infinity, values too small become
+     * subnormals or zero, and NaN stays NaN.
+     *
+     * @return The bits of the half float.
+     */
+    public static short toHalfFloat(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xff) - 127 + 15;
+        int mantissa = bits & 0x7fffff;
+        if (exponent == 0xff - 127 + 15) {
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        if (exponent >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+        int shift = 13;
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            // A subnormal half: the implicit leading 1 becomes part of the mantissa.
+            mantissa |= 0x800000;
+            shift = 14 - exponent;
+            exponent = 0;
+        }
+        int half = (exponent << 10) + (mantissa >> shift);
+        int rest = mantissa & ((1 << shift) - 1);
+        int halfway = 1 << (shift - 1);
+        if (rest > halfway || (rest == halfway && (half & 1) != 0)) {
+            // Carries into the exponent when the mantissa overflows, up to infinity.
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * Reconstructs the skinning palette of a clip at a time, the way the
+     * shader does: the frames either side of the time are read and their
+     * matrices blended linearly. The clip loops.
+     *
+     * @param clip
+     *            - the index of the clip.
+     * @param time
+     *            - the time in seconds.
+     * @param dest
+     *            - receives 16 floats per joint, column-major, like
+     *            {@link Animator#getJointTransforms()}.
+     */
+    public void getPalette(int clip, float time, float[] dest) {
+        int info = clip * CLIP_INFO_SIZE;
+        int firstRow = (int) clipTable[info];
+        int frames = (int) clipTable[info + 1];
+        float frame = time * clipTable[info + 2] % frames;
+        if (frame < 0) {
+            frame += frames;
+        }
+        int frame0 = Math.min((int) frame, frames - 1);
+        int frame1 = (frame0 + 1) % frames;
+        float blend = frame - frame0;
+        int row0 = (firstRow + frame0) * getWidth() * TEXEL_SIZE;
+        int row1 = (firstRow + frame1) * getWidth() * TEXEL_SIZE;
+        for (int joint = 0; joint < jointCount; joint++) {
+            int m = joint * MATRIX_SIZE;
+            for (int row = 0; row < TEXELS_PER_JOINT; row++) {
+                int texel = (joint * TEXELS_PER_JOINT + row) * TEXEL_SIZE;
+                for (int column = 0; column < 4; column++) {
+                    float a = texels[row0 + texel + column];
+                    float b = texels[row1 + texel + column];
+                    dest[m + column * 4 + row] = a + (b - a) * blend;
+                }
+            }
+            dest[m + 3] = 0;
+            dest[m + 7] = 0;
+            dest[m + 11] = 0;
+            dest[m + 15] = 1;
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.google.ar.core.examples.java.common.animation;
+
+/**
+ * The position of playback in one {@link AnimationClip}: the time, and the
+ * key cursor that follows it so that sampling doesn't have to search for the
+ * key every frame.
+ *
+ * @author Karl
+ *
+ */
+/* package-private */
+class ClipPlayback {
+
+    private AnimationClip clip;
+    private float time = 0;
+    // The key at or before the time, and how far towards the next one it is.
+    private int keyCursor = 0;
+    private float keyProgression = 0;
+
+    /**
+     * Starts playing a clip from the beginning.
+     *
+     * @param clip
+     *            - the clip, or null to stop playing.
+     */
+    void play(AnimationClip clip) {
+        this.clip = clip;
+        this.time = 0;
+        this.keyCursor = 0;
+        this.keyProgression = 0;
+    }
+
+    AnimationClip getClip() {
+        return clip;
+    }
+
+    float getTime() {
+        return time;
+    }
+
+    /**
+     * Jumps to a time, which is wrapped into the length of the clip.
+     */
+    void setTime(float time) {
+        this.time = time;
+        if (clip != null) {
+            wrapTime();
+            keyCursor = clip.findKey(this.time);
+            keyProgression = clip.getProgression(keyCursor, this.time);
+        }
+    }
+
+    /**
+     * Moves the time on, looping back round at either end of the clip. The
+     * key cursor moves along with it: a step or two forwards normally, a
+     * binary search after looping or playing backwards.
+     *
+     * @param delta
+     *            - the time in seconds to move on by, negative to play
+     *            backwards.
+     */
+    void advance(float delta) {
+        if (clip == null) {
+            return;
+        }
+        time += delta;
+        if (wrapTime()) {
+            keyCursor = clip.findKey(time);
+        } else {
+            keyCursor = clip.findKey(time, keyCursor);
+        }
+        keyProgression = clip.getProgression(keyCursor, time);
+    }
+
+    /**
+     * Samples every joint the clip animates into a pose. Joints without a
+     * track keep whatever the pose held before.
+     *
+     * @param pose
+     *            - {@link AnimationClip#SAMPLE_SIZE} floats per node of the
+     *            skeleton.
+     * @param maxDepth
+     *            - joints deeper than this (see {@link Skeleton#getDepth})
+     *            aren't sampled either.
+     */
+    void sample(Skeleton skeleton, float[] pose, int maxDepth) {
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            int joint = skeleton.getJointIndex(node);
+            if (joint >= 0 && clip.hasTrack(joint) && skeleton.getDepth(node) <= maxDepth) {
+                clip.sample(joint, keyCursor, keyProgression, pose, node * AnimationClip.SAMPLE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * @return Whether the time had run past the end and was wrapped round.
+     */
+    private boolean wrapTime() {
+        float length = clip.getLength();
+        if (length > 0 && (time > length || time < 0)) {
+            time %= length;
+            if (time < 0) {
+                time += length;
+            }
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.google.ar.core.examples.java.common.animation;
+
+/**
+ * Skins vertices on the CPU with exactly the maths of
+ * {@code shaders/TestShader.vert}, reading a palette packed by
+ * {@link SkinningPalette}. It is far too slow to draw with, but gives a
+ * reference to check the packing and the shader against.
+ *
+ * Like the shader, a vertex whose weights add up to (almost) nothing is left
+ * where it is, which is what happens to meshes without a skin.
+ *
+ * @author Karl
+ *
+ */
+public class CpuSkinner {
+
+    private static final float MIN_TOTAL_WEIGHT = 1e-4f;
+
+    private final SkinningPalette.Mode mode;
+    private final int maxWeights;
+
+    // Scratch space for the blended matrix or dual quaternion of one vertex.
+    private final float[] blended = new float[Skeleton.MATRIX_SIZE];
+
+    /**
+     * @param mode
+     *            - the layout of the palettes this skinner reads.
+     * @param maxWeights
+     *            - the number of joints affecting each vertex.
+     */
+    public CpuSkinner(SkinningPalette.Mode mode, int maxWeights) {
+        this.mode = mode;
+        this.maxWeights = maxWeights;
+    }
+
+    /**
+     * Skins positions or normals.
+     *
+     * @param palette
+     *            - the packed palette.
+     * @param vectors
+     *            - x, y, z per vertex.
+     * @param isPoint
+     *            - true for positions, false for normals, which are only
+     *            rotated.
+     * @param jointIndices
+     *            - {@code maxWeights} joint indices per vertex.
+     * @param weights
+     *            - {@code maxWeights} weights per vertex.
+     * @param dest
+     *            - receives the skinned x, y, z per vertex.
+     */
+    public void skin(float[] palette, float[] vectors, boolean isPoint, int[] jointIndices, float[] weights,
+                     float[] dest) {
+        int vertexCount = vectors.length / 3;
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            int v = vertex * 3;
+            float x = vectors[v], y = vectors[v + 1], z = vectors[v + 2];
+            if (!blend(palette, jointIndices, weights, vertex * maxWeights)) {
+                dest[v] = x;
+                dest[v + 1] = y;
+                dest[v + 2] = z;
+            } else if (mode == SkinningPalette.Mode.LINEAR) {
+                float[] m = blended;
+                float p = isPoint ? 1 : 0;
+                dest[v] = m[0] * x + m[4] * y + m[8] * z + m[12] * p;
+                dest[v + 1] = m[1] * x + m[5] * y + m[9] * z + m[13] * p;
+                dest[v + 2] = m[2] * x + m[6] * y + m[10] * z + m[14] * p;
+            } else {
+                transformDualQuaternion(blended, x, y, z, isPoint, dest, v);
+            }
+        }
+    }
+
+    /**
+     * Blends the palette entries of one vertex into {@link #blended}.
+     *
+     * @return False if the vertex has no weight and stays as it is.
+     */
+    private boolean blend(float[] palette, int[] jointIndices, float[] weights, int offset) {
+        int size = mode.getFloatsPerJoint();
+        float totalWeight = 0;
+        for (int i = 0; i < maxWeights; i++) {
+            totalWeight += weights[offset + i];
+        }
+        if (totalWeight < MIN_TOTAL_WEIGHT) {
+            return false;
+        }
+        for (int k = 0; k < size; k++) {
+            blended[k] = 0;
+        }
+        int first = jointIndices[offset] * size;
+        for (int i = 0; i < maxWeights; i++) {
+            int entry = jointIndices[offset + i] * size;
+            float weight = weights[offset + i];
+            if (mode == SkinningPalette.Mode.DUAL_QUATERNION) {
+                // Keep all rotations on the same side as the first, or the blend takes the long way round.
+                float dot = palette[first] * palette[entry] + palette[first + 1] * palette[entry + 1]
+                        + palette[first + 2] * palette[entry + 2] + palette[first + 3] * palette[entry + 3];
+                if (dot < 0) {
+                    weight = -weight;
+                }
+            }
+            for (int k = 0; k < size; k++) {
+                blended[k] += palette[entry + k] * weight;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Normalises a blended dual quaternion and applies it to a vector.
+     */
+    private static void transformDualQuaternion(float[] dq, float x, float y, float z, boolean isPoint,
+                                                float[] dest, int destOffset) {
+        float length = (float) Math.sqrt(dq[0] * dq[0] + dq[1] * dq[1] + dq[2] * dq[2] + dq[3] * dq[3]);
+        float rx = dq[0] / length, ry = dq[1] / length, rz = dq[2] / length, rw = dq[3] / length;
+        float dx = dq[4] / length, dy = dq[5] / length, dz = dq[6] / length, dw = dq[7] / length;
+        // v + 2 * cross(r.xyz, cross(r.xyz, v) + r.w * v)
+        float cx = ry * z - rz * y + rw * x;
+        float cy = rz * x - rx * z + rw * y;
+        float cz = rx * y - ry * x + rw * z;
+        float ox = x + 2 * (ry * cz - rz * cy);
+        float oy = y + 2 * (rz * cx - rx * cz);
+        float oz = z + 2 * (rx * cy - ry * cx);
+        if (isPoint) {
+            // + 2 * (r.w * d.xyz - d.w * r.xyz + cross(r.xyz, d.xyz))
+            ox += 2 * (rw * dx - dw * rx + ry * dz - rz * dy);
+            oy += 2 * (rw * dy - dw * ry + rz * dx - rx * dz);
+            oz += 2 * (rw * dz - dw * rz + rx * dy - ry * dx);
+        }
+        dest[destOffset] = ox;
+        dest[destOffset + 1] = oy;
+        dest[destOffset + 2] = oz;
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.google.ar.core.examples.java.common.animation;
+
+/**
+ * A {@link TimeSource} that only moves when it is told to, once per rendered
+ * frame. Feed it the timestamp of the ARCore frame
+ * ({@code Frame.getTimestamp()}) so animations advance with the camera
+ * image they are drawn over, and every model animated during a frame sees
+ * the same time.
+ *
+ * @author Karl
+ *
+ */
+public class FrameTimeSource implements TimeSource {
+
+    private long timeNanos = 0;
+
+    /**
+     * Sets the time of the current frame. Timestamps that don't move forward
+     * (as when ARCore returns the same camera image twice) are ignored.
+     *
+     * @param frameTimestampNanos
+     *            - the timestamp of the frame, in nanoseconds.
+     */
+    public void setFrameTimestamp(long frameTimestampNanos) {
+        if (frameTimestampNanos > timeNanos) {
+            timeNanos = frameTimestampNanos;
+        }
+    }
+
+    @Override
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.google.ar.core.examples.java.common.animation;
+
+/**
+ * How much an {@link AnimationLayer} affects each joint of a
+ * {@link Skeleton}, from 0 (not at all) to 1 (fully). A layer playing a
+ * waving clip with a mask covering the arm only, for example, leaves the rest
+ * of the body to the layers below it.
+ *
+ * Instances are immutable.
+ *
+ * @author Karl
+ *
+ */
+public class JointMask {
+
+    private final float[] weights;
+
+    /**
+     * @param nodeWeights
+     *            - the weight of each node of the skeleton, in its stored
+     *            order (see {@link Skeleton}).
+     */
+    public JointMask(float[] nodeWeights) {
+        this.weights = nodeWeights.clone();
+    }
+
+    /**
+     * Creates a mask covering a joint and all of its descendants.
+     *
+     * @param skeleton
+     *            - the skeleton the mask is for.
+     * @param jointName
+     *            - the name of the topmost joint of the mask.
+     * @throws IllegalArgumentException
+     *             if the skeleton has no joint with this name.
+     */
+    public static JointMask forSubtree(Skeleton skeleton, String jointName) {
+        int top = skeleton.findNode(jointName);
+        if (top < 0) {
+            throw new IllegalArgumentException("No joint named " + jointName);
+        }
+        float[] weights = new float[skeleton.getNodeCount()];
+        weights[top] = 1;
+        // Parents come first, so a node's parent is already marked when it is reached.
+        for (int node = top + 1; node < weights.length; node++) {
+            int parent = skeleton.getParent(node);
+            if (parent >= 0 && weights[parent] == 1) {
+                weights[node] = 1;
+            }
+        }
+        return new JointMask(weights);
+    }
+
+    /**
+     * @return A mask with the same node count affecting exactly the joints this
+     *         one doesn't.
+     */
+    public JointMask invert() {
+        float[] inverted = new float[weights.length];
+        for (int node = 0; node < weights.length; node++) {
+            inverted[node] = 1 - weights[node];
+        }
+        return new JointMask(inverted);
+    }
+
+    public float getWeight(int node) {
+        return weights[node];
+    }
+
+    public int getNodeCount() {
+        return weights.length;
+    }
+
+}
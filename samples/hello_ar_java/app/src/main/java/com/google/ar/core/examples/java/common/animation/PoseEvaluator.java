@@ -0,0 +1,139 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the {@link Animator}s of many animated models at once, spread over
+ * a {@link ForkJoinPool}, and returns when all of them are done. Each
+ * animator writes only its own pose and palette, and reads only shared
+ * immutable data (the skeleton and clips), so they need no locking; the
+ * caller draws from the palettes once {@link #evaluate} returns.
+ *
+ * The animators are split in halves until a piece is no bigger than
+ * {@link #getChunkSize}, which aims at a few pieces per worker so that
+ * idle workers have something to steal when some poses are slower than
+ * others. Below {@link #getParallelThreshold} animators, handing work to
+ * other threads costs more than it saves, so they are updated on the
+ * calling thread.
+ *
+ * @author Karl
+ *
+ */
+public class PoseEvaluator {
+
+    /** Counts below this are updated on the calling thread by default. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8;
+    // Pieces to aim for per worker, so that stealing can even out the load.
+    private static final int CHUNKS_PER_WORKER = 4;
+    // Never split below this, or the task overhead outweighs the work.
+    private static final int MIN_CHUNK_SIZE = 2;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Creates an evaluator with its own pool, with a worker for each
+     * processor but the one the caller (normally the GL thread) runs on.
+     * Call {@link #shutdown()} when it is no longer needed.
+     */
+    public PoseEvaluator() {
+        this(new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)), true);
+    }
+
+    /**
+     * @param pool
+     *            - the pool to run on, which the evaluator leaves running on
+     *            {@link #shutdown()}.
+     */
+    public PoseEvaluator(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private PoseEvaluator(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * Sets how many animators there must be before they are spread over the
+     * pool. 1 always uses the pool, {@link Integer#MAX_VALUE} never does.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @return The most animators one task updates for the given count.
+     */
+    public int getChunkSize(int count) {
+        int chunks = pool.getParallelism() * CHUNKS_PER_WORKER;
+        return Math.max(MIN_CHUNK_SIZE, (count + chunks - 1) / chunks);
+    }
+
+    /**
+     * Calls {@link Animator#update()} on each animator, and waits until all
+     * of them have finished.
+     *
+     * @param animators
+     *            - the animators to update; no animator may appear twice.
+     * @param count
+     *            - how many animators from the start of the array to update.
+     */
+    public void evaluate(Animator[] animators, int count) {
+        if (count < parallelThreshold) {
+            update(animators, 0, count);
+        } else {
+            pool.invoke(new UpdateTask(animators, 0, count, getChunkSize(count)));
+        }
+    }
+
+    /**
+     * Stops the pool if the evaluator created it.
+     */
+    public void shutdown() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    private static void update(Animator[] animators, int start, int end) {
+        for (int i = start; i < end; i++) {
+            animators[i].update();
+        }
+    }
+
+    private static class UpdateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Animator[] animators;
+        private final int start;
+        private final int end;
+        private final int chunkSize;
+
+        UpdateTask(Animator[] animators, int start, int end, int chunkSize) {
+            this.animators = animators;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= chunkSize) {
+                update(animators, start, end);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new UpdateTask(animators, start, middle, chunkSize),
+                    new UpdateTask(animators, middle, end, chunkSize));
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.google.ar.core.examples.java.common.animation;
+
+/**
+ * A fixed set of pose buffers, allocated up front, that blending borrows
+ * intermediate poses from. A pose holds {@link AnimationClip#SAMPLE_SIZE}
+ * floats (local translation and rotation) for every node of a
+ * {@link Skeleton}.
+ *
+ * Buffers must be released in the opposite order they were obtained, like a
+ * stack. Asking for more buffers than the pool holds is a programming error,
+ * not a reason to allocate.
+ *
+ * @author Karl
+ *
+ */
+public class PosePool {
+
+    private final float[][] poses;
+    private int used = 0;
+
+    /**
+     * @param skeleton
+     *            - the skeleton the poses are for.
+     * @param capacity
+     *            - the most poses in use at the same time.
+     */
+    public PosePool(Skeleton skeleton, int capacity) {
+        poses = new float[capacity][skeleton.getNodeCount() * AnimationClip.SAMPLE_SIZE];
+    }
+
+    /**
+     * @return A pose buffer with undefined contents.
+     * @throws IllegalStateException
+     *             if all buffers are in use.
+     */
+    public float[] obtain() {
+        if (used == poses.length) {
+            throw new IllegalStateException("All " + poses.length + " pooled poses are in use");
+        }
+        return poses[used++];
+    }
+
+    /**
+     * Returns the most recently obtained buffer to the pool.
+     */
+    public void release(float[] pose) {
+        if (used == 0 || poses[used - 1] != pose) {
+            throw new IllegalStateException("Pooled poses must be released in reverse order");
+        }
+        used--;
+    }
+
+    public int getCapacity() {
+        return poses.length;
+    }
+
+}
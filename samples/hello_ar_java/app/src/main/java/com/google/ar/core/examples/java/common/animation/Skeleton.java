@@ -0,0 +1,203 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import com.google.ar.core.examples.java.common.math.Matrices;
+import com.google.ar.core.examples.java.common.math.Quaternions;
+
+import com.google.ar.core.examples.java.common.samplerender.Joint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The joint hierarchy of a mesh, flattened into arrays so that a pose can be
+ * evaluated with a single loop instead of walking the {@link Joint} tree.
+ *
+ * The hierarchy can have several roots, as an armature often has (a body
+ * and two hands, say). Joints are stored in breadth-first order starting
+ * with all the roots, so every joint comes after its parent. Positions in
+ * this order are called "nodes" here, to tell them apart from joint
+ * indices: the joint index of a node is the index the skin (and the shader)
+ * uses for it, and can be -1 for joints that no vertex refers to. Such
+ * joints still pass their transform on to their children.
+ *
+ * Instances are immutable, so one skeleton can be shared by any number of
+ * animated models.
+ *
+ * @author Karl
+ *
+ */
+public class Skeleton {
+
+    /** The number of floats in a 4x4 matrix. */
+    public static final int MATRIX_SIZE = Matrices.SIZE;
+
+    private final int jointCount;
+    private final int[] jointIndices;
+    private final int[] parents;
+    private final int[] depths;
+    private final String[] names;
+    private final float[] bindLocalTransforms;
+    private final float[] inverseBindTransforms;
+    private final float[] bindPose;
+
+    /**
+     * @param rootJoints
+     *            - the joints without a parent, each with its descendants.
+     * @param jointCount
+     *            - the number of joints the skin refers to. Every joint index
+     *            in the hierarchy is below this number.
+     */
+    public Skeleton(List<Joint> rootJoints, int jointCount) {
+        List<Joint> joints = new ArrayList<Joint>();
+        List<Integer> parentNodes = new ArrayList<Integer>();
+        ArrayDeque<Joint> queue = new ArrayDeque<Joint>();
+        ArrayDeque<Integer> queueParents = new ArrayDeque<Integer>();
+        for (Joint rootJoint : rootJoints) {
+            queue.add(rootJoint);
+            queueParents.add(-1);
+        }
+        while (!queue.isEmpty()) {
+            Joint joint = queue.poll();
+            int node = joints.size();
+            joints.add(joint);
+            parentNodes.add(queueParents.poll());
+            for (Joint child : joint.children) {
+                queue.add(child);
+                queueParents.add(node);
+            }
+        }
+
+        int nodeCount = joints.size();
+        this.jointCount = jointCount;
+        this.jointIndices = new int[nodeCount];
+        this.parents = new int[nodeCount];
+        this.depths = new int[nodeCount];
+        this.names = new String[nodeCount];
+        this.bindLocalTransforms = new float[nodeCount * MATRIX_SIZE];
+        this.inverseBindTransforms = new float[nodeCount * MATRIX_SIZE];
+        this.bindPose = new float[nodeCount * AnimationClip.SAMPLE_SIZE];
+        float[] bindTransforms = new float[nodeCount * MATRIX_SIZE];
+        for (int node = 0; node < nodeCount; node++) {
+            Joint joint = joints.get(node);
+            if (joint.index >= jointCount) {
+                throw new IllegalArgumentException("Joint " + joint.name + " has index " + joint.index
+                        + ", expected less than " + jointCount);
+            }
+            jointIndices[node] = joint.index;
+            parents[node] = parentNodes.get(node);
+            depths[node] = parents[node] < 0 ? 0 : depths[parents[node]] + 1;
+            names[node] = joint.name;
+            System.arraycopy(joint.getLocalBindTransform(), 0, bindLocalTransforms, node * MATRIX_SIZE, MATRIX_SIZE);
+            // The model-space bind transform is the parent's times the local one.
+            if (parents[node] < 0) {
+                System.arraycopy(bindLocalTransforms, node * MATRIX_SIZE, bindTransforms, node * MATRIX_SIZE,
+                        MATRIX_SIZE);
+            } else {
+                Matrices.multiplyAffine(bindTransforms, node * MATRIX_SIZE, bindTransforms, parents[node] * MATRIX_SIZE,
+                        bindLocalTransforms, node * MATRIX_SIZE);
+            }
+            if (!Matrices.invertAffine(inverseBindTransforms, node * MATRIX_SIZE, bindTransforms, node * MATRIX_SIZE)) {
+                Matrices.setIdentity(inverseBindTransforms, node * MATRIX_SIZE);
+            }
+            // The bind pose split up like an animation sample, for blending.
+            int pose = node * AnimationClip.SAMPLE_SIZE;
+            bindPose[pose] = bindLocalTransforms[node * MATRIX_SIZE + 12];
+            bindPose[pose + 1] = bindLocalTransforms[node * MATRIX_SIZE + 13];
+            bindPose[pose + 2] = bindLocalTransforms[node * MATRIX_SIZE + 14];
+            Quaternions.fromMatrix(bindLocalTransforms, node * MATRIX_SIZE, bindPose,
+                    pose + AnimationClip.TRANSLATION_SIZE);
+        }
+    }
+
+    /**
+     * @return The number of joints the skin refers to, which is the number of
+     *         matrices in a skinning palette.
+     */
+    public int getJointCount() {
+        return jointCount;
+    }
+
+    /**
+     * @return The number of joints in the hierarchy.
+     */
+    public int getNodeCount() {
+        return jointIndices.length;
+    }
+
+    /**
+     * @return The joint index of a node, or -1 if no vertex refers to it.
+     */
+    public int getJointIndex(int node) {
+        return jointIndices[node];
+    }
+
+    /**
+     * @return The node of the parent, which is always less than
+     *         {@code node}, or -1 for a root.
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @return How many joints lie between a node and its root: 0 for a
+     *         root, 1 for its children and so on. Fine detail like fingers
+     *         sits deepest.
+     */
+    public int getDepth(int node) {
+        return depths[node];
+    }
+
+    public String getName(int node) {
+        return names[node];
+    }
+
+    /**
+     * @return The node of the joint with the given name, or -1 if there is
+     *         none.
+     */
+    public int findNode(String name) {
+        for (int node = 0; node < names.length; node++) {
+            if (names[node].equals(name)) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the bone-space bind transform of a node.
+     */
+    public void getBindLocalTransform(int node, float[] dest, int destOffset) {
+        System.arraycopy(bindLocalTransforms, node * MATRIX_SIZE, dest, destOffset, MATRIX_SIZE);
+    }
+
+    /**
+     * Copies the inverse of the model-space bind transform of a node.
+     */
+    public void getInverseBindTransform(int node, float[] dest, int destOffset) {
+        System.arraycopy(inverseBindTransforms, node * MATRIX_SIZE, dest, destOffset, MATRIX_SIZE);
+    }
+
+    /* package-private */
+    float[] getBindLocalTransforms() {
+        return bindLocalTransforms;
+    }
+
+    /* package-private */
+    float[] getInverseBindTransforms() {
+        return inverseBindTransforms;
+    }
+
+    /**
+     * @return The bind pose of every node, {@link AnimationClip#SAMPLE_SIZE}
+     *         floats each: the local translation followed by the local
+     *         rotation. Bind transforms with scale lose it here.
+     */
+    /* package-private */
+    float[] getBindPose() {
+        return bindPose;
+    }
+
+}
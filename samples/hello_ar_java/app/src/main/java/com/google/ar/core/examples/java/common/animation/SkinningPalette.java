@@ -0,0 +1,117 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import com.google.ar.core.examples.java.common.math.Quaternions;
+
+/**
+ * Packs the joint transforms of an {@link Animator} into the std140 layout of
+ * the skinning uniform block in {@code shaders/TestShader.vert}, ready to be
+ * handed to {@link com.google.ar.core.examples.java.common.samplerender.Shader#setUniformBlock}.
+ *
+ * There are two layouts, one for each way the shader can skin:
+ *
+ * <ul>
+ * <li>{@link Mode#LINEAR}: block {@code JointMatrices}, one {@code mat4} per
+ * joint. std140 stores a {@code mat4} array as 16 floats per element in
+ * column-major order, which is exactly how the animator keeps them.</li>
+ * <li>{@link Mode#DUAL_QUATERNION}: block {@code JointDualQuaternions}, two
+ * {@code vec4}s per joint: the rotation quaternion (x, y, z, w) and then
+ * the dual part, which encodes the translation. This is half the data of
+ * a matrix and doesn't shrink the mesh where joints twist, but it loses
+ * any scale in the joint transforms.</li>
+ * </ul>
+ *
+ * Nothing here touches OpenGL, so the packing can be checked against a
+ * {@link CpuSkinner} without a device.
+ *
+ * @author Karl
+ *
+ */
+public class SkinningPalette {
+
+    /** The size of the joint arrays in the shader, see {@code MAX_JOINTS}. */
+    public static final int MAX_JOINTS = 50;
+
+    /**
+     * How the vertex shader skins, and so what it expects in its uniform
+     * block.
+     */
+    public enum Mode {
+        LINEAR("JointMatrices", 16),
+        DUAL_QUATERNION("JointDualQuaternions", 8);
+
+        private final String blockName;
+        private final int floatsPerJoint;
+
+        private Mode(String blockName, int floatsPerJoint) {
+            this.blockName = blockName;
+            this.floatsPerJoint = floatsPerJoint;
+        }
+
+        /**
+         * @return The name of the uniform block in the shader.
+         */
+        public String getBlockName() {
+            return blockName;
+        }
+
+        /**
+         * @return The number of floats each joint takes up in the block.
+         */
+        public int getFloatsPerJoint() {
+            return floatsPerJoint;
+        }
+    }
+
+    private static final int MATRIX_SIZE = Skeleton.MATRIX_SIZE;
+
+    private SkinningPalette() {
+    }
+
+    /**
+     * Packs joint transforms for the shader.
+     *
+     * @param mode
+     *            - the layout to write.
+     * @param jointTransforms
+     *            - 16 floats per joint, column-major, as returned by
+     *            {@link Animator#getJointTransforms()}.
+     * @param dest
+     *            - receives the block data; needs at least
+     *            {@code jointCount * mode.getFloatsPerJoint()} floats.
+     * @return The number of floats written.
+     * @throws IllegalArgumentException
+     *             if there are more joints than the shader has room for.
+     */
+    public static int pack(Mode mode, float[] jointTransforms, float[] dest) {
+        int jointCount = jointTransforms.length / MATRIX_SIZE;
+        if (jointCount > MAX_JOINTS) {
+            throw new IllegalArgumentException(
+                    "Skeleton has " + jointCount + " joints, the shader takes at most " + MAX_JOINTS);
+        }
+        if (mode == Mode.LINEAR) {
+            System.arraycopy(jointTransforms, 0, dest, 0, jointCount * MATRIX_SIZE);
+        } else {
+            for (int joint = 0; joint < jointCount; joint++) {
+                toDualQuaternion(jointTransforms, joint * MATRIX_SIZE, dest, joint * Mode.DUAL_QUATERNION.floatsPerJoint);
+            }
+        }
+        return jointCount * mode.floatsPerJoint;
+    }
+
+    /**
+     * Writes a rigid column-major transform as a unit dual quaternion: the
+     * rotation (x, y, z, w) followed by the dual part, half the translation
+     * times the rotation.
+     */
+    /* package-private */
+    static void toDualQuaternion(float[] m, int mOffset, float[] dest, int destOffset) {
+        Quaternions.fromMatrix(m, mOffset, dest, destOffset);
+        float x = dest[destOffset], y = dest[destOffset + 1], z = dest[destOffset + 2], w = dest[destOffset + 3];
+        float tx = m[mOffset + 12], ty = m[mOffset + 13], tz = m[mOffset + 14];
+        dest[destOffset + 4] = 0.5f * (tx * w + ty * z - tz * y);
+        dest[destOffset + 5] = 0.5f * (-tx * z + ty * w + tz * x);
+        dest[destOffset + 6] = 0.5f * (tx * y - ty * x + tz * w);
+        dest[destOffset + 7] = -0.5f * (tx * x + ty * y + tz * z);
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.google.ar.core.examples.java.common.animation;
+
+/**
+ * Tells an {@link Animator} what time it is. Only differences between
+ * successive readings matter, so the origin of the clock is arbitrary.
+ *
+ * @author Karl
+ *
+ */
+public interface TimeSource {
+
+    /** The monotonic system clock. */
+    TimeSource SYSTEM = System::nanoTime;
+
+    /**
+     * @return The current time in nanoseconds.
+     */
+    long getTimeNanos();
+
+}
@@ -1,5 +1,6 @@
 package com.google.ar.core.examples.java.common.helpers;
 
+import com.google.ar.core.examples.java.common.animation.Animator;
 import com.google.ar.core.examples.java.common.samplerender.Mesh;
 import com.google.ar.core.examples.java.common.samplerender.Shader;
 import com.google.ar.core.Anchor;
@@ -9,12 +10,17 @@ public class Pokemon {
     private Shader shader;
     private String name;
     public Anchor anchor;
+    // Playback state of this Pokemon only; the mesh, skeleton and clips are shared.
+    private Animator animator;
+    // Added to the shared clock when the animation is read from a baked texture.
+    private float animationTimeOffset;
 
     public Pokemon(Mesh m, Shader s, String n, Anchor a){
         mesh = m;
         shader = s;
         name = "Pokemon";
         anchor = a;
+        animator = createAnimator(m);
     }
 
     public Mesh getMesh(){
@@ -29,8 +35,29 @@ public class Pokemon {
         return anchor;
     }
 
+    /**
+     * @return The animator of this Pokemon, or null if its mesh isn't
+     *         skinned.
+     */
+    public Animator getAnimator(){
+        return animator;
+    }
+
+    /**
+     * @return How many seconds ahead of the shared animation clock this
+     *         Pokemon plays, when its animation is baked.
+     */
+    public float getAnimationTimeOffset(){
+        return animationTimeOffset;
+    }
+
+    public void setAnimationTimeOffset(float offset){
+        animationTimeOffset = offset;
+    }
+
     public void setMesh(Mesh m){
         mesh = m;
+        animator = createAnimator(m);
     }
 
     public void setShader(Shader s){
@@ -38,4 +65,18 @@ public class Pokemon {
     }
 
     public void setName(String n) { name = n; }
+
+    /**
+     * Creates the animation state for a mesh, playing its first clip.
+     */
+    private static Animator createAnimator(Mesh m) {
+        if (m.getSkeleton() == null) {
+            return null;
+        }
+        Animator animator = new Animator(m.getSkeleton());
+        if (!m.getAnimationClips().isEmpty()) {
+            animator.doAnimation(m.getAnimationClips().get(0));
+        }
+        return animator;
+    }
 }
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 4x4 matrix operations on column-major {@code float[]} arrays, laid out like the ones {@code
+ * android.opengl.Matrix} and OpenGL use, but with no dependency on Android.
+ *
+ * <p>Every method takes an offset for each array, so matrices can be packed back to back in one
+ * array. Unlike {@code android.opengl.Matrix}, the result may always overlap the inputs: all
+ * inputs are read into locals before anything is written.
+ *
+ * <p>Most transforms in a scene graph are affine, with a bottom row of (0, 0, 0, 1). The {@code
+ * Affine} variants skip that row, which saves a quarter of the multiplications of {@link
+ * #multiply} and most of the work of {@link #invert}.
+ */
+public final class Matrices {
+  /** The number of floats in a 4x4 matrix. */
+  public static final int SIZE = 16;
+
+  private Matrices() {}
+
+  /** Sets a matrix to the identity. */
+  public static void setIdentity(float[] m, int offset) {
+    for (int i = 0; i < SIZE; i++) {
+      m[offset + i] = 0;
+    }
+    m[offset] = 1;
+    m[offset + 5] = 1;
+    m[offset + 10] = 1;
+    m[offset + 15] = 1;
+  }
+
+  /** Computes {@code lhs * rhs}, so {@code rhs} is applied first. */
+  public static void multiply(
+      float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+    float l00 = lhs[lhsOffset], l10 = lhs[lhsOffset + 1];
+    float l20 = lhs[lhsOffset + 2], l30 = lhs[lhsOffset + 3];
+    float l01 = lhs[lhsOffset + 4], l11 = lhs[lhsOffset + 5];
+    float l21 = lhs[lhsOffset + 6], l31 = lhs[lhsOffset + 7];
+    float l02 = lhs[lhsOffset + 8], l12 = lhs[lhsOffset + 9];
+    float l22 = lhs[lhsOffset + 10], l32 = lhs[lhsOffset + 11];
+    float l03 = lhs[lhsOffset + 12], l13 = lhs[lhsOffset + 13];
+    float l23 = lhs[lhsOffset + 14], l33 = lhs[lhsOffset + 15];
+    float r00 = rhs[rhsOffset], r10 = rhs[rhsOffset + 1];
+    float r20 = rhs[rhsOffset + 2], r30 = rhs[rhsOffset + 3];
+    float r01 = rhs[rhsOffset + 4], r11 = rhs[rhsOffset + 5];
+    float r21 = rhs[rhsOffset + 6], r31 = rhs[rhsOffset + 7];
+    float r02 = rhs[rhsOffset + 8], r12 = rhs[rhsOffset + 9];
+    float r22 = rhs[rhsOffset + 10], r32 = rhs[rhsOffset + 11];
+    float r03 = rhs[rhsOffset + 12], r13 = rhs[rhsOffset + 13];
+    float r23 = rhs[rhsOffset + 14], r33 = rhs[rhsOffset + 15];
+    result[resultOffset] = l00 * r00 + l01 * r10 + l02 * r20 + l03 * r30;
+    result[resultOffset + 1] = l10 * r00 + l11 * r10 + l12 * r20 + l13 * r30;
+    result[resultOffset + 2] = l20 * r00 + l21 * r10 + l22 * r20 + l23 * r30;
+    result[resultOffset + 3] = l30 * r00 + l31 * r10 + l32 * r20 + l33 * r30;
+    result[resultOffset + 4] = l00 * r01 + l01 * r11 + l02 * r21 + l03 * r31;
+    result[resultOffset + 5] = l10 * r01 + l11 * r11 + l12 * r21 + l13 * r31;
+    result[resultOffset + 6] = l20 * r01 + l21 * r11 + l22 * r21 + l23 * r31;
+    result[resultOffset + 7] = l30 * r01 + l31 * r11 + l32 * r21 + l33 * r31;
+    result[resultOffset + 8] = l00 * r02 + l01 * r12 + l02 * r22 + l03 * r32;
+    result[resultOffset + 9] = l10 * r02 + l11 * r12 + l12 * r22 + l13 * r32;
+    result[resultOffset + 10] = l20 * r02 + l21 * r12 + l22 * r22 + l23 * r32;
+    result[resultOffset + 11] = l30 * r02 + l31 * r12 + l32 * r22 + l33 * r32;
+    result[resultOffset + 12] = l00 * r03 + l01 * r13 + l02 * r23 + l03 * r33;
+    result[resultOffset + 13] = l10 * r03 + l11 * r13 + l12 * r23 + l13 * r33;
+    result[resultOffset + 14] = l20 * r03 + l21 * r13 + l22 * r23 + l23 * r33;
+    result[resultOffset + 15] = l30 * r03 + l31 * r13 + l32 * r23 + l33 * r33;
+  }
+
+  /**
+   * Computes {@code lhs * rhs} for two affine matrices. The bottom rows of the inputs are not
+   * read, and the bottom row of the result is set to (0, 0, 0, 1).
+   */
+  public static void multiplyAffine(
+      float[] result, int resultOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+    float l00 = lhs[lhsOffset], l10 = lhs[lhsOffset + 1], l20 = lhs[lhsOffset + 2];
+    float l01 = lhs[lhsOffset + 4], l11 = lhs[lhsOffset + 5], l21 = lhs[lhsOffset + 6];
+    float l02 = lhs[lhsOffset + 8], l12 = lhs[lhsOffset + 9], l22 = lhs[lhsOffset + 10];
+    float l03 = lhs[lhsOffset + 12], l13 = lhs[lhsOffset + 13], l23 = lhs[lhsOffset + 14];
+    float r00 = rhs[rhsOffset], r10 = rhs[rhsOffset + 1], r20 = rhs[rhsOffset + 2];
+    float r01 = rhs[rhsOffset + 4], r11 = rhs[rhsOffset + 5], r21 = rhs[rhsOffset + 6];
+    float r02 = rhs[rhsOffset + 8], r12 = rhs[rhsOffset + 9], r22 = rhs[rhsOffset + 10];
+    float r03 = rhs[rhsOffset + 12], r13 = rhs[rhsOffset + 13], r23 = rhs[rhsOffset + 14];
+    result[resultOffset] = l00 * r00 + l01 * r10 + l02 * r20;
+    result[resultOffset + 1] = l10 * r00 + l11 * r10 + l12 * r20;
+    result[resultOffset + 2] = l20 * r00 + l21 * r10 + l22 * r20;
+    result[resultOffset + 3] = 0;
+    result[resultOffset + 4] = l00 * r01 + l01 * r11 + l02 * r21;
+    result[resultOffset + 5] = l10 * r01 + l11 * r11 + l12 * r21;
+    result[resultOffset + 6] = l20 * r01 + l21 * r11 + l22 * r21;
+    result[resultOffset + 7] = 0;
+    result[resultOffset + 8] = l00 * r02 + l01 * r12 + l02 * r22;
+    result[resultOffset + 9] = l10 * r02 + l11 * r12 + l12 * r22;
+    result[resultOffset + 10] = l20 * r02 + l21 * r12 + l22 * r22;
+    result[resultOffset + 11] = 0;
+    result[resultOffset + 12] = l00 * r03 + l01 * r13 + l02 * r23 + l03;
+    result[resultOffset + 13] = l10 * r03 + l11 * r13 + l12 * r23 + l13;
+    result[resultOffset + 14] = l20 * r03 + l21 * r13 + l22 * r23 + l23;
+    result[resultOffset + 15] = 1;
+  }
+
+  /**
+   * Inverts a matrix.
+   *
+   * @return false if the matrix is singular, in which case {@code result} is left unchanged
+   */
+  public static boolean invert(float[] result, int resultOffset, float[] m, int mOffset) {
+    float a00 = m[mOffset], a01 = m[mOffset + 1], a02 = m[mOffset + 2], a03 = m[mOffset + 3];
+    float a10 = m[mOffset + 4], a11 = m[mOffset + 5], a12 = m[mOffset + 6], a13 = m[mOffset + 7];
+    float a20 = m[mOffset + 8], a21 = m[mOffset + 9], a22 = m[mOffset + 10];
+    float a23 = m[mOffset + 11];
+    float a30 = m[mOffset + 12], a31 = m[mOffset + 13], a32 = m[mOffset + 14];
+    float a33 = m[mOffset + 15];
+    // 2x2 sub-determinants of the first two and the last two columns.
+    float b00 = a00 * a11 - a01 * a10;
+    float b01 = a00 * a12 - a02 * a10;
+    float b02 = a00 * a13 - a03 * a10;
+    float b03 = a01 * a12 - a02 * a11;
+    float b04 = a01 * a13 - a03 * a11;
+    float b05 = a02 * a13 - a03 * a12;
+    float b06 = a20 * a31 - a21 * a30;
+    float b07 = a20 * a32 - a22 * a30;
+    float b08 = a20 * a33 - a23 * a30;
+    float b09 = a21 * a32 - a22 * a31;
+    float b10 = a21 * a33 - a23 * a31;
+    float b11 = a22 * a33 - a23 * a32;
+    float det = b00 * b11 - b01 * b10 + b02 * b09 + b03 * b08 - b04 * b07 + b05 * b06;
+    if (det == 0) {
+      return false;
+    }
+    float invDet = 1 / det;
+    result[resultOffset] = (a11 * b11 - a12 * b10 + a13 * b09) * invDet;
+    result[resultOffset + 1] = (a02 * b10 - a01 * b11 - a03 * b09) * invDet;
+    result[resultOffset + 2] = (a31 * b05 - a32 * b04 + a33 * b03) * invDet;
+    result[resultOffset + 3] = (a22 * b04 - a21 * b05 - a23 * b03) * invDet;
+    result[resultOffset + 4] = (a12 * b08 - a10 * b11 - a13 * b07) * invDet;
+    result[resultOffset + 5] = (a00 * b11 - a02 * b08 + a03 * b07) * invDet;
+    result[resultOffset + 6] = (a32 * b02 - a30 * b05 - a33 * b01) * invDet;
+    result[resultOffset + 7] = (a20 * b05 - a22 * b02 + a23 * b01) * invDet;
+    result[resultOffset + 8] = (a10 * b10 - a11 * b08 + a13 * b06) * invDet;
+    result[resultOffset + 9] = (a01 * b08 - a00 * b10 - a03 * b06) * invDet;
+    result[resultOffset + 10] = (a30 * b04 - a31 * b02 + a33 * b00) * invDet;
+    result[resultOffset + 11] = (a21 * b02 - a20 * b04 - a23 * b00) * invDet;
+    result[resultOffset + 12] = (a11 * b07 - a10 * b09 - a12 * b06) * invDet;
+    result[resultOffset + 13] = (a00 * b09 - a01 * b07 + a02 * b06) * invDet;
+    result[resultOffset + 14] = (a31 * b01 - a30 * b03 - a32 * b00) * invDet;
+    result[resultOffset + 15] = (a20 * b03 - a21 * b01 + a22 * b00) * invDet;
+    return true;
+  }
+
+  /**
+   * Inverts an affine matrix by inverting its upper 3x3 part and transforming the negated
+   * translation with it. The bottom row of the input is not read.
+   *
+   * @return false if the matrix is singular, in which case {@code result} is left unchanged
+   */
+  public static boolean invertAffine(float[] result, int resultOffset, float[] m, int mOffset) {
+    float m00 = m[mOffset], m10 = m[mOffset + 1], m20 = m[mOffset + 2];
+    float m01 = m[mOffset + 4], m11 = m[mOffset + 5], m21 = m[mOffset + 6];
+    float m02 = m[mOffset + 8], m12 = m[mOffset + 9], m22 = m[mOffset + 10];
+    float tx = m[mOffset + 12], ty = m[mOffset + 13], tz = m[mOffset + 14];
+    // Cofactors of the first row, which also give the determinant.
+    float c00 = m11 * m22 - m12 * m21;
+    float c01 = m12 * m20 - m10 * m22;
+    float c02 = m10 * m21 - m11 * m20;
+    float det = m00 * c00 + m01 * c01 + m02 * c02;
+    if (det == 0) {
+      return false;
+    }
+    float invDet = 1 / det;
+    float i00 = c00 * invDet;
+    float i10 = c01 * invDet;
+    float i20 = c02 * invDet;
+    float i01 = (m02 * m21 - m01 * m22) * invDet;
+    float i11 = (m00 * m22 - m02 * m20) * invDet;
+    float i21 = (m01 * m20 - m00 * m21) * invDet;
+    float i02 = (m01 * m12 - m02 * m11) * invDet;
+    float i12 = (m02 * m10 - m00 * m12) * invDet;
+    float i22 = (m00 * m11 - m01 * m10) * invDet;
+    result[resultOffset] = i00;
+    result[resultOffset + 1] = i10;
+    result[resultOffset + 2] = i20;
+    result[resultOffset + 3] = 0;
+    result[resultOffset + 4] = i01;
+    result[resultOffset + 5] = i11;
+    result[resultOffset + 6] = i21;
+    result[resultOffset + 7] = 0;
+    result[resultOffset + 8] = i02;
+    result[resultOffset + 9] = i12;
+    result[resultOffset + 10] = i22;
+    result[resultOffset + 11] = 0;
+    result[resultOffset + 12] = -(i00 * tx + i01 * ty + i02 * tz);
+    result[resultOffset + 13] = -(i10 * tx + i11 * ty + i12 * tz);
+    result[resultOffset + 14] = -(i20 * tx + i21 * ty + i22 * tz);
+    result[resultOffset + 15] = 1;
+    return true;
+  }
+
+  /** Transposes a matrix, which turns a row-major matrix into a column-major one and back. */
+  public static void transpose(float[] result, int resultOffset, float[] m, int mOffset) {
+    for (int column = 0; column < 4; column++) {
+      for (int row = column + 1; row < 4; row++) {
+        float upper = m[mOffset + row * 4 + column];
+        result[resultOffset + row * 4 + column] = m[mOffset + column * 4 + row];
+        result[resultOffset + column * 4 + row] = upper;
+      }
+      result[resultOffset + column * 5] = m[mOffset + column * 5];
+    }
+  }
+
+  /**
+   * Sets a matrix to a rotation around an axis, like {@code android.opengl.Matrix.setRotateM}.
+   *
+   * @param angle the angle in degrees
+   */
+  public static void setRotate(float[] m, int offset, float angle, float x, float y, float z) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    x /= length;
+    y /= length;
+    z /= length;
+    double radians = Math.toRadians(angle);
+    float s = (float) Math.sin(radians);
+    float c = (float) Math.cos(radians);
+    float nc = 1 - c;
+    float xy = x * y, yz = y * z, zx = z * x;
+    float xs = x * s, ys = y * s, zs = z * s;
+    m[offset] = x * x * nc + c;
+    m[offset + 1] = xy * nc + zs;
+    m[offset + 2] = zx * nc - ys;
+    m[offset + 3] = 0;
+    m[offset + 4] = xy * nc - zs;
+    m[offset + 5] = y * y * nc + c;
+    m[offset + 6] = yz * nc + xs;
+    m[offset + 7] = 0;
+    m[offset + 8] = zx * nc + ys;
+    m[offset + 9] = yz * nc - xs;
+    m[offset + 10] = z * z * nc + c;
+    m[offset + 11] = 0;
+    m[offset + 12] = 0;
+    m[offset + 13] = 0;
+    m[offset + 14] = 0;
+    m[offset + 15] = 1;
+  }
+
+  /**
+   * Sets a matrix to a translation times a rotation, in one pass instead of building both and
+   * multiplying them.
+   *
+   * @param translation x, y, z
+   * @param rotation a unit quaternion x, y, z, w
+   */
+  public static void compose(
+      float[] m,
+      int offset,
+      float[] translation,
+      int translationOffset,
+      float[] rotation,
+      int rotationOffset) {
+    compose(m, offset, translation, translationOffset, rotation, rotationOffset, 1, 1, 1);
+  }
+
+  /**
+   * Sets a matrix to translation * rotation * scale, in one pass instead of building all three
+   * and multiplying them.
+   *
+   * @param translation x, y, z
+   * @param rotation a unit quaternion x, y, z, w
+   */
+  public static void compose(
+      float[] m,
+      int offset,
+      float[] translation,
+      int translationOffset,
+      float[] rotation,
+      int rotationOffset,
+      float scaleX,
+      float scaleY,
+      float scaleZ) {
+    float tx = translation[translationOffset];
+    float ty = translation[translationOffset + 1];
+    float tz = translation[translationOffset + 2];
+    Quaternions.toMatrix(rotation, rotationOffset, m, offset);
+    if (scaleX != 1 || scaleY != 1 || scaleZ != 1) {
+      for (int row = 0; row < 3; row++) {
+        m[offset + row] *= scaleX;
+        m[offset + 4 + row] *= scaleY;
+        m[offset + 8 + row] *= scaleZ;
+      }
+    }
+    m[offset + 12] = tx;
+    m[offset + 13] = ty;
+    m[offset + 14] = tz;
+  }
+
+  /** Computes {@code m * v} for a 4-component vector, like {@code Matrix.multiplyMV}. */
+  public static void multiplyVector(
+      float[] result, int resultOffset, float[] m, int mOffset, float[] v, int vOffset) {
+    float x = v[vOffset], y = v[vOffset + 1], z = v[vOffset + 2], w = v[vOffset + 3];
+    result[resultOffset] =
+        m[mOffset] * x + m[mOffset + 4] * y + m[mOffset + 8] * z + m[mOffset + 12] * w;
+    result[resultOffset + 1] =
+        m[mOffset + 1] * x + m[mOffset + 5] * y + m[mOffset + 9] * z + m[mOffset + 13] * w;
+    result[resultOffset + 2] =
+        m[mOffset + 2] * x + m[mOffset + 6] * y + m[mOffset + 10] * z + m[mOffset + 14] * w;
+    result[resultOffset + 3] =
+        m[mOffset + 3] * x + m[mOffset + 7] * y + m[mOffset + 11] * z + m[mOffset + 15] * w;
+  }
+
+  /**
+   * Transforms tightly packed x, y, z points by an affine matrix. {@code src} and {@code dest}
+   * may be the same array.
+   *
+   * @param count the number of points
+   */
+  public static void transformPoints(
+      float[] m, int mOffset, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+    transform(m, mOffset, 1, src, srcOffset, dest, destOffset, count);
+  }
+
+  /**
+   * Transforms tightly packed x, y, z directions, such as normals, by the upper 3x3 part of a
+   * matrix. Directions are not normalized afterwards. {@code src} and {@code dest} may be the
+   * same array.
+   *
+   * @param count the number of directions
+   */
+  public static void transformDirections(
+      float[] m, int mOffset, float[] src, int srcOffset, float[] dest, int destOffset, int count) {
+    transform(m, mOffset, 0, src, srcOffset, dest, destOffset, count);
+  }
+
+  /**
+   * Transforms tightly packed x, y, z points by an affine matrix, reading from the position of
+   * {@code src} and writing from the position of {@code dest}. The positions of the buffers are
+   * not changed. Heap buffers are transformed through their backing arrays, direct buffers through
+   * absolute gets and puts.
+   *
+   * @param count the number of points
+   */
+  public static void transformPoints(
+      float[] m, int mOffset, FloatBuffer src, FloatBuffer dest, int count) {
+    transform(m, mOffset, 1, src, dest, count);
+  }
+
+  /**
+   * Transforms tightly packed x, y, z directions by the upper 3x3 part of a matrix, like {@link
+   * #transformPoints(float[], int, FloatBuffer, FloatBuffer, int)}.
+   *
+   * @param count the number of directions
+   */
+  public static void transformDirections(
+      float[] m, int mOffset, FloatBuffer src, FloatBuffer dest, int count) {
+    transform(m, mOffset, 0, src, dest, count);
+  }
+
+  private static void transform(
+      float[] m, int mOffset, float w, FloatBuffer src, FloatBuffer dest, int count) {
+    if (src.hasArray() && dest.hasArray() && !dest.isReadOnly()) {
+      transform(
+          m,
+          mOffset,
+          w,
+          src.array(),
+          src.arrayOffset() + src.position(),
+          dest.array(),
+          dest.arrayOffset() + dest.position(),
+          count);
+      return;
+    }
+    float m00 = m[mOffset], m10 = m[mOffset + 1], m20 = m[mOffset + 2];
+    float m01 = m[mOffset + 4], m11 = m[mOffset + 5], m21 = m[mOffset + 6];
+    float m02 = m[mOffset + 8], m12 = m[mOffset + 9], m22 = m[mOffset + 10];
+    float m03 = m[mOffset + 12] * w, m13 = m[mOffset + 13] * w, m23 = m[mOffset + 14] * w;
+    int s = src.position();
+    int d = dest.position();
+    for (int i = 0; i < count; i++, s += 3, d += 3) {
+      float x = src.get(s), y = src.get(s + 1), z = src.get(s + 2);
+      dest.put(d, m00 * x + m01 * y + m02 * z + m03);
+      dest.put(d + 1, m10 * x + m11 * y + m12 * z + m13);
+      dest.put(d + 2, m20 * x + m21 * y + m22 * z + m23);
+    }
+  }
+
+  private static void transform(
+      float[] m,
+      int mOffset,
+      float w,
+      float[] src,
+      int srcOffset,
+      float[] dest,
+      int destOffset,
+      int count) {
+    // The matrix is held in locals so the loop only touches the vertex data.
+    float m00 = m[mOffset], m10 = m[mOffset + 1], m20 = m[mOffset + 2];
+    float m01 = m[mOffset + 4], m11 = m[mOffset + 5], m21 = m[mOffset + 6];
+    float m02 = m[mOffset + 8], m12 = m[mOffset + 9], m22 = m[mOffset + 10];
+    float m03 = m[mOffset + 12] * w, m13 = m[mOffset + 13] * w, m23 = m[mOffset + 14] * w;
+    int s = srcOffset;
+    int d = destOffset;
+    for (int i = 0; i < count; i++, s += 3, d += 3) {
+      float x = src[s], y = src[s + 1], z = src[s + 2];
+      dest[d] = m00 * x + m01 * y + m02 * z + m03;
+      dest[d + 1] = m10 * x + m11 * y + m12 * z + m13;
+      dest[d + 2] = m20 * x + m21 * y + m22 * z + m23;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.math;
+
+/**
+ * Quaternion operations on {@code float[]} arrays, four floats per quaternion in x, y, z, w order,
+ * so that poses can be blended without allocating a quaternion object per joint.
+ *
+ * <p>As in {@link Matrices}, the destination may always be the same as an input.
+ */
+public final class Quaternions {
+  /** The number of floats in a quaternion. */
+  public static final int SIZE = 4;
+
+  private Quaternions() {}
+
+  /**
+   * Interpolates between two quaternions and normalizes the result ("nlerp"). This doesn't move
+   * at a constant angular speed, but it is much cheaper than {@link #slerp} and close enough for
+   * keyframes that are near each other. The shorter way around is taken.
+   *
+   * @param blend a value between 0 and 1 indicating how far to interpolate between the two
+   *     quaternions
+   */
+  public static void nlerp(
+      float[] a, int aOffset, float[] b, int bOffset, float blend, float[] dest, int destOffset) {
+    float blendA = 1f - blend;
+    float blendB = dot(a, aOffset, b, bOffset) < 0 ? -blend : blend;
+    float x = blendA * a[aOffset] + blendB * b[bOffset];
+    float y = blendA * a[aOffset + 1] + blendB * b[bOffset + 1];
+    float z = blendA * a[aOffset + 2] + blendB * b[bOffset + 2];
+    float w = blendA * a[aOffset + 3] + blendB * b[bOffset + 3];
+    setNormalized(x, y, z, w, dest, destOffset);
+  }
+
+  /**
+   * Spherically interpolates between two quaternions. Unlike {@link #nlerp} this moves at a
+   * constant angular speed, which matters when blending rotations that are far apart, but it
+   * costs a few trigonometric functions. The shorter way around is taken.
+   *
+   * @param blend a value between 0 and 1 indicating how far to interpolate between the two
+   *     quaternions
+   */
+  public static void slerp(
+      float[] a, int aOffset, float[] b, int bOffset, float blend, float[] dest, int destOffset) {
+    float dot = dot(a, aOffset, b, bOffset);
+    float sign = 1;
+    if (dot < 0) {
+      dot = -dot;
+      sign = -1;
+    }
+    if (dot > 0.9995f) {
+      // Too close for the angle to be accurate, and nlerp is just as good there.
+      nlerp(a, aOffset, b, bOffset, blend, dest, destOffset);
+      return;
+    }
+    float angle = (float) Math.acos(dot);
+    float sinAngle = (float) Math.sin(angle);
+    float blendA = (float) Math.sin((1 - blend) * angle) / sinAngle;
+    float blendB = sign * (float) Math.sin(blend * angle) / sinAngle;
+    float x = blendA * a[aOffset] + blendB * b[bOffset];
+    float y = blendA * a[aOffset + 1] + blendB * b[bOffset + 1];
+    float z = blendA * a[aOffset + 2] + blendB * b[bOffset + 2];
+    float w = blendA * a[aOffset + 3] + blendB * b[bOffset + 3];
+    setNormalized(x, y, z, w, dest, destOffset);
+  }
+
+  /** Computes {@code a * b}, which rotates by {@code b} first, then by {@code a}. */
+  public static void multiply(
+      float[] a, int aOffset, float[] b, int bOffset, float[] dest, int destOffset) {
+    float ax = a[aOffset], ay = a[aOffset + 1], az = a[aOffset + 2], aw = a[aOffset + 3];
+    float bx = b[bOffset], by = b[bOffset + 1], bz = b[bOffset + 2], bw = b[bOffset + 3];
+    dest[destOffset] = aw * bx + ax * bw + ay * bz - az * by;
+    dest[destOffset + 1] = aw * by - ax * bz + ay * bw + az * bx;
+    dest[destOffset + 2] = aw * bz + ax * by - ay * bx + az * bw;
+    dest[destOffset + 3] = aw * bw - ax * bx - ay * by - az * bz;
+  }
+
+  /** Writes the inverse of a unit quaternion, which is its conjugate. */
+  public static void conjugate(float[] q, int offset, float[] dest, int destOffset) {
+    dest[destOffset] = -q[offset];
+    dest[destOffset + 1] = -q[offset + 1];
+    dest[destOffset + 2] = -q[offset + 2];
+    dest[destOffset + 3] = q[offset + 3];
+  }
+
+  /** Normalizes a quaternion in place. */
+  public static void normalize(float[] q, int offset) {
+    setNormalized(q[offset], q[offset + 1], q[offset + 2], q[offset + 3], q, offset);
+  }
+
+  /**
+   * Writes the rotation of a unit quaternion into the upper 3x3 part of a column-major matrix,
+   * and sets the rest to the identity.
+   */
+  public static void toMatrix(float[] q, int offset, float[] m, int mOffset) {
+    float x = q[offset], y = q[offset + 1], z = q[offset + 2], w = q[offset + 3];
+    float xx = x * x, yy = y * y, zz = z * z;
+    float xy = x * y, xz = x * z, yz = y * z;
+    float wx = w * x, wy = w * y, wz = w * z;
+    m[mOffset] = 1 - 2 * (yy + zz);
+    m[mOffset + 1] = 2 * (xy + wz);
+    m[mOffset + 2] = 2 * (xz - wy);
+    m[mOffset + 3] = 0;
+    m[mOffset + 4] = 2 * (xy - wz);
+    m[mOffset + 5] = 1 - 2 * (xx + zz);
+    m[mOffset + 6] = 2 * (yz + wx);
+    m[mOffset + 7] = 0;
+    m[mOffset + 8] = 2 * (xz + wy);
+    m[mOffset + 9] = 2 * (yz - wx);
+    m[mOffset + 10] = 1 - 2 * (xx + yy);
+    m[mOffset + 11] = 0;
+    m[mOffset + 12] = 0;
+    m[mOffset + 13] = 0;
+    m[mOffset + 14] = 0;
+    m[mOffset + 15] = 1;
+  }
+
+  /**
+   * Writes the rotation of a column-major transform matrix as a unit quaternion. Any scale in the
+   * matrix is ignored, and a matrix that scales an axis to nothing gives the identity.
+   */
+  public static void fromMatrix(float[] m, int mOffset, float[] dest, int destOffset) {
+    float sx = length(m[mOffset], m[mOffset + 1], m[mOffset + 2]);
+    float sy = length(m[mOffset + 4], m[mOffset + 5], m[mOffset + 6]);
+    float sz = length(m[mOffset + 8], m[mOffset + 9], m[mOffset + 10]);
+    if (sx == 0 || sy == 0 || sz == 0) {
+      dest[destOffset] = 0;
+      dest[destOffset + 1] = 0;
+      dest[destOffset + 2] = 0;
+      dest[destOffset + 3] = 1;
+      return;
+    }
+    float r00 = m[mOffset] / sx, r10 = m[mOffset + 1] / sx, r20 = m[mOffset + 2] / sx;
+    float r01 = m[mOffset + 4] / sy, r11 = m[mOffset + 5] / sy, r21 = m[mOffset + 6] / sy;
+    float r02 = m[mOffset + 8] / sz, r12 = m[mOffset + 9] / sz, r22 = m[mOffset + 10] / sz;
+    float x;
+    float y;
+    float z;
+    float w;
+    float trace = r00 + r11 + r22;
+    if (trace > 0) {
+      float s = (float) Math.sqrt(trace + 1f) * 2f;
+      w = s / 4f;
+      x = (r21 - r12) / s;
+      y = (r02 - r20) / s;
+      z = (r10 - r01) / s;
+    } else if (r00 > r11 && r00 > r22) {
+      float s = (float) Math.sqrt(1f + r00 - r11 - r22) * 2f;
+      w = (r21 - r12) / s;
+      x = s / 4f;
+      y = (r01 + r10) / s;
+      z = (r02 + r20) / s;
+    } else if (r11 > r22) {
+      float s = (float) Math.sqrt(1f + r11 - r00 - r22) * 2f;
+      w = (r02 - r20) / s;
+      x = (r01 + r10) / s;
+      y = s / 4f;
+      z = (r12 + r21) / s;
+    } else {
+      float s = (float) Math.sqrt(1f + r22 - r00 - r11) * 2f;
+      w = (r10 - r01) / s;
+      x = (r02 + r20) / s;
+      y = (r12 + r21) / s;
+      z = s / 4f;
+    }
+    setNormalized(x, y, z, w, dest, destOffset);
+  }
+
+  /**
+   * Returns the dot product of two quaternions. It is negative when the shorter way from one to
+   * the other goes through the negation of one of them.
+   */
+  public static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+    return a[aOffset] * b[bOffset]
+        + a[aOffset + 1] * b[bOffset + 1]
+        + a[aOffset + 2] * b[bOffset + 2]
+        + a[aOffset + 3] * b[bOffset + 3];
+  }
+
+  private static void setNormalized(
+      float x, float y, float z, float w, float[] dest, int destOffset) {
+    float magnitude = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+    dest[destOffset] = x / magnitude;
+    dest[destOffset + 1] = y / magnitude;
+    dest[destOffset + 2] = z / magnitude;
+    dest[destOffset + 3] = w / magnitude;
+  }
+
+  private static float length(float x, float y, float z) {
+    return (float) Math.sqrt(x * x + y * y + z * z);
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import java.util.Arrays;
+
+/**
+ * The sort keys of the draws recorded by a {@link RenderQueue}, and the order to issue them in.
+ *
+ * <p>Draws are numbered in the order they were added, and their framebuffers, shaders and meshes
+ * by the order of their first use, so that none of this needs a GL context.
+ */
+/* package-private */
+class DrawOrder {
+  // Sort key layout, from the most significant bit.
+  private static final int FRAMEBUFFER_BITS = 3;
+  private static final int BLENDED_BITS = 1;
+  private static final int SHADER_BITS = 12;
+  private static final int MESH_BITS = 12;
+  private static final int DEPTH_BITS = 24;
+  private static final int FRAMEBUFFER_SHIFT = 64 - FRAMEBUFFER_BITS;
+  private static final int BLENDED_SHIFT = FRAMEBUFFER_SHIFT - BLENDED_BITS;
+  // Opaque draws: shader, mesh, depth.
+  private static final int OPAQUE_SHADER_SHIFT = BLENDED_SHIFT - SHADER_BITS;
+  private static final int OPAQUE_MESH_SHIFT = OPAQUE_SHADER_SHIFT - MESH_BITS;
+  private static final int OPAQUE_DEPTH_SHIFT = OPAQUE_MESH_SHIFT - DEPTH_BITS;
+  // Blended draws: inverted depth, shader, mesh.
+  private static final int BLENDED_DEPTH_SHIFT = BLENDED_SHIFT - DEPTH_BITS;
+  private static final int BLENDED_SHADER_SHIFT = BLENDED_DEPTH_SHIFT - SHADER_BITS;
+  private static final int BLENDED_MESH_SHIFT = BLENDED_SHADER_SHIFT - MESH_BITS;
+  private static final int MAX_SHADER_INDEX = (1 << SHADER_BITS) - 1;
+  private static final int MAX_MESH_INDEX = (1 << MESH_BITS) - 1;
+  private static final int MAX_DEPTH_VALUE = (1 << DEPTH_BITS) - 1;
+
+  /** The number of framebuffers that fit in a sort key. */
+  static final int MAX_FRAMEBUFFERS = 1 << FRAMEBUFFER_BITS;
+
+  private static final int RADIX_BITS = 8;
+  private static final int RADIX = 1 << RADIX_BITS;
+
+  private int drawCount = 0;
+  private long[] keys = new long[16];
+  private int[] order = new int[16];
+  private int[] framebuffers = new int[16];
+  private int[] shaders = new int[16];
+  private int[] meshes = new int[16];
+
+  // Scratch space for sorting.
+  private long[] sortKeys = new long[16];
+  private int[] sortOrder = new int[16];
+  private final int[] digitCounts = new int[RADIX];
+
+  /**
+   * Packs the sort key of a draw.
+   *
+   * <p>Keys sort by framebuffer first. Within a framebuffer, opaque draws come first, by shader,
+   * mesh and then increasing depth; blended draws come last, by decreasing depth and then shader
+   * and mesh. Shaders and meshes beyond what fits in the key share the last index, which only makes
+   * their draws sort less well.
+   *
+   * @param depth the distance of the draw from the camera, from 0 to 1
+   */
+  static long createKey(int framebuffer, int shader, int mesh, boolean blended, float depth) {
+    if (framebuffer < 0 || framebuffer >= MAX_FRAMEBUFFERS) {
+      throw new IllegalArgumentException("Framebuffer index out of range: " + framebuffer);
+    }
+    long shaderIndex = Math.min(shader, MAX_SHADER_INDEX);
+    long meshIndex = Math.min(mesh, MAX_MESH_INDEX);
+    long depthValue = (long) (Math.max(0f, Math.min(1f, depth)) * MAX_DEPTH_VALUE);
+    long key = (long) framebuffer << FRAMEBUFFER_SHIFT;
+    if (blended) {
+      key |= 1L << BLENDED_SHIFT;
+      key |= (MAX_DEPTH_VALUE - depthValue) << BLENDED_DEPTH_SHIFT;
+      key |= shaderIndex << BLENDED_SHADER_SHIFT;
+      key |= meshIndex << BLENDED_MESH_SHIFT;
+    } else {
+      key |= shaderIndex << OPAQUE_SHADER_SHIFT;
+      key |= meshIndex << OPAQUE_MESH_SHIFT;
+      key |= depthValue << OPAQUE_DEPTH_SHIFT;
+    }
+    return key;
+  }
+
+  /**
+   * Adds a draw after the ones already added, see {@link #createKey}.
+   *
+   * @return the number of the draw
+   */
+  int add(int framebuffer, int shader, int mesh, boolean blended, float depth) {
+    long key = createKey(framebuffer, shader, mesh, blended, depth);
+    if (drawCount == keys.length) {
+      grow();
+    }
+    int draw = drawCount++;
+    keys[draw] = key;
+    order[draw] = draw;
+    framebuffers[draw] = framebuffer;
+    shaders[draw] = shader;
+    meshes[draw] = mesh;
+    return draw;
+  }
+
+  int size() {
+    return drawCount;
+  }
+
+  /** Returns the number of the draw to issue at a position, in the order added until sorted. */
+  int get(int position) {
+    return order[position];
+  }
+
+  /**
+   * Sorts the draws by their keys, a byte at a time from the least significant one. Each pass is
+   * stable, so draws with equal keys keep their order, and passes over a byte that is the same in
+   * every key are skipped.
+   */
+  void sort() {
+    if (drawCount < 2) {
+      return;
+    }
+    for (int shift = 0; shift < 64; shift += RADIX_BITS) {
+      Arrays.fill(digitCounts, 0);
+      for (int i = 0; i < drawCount; ++i) {
+        ++digitCounts[(int) (keys[i] >>> shift) & (RADIX - 1)];
+      }
+      if (digitCounts[(int) (keys[0] >>> shift) & (RADIX - 1)] == drawCount) {
+        continue;
+      }
+      int start = 0;
+      for (int digit = 0; digit < RADIX; ++digit) {
+        int count = digitCounts[digit];
+        digitCounts[digit] = start;
+        start += count;
+      }
+      for (int i = 0; i < drawCount; ++i) {
+        int position = digitCounts[(int) (keys[i] >>> shift) & (RADIX - 1)]++;
+        sortKeys[position] = keys[i];
+        sortOrder[position] = order[i];
+      }
+      long[] swapKeys = keys;
+      keys = sortKeys;
+      sortKeys = swapKeys;
+      int[] swapOrder = order;
+      order = sortOrder;
+      sortOrder = swapOrder;
+    }
+  }
+
+  /** Returns how many times issuing the draws in the current order binds a framebuffer. */
+  int countFramebufferChanges() {
+    return countChanges(framebuffers);
+  }
+
+  /** Returns how many times issuing the draws in the current order switches to another shader. */
+  int countShaderChanges() {
+    return countChanges(shaders);
+  }
+
+  /** Returns how many times issuing the draws in the current order binds another mesh. */
+  int countMeshChanges() {
+    return countChanges(meshes);
+  }
+
+  void clear() {
+    drawCount = 0;
+  }
+
+  private int countChanges(int[] indices) {
+    int changes = 0;
+    for (int i = 0; i < drawCount; ++i) {
+      if (i == 0 || indices[order[i]] != indices[order[i - 1]]) {
+        ++changes;
+      }
+    }
+    return changes;
+  }
+
+  private void grow() {
+    int capacity = keys.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    order = Arrays.copyOf(order, capacity);
+    framebuffers = Arrays.copyOf(framebuffers, capacity);
+    shaders = Arrays.copyOf(shaders, capacity);
+    meshes = Arrays.copyOf(meshes, capacity);
+    sortKeys = new long[capacity];
+    sortOrder = new int[capacity];
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES30;
+import java.util.Arrays;
+
+/**
+ * A shadow copy of the OpenGL state that drawing changes most: the program, the vertex array
+ * object, the framebuffer, the viewport, the blend functions, the depth test and depth mask, and the
+ * textures bound to each texture unit. Calls that would set the state to what it already is are
+ * skipped.
+ *
+ * <p>Each {@link SampleRender} has one, see {@link SampleRender#getGLState}, and everything in
+ * samplerender changes that state through it. Code that changes any of it directly, or calls
+ * something that does, like {@code Session.update} updating the camera texture, must call {@link
+ * #invalidate} afterwards. The copy is also invalidated at the start of every frame.
+ *
+ * <p>{@link #getIssuedCallCount} and {@link #getSkippedCallCount} count the calls made and avoided
+ * since the start of the frame.
+ */
+public class GLState {
+  private static final int UNKNOWN = -1;
+
+  // The texture targets whose bindings are tracked for every texture unit.
+  private static final int[] TEXTURE_TARGETS = {
+    GLES30.GL_TEXTURE_2D,
+    GLES30.GL_TEXTURE_CUBE_MAP,
+    GLES11Ext.GL_TEXTURE_EXTERNAL_OES,
+    GLES30.GL_TEXTURE_3D,
+    GLES30.GL_TEXTURE_2D_ARRAY
+  };
+
+  private int program;
+  private int vertexArray;
+  private int framebuffer;
+  private final int[] viewport = new int[4];
+  private final int[] blendFactors = new int[4];
+  private int depthMask;
+  private int depthTest;
+  private int activeTextureUnit;
+  // The texture bound to each target of each unit, TEXTURE_TARGETS.length entries per unit.
+  private int[] textureBindings = new int[16 * TEXTURE_TARGETS.length];
+
+  private int issuedCalls = 0;
+  private int skippedCalls = 0;
+
+  /* package-private */
+  GLState() {
+    invalidate();
+  }
+
+  /**
+   * Forgets all state, so that the next call of each kind is made. Call this after changing any of
+   * the tracked state without going through this class.
+   */
+  public void invalidate() {
+    program = UNKNOWN;
+    vertexArray = UNKNOWN;
+    framebuffer = UNKNOWN;
+    Arrays.fill(viewport, UNKNOWN);
+    Arrays.fill(blendFactors, UNKNOWN);
+    depthMask = UNKNOWN;
+    depthTest = UNKNOWN;
+    activeTextureUnit = UNKNOWN;
+    Arrays.fill(textureBindings, UNKNOWN);
+  }
+
+  /** Returns the number of OpenGL calls made through this class since the frame started. */
+  public int getIssuedCallCount() {
+    return issuedCalls;
+  }
+
+  /** Returns the number of OpenGL calls skipped since the frame started. */
+  public int getSkippedCallCount() {
+    return skippedCalls;
+  }
+
+  /** See {@code glUseProgram}. */
+  public void useProgram(int programId) {
+    if (program == programId) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glUseProgram(programId);
+    GLError.maybeThrowGLException("Failed to use shader program", "glUseProgram");
+    program = programId;
+    ++issuedCalls;
+  }
+
+  /** See {@code glBindVertexArray}. */
+  public void bindVertexArray(int vertexArrayId) {
+    if (vertexArray == vertexArrayId) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glBindVertexArray(vertexArrayId);
+    GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+    vertexArray = vertexArrayId;
+    ++issuedCalls;
+  }
+
+  /** See {@code glBindFramebuffer}, with the {@code GL_FRAMEBUFFER} target. */
+  public void bindFramebuffer(int framebufferId) {
+    if (framebuffer == framebufferId) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferId);
+    GLError.maybeThrowGLException("Failed to bind framebuffer", "glBindFramebuffer");
+    framebuffer = framebufferId;
+    ++issuedCalls;
+  }
+
+  /** See {@code glViewport}. */
+  public void setViewport(int x, int y, int width, int height) {
+    if (viewport[0] == x && viewport[1] == y && viewport[2] == width && viewport[3] == height) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glViewport(x, y, width, height);
+    GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
+    viewport[0] = x;
+    viewport[1] = y;
+    viewport[2] = width;
+    viewport[3] = height;
+    ++issuedCalls;
+  }
+
+  /** See {@code glBlendFuncSeparate}. */
+  public void setBlendFunc(int sourceRgb, int destRgb, int sourceAlpha, int destAlpha) {
+    if (blendFactors[0] == sourceRgb
+        && blendFactors[1] == destRgb
+        && blendFactors[2] == sourceAlpha
+        && blendFactors[3] == destAlpha) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glBlendFuncSeparate(sourceRgb, destRgb, sourceAlpha, destAlpha);
+    GLError.maybeThrowGLException("Failed to set blend mode", "glBlendFuncSeparate");
+    blendFactors[0] = sourceRgb;
+    blendFactors[1] = destRgb;
+    blendFactors[2] = sourceAlpha;
+    blendFactors[3] = destAlpha;
+    ++issuedCalls;
+  }
+
+  /** See {@code glDepthMask}. */
+  public void setDepthMask(boolean enabled) {
+    int value = enabled ? 1 : 0;
+    if (depthMask == value) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glDepthMask(enabled);
+    GLError.maybeThrowGLException("Failed to set depth write mask", "glDepthMask");
+    depthMask = value;
+    ++issuedCalls;
+  }
+
+  /** See {@code glEnable} and {@code glDisable} with {@code GL_DEPTH_TEST}. */
+  public void setDepthTest(boolean enabled) {
+    int value = enabled ? 1 : 0;
+    if (depthTest == value) {
+      ++skippedCalls;
+      return;
+    }
+    if (enabled) {
+      GLES30.glEnable(GLES30.GL_DEPTH_TEST);
+      GLError.maybeThrowGLException("Failed to enable depth test", "glEnable");
+    } else {
+      GLES30.glDisable(GLES30.GL_DEPTH_TEST);
+      GLError.maybeThrowGLException("Failed to disable depth test", "glDisable");
+    }
+    depthTest = value;
+    ++issuedCalls;
+  }
+
+  /**
+   * See {@code glActiveTexture}.
+   *
+   * @param unit the index of the texture unit, not {@code GL_TEXTURE0 + unit}
+   */
+  public void setActiveTexture(int unit) {
+    if (activeTextureUnit == unit) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glActiveTexture(GLES30.GL_TEXTURE0 + unit);
+    GLError.maybeThrowGLException("Failed to set active texture", "glActiveTexture");
+    activeTextureUnit = unit;
+    ++issuedCalls;
+  }
+
+  /** See {@code glBindTexture}; binds a texture to the active texture unit. */
+  public void bindTexture(int target, int textureId) {
+    int slot = activeTextureUnit == UNKNOWN ? UNKNOWN : getTextureSlot(activeTextureUnit, target);
+    if (slot != UNKNOWN && textureBindings[slot] == textureId) {
+      ++skippedCalls;
+      return;
+    }
+    GLES30.glBindTexture(target, textureId);
+    GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
+    if (slot != UNKNOWN) {
+      textureBindings[slot] = textureId;
+    }
+    ++issuedCalls;
+  }
+
+  /**
+   * Binds a texture to the given texture unit, making it the active one only if the texture isn't
+   * bound there already.
+   */
+  public void bindTexture(int unit, int target, int textureId) {
+    int slot = getTextureSlot(unit, target);
+    if (slot != UNKNOWN && textureBindings[slot] == textureId) {
+      ++skippedCalls;
+      return;
+    }
+    setActiveTexture(unit);
+    bindTexture(target, textureId);
+  }
+
+  /** Call after deleting a program. */
+  public void onProgramDeleted(int programId) {
+    // A program in use is only deleted once it no longer is, so the binding may or may not remain.
+    if (program == programId) {
+      program = UNKNOWN;
+    }
+  }
+
+  /** Call after deleting a vertex array object, which unbinds it. */
+  public void onVertexArrayDeleted(int vertexArrayId) {
+    if (vertexArray == vertexArrayId) {
+      vertexArray = 0;
+    }
+  }
+
+  /** Call after deleting a framebuffer, which unbinds it. */
+  public void onFramebufferDeleted(int framebufferId) {
+    if (framebuffer == framebufferId) {
+      framebuffer = 0;
+    }
+  }
+
+  /** Call after deleting a texture, which unbinds it from every texture unit. */
+  public void onTextureDeleted(int textureId) {
+    for (int i = 0; i < textureBindings.length; ++i) {
+      if (textureBindings[i] == textureId) {
+        textureBindings[i] = 0;
+      }
+    }
+  }
+
+  /**
+   * Returns the index into {@code textureBindings} of a target of a texture unit, or {@code
+   * UNKNOWN} if the target isn't tracked.
+   */
+  private int getTextureSlot(int unit, int target) {
+    int targetIndex = UNKNOWN;
+    for (int i = 0; i < TEXTURE_TARGETS.length; ++i) {
+      if (TEXTURE_TARGETS[i] == target) {
+        targetIndex = i;
+        break;
+      }
+    }
+    if (targetIndex == UNKNOWN || unit < 0) {
+      return UNKNOWN;
+    }
+    int slot = unit * TEXTURE_TARGETS.length + targetIndex;
+    if (slot >= textureBindings.length) {
+      int oldLength = textureBindings.length;
+      textureBindings =
+          Arrays.copyOf(textureBindings, (unit + 1) * 2 * TEXTURE_TARGETS.length);
+      Arrays.fill(textureBindings, oldLength, textureBindings.length, UNKNOWN);
+    }
+    return slot;
+  }
+
+  /** Forgets all state and starts counting calls for a new frame. */
+  /* package-private */
+  void beginFrame() {
+    invalidate();
+    issuedCalls = 0;
+    skippedCalls = 0;
+  }
+}
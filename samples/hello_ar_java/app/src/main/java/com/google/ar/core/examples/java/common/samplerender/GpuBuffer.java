@@ -27,13 +27,34 @@ class GpuBuffer {
   public static final int INT_SIZE = 4;
   public static final int FLOAT_SIZE = 4;
 
+  private final SampleRender render;
   private final int target;
   private final int numberOfBytesPerEntry;
   private final int[] bufferId = {0};
   private int size;
   private int capacity;
 
-  public GpuBuffer(int target, int numberOfBytesPerEntry, Buffer entries) {
+  // Where the contents were last set if they went into the streaming buffer, which is only valid
+  // for that frame; -1 if they are in the buffer's own storage.
+  private final StreamingBuffer streamingBuffer;
+  private int streamOffset = -1;
+  private long streamFrame;
+
+  public GpuBuffer(SampleRender render, int target, int numberOfBytesPerEntry, Buffer entries) {
+    this(render, target, numberOfBytesPerEntry, entries, /*streamingBuffer=*/ null);
+  }
+
+  /**
+   * Constructs a buffer whose contents, once replaced with {@link #set}, are written to a range of
+   * {@code streamingBuffer} for the current frame if it has room. The initial {@code entries} go to
+   * the buffer's own storage.
+   */
+  public GpuBuffer(
+      SampleRender render,
+      int target,
+      int numberOfBytesPerEntry,
+      Buffer entries,
+      StreamingBuffer streamingBuffer) {
     if (entries != null) {
       if (!entries.isDirect()) {
         throw new IllegalArgumentException("If non-null, entries buffer must be a direct buffer");
@@ -45,8 +66,10 @@ class GpuBuffer {
       }
     }
 
+    this.render = render;
     this.target = target;
     this.numberOfBytesPerEntry = numberOfBytesPerEntry;
+    this.streamingBuffer = streamingBuffer;
     if (entries == null) {
       this.size = 0;
       this.capacity = 0;
@@ -57,8 +80,7 @@ class GpuBuffer {
 
     try {
       // Clear VAO to prevent unintended state change.
-      GLES30.glBindVertexArray(0);
-      GLError.maybeThrowGLException("Failed to unbind vertex array", "glBindVertexArray");
+      render.getGLState().bindVertexArray(0);
 
       GLES30.glGenBuffers(1, bufferId, 0);
       GLError.maybeThrowGLException("Failed to generate buffers", "glGenBuffers");
@@ -79,6 +101,7 @@ class GpuBuffer {
   }
 
   public void set(Buffer entries) {
+    streamOffset = -1;
     // Some GPU drivers will fail with out of memory errors if glBufferData or glBufferSubData is
     // called with a size of 0, so avoid this case.
     if (entries == null || entries.limit() == 0) {
@@ -88,6 +111,15 @@ class GpuBuffer {
     if (!entries.isDirect()) {
       throw new IllegalArgumentException("If non-null, entries buffer must be a direct buffer");
     }
+    if (streamingBuffer != null) {
+      int offset = streamingBuffer.write(entries, numberOfBytesPerEntry);
+      if (offset >= 0) {
+        streamOffset = offset;
+        streamFrame = streamingBuffer.getFrame();
+        size = entries.limit();
+        return;
+      }
+    }
     GLES30.glBindBuffer(target, bufferId[0]);
     GLError.maybeThrowGLException("Failed to bind vertex buffer object", "glBindBuffer");
 
@@ -106,6 +138,64 @@ class GpuBuffer {
     }
   }
 
+  /**
+   * Replaces the contents like {@link #set}, but first gives the buffer new storage of at least the
+   * current capacity. Draws still reading the old contents then keep them, instead of making the
+   * driver wait for those draws to finish. For data that is rewritten every frame.
+   */
+  public void setOrphaned(Buffer entries) {
+    streamOffset = -1;
+    if (entries == null || entries.limit() == 0) {
+      size = 0;
+      return;
+    }
+    if (!entries.isDirect()) {
+      throw new IllegalArgumentException("If non-null, entries buffer must be a direct buffer");
+    }
+    GLES30.glBindBuffer(target, bufferId[0]);
+    GLError.maybeThrowGLException("Failed to bind buffer object", "glBindBuffer");
+
+    capacity = Math.max(capacity, entries.limit());
+    GLES30.glBufferData(target, capacity * numberOfBytesPerEntry, null, GLES30.GL_STREAM_DRAW);
+    GLError.maybeThrowGLException("Failed to orphan buffer object", "glBufferData");
+    entries.rewind();
+    GLES30.glBufferSubData(target, 0, entries.limit() * numberOfBytesPerEntry, entries);
+    GLError.maybeThrowGLException("Failed to populate buffer object", "glBufferSubData");
+    size = entries.limit();
+  }
+
+  /**
+   * Replaces {@code count} entries of the buffer starting at entry {@code offset} with the same
+   * entries of {@code entries}, which holds the whole contents. The size of the buffer doesn't
+   * change.
+   */
+  public void setRange(Buffer entries, int offset, int count) {
+    if (streamOffset >= 0) {
+      throw new IllegalStateException("Can't replace a range of streamed contents");
+    }
+    if (offset < 0 || count < 0 || offset + count > size) {
+      throw new IllegalArgumentException(
+          "Range of " + count + " entries at " + offset + " exceeds buffer size of " + size);
+    }
+    if (!entries.isDirect()) {
+      throw new IllegalArgumentException("Entries buffer must be a direct buffer");
+    }
+    if (count == 0) {
+      return;
+    }
+    GLES30.glBindBuffer(target, bufferId[0]);
+    GLError.maybeThrowGLException("Failed to bind buffer object", "glBindBuffer");
+
+    entries.limit(offset + count).position(offset);
+    try {
+      GLES30.glBufferSubData(
+          target, offset * numberOfBytesPerEntry, count * numberOfBytesPerEntry, entries);
+      GLError.maybeThrowGLException("Failed to populate buffer object", "glBufferSubData");
+    } finally {
+      entries.clear();
+    }
+  }
+
   public void free() {
     if (bufferId[0] != 0) {
       GLES30.glDeleteBuffers(1, bufferId, 0);
@@ -114,8 +204,20 @@ class GpuBuffer {
     }
   }
 
+  /** Returns the buffer object that holds the contents, at {@link #getByteOffset}. */
   public int getBufferId() {
-    return bufferId[0];
+    return streamOffset >= 0 ? streamingBuffer.getBufferId() : bufferId[0];
+  }
+
+  /** Returns the offset of the contents in bytes from the start of {@link #getBufferId}. */
+  public int getByteOffset() {
+    if (streamOffset < 0) {
+      return 0;
+    }
+    if (streamFrame != streamingBuffer.getFrame()) {
+      throw new IllegalStateException("Streamed buffer contents must be set in every frame");
+    }
+    return streamOffset;
   }
 
   public int getSize() {
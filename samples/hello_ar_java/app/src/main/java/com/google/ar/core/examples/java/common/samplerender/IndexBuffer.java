@@ -42,7 +42,25 @@ public class IndexBuffer implements Closeable {
    * instead.
    */
   public IndexBuffer(SampleRender render, IntBuffer entries) {
-    buffer = new GpuBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, GpuBuffer.INT_SIZE, entries);
+    this(render, entries, /*streamingBuffer=*/ null);
+  }
+
+  /**
+   * Construct an {@link IndexBuffer} for indices that are replaced every frame, populated with
+   * initial data like {@link #IndexBuffer(SampleRender, IntBuffer)}.
+   *
+   * <p>Each call to {@link #set} writes the indices to a range of {@code streamingBuffer} for the
+   * current frame, so they must be set again before the buffer is drawn in the next one. See {@link
+   * VertexBuffer#VertexBuffer(SampleRender, int, FloatBuffer, StreamingBuffer)}.
+   */
+  public IndexBuffer(SampleRender render, IntBuffer entries, StreamingBuffer streamingBuffer) {
+    buffer =
+        new GpuBuffer(
+            render,
+            GLES30.GL_ELEMENT_ARRAY_BUFFER,
+            GpuBuffer.INT_SIZE,
+            entries,
+            streamingBuffer);
   }
 
   /**
@@ -70,6 +88,11 @@ public class IndexBuffer implements Closeable {
     return buffer.getBufferId();
   }
 
+  /* package-private */
+  int getByteOffset() {
+    return buffer.getByteOffset();
+  }
+
   /* package-private */
   int getSize() {
     return buffer.getSize();
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Collects instances of meshes and draws all instances of the same {@link Mesh} with the same
+ * {@link Shader} to the same {@link Framebuffer} with one call to {@link
+ * SampleRender#drawInstanced}, however many there are.
+ *
+ * <p>Each instance is described by the attributes of an {@link InstanceBuffer.Layout}, which the
+ * shader reads instead of per-draw uniforms; everything else the shader uses must be the same for
+ * all instances. The batcher gives each mesh it draws an {@link InstanceBuffer} with that layout,
+ * unless it already has one, and refills it for every group of instances.
+ *
+ * <p>Groups are drawn in the order their first instance was added. Instances within a group are
+ * drawn in the order they were added, so blended instances are best added back to front.
+ */
+public class InstanceBatcher implements Closeable {
+  private final SampleRender render;
+  private final InstanceBuffer.Layout layout;
+
+  // The groups of instances added since the last flush.
+  private final InstanceGroups<Mesh, Shader, Framebuffer> groups;
+
+  // The instance buffers created for meshes that had none.
+  private int ownedBufferCount = 0;
+  private InstanceBuffer[] ownedBuffers = new InstanceBuffer[4];
+
+  // Counts of the last flush.
+  private int lastDrawCount;
+  private int lastInstanceCount;
+
+  public InstanceBatcher(SampleRender render, InstanceBuffer.Layout layout) {
+    this.render = render;
+    this.layout = layout;
+    this.groups = new InstanceGroups<>(layout.getStride());
+  }
+
+  /** Drops any instances that were not flushed. */
+  public void begin() {
+    groups.clear();
+  }
+
+  /**
+   * Adds an instance of a {@link Mesh}, to be drawn with a {@link Shader} to a {@link
+   * Framebuffer}.
+   *
+   * @param framebuffer the framebuffer to draw to, or null for the default framebuffer
+   * @param instance the attributes of the instance, {@link InstanceBuffer.Layout#getStride} floats
+   *     laid out as the layout of the batcher says; they are copied
+   */
+  public void add(Mesh mesh, Shader shader, Framebuffer framebuffer, float[] instance) {
+    groups.add(mesh, shader, framebuffer, instance);
+  }
+
+  /** Draws each group of instances with a single draw call, and empties the batcher. */
+  public void flush() {
+    lastDrawCount = 0;
+    lastInstanceCount = 0;
+    for (int group = 0; group < groups.size(); ++group) {
+      Mesh mesh = groups.getMesh(group);
+      int count = groups.getInstanceCount(group);
+      getInstanceBuffer(mesh).set(groups.getInstances(group), count);
+      render.drawInstanced(mesh, groups.getShader(group), groups.getFramebuffer(group), count);
+      ++lastDrawCount;
+      lastInstanceCount += count;
+    }
+    groups.clear();
+  }
+
+  /** Returns the number of draw calls issued by the last {@link #flush}. */
+  public int getDrawCount() {
+    return lastDrawCount;
+  }
+
+  /** Returns the number of instances drawn by the last {@link #flush}. */
+  public int getInstanceCount() {
+    return lastInstanceCount;
+  }
+
+  /**
+   * Frees the instance buffers the batcher created. They stay attached to their meshes, which
+   * can't be drawn instanced any more until another instance buffer is attached.
+   */
+  @Override
+  public void close() {
+    for (int i = 0; i < ownedBufferCount; ++i) {
+      ownedBuffers[i].close();
+    }
+    Arrays.fill(ownedBuffers, 0, ownedBufferCount, null);
+    ownedBufferCount = 0;
+    groups.clear();
+  }
+
+  /** Returns the instance buffer of a mesh, creating and attaching one if it has none. */
+  private InstanceBuffer getInstanceBuffer(Mesh mesh) {
+    InstanceBuffer instanceBuffer = mesh.getInstanceBuffer();
+    if (instanceBuffer != null) {
+      if (instanceBuffer.getLayout() != layout) {
+        throw new IllegalArgumentException(
+            "Mesh has an instance buffer with another layout than the batcher");
+      }
+      return instanceBuffer;
+    }
+    instanceBuffer = new InstanceBuffer(render, layout, /*initialCapacity=*/ 1);
+    try {
+      mesh.setInstanceBuffer(instanceBuffer);
+    } catch (Throwable t) {
+      instanceBuffer.close();
+      throw t;
+    }
+    if (ownedBufferCount == ownedBuffers.length) {
+      ownedBuffers = Arrays.copyOf(ownedBuffers, ownedBufferCount * 2);
+    }
+    ownedBuffers[ownedBufferCount++] = instanceBuffer;
+    return instanceBuffer;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import android.opengl.GLES30;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Per-instance vertex attribute data stored GPU-side, such as a model matrix for each copy of a
+ * mesh drawn with {@link SampleRender#drawInstanced}.
+ *
+ * <p>The attributes of an instance are interleaved, as described by a {@link Layout}. Once attached
+ * to a {@link Mesh} with {@link Mesh#setInstanceBuffer}, each instance drawn reads the next set of
+ * attributes instead of the next vertex. The data is meant to be replaced every frame, so {@link
+ * #set} gives the buffer new storage each time instead of waiting for the previous frame's draws.
+ *
+ * @see <a
+ *     href="https://www.khronos.org/registry/OpenGL-Refpages/es3.0/html/glVertexAttribDivisor.xhtml">glVertexAttribDivisor</a>
+ */
+public class InstanceBuffer implements Closeable {
+  private final Layout layout;
+  private final GpuBuffer buffer;
+  private FloatBuffer data;
+  private int instanceCount = 0;
+
+  /**
+   * Describes the attributes of one instance and the vertex attribute locations they are read
+   * from, which must match the {@code layout(location = ...)} qualifiers of the vertex shader.
+   *
+   * <p>Each method returns the offset of the attribute it adds, in floats from the start of the
+   * instance. A {@code mat4} takes up four consecutive locations, one for each column.
+   */
+  public static class Layout {
+    private int[] locations = new int[4];
+    private int[] sizes = new int[4];
+    private int attributeCount = 0;
+    private int stride = 0;
+
+    public int addFloat(int location) {
+      return add(location, 1);
+    }
+
+    public int addVec2(int location) {
+      return add(location, 2);
+    }
+
+    public int addVec3(int location) {
+      return add(location, 3);
+    }
+
+    public int addVec4(int location) {
+      return add(location, 4);
+    }
+
+    public int addMat4(int location) {
+      int offset = add(location, 4);
+      for (int column = 1; column < 4; ++column) {
+        add(location + column, 4);
+      }
+      return offset;
+    }
+
+    /** Returns the number of floats in one instance. */
+    public int getStride() {
+      return stride;
+    }
+
+    /* package-private */
+    int getAttributeCount() {
+      return attributeCount;
+    }
+
+    /* package-private */
+    int getLocation(int attribute) {
+      return locations[attribute];
+    }
+
+    /* package-private */
+    int getSize(int attribute) {
+      return sizes[attribute];
+    }
+
+    /** Returns the offset of an attribute in floats from the start of the instance. */
+    /* package-private */
+    int getOffset(int attribute) {
+      int offset = 0;
+      for (int i = 0; i < attribute; ++i) {
+        offset += sizes[i];
+      }
+      return offset;
+    }
+
+    private int add(int location, int size) {
+      for (int i = 0; i < attributeCount; ++i) {
+        if (locations[i] == location) {
+          throw new IllegalArgumentException("Location " + location + " is already used");
+        }
+      }
+      if (attributeCount == locations.length) {
+        locations = Arrays.copyOf(locations, attributeCount * 2);
+        sizes = Arrays.copyOf(sizes, attributeCount * 2);
+      }
+      locations[attributeCount] = location;
+      sizes[attributeCount] = size;
+      ++attributeCount;
+      int offset = stride;
+      stride += size;
+      return offset;
+    }
+  }
+
+  /**
+   * Constructs an empty {@link InstanceBuffer}.
+   *
+   * @param initialCapacity the number of instances to allocate CPU-side storage for; it grows as
+   *     needed
+   */
+  public InstanceBuffer(SampleRender render, Layout layout, int initialCapacity) {
+    if (layout.getStride() == 0) {
+      throw new IllegalArgumentException("Instance layout must have at least one attribute");
+    }
+    this.layout = layout;
+    this.data = allocate(Math.max(initialCapacity, 1) * layout.getStride());
+    this.buffer =
+        new GpuBuffer(render, GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, /*entries=*/ null);
+  }
+
+  /**
+   * Replaces the data with that of {@code instanceCount} instances, {@link Layout#getStride}
+   * floats each, from the start of {@code instances}.
+   */
+  public void set(float[] instances, int instanceCount) {
+    int floatCount = instanceCount * layout.getStride();
+    if (instanceCount < 0 || floatCount > instances.length) {
+      throw new IllegalArgumentException(
+          "Instance data of " + instances.length + " floats is too short for " + instanceCount);
+    }
+    if (floatCount > data.capacity()) {
+      data = allocate(Math.max(floatCount, data.capacity() * 2));
+    }
+    data.clear();
+    data.put(instances, 0, floatCount);
+    data.flip();
+    buffer.setOrphaned(data);
+    this.instanceCount = instanceCount;
+  }
+
+  /** Returns the number of instances last set. */
+  public int getInstanceCount() {
+    return instanceCount;
+  }
+
+  public Layout getLayout() {
+    return layout;
+  }
+
+  @Override
+  public void close() {
+    buffer.free();
+  }
+
+  /* package-private */
+  int getBufferId() {
+    return buffer.getBufferId();
+  }
+
+  private static FloatBuffer allocate(int floatCount) {
+    return ByteBuffer.allocateDirect(floatCount * GpuBuffer.FLOAT_SIZE)
+        .order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+  }
+}
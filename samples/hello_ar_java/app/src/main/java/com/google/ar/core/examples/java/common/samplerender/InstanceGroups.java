@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import java.util.Arrays;
+
+/**
+ * The instances collected by an {@link InstanceBatcher}, grouped by the mesh, shader and
+ * framebuffer they are drawn with.
+ *
+ * <p>Groups are kept in the order of their first instance, and the instances of a group in the
+ * order they were added. The groups only compare their mesh, shader and framebuffer by identity, so
+ * none of this needs a GL context.
+ */
+/* package-private */
+class InstanceGroups<M, S, F> {
+  private final int stride;
+
+  // The instance data arrays are kept when the groups are cleared, so they only grow.
+  private int groupCount = 0;
+  private Object[] meshes = new Object[4];
+  private Object[] shaders = new Object[4];
+  private Object[] framebuffers = new Object[4];
+  private int[] instanceCounts = new int[4];
+  private float[][] instances = new float[4][];
+
+  /** @param stride the number of floats in one instance */
+  InstanceGroups(int stride) {
+    this.stride = stride;
+  }
+
+  /**
+   * Adds an instance to the group of its mesh, shader and framebuffer, after the instances already
+   * in it, starting a new group if there is none.
+   *
+   * @param instance the attributes of the instance, of which the first {@code stride} floats are
+   *     copied
+   * @return the index of the group
+   */
+  int add(M mesh, S shader, F framebuffer, float[] instance) {
+    if (instance.length < stride) {
+      throw new IllegalArgumentException(
+          "Instance data must have at least " + stride + " floats, got " + instance.length);
+    }
+    int group = indexOf(mesh, shader, framebuffer);
+    int count = instanceCounts[group];
+    float[] data = instances[group];
+    if ((count + 1) * stride > data.length) {
+      data = Arrays.copyOf(data, Math.max((count + 1) * stride, data.length * 2));
+      instances[group] = data;
+    }
+    System.arraycopy(instance, 0, data, count * stride, stride);
+    instanceCounts[group] = count + 1;
+    return group;
+  }
+
+  int size() {
+    return groupCount;
+  }
+
+  @SuppressWarnings("unchecked")
+  M getMesh(int group) {
+    return (M) meshes[group];
+  }
+
+  @SuppressWarnings("unchecked")
+  S getShader(int group) {
+    return (S) shaders[group];
+  }
+
+  @SuppressWarnings("unchecked")
+  F getFramebuffer(int group) {
+    return (F) framebuffers[group];
+  }
+
+  int getInstanceCount(int group) {
+    return instanceCounts[group];
+  }
+
+  /** Returns the instances of a group, {@code stride} floats each, followed by unused space. */
+  float[] getInstances(int group) {
+    return instances[group];
+  }
+
+  /** Removes all groups. */
+  void clear() {
+    // Drop the references, so freed resources don't stay reachable.
+    Arrays.fill(meshes, 0, groupCount, null);
+    Arrays.fill(shaders, 0, groupCount, null);
+    Arrays.fill(framebuffers, 0, groupCount, null);
+    groupCount = 0;
+  }
+
+  private int indexOf(M mesh, S shader, F framebuffer) {
+    for (int i = 0; i < groupCount; ++i) {
+      if (meshes[i] == mesh && shaders[i] == shader && framebuffers[i] == framebuffer) {
+        return i;
+      }
+    }
+    if (groupCount == meshes.length) {
+      int capacity = groupCount * 2;
+      meshes = Arrays.copyOf(meshes, capacity);
+      shaders = Arrays.copyOf(shaders, capacity);
+      framebuffers = Arrays.copyOf(framebuffers, capacity);
+      instanceCounts = Arrays.copyOf(instanceCounts, capacity);
+      instances = Arrays.copyOf(instances, capacity);
+    }
+    int group = groupCount++;
+    meshes[group] = mesh;
+    shaders[group] = shader;
+    framebuffers[group] = framebuffer;
+    instanceCounts[group] = 0;
+    if (instances[group] == null) {
+      instances[group] = new float[stride];
+    }
+    return group;
+  }
+}
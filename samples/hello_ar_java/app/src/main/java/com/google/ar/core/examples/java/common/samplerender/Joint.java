@@ -3,16 +3,18 @@ package com.google.ar.core.examples.java.common.samplerender;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * A joint of a skeleton, as loaded from a file. Joints only hold the bind pose,
+ * which is shared by every model drawn with the same mesh; the animated pose of
+ * each model is kept by its own
+ * {@link com.google.ar.core.examples.java.common.animation.Animator}.
+ */
 public class Joint {
     public final int index;// ID
     public final String name;
     public final List<Joint> children = new ArrayList<Joint>();
 
-    private float[] animatedTransform;
-
-    // Fix ?
     private final float[] localBindTransform;
-    private float[] inverseBindTransform;
 
     /**
      * @param index
@@ -44,42 +46,9 @@ public class Joint {
     }
 
     /**
-     * The animated transform is the transform that gets loaded up to the shader
-     * and is used to deform the vertices of the "skin". It represents the
-     * transformation from the joint's bind position (original position in
-     * model-space) to the joint's desired animation pose (also in model-space).
-     * This matrix is calculated by taking the desired model-space transform of
-     * the joint and multiplying it by the inverse of the starting model-space
-     * transform of the joint.
-     *
-     * @return The transformation matrix of the joint which is used to deform
-     *         associated vertices of the skin in the shaders.
-     */
-    public float[] getAnimatedTransform() {
-        return animatedTransform;
-    }
-
-    /**
-     * This method allows those all important "joint transforms" (as I referred
-     * to them in the tutorial) to be set by the animator. This is used to put
-     * the joints of the animated model in a certain pose.
-     *
-     * @param animationTransform - the new joint transform.
-     */
-    public void setAnimationTransform(float[] animationTransform) {
-        this.animatedTransform = animationTransform;
-    }
-
-    /**
-     * This returns the inverted model-space bind transform. The bind transform
-     * is the original model-space transform of the joint (when no animation is
-     * applied). This returns the inverse of that, which is used to calculate
-     * the animated transform matrix which gets used to transform vertices in
-     * the shader.
-     *
-     * @return The inverse of the joint's bind transform (in model-space).
+     * @return The bone-space transform of the joint in the bind position.
      */
-    public float[] getInverseBindTransform() {
-        return inverseBindTransform;
+    public float[] getLocalBindTransform() {
+        return localBindTransform;
     }
 }
@@ -15,22 +15,33 @@
  */
 package com.google.ar.core.examples.java.common.samplerender;
 
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
 import android.opengl.GLES30;
 import android.util.Log;
 
 import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
-import com.google.ar.core.examples.java.common.animation.Animation;
-import com.google.ar.core.examples.java.common.animation.Animator;
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
+import com.google.ar.core.examples.java.common.animation.AnimationCompressor;
+import com.google.ar.core.examples.java.common.animation.Skeleton;
 
 import de.javagl.obj.Obj;
 import de.javagl.obj.ObjData;
 import de.javagl.obj.ObjReader;
 import de.javagl.obj.ObjUtils;
 import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -65,17 +76,24 @@ public class Mesh implements Closeable {
     }
   }
 
+  private final SampleRender render;
   private final int[] vertexArrayId = {0};
   private final PrimitiveMode primitiveMode;
   private final IndexBuffer indexBuffer;
   private final VertexBuffer[] vertexBuffers;
+  private InstanceBuffer instanceBuffer;
+  // The buffer objects and byte offsets the vertex array object points at. Streamed buffers move to
+  // another range each frame, so they are compared with the current ones whenever it is bound.
+  private final int[] boundVertexBufferIds;
+  private final int[] boundVertexBufferOffsets;
+  private int boundIndexBufferId;
 
   // skeleton
-  private final Joint rootJoint;
-  private final int jointCount;
-
-  private final Animator animator;
+  private final List<Joint> rootJoints;
+  private final Skeleton skeleton;
+  private List<AnimationClip> animationClips = Collections.emptyList();
 
+  private Submesh[] submeshes = new Submesh[0];
 
   /**
    * Construct a {@link Mesh}.
@@ -98,12 +116,14 @@ public class Mesh implements Closeable {
       throw new IllegalArgumentException("Must pass at least one vertex buffer");
     }
 
-    this.jointCount = 0;
-    this.rootJoint = null;
-    this.animator = null;
+    this.rootJoints = Collections.emptyList();
+    this.skeleton = null;
+    this.render = render;
     this.primitiveMode = primitiveMode;
     this.indexBuffer = indexBuffer;
     this.vertexBuffers = vertexBuffers;
+    this.boundVertexBufferIds = new int[vertexBuffers.length];
+    this.boundVertexBufferOffsets = new int[vertexBuffers.length];
 
     try {
       // Create vertex array
@@ -111,23 +131,33 @@ public class Mesh implements Closeable {
       GLError.maybeThrowGLException("Failed to generate a vertex array", "glGenVertexArrays");
 
       // Bind vertex array
-      GLES30.glBindVertexArray(vertexArrayId[0]);
-      GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+      render.getGLState().bindVertexArray(vertexArrayId[0]);
 
       if (indexBuffer != null) {
-        GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getBufferId());
+        boundIndexBufferId = indexBuffer.getBufferId();
+        GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, boundIndexBufferId);
       }
 
       for (int i = 0; i < vertexBuffers.length; ++i) {
         // Bind each vertex buffer to vertex array
-        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, vertexBuffers[i].getBufferId());
+        boundVertexBufferIds[i] = vertexBuffers[i].getBufferId();
+        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, boundVertexBufferIds[i]);
         GLError.maybeThrowGLException("Failed to bind vertex buffer", "glBindBuffer");
         if(vertexBuffers[i].getIsInt()) {
           GLES30.glVertexAttribIPointer(
-                  i, vertexBuffers[i].getNumberOfEntriesPerVertex(), GLES30.GL_INT, 0, 0);
+                  i,
+                  vertexBuffers[i].getNumberOfEntriesPerVertex(),
+                  GLES30.GL_INT,
+                  vertexBuffers[i].getByteStride(),
+                  vertexBuffers[i].getAttributeByteOffset());
         } else {
           GLES30.glVertexAttribPointer(
-                  i, vertexBuffers[i].getNumberOfEntriesPerVertex(), GLES30.GL_FLOAT, false, 0, 0);
+                  i,
+                  vertexBuffers[i].getNumberOfEntriesPerVertex(),
+                  GLES30.GL_FLOAT,
+                  false,
+                  vertexBuffers[i].getByteStride(),
+                  vertexBuffers[i].getAttributeByteOffset());
         }
         GLError.maybeThrowGLException(
             "Failed to associate vertex buffer with vertex array", "glVertexAttribPointer");
@@ -147,19 +177,21 @@ public class Mesh implements Closeable {
           PrimitiveMode primitiveMode,
           IndexBuffer indexBuffer,
           VertexBuffer[] vertexBuffers,
-          Joint rootJoint,
+          List<Joint> rootJoints,
           int jointCount) {
     if (vertexBuffers == null || vertexBuffers.length == 0) {
       throw new IllegalArgumentException("Must pass at least one vertex buffer");
     }
 
-    this.animator = new Animator(this);
-    this.jointCount = jointCount;
-    this.rootJoint = rootJoint;
+    this.rootJoints = rootJoints;
+    this.skeleton = new Skeleton(rootJoints, jointCount);
 
+    this.render = render;
     this.primitiveMode = primitiveMode;
     this.indexBuffer = indexBuffer;
     this.vertexBuffers = vertexBuffers;
+    this.boundVertexBufferIds = new int[vertexBuffers.length];
+    this.boundVertexBufferOffsets = new int[vertexBuffers.length];
 
     try {
       // Create vertex array
@@ -167,23 +199,33 @@ public class Mesh implements Closeable {
       GLError.maybeThrowGLException("Failed to generate a vertex array", "glGenVertexArrays");
 
       // Bind vertex array
-      GLES30.glBindVertexArray(vertexArrayId[0]);
-      GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
+      render.getGLState().bindVertexArray(vertexArrayId[0]);
 
       if (indexBuffer != null) {
-        GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, indexBuffer.getBufferId());
+        boundIndexBufferId = indexBuffer.getBufferId();
+        GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, boundIndexBufferId);
       }
 
       for (int i = 0; i < vertexBuffers.length; ++i) {
         // Bind each vertex buffer to vertex array
-        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, vertexBuffers[i].getBufferId());
+        boundVertexBufferIds[i] = vertexBuffers[i].getBufferId();
+        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, boundVertexBufferIds[i]);
         GLError.maybeThrowGLException("Failed to bind vertex buffer", "glBindBuffer");
         if(vertexBuffers[i].getIsInt()) {
           GLES30.glVertexAttribIPointer(
-                  i, vertexBuffers[i].getNumberOfEntriesPerVertex(), GLES30.GL_INT, 0, 0);
+                  i,
+                  vertexBuffers[i].getNumberOfEntriesPerVertex(),
+                  GLES30.GL_INT,
+                  vertexBuffers[i].getByteStride(),
+                  vertexBuffers[i].getAttributeByteOffset());
         } else {
           GLES30.glVertexAttribPointer(
-                  i, vertexBuffers[i].getNumberOfEntriesPerVertex(), GLES30.GL_FLOAT, false, 0, 0);
+                  i,
+                  vertexBuffers[i].getNumberOfEntriesPerVertex(),
+                  GLES30.GL_FLOAT,
+                  false,
+                  vertexBuffers[i].getByteStride(),
+                  vertexBuffers[i].getAttributeByteOffset());
         }
         GLError.maybeThrowGLException(
                 "Failed to associate vertex buffer with vertex array", "glVertexAttribPointer");
@@ -197,18 +239,39 @@ public class Mesh implements Closeable {
     }
   }
 
+  /**
+   * Constructs a {@link Mesh} from the given Collada DAE file, with up to {@link
+   * ColladaParser#DEFAULT_MAX_WEIGHTS} joints affecting each vertex.
+   *
+   * @see #createFromDAEAsset(SampleRender, String, int)
+   */
+  public static Mesh createFromDAEAsset(SampleRender render, String assetFileName) throws IOException {
+    return createFromDAEAsset(render, assetFileName, ColladaParser.DEFAULT_MAX_WEIGHTS);
+  }
+
   /**
    * Constructs a {@link Mesh} from the given Collada DAE file.
    *
    * <p>The {@link Mesh} will be constructed with 5 attributes, indexed in the order of local
    * coordinates (location 0, vec3), texture coordinates (location 1, vec2), vertex normals
-   * (location 2, vec3), joint IDS (location 3, ivec3) and vertex weights (location 4, vec3).
+   * (location 2, vec3), joint IDS (location 3, ivecN) and vertex weights (location 4, vecN), where
+   * N is {@code maxWeights}. If {@code maxWeights} is more than 4, locations 3 and 4 hold the first
+   * 4 joints of each vertex and the rest go into two more attributes, extra joint IDs (location 5)
+   * and extra vertex weights (location 6). The shader must be compiled with the same {@code
+   * MAX_WEIGHTS} define.
+   *
+   * @param maxWeights the number of joints that can affect a vertex, at most {@link
+   *     ColladaParser#MAX_SUPPORTED_WEIGHTS}
    */
-  public static Mesh createFromDAEAsset(SampleRender render, String assetFileName) throws IOException {
-    // remove if not needed
+  public static Mesh createFromDAEAsset(SampleRender render, String assetFileName, int maxWeights)
+      throws IOException {
+    Mesh precompiled = createFromPrecompiledAsset(render, assetFileName, maxWeights);
+    if (precompiled != null) {
+      return precompiled;
+    }
     try (InputStream inputStream = render.getAssets().open(assetFileName)) {
 
-      ColladaParser daeData = new ColladaParser(inputStream);
+      ColladaParser daeData = new ColladaParser(inputStream, maxWeights);
 
 
       // Obtain the data from the DAE, as direct buffers:
@@ -220,22 +283,48 @@ public class Mesh implements Closeable {
       FloatBuffer normals = daeData.getNormals();
       IntBuffer jointIDs = daeData.getJointIDs();
       FloatBuffer vertexWeights = daeData.getVertexWeights();
-      Joint rJoint = daeData.getRootJoint();
+      List<Joint> rJoints = daeData.getRootJoints();
       int jCount = daeData.getJointCount();
 
+      int weightsPerAttribute = Math.min(maxWeights, 4);
 
       // Create GPU buffers
-      VertexBuffer[] vertexBuffers = {
+      VertexBuffer[] vertexBuffers;
+      if (daeData.getExtraJointIDs() == null) {
+        vertexBuffers =
+            new VertexBuffer[] {
               new VertexBuffer(render, 3, localCoordinates),
               new VertexBuffer(render, 2, textureCoordinates),
               new VertexBuffer(render, 3, normals),
-              new VertexBuffer(render, 3, jointIDs, true),
-              new VertexBuffer(render, 3, vertexWeights),
-      };
+              new VertexBuffer(render, weightsPerAttribute, jointIDs, true),
+              new VertexBuffer(render, weightsPerAttribute, vertexWeights),
+            };
+      } else {
+        int extraWeights = maxWeights - weightsPerAttribute;
+        vertexBuffers =
+            new VertexBuffer[] {
+              new VertexBuffer(render, 3, localCoordinates),
+              new VertexBuffer(render, 2, textureCoordinates),
+              new VertexBuffer(render, 3, normals),
+              new VertexBuffer(render, weightsPerAttribute, jointIDs, true),
+              new VertexBuffer(render, weightsPerAttribute, vertexWeights),
+              new VertexBuffer(render, extraWeights, daeData.getExtraJointIDs(), true),
+              new VertexBuffer(render, extraWeights, daeData.getExtraVertexWeights()),
+            };
+      }
 
       IndexBuffer indexBuffer = new IndexBuffer(render, vertexIndices);
 
-      return new Mesh(render, Mesh.PrimitiveMode.TRIANGLES, indexBuffer, vertexBuffers, rJoint, jCount);
+      Mesh mesh =
+          new Mesh(render, Mesh.PrimitiveMode.TRIANGLES, indexBuffer, vertexBuffers, rJoints, jCount);
+      mesh.setSubmeshes(daeData.getSubmeshes());
+      // Clips are kept packed; at the default tolerances nobody can tell them from the originals.
+      List<AnimationClip> clips = new ArrayList<>();
+      for (AnimationClip clip : daeData.getAnimationClips()) {
+        clips.add(AnimationCompressor.compress(clip));
+      }
+      mesh.animationClips = Collections.unmodifiableList(clips);
+      return mesh;
     }
   }
 
@@ -247,6 +336,10 @@ public class Mesh implements Closeable {
    * (location 2, vec3).
    */
   public static Mesh createFromAsset(SampleRender render, String assetFileName) throws IOException {
+    Mesh precompiled = createFromPrecompiledAsset(render, assetFileName, /*maxWeights=*/ 0);
+    if (precompiled != null) {
+      return precompiled;
+    }
     try (InputStream inputStream = render.getAssets().open(assetFileName)) {
       Obj obj = ObjUtils.convertToRenderable(ObjReader.read(inputStream));
 
@@ -269,104 +362,415 @@ public class Mesh implements Closeable {
     }
   }
 
+  /**
+   * Constructs a {@link Mesh} from a precompiled {@link MeshFile}, as written by {@link
+   * MeshFileWriter}.
+   *
+   * <p>The interleaved vertices of the file go into one GPU buffer and their attributes are bound
+   * to attribute locations in the order they were written. If the file holds a skeleton, the mesh
+   * is animated with the clips stored alongside it.
+   *
+   * <p>The asset is memory-mapped and the mapped data is handed to the GPU buffers as-is. For this
+   * to work the asset must be stored uncompressed in the APK (see {@code aaptOptions} in {@code
+   * build.gradle}); compressed assets are read into memory instead.
+   */
+  public static Mesh createFromBinaryAsset(SampleRender render, String assetFileName)
+      throws IOException {
+    return createFromMeshFile(render, MeshFile.read(mapAsset(render.getAssets(), assetFileName)));
+  }
+
+  private static Mesh createFromMeshFile(SampleRender render, MeshFile meshFile) {
+    VertexBuffer[] vertexBuffers = new VertexBuffer[meshFile.getAttributeCount()];
+    GpuBuffer vertices = null;
+    IndexBuffer indexBuffer = null;
+    Mesh mesh;
+    try {
+      vertices =
+          new GpuBuffer(
+              render, GLES30.GL_ARRAY_BUFFER, /*numberOfBytesPerEntry=*/ 1, meshFile.getVertices());
+      for (int i = 0; i < vertexBuffers.length; ++i) {
+        vertexBuffers[i] =
+            new VertexBuffer(
+                vertices,
+                meshFile.getComponentsPerVertex(i),
+                meshFile.isIntAttribute(i),
+                meshFile.getVertexStride(),
+                meshFile.getAttributeOffset(i));
+      }
+      indexBuffer = new IndexBuffer(render, meshFile.getIndices());
+      if (!meshFile.getRootJoints().isEmpty()) {
+        mesh =
+            new Mesh(
+                render,
+                Mesh.PrimitiveMode.TRIANGLES,
+                indexBuffer,
+                vertexBuffers,
+                meshFile.getRootJoints(),
+                meshFile.getJointCount());
+      } else {
+        mesh = new Mesh(render, Mesh.PrimitiveMode.TRIANGLES, indexBuffer, vertexBuffers);
+      }
+    } catch (Throwable t) {
+      // Nothing owns the buffers until the mesh exists. The vertex buffers all share one.
+      if (vertices != null) {
+        vertices.free();
+      }
+      if (indexBuffer != null) {
+        indexBuffer.close();
+      }
+      throw t;
+    }
+    mesh.setSubmeshes(meshFile.getSubmeshes());
+    mesh.animationClips = meshFile.getAnimationClips();
+    return mesh;
+  }
+
+  /**
+   * Loads the precompiled version of an asset if it was shipped with the app.
+   *
+   * @param maxWeights the number of joints that can affect a vertex the caller expects, 0 for a
+   *     mesh that isn't skinned
+   * @return the mesh, or null if there is no precompiled version
+   * @throws IllegalArgumentException if the precompiled version was compiled for a different
+   *     {@code maxWeights}, which the shaders wouldn't match
+   */
+  private static Mesh createFromPrecompiledAsset(
+      SampleRender render, String assetFileName, int maxWeights) throws IOException {
+    String precompiledName = MeshFile.getPrecompiledName(assetFileName);
+    try {
+      render.getAssets().open(precompiledName).close();
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    MeshFile meshFile = MeshFile.read(mapAsset(render.getAssets(), precompiledName));
+    if (meshFile.getMaxWeights() != maxWeights) {
+      throw new IllegalArgumentException(
+          precompiledName
+              + " was compiled for "
+              + meshFile.getMaxWeights()
+              + " weights per vertex, but "
+              + maxWeights
+              + " were requested; recompile it with MeshFileWriter");
+    }
+    return createFromMeshFile(render, meshFile);
+  }
+
+  private static ByteBuffer mapAsset(AssetManager assets, String assetFileName)
+      throws IOException {
+    try (AssetFileDescriptor fd = assets.openFd(assetFileName);
+        FileInputStream stream = fd.createInputStream();
+        FileChannel channel = stream.getChannel()) {
+      // The mapping stays valid after the channel is closed.
+      return channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+    } catch (FileNotFoundException e) {
+      // openFd() fails for compressed assets, read them the slow way.
+      try (InputStream inputStream = assets.open(assetFileName)) {
+        byte[] chunk = new byte[64 * 1024];
+        ByteBuffer data =
+            ByteBuffer.allocateDirect(Math.max(inputStream.available(), chunk.length))
+                .order(ByteOrder.nativeOrder());
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+          if (data.remaining() < read) {
+            ByteBuffer grown =
+                ByteBuffer.allocateDirect(data.capacity() * 2).order(ByteOrder.nativeOrder());
+            data.flip();
+            grown.put(data);
+            data = grown;
+          }
+          data.put(chunk, 0, read);
+        }
+        data.flip();
+        return data.slice();
+      }
+    }
+  }
+
   @Override
   public void close() {
     if (vertexArrayId[0] != 0) {
       GLES30.glDeleteVertexArrays(1, vertexArrayId, 0);
       GLError.maybeLogGLError(
           Log.WARN, TAG, "Failed to free vertex array object", "glDeleteVertexArrays");
+      render.getGLState().onVertexArrayDeleted(vertexArrayId[0]);
+      vertexArrayId[0] = 0;
     }
   }
 
 
   /**
-   * @return The root joint of the joint hierarchy. This joint has no parent,
-   *         and every other joint in the skeleton is a descendant of this
-   *         joint.
+   * @return The joints of the joint hierarchy that have no parent. Every other joint in the
+   *         skeleton is a descendant of one of them. Empty if the mesh isn't skinned.
    */
-  public Joint getRootJoint() {
-    return rootJoint;
+  public List<Joint> getRootJoints() {
+    return rootJoints;
   }
 
   /**
-   * Instructs this entity to carry out a given animation. To do this it
-   * basically sets the chosen animation as the current animation in the
-   * {@link Animator} object.
-   *
-   * @param animation
-   *            - the animation to be carried out.
+   * @return The flattened joint hierarchy, or null if the mesh isn't skinned.
    */
-  public void doAnimation(Animation animation) {
-    animator.doAnimation(animation);
+  public Skeleton getSkeleton() {
+    return skeleton;
   }
 
   /**
-   * Updates the animator for this entity, basically updating the animated
-   * pose of the entity. Must be called every frame.
+   * Returns the animation clips that can be played on the skeleton of the mesh, empty if it has
+   * none. Clips are immutable and shared by everything drawn with this mesh; the playback state of
+   * each instance lives in its own {@link
+   * com.google.ar.core.examples.java.common.animation.Animator}.
    */
-  public void update() {
-    animator.update();
+  public List<AnimationClip> getAnimationClips() {
+    return animationClips;
+  }
+
+  /** Returns the animation clip with the given name, or null if there is none. */
+  public AnimationClip getAnimationClip(String name) {
+    for (AnimationClip clip : animationClips) {
+      if (clip.getName().equals(name)) {
+        return clip;
+      }
+    }
+    return null;
   }
 
   /**
-   * Gets an array of the all important model-space transforms of all the
-   * joints (with the current animation pose applied) in the entity. The
-   * joints are ordered in the array based on their joint index. The position
-   * of each joint's transform in the array is equal to the joint's index.
-   *
-   * @return The array of model-space transforms of the joints in the current
-   *         animation pose.
+   * Sets the index ranges of the mesh that are drawn with different materials. See {@link
+   * SampleRender#draw(Mesh, Shader[], Framebuffer)}.
    */
-  public float[][] getJointTransforms() {
-    float[][] jointMatrices = new float[jointCount][];
-    addJointsToArray(rootJoint, jointMatrices);
-    return jointMatrices;
+  public void setSubmeshes(Submesh[] submeshes) {
+    if (indexBuffer == null && submeshes.length > 0) {
+      throw new IllegalArgumentException("Submeshes require an index buffer");
+    }
+    for (Submesh submesh : submeshes) {
+      if (submesh.getIndexOffset() + submesh.getIndexCount() > indexBuffer.getSize()) {
+        throw new IllegalArgumentException("Submesh exceeds the index buffer");
+      }
+    }
+    this.submeshes = submeshes.clone();
+  }
+
+  /** Returns the number of submeshes, which is 0 if the mesh is drawn as a whole. */
+  public int getSubmeshCount() {
+    return submeshes.length;
+  }
+
+  public Submesh getSubmesh(int index) {
+    return submeshes[index];
   }
 
   /**
-   * This adds the current model-space transform of a joint (and all of its
-   * descendants) into an array of transforms. The joint's transform is added
-   * into the array at the position equal to the joint's index.
+   * Attaches per-instance vertex attributes to the mesh, for drawing it with {@link
+   * SampleRender#drawInstanced}. The attributes of the {@link InstanceBuffer} are read at the
+   * locations of its layout, which must not be those of the mesh's own {@link VertexBuffer}s.
+   * Replaces any instance buffer attached before; {@code null} detaches it.
    *
-   * @param headJoint
-   *            - the current joint being added to the array. This method also
-   *            adds the transforms of all the descendents of this joint too.
-   * @param jointMatrices
-   *            - the array of joint transforms that is being filled.
+   * <p>The {@link InstanceBuffer} is not owned by the mesh and can be refilled at any time.
    */
-  private void addJointsToArray(Joint headJoint, float[][] jointMatrices) {
-    jointMatrices[headJoint.index] = headJoint.getAnimatedTransform();
-    for (Joint childJoint : headJoint.children) {
-      addJointsToArray(childJoint, jointMatrices);
+  public void setInstanceBuffer(InstanceBuffer instanceBuffer) {
+    if (instanceBuffer != null) {
+      InstanceBuffer.Layout layout = instanceBuffer.getLayout();
+      for (int i = 0; i < layout.getAttributeCount(); ++i) {
+        if (layout.getLocation(i) < vertexBuffers.length) {
+          throw new IllegalArgumentException(
+              "Instance attribute location "
+                  + layout.getLocation(i)
+                  + " is used by a vertex buffer of the mesh");
+        }
+      }
+    }
+    lowLevelBind();
+    if (this.instanceBuffer != null) {
+      InstanceBuffer.Layout layout = this.instanceBuffer.getLayout();
+      for (int i = 0; i < layout.getAttributeCount(); ++i) {
+        GLES30.glDisableVertexAttribArray(layout.getLocation(i));
+        GLError.maybeThrowGLException(
+            "Failed to disable instance attribute", "glDisableVertexAttribArray");
+      }
+    }
+    this.instanceBuffer = instanceBuffer;
+    if (instanceBuffer == null) {
+      return;
+    }
+    InstanceBuffer.Layout layout = instanceBuffer.getLayout();
+    int stride = layout.getStride() * GpuBuffer.FLOAT_SIZE;
+    GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, instanceBuffer.getBufferId());
+    GLError.maybeThrowGLException("Failed to bind instance buffer", "glBindBuffer");
+    for (int i = 0; i < layout.getAttributeCount(); ++i) {
+      int location = layout.getLocation(i);
+      GLES30.glVertexAttribPointer(
+          location,
+          layout.getSize(i),
+          GLES30.GL_FLOAT,
+          false,
+          stride,
+          layout.getOffset(i) * GpuBuffer.FLOAT_SIZE);
+      GLError.maybeThrowGLException(
+          "Failed to associate instance buffer with vertex array", "glVertexAttribPointer");
+      // Advance the attribute once per instance instead of once per vertex.
+      GLES30.glVertexAttribDivisor(location, 1);
+      GLError.maybeThrowGLException(
+          "Failed to set instance attribute divisor", "glVertexAttribDivisor");
+      GLES30.glEnableVertexAttribArray(location);
+      GLError.maybeThrowGLException(
+          "Failed to enable instance attribute", "glEnableVertexAttribArray");
     }
   }
 
+  /** Returns the {@link InstanceBuffer} attached to the mesh, or null if there is none. */
+  public InstanceBuffer getInstanceBuffer() {
+    return instanceBuffer;
+  }
+
   /**
    * Draws the mesh. Don't call this directly unless you are doing low level OpenGL code; instead,
    * prefer {@link SampleRender#draw}.
+   *
+   * <p>The vertex array object is bound once and each submesh (if any) is drawn as a range of the
+   * index buffer.
    */
   public void lowLevelDraw() {
+    lowLevelBind();
+    lowLevelDrawBound();
+  }
+
+  /** Draws the whole mesh like {@link #lowLevelDraw}. The vertex array object must be bound. */
+  /* package-private */
+  void lowLevelDrawBound() {
+    if (indexBuffer == null) {
+      GLES30.glDrawArrays(primitiveMode.glesEnum, 0, getNumberOfVertices());
+      GLError.maybeThrowGLException("Failed to draw vertex array object", "glDrawArrays");
+    } else if (submeshes.length == 0) {
+      lowLevelDrawRange(0, indexBuffer.getSize());
+    } else {
+      for (Submesh submesh : submeshes) {
+        lowLevelDrawRange(submesh.getIndexOffset(), submesh.getIndexCount());
+      }
+    }
+  }
+
+  /**
+   * Draws the whole mesh {@code instanceCount} times, with the attributes of the first {@code
+   * instanceCount} instances of its {@link InstanceBuffer}.
+   */
+  /* package-private */
+  void lowLevelDrawInstanced(int instanceCount) {
+    if (instanceBuffer == null) {
+      throw new IllegalStateException("Tried to draw instances of a Mesh without instance buffer");
+    }
+    if (instanceCount > instanceBuffer.getInstanceCount()) {
+      throw new IllegalArgumentException(
+          "Tried to draw "
+              + instanceCount
+              + " instances, but the instance buffer holds "
+              + instanceBuffer.getInstanceCount());
+    }
+    if (instanceCount == 0) {
+      return;
+    }
+    lowLevelBind();
+    if (indexBuffer == null) {
+      GLES30.glDrawArraysInstanced(
+          primitiveMode.glesEnum, 0, getNumberOfVertices(), instanceCount);
+      GLError.maybeThrowGLException(
+          "Failed to draw instances of vertex array object", "glDrawArraysInstanced");
+    } else if (submeshes.length == 0) {
+      drawRangeInstanced(0, indexBuffer.getSize(), instanceCount);
+    } else {
+      for (Submesh submesh : submeshes) {
+        drawRangeInstanced(submesh.getIndexOffset(), submesh.getIndexCount(), instanceCount);
+      }
+    }
+  }
+
+  /** Binds the vertex array object, so that ranges can be drawn with {@link #lowLevelDrawRange}. */
+  /* package-private */
+  void lowLevelBind() {
     if (vertexArrayId[0] == 0) {
       throw new IllegalStateException("Tried to draw a freed Mesh");
     }
 
-    GLES30.glBindVertexArray(vertexArrayId[0]);
-    GLError.maybeThrowGLException("Failed to bind vertex array object", "glBindVertexArray");
-    if (indexBuffer == null) {
-      // Sanity check for debugging
-      int numberOfVertices = vertexBuffers[0].getNumberOfVertices();
-      for (int i = 1; i < vertexBuffers.length; ++i) {
-        if (vertexBuffers[i].getNumberOfVertices() != numberOfVertices) {
-          throw new IllegalStateException("Vertex buffers have mismatching numbers of vertices");
-        }
+    render.getGLState().bindVertexArray(vertexArrayId[0]);
+    updateBufferBindings();
+  }
+
+  /** Draws a range of the index buffer. The vertex array object must be bound. */
+  /* package-private */
+  void lowLevelDrawRange(int indexOffset, int indexCount) {
+    if (indexCount == 0) {
+      return;
+    }
+    GLES30.glDrawElements(
+        primitiveMode.glesEnum,
+        indexCount,
+        GLES30.GL_UNSIGNED_INT,
+        indexBuffer.getByteOffset() + indexOffset * 4);
+    GLError.maybeThrowGLException(
+        "Failed to draw vertex array object with indices", "glDrawElements");
+  }
+
+  private void drawRangeInstanced(int indexOffset, int indexCount, int instanceCount) {
+    if (indexCount == 0) {
+      return;
+    }
+    GLES30.glDrawElementsInstanced(
+        primitiveMode.glesEnum,
+        indexCount,
+        GLES30.GL_UNSIGNED_INT,
+        indexBuffer.getByteOffset() + indexOffset * 4,
+        instanceCount);
+    GLError.maybeThrowGLException(
+        "Failed to draw instances of vertex array object with indices", "glDrawElementsInstanced");
+  }
+
+  /**
+   * Points the bound vertex array object at the current ranges of any vertex and index buffers that
+   * were streamed to another range since it was last bound.
+   */
+  private void updateBufferBindings() {
+    for (int i = 0; i < vertexBuffers.length; ++i) {
+      VertexBuffer vertexBuffer = vertexBuffers[i];
+      int bufferId = vertexBuffer.getBufferId();
+      int offset = vertexBuffer.getByteOffset();
+      if (bufferId == boundVertexBufferIds[i] && offset == boundVertexBufferOffsets[i]) {
+        continue;
+      }
+      GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, bufferId);
+      GLError.maybeThrowGLException("Failed to bind vertex buffer", "glBindBuffer");
+      int stride = vertexBuffer.getByteStride();
+      int attributeOffset = offset + vertexBuffer.getAttributeByteOffset();
+      if (vertexBuffer.getIsInt()) {
+        GLES30.glVertexAttribIPointer(
+            i, vertexBuffer.getNumberOfEntriesPerVertex(), GLES30.GL_INT, stride, attributeOffset);
+      } else {
+        GLES30.glVertexAttribPointer(
+            i,
+            vertexBuffer.getNumberOfEntriesPerVertex(),
+            GLES30.GL_FLOAT,
+            false,
+            stride,
+            attributeOffset);
       }
-      GLES30.glDrawArrays(primitiveMode.glesEnum, 0, numberOfVertices);
-      GLError.maybeThrowGLException("Failed to draw vertex array object", "glDrawArrays");
-    } else {
-      GLES30.glDrawElements(
-          primitiveMode.glesEnum, indexBuffer.getSize(), GLES30.GL_UNSIGNED_INT, 0);
       GLError.maybeThrowGLException(
-          "Failed to draw vertex array object with indices", "glDrawElements");
+          "Failed to associate vertex buffer with vertex array", "glVertexAttribPointer");
+      boundVertexBufferIds[i] = bufferId;
+      boundVertexBufferOffsets[i] = offset;
+    }
+    if (indexBuffer != null && indexBuffer.getBufferId() != boundIndexBufferId) {
+      boundIndexBufferId = indexBuffer.getBufferId();
+      GLES30.glBindBuffer(GLES30.GL_ELEMENT_ARRAY_BUFFER, boundIndexBufferId);
+      GLError.maybeThrowGLException("Failed to bind index buffer", "glBindBuffer");
+    }
+  }
+
+  /** Returns the number of vertices, checking that all vertex buffers agree on it. */
+  private int getNumberOfVertices() {
+    // Sanity check for debugging
+    int numberOfVertices = vertexBuffers[0].getNumberOfVertices();
+    for (int i = 1; i < vertexBuffers.length; ++i) {
+      if (vertexBuffers[i].getNumberOfVertices() != numberOfVertices) {
+        throw new IllegalStateException("Vertex buffers have mismatching numbers of vertices");
+      }
     }
+    return numberOfVertices;
   }
 }
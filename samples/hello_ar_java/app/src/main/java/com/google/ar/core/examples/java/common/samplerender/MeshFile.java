@@ -0,0 +1,355 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A precompiled mesh, as written by {@link MeshFileWriter}.
+ *
+ * <p>The file is a little-endian binary container holding everything needed to construct a {@link
+ * Mesh}: the index buffer, the interleaved vertex attributes, an optional skeleton with its
+ * (packed) animation clips and the bounding box of the vertex positions. The vertices are stored
+ * as one block with the attributes of each vertex next to each other, so that {@link
+ * Mesh#createFromBinaryAsset} can hand slices of a memory-mapped file to a single vertex buffer
+ * and an {@link IndexBuffer} without copying or parsing anything.
+ *
+ * <p>Layout (all values are 32-bit, sections are 4-byte aligned):
+ *
+ * <pre>
+ * header:     magic, version, vertexCount, indexCount, attributeCount, vertexStride, jointCount,
+ *             maxWeights, boundsMin[3], boundsMax[3], submeshCount, clipCount
+ * attributes: attributeCount x (componentsPerVertex, type, byteOffset in the vertex)
+ * vertices:   byteOffset, byteLength
+ * indices:    byteOffset, byteLength
+ * joints:     jointCount x (index, parentIndex, nameByteLength, name (padded), bindLocalTransform[16])
+ * submeshes:  submeshCount x (indexOffset, indexCount, materialByteLength (-1 if none),
+ *             material (padded))
+ * clips:      clipCount x (nameByteLength, name (padded), length, keyCount, keyTimes[keyCount],
+ *             trackCount, trackCount x (hasTrack, if set: translationRange[6],
+ *             packedTranslations[3 * keyCount] (16-bit, padded),
+ *             packedRotations[3 * keyCount] (16-bit, padded)))
+ * data:       index and vertex contents, referenced by the offsets above
+ * </pre>
+ *
+ * <p>{@code maxWeights} is the number of joints that can affect a vertex the mesh was compiled for,
+ * or 0 if it isn't skinned.
+ */
+public class MeshFile {
+  /** The file extension used for precompiled meshes. */
+  public static final String EXTENSION = ".armesh";
+
+  /* package-private */
+  static final int MAGIC = 0x48534d41; // "AMSH" in little-endian order
+  /* package-private */
+  static final int VERSION = 3;
+  /* package-private */
+  static final int HEADER_SIZE = 4 * 16;
+
+  /* package-private */
+  static final int TYPE_FLOAT = 0;
+  /* package-private */
+  static final int TYPE_INT = 1;
+
+  /* package-private */
+  static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+  private final int vertexCount;
+  private final int vertexStride;
+  private final int maxWeights;
+  private final IntBuffer indices;
+  private final ByteBuffer vertices;
+  private final int[] componentsPerVertex;
+  private final int[] attributeOffsets;
+  private final boolean[] isInt;
+  private final List<Joint> rootJoints;
+  private final int jointCount;
+  private final float[] boundsMin = new float[3];
+  private final float[] boundsMax = new float[3];
+  private final Submesh[] submeshes;
+  private final List<AnimationClip> animationClips;
+
+  /**
+   * Reads a precompiled mesh.
+   *
+   * <p>The returned index and vertex buffers are views of {@code data}, which therefore must stay
+   * unmodified for as long as they are used. If {@code data} is direct (for example a memory-mapped
+   * file), so are the views. Skeletons and animation clips are copied.
+   *
+   * @throws IllegalArgumentException if the data is not a mesh file of a supported version
+   */
+  public static MeshFile read(ByteBuffer data) {
+    return new MeshFile(data);
+  }
+
+  /**
+   * Returns the asset name of the precompiled version of a mesh asset, for example {@code
+   * models/pawn.obj.armesh} for {@code models/pawn.obj}.
+   */
+  public static String getPrecompiledName(String assetFileName) {
+    return assetFileName + EXTENSION;
+  }
+
+  private MeshFile(ByteBuffer source) {
+    ByteBuffer data = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    data.position(0);
+    if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not a mesh file");
+    }
+    int version = data.getInt();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported mesh file version " + version);
+    }
+    vertexCount = data.getInt();
+    int indexCount = data.getInt();
+    int attributeCount = data.getInt();
+    vertexStride = data.getInt();
+    jointCount = data.getInt();
+    maxWeights = data.getInt();
+    for (int i = 0; i < 3; ++i) {
+      boundsMin[i] = data.getFloat();
+    }
+    for (int i = 0; i < 3; ++i) {
+      boundsMax[i] = data.getFloat();
+    }
+    int submeshCount = data.getInt();
+    int clipCount = data.getInt();
+
+    componentsPerVertex = new int[attributeCount];
+    attributeOffsets = new int[attributeCount];
+    isInt = new boolean[attributeCount];
+    for (int i = 0; i < attributeCount; ++i) {
+      componentsPerVertex[i] = data.getInt();
+      int type = data.getInt();
+      attributeOffsets[i] = data.getInt();
+      if (type == TYPE_INT) {
+        isInt[i] = true;
+      } else if (type != TYPE_FLOAT) {
+        throw new IllegalArgumentException("Unknown vertex attribute type " + type);
+      }
+      if (attributeOffsets[i] < 0
+          || attributeOffsets[i] % 4 != 0
+          || attributeOffsets[i] + componentsPerVertex[i] * 4 > vertexStride) {
+        throw new IllegalArgumentException("Vertex attribute " + i + " is out of bounds");
+      }
+    }
+
+    int vertexOffset = data.getInt();
+    int vertexLength = data.getInt();
+    if (vertexLength != vertexCount * vertexStride) {
+      throw new IllegalArgumentException("Vertex data has the wrong length");
+    }
+    vertices = slice(source, vertexOffset, vertexLength);
+
+    int indexOffset = data.getInt();
+    int indexLength = data.getInt();
+    if (indexLength != indexCount * 4) {
+      throw new IllegalArgumentException("Index data has the wrong length");
+    }
+    indices = slice(source, indexOffset, indexLength).asIntBuffer();
+
+    rootJoints = readJoints(data, jointCount);
+    submeshes = readSubmeshes(data, submeshCount, indexCount);
+    animationClips = readAnimationClips(data, clipCount);
+  }
+
+  private static Submesh[] readSubmeshes(ByteBuffer data, int submeshCount, int indexCount) {
+    Submesh[] submeshes = new Submesh[submeshCount];
+    for (int i = 0; i < submeshCount; ++i) {
+      int indexOffset = data.getInt();
+      int count = data.getInt();
+      if (indexOffset < 0 || count < 0 || indexOffset + count > indexCount) {
+        throw new IllegalArgumentException("Submesh " + i + " is out of bounds");
+      }
+      int materialLength = data.getInt();
+      String material = materialLength >= 0 ? readName(data, materialLength) : null;
+      submeshes[i] = new Submesh(indexOffset, count, material);
+    }
+    return submeshes;
+  }
+
+  private static List<AnimationClip> readAnimationClips(ByteBuffer data, int clipCount) {
+    List<AnimationClip> clips = new ArrayList<>(clipCount);
+    for (int i = 0; i < clipCount; ++i) {
+      String name = readName(data, data.getInt());
+      float length = data.getFloat();
+      float[] keyTimes = new float[data.getInt()];
+      data.asFloatBuffer().get(keyTimes);
+      data.position(data.position() + keyTimes.length * 4);
+      int trackCount = data.getInt();
+      short[][] translations = new short[trackCount][];
+      float[][] translationRanges = new float[trackCount][];
+      short[][] rotations = new short[trackCount][];
+      for (int joint = 0; joint < trackCount; ++joint) {
+        if (data.getInt() == 0) {
+          continue;
+        }
+        translationRanges[joint] = new float[6];
+        data.asFloatBuffer().get(translationRanges[joint]);
+        data.position(data.position() + 6 * 4);
+        translations[joint] = readShorts(data, keyTimes.length * 3);
+        rotations[joint] = readShorts(data, keyTimes.length * 3);
+      }
+      clips.add(
+          new AnimationClip(name, length, keyTimes, translations, translationRanges, rotations));
+    }
+    return Collections.unmodifiableList(clips);
+  }
+
+  private static short[] readShorts(ByteBuffer data, int count) {
+    short[] values = new short[count];
+    data.asShortBuffer().get(values);
+    data.position(align(data.position() + count * 2));
+    return values;
+  }
+
+  private static String readName(ByteBuffer data, int byteLength) {
+    byte[] name = new byte[byteLength];
+    data.get(name);
+    data.position(align(data.position()));
+    return new String(name, NAME_CHARSET);
+  }
+
+  private static List<Joint> readJoints(ByteBuffer data, int jointCount) {
+    List<Joint> roots = new ArrayList<>();
+    Joint[] joints = new Joint[jointCount];
+    for (int i = 0; i < jointCount; ++i) {
+      int index = data.getInt();
+      int parent = data.getInt();
+      String name = readName(data, data.getInt());
+      float[] bindLocalTransform = new float[16];
+      for (int j = 0; j < 16; ++j) {
+        bindLocalTransform[j] = data.getFloat();
+      }
+      // Joints are written parents first, so the parent always exists already.
+      joints[i] = new Joint(index, name, bindLocalTransform);
+      if (parent < 0) {
+        roots.add(joints[i]);
+      } else {
+        joints[parent].addChild(joints[i]);
+      }
+    }
+    return roots;
+  }
+
+  /**
+   * Returns a view of a range of the source data in native byte order. The file is always
+   * little-endian, so on the (rare) big-endian device the range is converted into a new buffer.
+   */
+  private static ByteBuffer slice(ByteBuffer source, int byteOffset, int byteLength) {
+    if (byteOffset < 0 || byteLength < 0 || byteOffset + byteLength > source.capacity()) {
+      throw new IllegalArgumentException("Mesh file section out of bounds");
+    }
+    ByteBuffer view = source.duplicate();
+    view.limit(byteOffset + byteLength);
+    view.position(byteOffset);
+    ByteBuffer slice = view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    if (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) {
+      return slice;
+    }
+    ByteBuffer converted = ByteBuffer.allocateDirect(byteLength).order(ByteOrder.nativeOrder());
+    while (slice.remaining() >= 4) {
+      converted.putInt(slice.getInt());
+    }
+    converted.rewind();
+    return converted;
+  }
+
+  /* package-private */
+  static int align(int position) {
+    return (position + 3) & ~3;
+  }
+
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  public IntBuffer getIndices() {
+    return indices;
+  }
+
+  /**
+   * Returns the vertices, {@link #getVertexStride} bytes each, holding the vertex attributes at
+   * their {@link #getAttributeOffset}s. The buffer is in native byte order.
+   */
+  public ByteBuffer getVertices() {
+    return vertices.duplicate().order(vertices.order());
+  }
+
+  /** Returns the number of bytes from one vertex to the next. */
+  public int getVertexStride() {
+    return vertexStride;
+  }
+
+  public int getAttributeCount() {
+    return componentsPerVertex.length;
+  }
+
+  public int getComponentsPerVertex(int attribute) {
+    return componentsPerVertex[attribute];
+  }
+
+  /** Returns the offset of an attribute in bytes from the start of each vertex. */
+  public int getAttributeOffset(int attribute) {
+    return attributeOffsets[attribute];
+  }
+
+  public boolean isIntAttribute(int attribute) {
+    return isInt[attribute];
+  }
+
+  /**
+   * Returns the number of joints that can affect a vertex the mesh was compiled for, or 0 if it
+   * isn't skinned.
+   */
+  public int getMaxWeights() {
+    return maxWeights;
+  }
+
+  /** Returns the packed animation clips of the skeleton, empty if there are none. */
+  public List<AnimationClip> getAnimationClips() {
+    return animationClips;
+  }
+
+  /** Returns the joints without a parent, each with its descendants; empty if not skinned. */
+  public List<Joint> getRootJoints() {
+    return rootJoints;
+  }
+
+  public int getJointCount() {
+    return jointCount;
+  }
+
+  /** Returns the index ranges of the mesh, which is empty if it is drawn as a whole. */
+  public Submesh[] getSubmeshes() {
+    return submeshes.clone();
+  }
+
+  public float[] getBoundsMin() {
+    return boundsMin.clone();
+  }
+
+  public float[] getBoundsMax() {
+    return boundsMax.clone();
+  }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
+import com.google.ar.core.examples.java.common.animation.AnimationCompressor;
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes precompiled {@link MeshFile}s.
+ *
+ * <p>This class does not use any Android APIs, so meshes can be precompiled on a desktop JVM:
+ *
+ * <pre>
+ * java -cp ... MeshFileWriter models/pocketCharmander.obj [models/pocketCharmander.obj.armesh]
+ * </pre>
+ *
+ * <p>Put the output next to the source asset and {@link Mesh#createFromAsset} and {@link
+ * Mesh#createFromDAEAsset} will pick it up instead of parsing the text file. The {@code
+ * precompileMeshes} task in {@code build.gradle} does this for every model on each build.
+ */
+public class MeshFileWriter {
+  private IntBuffer indices;
+  private final List<Buffer> streams = new ArrayList<>();
+  private final List<Integer> componentsPerVertex = new ArrayList<>();
+  private List<Joint> rootJoints = new ArrayList<>();
+  private Submesh[] submeshes = new Submesh[0];
+  private int maxWeights = 0;
+  private List<AnimationClip> animationClips = new ArrayList<>();
+
+  /** Sets the index buffer contents. */
+  public MeshFileWriter setIndices(IntBuffer indices) {
+    this.indices = indices;
+    return this;
+  }
+
+  /**
+   * Adds a float vertex stream. Streams are assigned attribute locations in the order they are
+   * added; the first stream must hold the vertex positions.
+   */
+  public MeshFileWriter addStream(int componentsPerVertex, FloatBuffer entries) {
+    this.streams.add(entries);
+    this.componentsPerVertex.add(componentsPerVertex);
+    return this;
+  }
+
+  /** Adds an integer vertex stream, such as joint indices. */
+  public MeshFileWriter addStream(int componentsPerVertex, IntBuffer entries) {
+    this.streams.add(entries);
+    this.componentsPerVertex.add(componentsPerVertex);
+    return this;
+  }
+
+  /** Sets the skeleton of a skinned mesh, as the joints without a parent. */
+  public MeshFileWriter setSkeleton(List<Joint> rootJoints) {
+    this.rootJoints = rootJoints;
+    return this;
+  }
+
+  /** Sets the index ranges of a mesh that is drawn with several materials. */
+  public MeshFileWriter setSubmeshes(Submesh[] submeshes) {
+    this.submeshes = submeshes.clone();
+    return this;
+  }
+
+  /**
+   * Sets the number of joints that can affect a vertex of a skinned mesh, which the mesh must be
+   * loaded with.
+   */
+  public MeshFileWriter setMaxWeights(int maxWeights) {
+    this.maxWeights = maxWeights;
+    return this;
+  }
+
+  /**
+   * Sets the animation clips of the skeleton. Clips are stored packed, so any that aren't are
+   * compressed with the default tolerances of {@link AnimationCompressor}.
+   */
+  public MeshFileWriter setAnimationClips(List<AnimationClip> animationClips) {
+    this.animationClips = new ArrayList<>();
+    for (AnimationClip clip : animationClips) {
+      this.animationClips.add(AnimationCompressor.compress(clip));
+    }
+    return this;
+  }
+
+  /**
+   * Writes the mesh, interleaving the vertex streams in the order they were added. The stream is
+   * not closed.
+   */
+  public void write(OutputStream out) throws IOException {
+    if (streams.isEmpty()) {
+      throw new IllegalStateException("Must add at least one vertex stream");
+    }
+    int vertexCount = streams.get(0).limit() / componentsPerVertex.get(0);
+    for (int i = 0; i < streams.size(); ++i) {
+      if (streams.get(i).limit() != vertexCount * componentsPerVertex.get(i)) {
+        throw new IllegalStateException("Vertex streams have mismatching numbers of vertices");
+      }
+    }
+    int indexCount = indices == null ? 0 : indices.limit();
+
+    List<Joint> joints = new ArrayList<>();
+    List<Integer> parents = new ArrayList<>();
+    for (Joint rootJoint : rootJoints) {
+      flattenJoints(rootJoint, -1, joints, parents);
+    }
+
+    int vertexStride = 0;
+    for (int components : componentsPerVertex) {
+      vertexStride += components * 4;
+    }
+
+    // Work out the size of the header so that data offsets are known up front.
+    int headerSize = MeshFile.HEADER_SIZE + streams.size() * 3 * 4 + 4 * 4;
+    for (Joint joint : joints) {
+      headerSize += 3 * 4 + MeshFile.align(joint.name.getBytes(MeshFile.NAME_CHARSET).length) + 16 * 4;
+    }
+    for (Submesh submesh : submeshes) {
+      headerSize += 3 * 4;
+      if (submesh.getMaterial() != null) {
+        headerSize += MeshFile.align(submesh.getMaterial().getBytes(MeshFile.NAME_CHARSET).length);
+      }
+    }
+    for (AnimationClip clip : animationClips) {
+      headerSize += getSize(clip);
+    }
+    int dataSize = indexCount * 4 + vertexCount * vertexStride;
+
+    ByteBuffer data = ByteBuffer.allocate(headerSize + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+    data.putInt(MeshFile.MAGIC);
+    data.putInt(MeshFile.VERSION);
+    data.putInt(vertexCount);
+    data.putInt(indexCount);
+    data.putInt(streams.size());
+    data.putInt(vertexStride);
+    data.putInt(joints.size());
+    data.putInt(maxWeights);
+    float[] boundsMin = new float[3];
+    float[] boundsMax = new float[3];
+    computeBounds(streams.get(0), componentsPerVertex.get(0), boundsMin, boundsMax);
+    for (float value : boundsMin) {
+      data.putFloat(value);
+    }
+    for (float value : boundsMax) {
+      data.putFloat(value);
+    }
+    data.putInt(submeshes.length);
+    data.putInt(animationClips.size());
+
+    int[] attributeOffsets = new int[streams.size()];
+    int attributeOffset = 0;
+    for (int i = 0; i < streams.size(); ++i) {
+      attributeOffsets[i] = attributeOffset;
+      data.putInt(componentsPerVertex.get(i));
+      data.putInt(streams.get(i) instanceof IntBuffer ? MeshFile.TYPE_INT : MeshFile.TYPE_FLOAT);
+      data.putInt(attributeOffset);
+      attributeOffset += componentsPerVertex.get(i) * 4;
+    }
+    data.putInt(headerSize + indexCount * 4);
+    data.putInt(vertexCount * vertexStride);
+    data.putInt(headerSize);
+    data.putInt(indexCount * 4);
+
+    for (int i = 0; i < joints.size(); ++i) {
+      Joint joint = joints.get(i);
+      data.putInt(joint.index);
+      data.putInt(parents.get(i));
+      putName(data, joint.name);
+      float[] bindLocalTransform = joint.getLocalBindTransform();
+      for (int j = 0; j < 16; ++j) {
+        data.putFloat(bindLocalTransform[j]);
+      }
+    }
+
+    for (Submesh submesh : submeshes) {
+      data.putInt(submesh.getIndexOffset());
+      data.putInt(submesh.getIndexCount());
+      if (submesh.getMaterial() == null) {
+        data.putInt(-1);
+      } else {
+        putName(data, submesh.getMaterial());
+      }
+    }
+
+    for (AnimationClip clip : animationClips) {
+      putClip(data, clip);
+    }
+
+    for (int i = 0; i < indexCount; ++i) {
+      data.putInt(indices.get(i));
+    }
+    int verticesStart = data.position();
+    for (int i = 0; i < streams.size(); ++i) {
+      Buffer stream = streams.get(i);
+      int components = componentsPerVertex.get(i);
+      for (int vertex = 0; vertex < vertexCount; ++vertex) {
+        int position = verticesStart + vertex * vertexStride + attributeOffsets[i];
+        for (int c = 0; c < components; ++c) {
+          int entry = vertex * components + c;
+          if (stream instanceof IntBuffer) {
+            data.putInt(position + c * 4, ((IntBuffer) stream).get(entry));
+          } else {
+            data.putFloat(position + c * 4, ((FloatBuffer) stream).get(entry));
+          }
+        }
+      }
+    }
+    out.write(data.array(), 0, headerSize + dataSize);
+  }
+
+  private static void putName(ByteBuffer data, String name) {
+    byte[] bytes = name.getBytes(MeshFile.NAME_CHARSET);
+    data.putInt(bytes.length);
+    data.put(bytes);
+    data.position(MeshFile.align(data.position()));
+  }
+
+  /** Returns the number of bytes {@link #putClip} writes. */
+  private static int getSize(AnimationClip clip) {
+    int keyCount = clip.getKeyCount();
+    int size = 4 + MeshFile.align(clip.getName().getBytes(MeshFile.NAME_CHARSET).length);
+    size += 2 * 4 + keyCount * 4 + 4;
+    for (int joint = 0; joint < clip.getJointCount(); ++joint) {
+      size += 4;
+      if (clip.hasTrack(joint)) {
+        size += 6 * 4 + 2 * MeshFile.align(keyCount * 3 * 2);
+      }
+    }
+    return size;
+  }
+
+  private static void putClip(ByteBuffer data, AnimationClip clip) {
+    putName(data, clip.getName());
+    data.putFloat(clip.getLength());
+    data.putInt(clip.getKeyCount());
+    for (int key = 0; key < clip.getKeyCount(); ++key) {
+      data.putFloat(clip.getKeyTime(key));
+    }
+    data.putInt(clip.getJointCount());
+    for (int joint = 0; joint < clip.getJointCount(); ++joint) {
+      if (!clip.hasTrack(joint)) {
+        data.putInt(0);
+        continue;
+      }
+      data.putInt(1);
+      for (float value : clip.getTranslationRange(joint)) {
+        data.putFloat(value);
+      }
+      putShorts(data, clip.getPackedTranslations(joint));
+      putShorts(data, clip.getPackedRotations(joint));
+    }
+  }
+
+  private static void putShorts(ByteBuffer data, short[] values) {
+    for (short value : values) {
+      data.putShort(value);
+    }
+    data.position(MeshFile.align(data.position()));
+  }
+
+  /** Adds the joints in depth-first order so that parents always come before their children. */
+  private static void flattenJoints(Joint joint, int parent, List<Joint> joints, List<Integer> parents) {
+    int index = joints.size();
+    joints.add(joint);
+    parents.add(parent);
+    for (Joint child : joint.children) {
+      flattenJoints(child, index, joints, parents);
+    }
+  }
+
+  private static void computeBounds(Buffer positions, int components, float[] min, float[] max) {
+    FloatBuffer floats = (FloatBuffer) positions;
+    int dimensions = Math.min(components, 3);
+    if (floats.limit() == 0) {
+      return;
+    }
+    for (int c = 0; c < dimensions; ++c) {
+      min[c] = Float.POSITIVE_INFINITY;
+      max[c] = Float.NEGATIVE_INFINITY;
+    }
+    for (int i = 0; i < floats.limit(); i += components) {
+      for (int c = 0; c < dimensions; ++c) {
+        float value = floats.get(i + c);
+        min[c] = Math.min(min[c], value);
+        max[c] = Math.max(max[c], value);
+      }
+    }
+  }
+
+  /** Creates a writer holding the same data {@link Mesh#createFromAsset} loads from an OBJ file. */
+  public static MeshFileWriter fromObj(InputStream inputStream) throws IOException {
+    Obj obj = ObjUtils.convertToRenderable(ObjReader.read(inputStream));
+    return new MeshFileWriter()
+        .setIndices(ObjData.getFaceVertexIndices(obj, /*numVerticesPerFace=*/ 3))
+        .addStream(3, ObjData.getVertices(obj))
+        .addStream(2, ObjData.getTexCoords(obj, /*dimensions=*/ 2))
+        .addStream(3, ObjData.getNormals(obj));
+  }
+
+  /**
+   * Creates a writer holding the same data {@link Mesh#createFromDAEAsset(SampleRender, String,
+   * int)} loads from a Collada file with the same {@code maxWeights}.
+   */
+  public static MeshFileWriter fromDae(InputStream inputStream, int maxWeights) throws IOException {
+    ColladaParser daeData = new ColladaParser(inputStream, maxWeights);
+    int weightsPerAttribute = Math.min(maxWeights, 4);
+    MeshFileWriter writer =
+        new MeshFileWriter()
+            .setIndices(daeData.getFaceVertexIndices(/*numVerticesPerFace=*/ 3))
+            .addStream(3, daeData.getVertices())
+            .addStream(2, daeData.getTexCoords(/*dimensions=*/ 2))
+            .addStream(3, daeData.getNormals())
+            .addStream(weightsPerAttribute, daeData.getJointIDs())
+            .addStream(weightsPerAttribute, daeData.getVertexWeights())
+            .setSkeleton(daeData.getRootJoints())
+            .setSubmeshes(daeData.getSubmeshes())
+            .setMaxWeights(maxWeights)
+            .setAnimationClips(daeData.getAnimationClips());
+    if (daeData.getExtraJointIDs() != null) {
+      writer
+          .addStream(maxWeights - weightsPerAttribute, daeData.getExtraJointIDs())
+          .addStream(maxWeights - weightsPerAttribute, daeData.getExtraVertexWeights());
+    }
+    return writer;
+  }
+
+  /**
+   * Precompiles OBJ and DAE files, either one with {@code MeshFileWriter <input> [<output>
+   * [<maxWeights>]]} or several into a directory with {@code MeshFileWriter -d <outputDirectory>
+   * <input>...}, where each output is named after its input (see {@link
+   * MeshFile#getPrecompiledName}). {@code maxWeights} only applies to DAE files and defaults to
+   * {@link ColladaParser#DEFAULT_MAX_WEIGHTS}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length >= 2 && args[0].equals("-d")) {
+      File outputDirectory = new File(args[1]);
+      for (int i = 2; i < args.length; ++i) {
+        String name = MeshFile.getPrecompiledName(new File(args[i]).getName());
+        precompile(
+            args[i], new File(outputDirectory, name).getPath(), ColladaParser.DEFAULT_MAX_WEIGHTS);
+      }
+      return;
+    }
+    if (args.length < 1 || args.length > 3) {
+      System.err.println("Usage: MeshFileWriter <input.obj|input.dae> [<output> [<maxWeights>]]");
+      System.err.println("       MeshFileWriter -d <outputDirectory> <input.obj|input.dae>...");
+      System.exit(1);
+    }
+    String input = args[0];
+    String output = args.length > 1 ? args[1] : MeshFile.getPrecompiledName(input);
+    int maxWeights =
+        args.length > 2 ? Integer.parseInt(args[2]) : ColladaParser.DEFAULT_MAX_WEIGHTS;
+    precompile(input, output, maxWeights);
+  }
+
+  private static void precompile(String input, String output, int maxWeights) throws IOException {
+    MeshFileWriter writer;
+    try (InputStream in = new FileInputStream(input)) {
+      writer = input.toLowerCase().endsWith(".dae") ? fromDae(in, maxWeights) : fromObj(in);
+    }
+    try (OutputStream out = new FileOutputStream(output)) {
+      writer.write(out);
+    }
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import java.util.Arrays;
+
+/**
+ * Records draws instead of issuing them, and issues them all at once in an order that changes as
+ * little state as possible.
+ *
+ * <p>Unlike {@link SampleRender#draw}, which draws in whatever order it is called, a queue gives
+ * each draw a 64-bit sort key and radix sorts the keys when it is flushed. Draws are kept in the
+ * order their framebuffers were first used, so passes still happen in order. Within a framebuffer,
+ * opaque draws come first, grouped by shader, then by mesh, then front to back so that early depth
+ * testing can skip hidden fragments. Blended draws come last and back to front, as blending needs.
+ * Draws with equal keys keep the order they were added in. Textures aren't a separate part of the
+ * key: a shader holds its textures along with its program, so grouping by shader groups by texture
+ * as well.
+ *
+ * <p>Shaders hold their uniform values, so the values that change between draws have to be
+ * recorded with the draw: a model matrix, set as {@value #MODEL_UNIFORM}, and optionally the data
+ * of one uniform block. Everything else the shader uses is read when the queue is flushed.
+ */
+public class RenderQueue {
+  /** The uniform that the model matrix of each draw is set as. */
+  public static final String MODEL_UNIFORM = "u_Model";
+
+  private static final int MATRIX_SIZE = 16;
+
+  private final SampleRender render;
+  private final float maxDepth;
+  private final float[] viewMatrix = new float[MATRIX_SIZE];
+
+  // The framebuffers, shaders and meshes used since the last flush, indexed by the order of their
+  // first use. The index is what goes into the sort key.
+  private final Framebuffer[] framebuffers = new Framebuffer[DrawOrder.MAX_FRAMEBUFFERS];
+  private int framebufferCount = 0;
+  private Shader[] shaders = new Shader[8];
+  private int shaderCount = 0;
+  private Mesh[] meshes = new Mesh[8];
+  private int meshCount = 0;
+
+  // The recorded draws, indexed by the order they were added in.
+  private final DrawOrder drawOrder = new DrawOrder();
+  private int drawCount = 0;
+  private Mesh[] drawMeshes = new Mesh[16];
+  private Shader[] drawShaders = new Shader[16];
+  private Framebuffer[] drawFramebuffers = new Framebuffer[16];
+  private float[] drawModelMatrices = new float[16 * MATRIX_SIZE];
+  private boolean[] drawHasModelMatrix = new boolean[16];
+  private String[] drawBlockNames = new String[16];
+  private int[] drawBlockOffsets = new int[16];
+  private int[] drawBlockCounts = new int[16];
+  private float[] blockData = new float[0];
+  private int blockDataSize = 0;
+
+  // Scratch space for setting uniforms.
+  private final float[] modelMatrix = new float[MATRIX_SIZE];
+  private float[] blockValues = new float[0];
+
+  // State changes of the last flush.
+  private int lastDrawCount;
+  private int framebufferChanges;
+  private int shaderChanges;
+  private int meshChanges;
+
+  /**
+   * Constructs an empty queue.
+   *
+   * @param maxDepth the distance from the camera beyond which draws are no longer sorted by depth,
+   *     usually the far clipping plane
+   */
+  public RenderQueue(SampleRender render, float maxDepth) {
+    if (!(maxDepth > 0)) {
+      throw new IllegalArgumentException("Max depth must be positive, got " + maxDepth);
+    }
+    this.render = render;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Starts recording a pass, dropping any draws that were not flushed.
+   *
+   * @param viewMatrix the view matrix of the camera, which draws are sorted by their distance from
+   */
+  public void begin(float[] viewMatrix) {
+    if (viewMatrix.length != MATRIX_SIZE) {
+      throw new IllegalArgumentException("View matrix length must be 16 (4x4)");
+    }
+    System.arraycopy(viewMatrix, 0, this.viewMatrix, 0, MATRIX_SIZE);
+    clear();
+  }
+
+  /**
+   * Records a draw of a {@link Mesh} with a {@link Shader} to a {@link Framebuffer}.
+   *
+   * @param framebuffer the framebuffer to draw to, or null for the default framebuffer
+   * @param modelMatrix the model matrix to set as {@value #MODEL_UNIFORM}, whose translation is
+   *     also what the draw is sorted by; or null if the shader has no such uniform, in which case
+   *     the draw is sorted as if it was at the camera
+   */
+  public void add(Mesh mesh, Shader shader, Framebuffer framebuffer, float[] modelMatrix) {
+    add(mesh, shader, framebuffer, modelMatrix, /*blockName=*/ null, /*blockValues=*/ null, 0);
+  }
+
+  /**
+   * Like {@link #add(Mesh, Shader, Framebuffer, float[])}, but also sets the contents of a uniform
+   * block of the shader for this draw, like {@link Shader#setUniformBlock}.
+   *
+   * @param blockName the name of the block, or null to set none
+   * @param blockValues the data of the block, which is copied
+   * @param blockCount the number of floats from the start of {@code blockValues} to set
+   */
+  public void add(
+      Mesh mesh,
+      Shader shader,
+      Framebuffer framebuffer,
+      float[] modelMatrix,
+      String blockName,
+      float[] blockValues,
+      int blockCount) {
+    if (modelMatrix != null && modelMatrix.length != MATRIX_SIZE) {
+      throw new IllegalArgumentException("Model matrix length must be 16 (4x4)");
+    }
+    if (drawCount == drawMeshes.length) {
+      growDraws();
+    }
+    int draw = drawCount++;
+    drawMeshes[draw] = mesh;
+    drawShaders[draw] = shader;
+    drawFramebuffers[draw] = framebuffer;
+    drawHasModelMatrix[draw] = modelMatrix != null;
+    if (modelMatrix != null) {
+      System.arraycopy(modelMatrix, 0, drawModelMatrices, draw * MATRIX_SIZE, MATRIX_SIZE);
+    }
+    drawBlockNames[draw] = blockName;
+    drawBlockOffsets[draw] = blockDataSize;
+    drawBlockCounts[draw] = 0;
+    if (blockName != null) {
+      if (blockDataSize + blockCount > blockData.length) {
+        blockData =
+            Arrays.copyOf(blockData, Math.max(blockDataSize + blockCount, blockData.length * 2));
+      }
+      System.arraycopy(blockValues, 0, blockData, blockDataSize, blockCount);
+      drawBlockCounts[draw] = blockCount;
+      blockDataSize += blockCount;
+    }
+    drawOrder.add(
+        indexOfFramebuffer(framebuffer),
+        indexOfShader(shader),
+        indexOfMesh(mesh),
+        shader.isBlended(),
+        getDepth(modelMatrix));
+  }
+
+  /** Issues the recorded draws in sorted order, and empties the queue. */
+  public void flush() {
+    drawOrder.sort();
+    lastDrawCount = drawCount;
+    framebufferChanges = drawOrder.countFramebufferChanges();
+    shaderChanges = drawOrder.countShaderChanges();
+    meshChanges = drawOrder.countMeshChanges();
+    boolean first = true;
+    Framebuffer currentFramebuffer = null;
+    Shader currentShader = null;
+    Mesh currentMesh = null;
+    for (int i = 0; i < drawCount; ++i) {
+      int draw = drawOrder.get(i);
+      Framebuffer framebuffer = drawFramebuffers[draw];
+      Shader shader = drawShaders[draw];
+      Mesh mesh = drawMeshes[draw];
+      setUniforms(draw, shader);
+      if (first || framebuffer != currentFramebuffer) {
+        render.useFramebuffer(framebuffer);
+        currentFramebuffer = framebuffer;
+      }
+      if (shader != currentShader) {
+        shader.lowLevelUse();
+        currentShader = shader;
+      } else {
+        shader.lowLevelUpdateUniforms();
+      }
+      if (mesh != currentMesh) {
+        mesh.lowLevelBind();
+        currentMesh = mesh;
+      }
+      mesh.lowLevelDrawBound();
+      first = false;
+    }
+    clear();
+  }
+
+  /** Returns the number of draws issued by the last {@link #flush}. */
+  public int getDrawCount() {
+    return lastDrawCount;
+  }
+
+  /** Returns how many times the last {@link #flush} bound a framebuffer. */
+  public int getFramebufferChangeCount() {
+    return framebufferChanges;
+  }
+
+  /** Returns how many times the last {@link #flush} switched to another shader. */
+  public int getShaderChangeCount() {
+    return shaderChanges;
+  }
+
+  /** Returns how many times the last {@link #flush} bound another mesh. */
+  public int getMeshChangeCount() {
+    return meshChanges;
+  }
+
+  /** Returns the distance of a draw from the camera, from 0 to 1 at the max depth. */
+  private float getDepth(float[] modelMatrix) {
+    if (modelMatrix == null) {
+      return 0;
+    }
+    // The distance in front of the camera is the negated z of the translation in view space.
+    float viewZ =
+        viewMatrix[2] * modelMatrix[12]
+            + viewMatrix[6] * modelMatrix[13]
+            + viewMatrix[10] * modelMatrix[14]
+            + viewMatrix[14];
+    return -viewZ / maxDepth;
+  }
+
+  private int indexOfFramebuffer(Framebuffer framebuffer) {
+    for (int i = 0; i < framebufferCount; ++i) {
+      if (framebuffers[i] == framebuffer) {
+        return i;
+      }
+    }
+    if (framebufferCount == framebuffers.length) {
+      throw new IllegalStateException(
+          "A render queue can draw to at most " + framebuffers.length + " framebuffers per flush");
+    }
+    framebuffers[framebufferCount] = framebuffer;
+    return framebufferCount++;
+  }
+
+  private int indexOfShader(Shader shader) {
+    for (int i = 0; i < shaderCount; ++i) {
+      if (shaders[i] == shader) {
+        return i;
+      }
+    }
+    if (shaderCount == shaders.length) {
+      shaders = Arrays.copyOf(shaders, shaders.length * 2);
+    }
+    shaders[shaderCount] = shader;
+    return shaderCount++;
+  }
+
+  private int indexOfMesh(Mesh mesh) {
+    for (int i = 0; i < meshCount; ++i) {
+      if (meshes[i] == mesh) {
+        return i;
+      }
+    }
+    if (meshCount == meshes.length) {
+      meshes = Arrays.copyOf(meshes, meshes.length * 2);
+    }
+    meshes[meshCount] = mesh;
+    return meshCount++;
+  }
+
+  private void setUniforms(int draw, Shader shader) {
+    if (drawHasModelMatrix[draw]) {
+      System.arraycopy(drawModelMatrices, draw * MATRIX_SIZE, modelMatrix, 0, MATRIX_SIZE);
+      shader.setMat4(MODEL_UNIFORM, modelMatrix);
+    }
+    String blockName = drawBlockNames[draw];
+    if (blockName != null) {
+      int count = drawBlockCounts[draw];
+      if (blockValues.length < count) {
+        blockValues = new float[count];
+      }
+      System.arraycopy(blockData, drawBlockOffsets[draw], blockValues, 0, count);
+      shader.setUniformBlock(blockName, blockValues, count);
+    }
+  }
+
+  private void growDraws() {
+    int capacity = drawMeshes.length * 2;
+    drawMeshes = Arrays.copyOf(drawMeshes, capacity);
+    drawShaders = Arrays.copyOf(drawShaders, capacity);
+    drawFramebuffers = Arrays.copyOf(drawFramebuffers, capacity);
+    drawModelMatrices = Arrays.copyOf(drawModelMatrices, capacity * MATRIX_SIZE);
+    drawHasModelMatrix = Arrays.copyOf(drawHasModelMatrix, capacity);
+    drawBlockNames = Arrays.copyOf(drawBlockNames, capacity);
+    drawBlockOffsets = Arrays.copyOf(drawBlockOffsets, capacity);
+    drawBlockCounts = Arrays.copyOf(drawBlockCounts, capacity);
+  }
+
+  private void clear() {
+    // Drop the references, so the queue doesn't keep freed resources reachable.
+    Arrays.fill(drawMeshes, 0, drawCount, null);
+    Arrays.fill(drawShaders, 0, drawCount, null);
+    Arrays.fill(drawFramebuffers, 0, drawCount, null);
+    Arrays.fill(drawBlockNames, 0, drawCount, null);
+    Arrays.fill(framebuffers, 0, framebufferCount, null);
+    Arrays.fill(shaders, 0, shaderCount, null);
+    Arrays.fill(meshes, 0, meshCount, null);
+    drawOrder.clear();
+    drawCount = 0;
+    framebufferCount = 0;
+    shaderCount = 0;
+    meshCount = 0;
+    blockDataSize = 0;
+  }
+}
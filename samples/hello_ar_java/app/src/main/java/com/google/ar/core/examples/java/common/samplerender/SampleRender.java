@@ -18,6 +18,7 @@ package com.google.ar.core.examples.java.common.samplerender;
 import android.content.res.AssetManager;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
+import java.util.BitSet;
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
@@ -25,11 +26,21 @@ import javax.microedition.khronos.opengles.GL10;
 public class SampleRender {
   private static final String TAG = SampleRender.class.getSimpleName();
 
+  // Enough per frame for the point cloud and plane polygons of a typical session; the streaming
+  // buffer grows if a frame needs more.
+  private static final int STREAMING_BUFFER_REGION_SIZE = 256 * 1024;
+
   private final AssetManager assetManager;
+  private final GLState glState = new GLState();
+  private StreamingBuffer streamingBuffer;
 
   private int viewportWidth = 1;
   private int viewportHeight = 1;
 
+  // Binding points of the uniform buffers in use, so that each buffer keeps its own.
+  private final BitSet uniformBufferBindingPoints = new BitSet();
+  private int maxUniformBufferBindings = 0;
+
   /**
    * Constructs a SampleRender object and instantiates GLSurfaceView parameters.
    *
@@ -48,6 +59,13 @@ public class SampleRender {
           public void onSurfaceCreated(GL10 gl, EGLConfig config) {
             GLES30.glEnable(GLES30.GL_BLEND);
             GLError.maybeThrowGLException("Failed to enable blending", "glEnable");
+            // A new context has none of the state of an old one.
+            glState.invalidate();
+            uniformBufferBindingPoints.clear();
+            maxUniformBufferBindings = 0;
+            // The old streaming buffer, if any, went away with its context, so it isn't closed.
+            streamingBuffer =
+                new StreamingBuffer(SampleRender.this, STREAMING_BUFFER_REGION_SIZE);
             renderer.onSurfaceCreated(SampleRender.this);
           }
 
@@ -60,8 +78,14 @@ public class SampleRender {
 
           @Override
           public void onDrawFrame(GL10 gl) {
+            glState.beginFrame();
+            streamingBuffer.beginFrame();
             clear(/*framebuffer=*/ null, 0f, 0f, 0f, 1f);
-            renderer.onDrawFrame(SampleRender.this);
+            try {
+              renderer.onDrawFrame(SampleRender.this);
+            } finally {
+              streamingBuffer.endFrame();
+            }
           }
         });
     glSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
@@ -84,6 +108,48 @@ public class SampleRender {
     mesh.lowLevelDraw();
   }
 
+  /**
+   * Draw {@code instanceCount} instances of a {@link Mesh} with the specified {@link Shader} to the
+   * given {@link Framebuffer}, in a single draw call.
+   *
+   * <p>Each instance reads its own attributes from the {@link InstanceBuffer} attached with {@link
+   * Mesh#setInstanceBuffer}, which must hold at least {@code instanceCount} instances. Uniforms are
+   * the same for all of them.
+   *
+   * <p>The {@code framebuffer} argument may be null, in which case the default framebuffer is used.
+   */
+  public void drawInstanced(Mesh mesh, Shader shader, Framebuffer framebuffer, int instanceCount) {
+    useFramebuffer(framebuffer);
+    shader.lowLevelUse();
+    mesh.lowLevelDrawInstanced(instanceCount);
+  }
+
+  /**
+   * Draw each submesh of a {@link Mesh} with its own {@link Shader} to the given {@link
+   * Framebuffer}. The vertex array object of the mesh is only bound once.
+   *
+   * <p>{@code submeshShaders[i]} is used for {@code mesh.getSubmesh(i)}. A mesh without submeshes
+   * is drawn as a whole with the first shader.
+   */
+  public void draw(Mesh mesh, Shader[] submeshShaders, Framebuffer framebuffer) {
+    int submeshCount = mesh.getSubmeshCount();
+    if (submeshCount == 0) {
+      draw(mesh, submeshShaders[0], framebuffer);
+      return;
+    }
+    if (submeshShaders.length < submeshCount) {
+      throw new IllegalArgumentException(
+          "Expected a shader for each of " + submeshCount + " submeshes");
+    }
+    useFramebuffer(framebuffer);
+    mesh.lowLevelBind();
+    for (int i = 0; i < submeshCount; ++i) {
+      Submesh submesh = mesh.getSubmesh(i);
+      submeshShaders[i].lowLevelUse();
+      mesh.lowLevelDrawRange(submesh.getIndexOffset(), submesh.getIndexCount());
+    }
+  }
+
   /**
    * Clear the given framebuffer.
    *
@@ -94,8 +160,7 @@ public class SampleRender {
     useFramebuffer(framebuffer);
     GLES30.glClearColor(r, g, b, a);
     GLError.maybeThrowGLException("Failed to set clear color", "glClearColor");
-    GLES30.glDepthMask(true);
-    GLError.maybeThrowGLException("Failed to set depth write mask", "glDepthMask");
+    glState.setDepthMask(true);
     GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT);
     GLError.maybeThrowGLException("Failed to clear framebuffer", "glClear");
   }
@@ -124,12 +189,57 @@ public class SampleRender {
     public void onDrawFrame(SampleRender render);
   }
 
+  /**
+   * Returns the shadow copy of the OpenGL state that this context draws with. Code that changes
+   * the tracked state without it must call {@link GLState#invalidate}.
+   */
+  public GLState getGLState() {
+    return glState;
+  }
+
+  /**
+   * Returns the {@link StreamingBuffer} for vertex and index data that is replaced every frame,
+   * whose frames are those of {@link Renderer#onDrawFrame}. It is replaced along with the GL
+   * context, so fetch it again in {@link Renderer#onSurfaceCreated}.
+   */
+  public StreamingBuffer getStreamingBuffer() {
+    return streamingBuffer;
+  }
+
   /* package-private */
   AssetManager getAssets() {
     return assetManager;
   }
 
-  private void useFramebuffer(Framebuffer framebuffer) {
+  /**
+   * Reserves a uniform buffer binding point that no other {@link UniformBuffer} uses, until it is
+   * released again.
+   */
+  /* package-private */
+  int allocateUniformBufferBindingPoint() {
+    if (maxUniformBufferBindings == 0) {
+      int[] maxBindings = new int[1];
+      GLES30.glGetIntegerv(GLES30.GL_MAX_UNIFORM_BUFFER_BINDINGS, maxBindings, 0);
+      GLError.maybeThrowGLException(
+          "Failed to query number of uniform buffer bindings", "glGetIntegerv");
+      maxUniformBufferBindings = maxBindings[0];
+    }
+    int bindingPoint = uniformBufferBindingPoints.nextClearBit(0);
+    if (bindingPoint >= maxUniformBufferBindings) {
+      throw new IllegalStateException(
+          "All " + maxUniformBufferBindings + " uniform buffer binding points are in use");
+    }
+    uniformBufferBindingPoints.set(bindingPoint);
+    return bindingPoint;
+  }
+
+  /* package-private */
+  void releaseUniformBufferBindingPoint(int bindingPoint) {
+    uniformBufferBindingPoints.clear(bindingPoint);
+  }
+
+  /* package-private */
+  void useFramebuffer(Framebuffer framebuffer) {
     int framebufferId;
     int viewportWidth;
     int viewportHeight;
@@ -142,9 +252,7 @@ public class SampleRender {
       viewportWidth = framebuffer.getWidth();
       viewportHeight = framebuffer.getHeight();
     }
-    GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferId);
-    GLError.maybeThrowGLException("Failed to bind framebuffer", "glBindFramebuffer");
-    GLES30.glViewport(0, 0, viewportWidth, viewportHeight);
-    GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
+    glState.bindFramebuffer(framebufferId);
+    glState.setViewport(0, 0, viewportWidth, viewportHeight);
   }
 }
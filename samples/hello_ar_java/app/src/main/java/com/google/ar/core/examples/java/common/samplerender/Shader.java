@@ -27,11 +27,17 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 
 /**
  * Represents a GPU shader, the state of its associated uniforms, and some additional draw state.
+ *
+ * <p>The active uniforms of the program are looked up once, when it is linked. Their values are
+ * kept in a {@link UniformValues}, so setting a uniform only copies the values and marks it as
+ * changed, and {@link #lowLevelUse} only uploads the uniforms that have changed since the last
+ * use. Setting a uniform to the value it already has doesn't upload anything.
  */
 public class Shader implements Closeable {
   private static final String TAG = Shader.class.getSimpleName();
@@ -66,12 +72,16 @@ public class Shader implements Closeable {
     }
   }
 
+  private final SampleRender render;
   private int programId = 0;
-  private final Map<Integer, Uniform> uniforms = new HashMap<>();
-  private int maxTextureUnit = 0;
+  private final UniformValues uniformValues = new UniformValues();
 
-  private final Map<String, Integer> uniformLocations = new HashMap<>();
-  private final Map<Integer, String> uniformNames = new HashMap<>();
+  // The uniform buffers attached to the program's uniform blocks, by block name.
+  private final Map<String, UniformBuffer> uniformBuffers = new HashMap<>();
+  // The same buffers, to be iterated without allocating.
+  private final List<UniformBuffer> uniformBufferList = new ArrayList<>();
+  // Buffers created by setUniformBlock, which the shader frees.
+  private final Map<String, UniformBuffer> ownedUniformBuffers = new HashMap<>();
 
   private boolean depthTest = true;
   private boolean depthWrite = true;
@@ -91,6 +101,7 @@ public class Shader implements Closeable {
       String vertexShaderCode,
       String fragmentShaderCode,
       Map<String, String> defines) {
+    this.render = render;
     int vertexShaderId = 0;
     int fragmentShaderId = 0;
     String definesCode = createShaderDefinesCode(defines);
@@ -119,6 +130,7 @@ public class Shader implements Closeable {
             Log.WARN, TAG, "Failed to retrieve shader program info log", "glGetProgramInfoLog");
         throw new GLException(0, "Shader link failed: " + infoLog);
       }
+      reflectUniforms();
     } catch (Throwable t) {
       close();
       throw t;
@@ -159,8 +171,15 @@ public class Shader implements Closeable {
 
   @Override
   public void close() {
+    for (UniformBuffer buffer : ownedUniformBuffers.values()) {
+      buffer.close();
+    }
+    ownedUniformBuffers.clear();
+    uniformBuffers.clear();
+    uniformBufferList.clear();
     if (programId != 0) {
       GLES30.glDeleteProgram(programId);
+      render.getGLState().onProgramDeleted(programId);
       programId = 0;
     }
   }
@@ -221,39 +240,26 @@ public class Shader implements Closeable {
 
   /** Sets a texture uniform. */
   public Shader setTexture(String name, Texture texture) {
-    // Special handling for Textures. If replacing an existing texture uniform, reuse the texture
-    // unit.
-    int location = getUniformLocation(name);
-    Uniform uniform = uniforms.get(location);
-    int textureUnit;
-    if (!(uniform instanceof UniformTexture)) {
-      textureUnit = maxTextureUnit++;
-    } else {
-      UniformTexture uniformTexture = (UniformTexture) uniform;
-      textureUnit = uniformTexture.getTextureUnit();
-    }
-    uniforms.put(location, new UniformTexture(textureUnit, texture));
+    // Every sampler was given its own texture unit when the program was linked.
+    uniformValues.setTexture(name, texture);
     return this;
   }
 
   /** Sets a {@code bool} uniform. */
   public Shader setBool(String name, boolean v0) {
-    int[] values = {v0 ? 1 : 0};
-    uniforms.put(getUniformLocation(name), new UniformInt(values));
+    uniformValues.setInt(name, v0 ? 1 : 0);
     return this;
   }
 
   /** Sets an {@code int} uniform. */
   public Shader setInt(String name, int v0) {
-    int[] values = {v0};
-    uniforms.put(getUniformLocation(name), new UniformInt(values));
+    uniformValues.setInt(name, v0);
     return this;
   }
 
   /** Sets a {@code float} uniform. */
   public Shader setFloat(String name, float v0) {
-    float[] values = {v0};
-    uniforms.put(getUniformLocation(name), new Uniform1f(values));
+    uniformValues.setFloat(name, v0);
     return this;
   }
 
@@ -262,7 +268,7 @@ public class Shader implements Closeable {
     if (values.length != 2) {
       throw new IllegalArgumentException("Value array length must be 2");
     }
-    uniforms.put(getUniformLocation(name), new Uniform2f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_VEC2, values);
     return this;
   }
   /** Sets a {@code vec3} uniform. */
@@ -270,7 +276,7 @@ public class Shader implements Closeable {
     if (values.length != 3) {
       throw new IllegalArgumentException("Value array length must be 3");
     }
-    uniforms.put(getUniformLocation(name), new Uniform3f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_VEC3, values);
     return this;
   }
 
@@ -279,7 +285,7 @@ public class Shader implements Closeable {
     if (values.length != 4) {
       throw new IllegalArgumentException("Value array length must be 4");
     }
-    uniforms.put(getUniformLocation(name), new Uniform4f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_VEC4, values);
     return this;
   }
 
@@ -288,7 +294,7 @@ public class Shader implements Closeable {
     if (values.length != 4) {
       throw new IllegalArgumentException("Value array length must be 4 (2x2)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix2f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_MAT2, values);
     return this;
   }
 
@@ -297,7 +303,7 @@ public class Shader implements Closeable {
     if (values.length != 9) {
       throw new IllegalArgumentException("Value array length must be 9 (3x3)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix3f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_MAT3, values);
     return this;
   }
 
@@ -306,29 +312,25 @@ public class Shader implements Closeable {
     if (values.length != 16) {
       throw new IllegalArgumentException("Value array length must be 16 (4x4)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix4f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_MAT4, values);
     return this;
   }
 
   /** Sets a {@code bool} array uniform. */
   public Shader setBoolArray(String name, boolean[] values) {
-    int[] intValues = new int[values.length];
-    for (int i = 0; i < values.length; ++i) {
-      intValues[i] = values[i] ? 1 : 0;
-    }
-    uniforms.put(getUniformLocation(name), new UniformInt(intValues));
+    uniformValues.setBools(name, values);
     return this;
   }
 
   /** Sets an {@code int} array uniform. */
   public Shader setIntArray(String name, int[] values) {
-    uniforms.put(getUniformLocation(name), new UniformInt(values.clone()));
+    uniformValues.setInts(name, values);
     return this;
   }
 
   /** Sets a {@code float} array uniform. */
   public Shader setFloatArray(String name, float[] values) {
-    uniforms.put(getUniformLocation(name), new Uniform1f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT, values);
     return this;
   }
 
@@ -337,7 +339,7 @@ public class Shader implements Closeable {
     if (values.length % 2 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 2");
     }
-    uniforms.put(getUniformLocation(name), new Uniform2f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_VEC2, values);
     return this;
   }
   /** Sets a {@code vec3} array uniform. */
@@ -345,7 +347,7 @@ public class Shader implements Closeable {
     if (values.length % 3 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 3");
     }
-    uniforms.put(getUniformLocation(name), new Uniform3f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_VEC3, values);
     return this;
   }
 
@@ -354,7 +356,7 @@ public class Shader implements Closeable {
     if (values.length % 4 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 4");
     }
-    uniforms.put(getUniformLocation(name), new Uniform4f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_VEC4, values);
     return this;
   }
 
@@ -363,7 +365,7 @@ public class Shader implements Closeable {
     if (values.length % 4 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 4 (2x2)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix2f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_MAT2, values);
     return this;
   }
 
@@ -372,7 +374,7 @@ public class Shader implements Closeable {
     if (values.length % 9 != 0) {
       throw new IllegalArgumentException("Values array length must be divisible by 9 (3x3)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix3f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_MAT3, values);
     return this;
   }
 
@@ -381,7 +383,74 @@ public class Shader implements Closeable {
     if (values.length % 16 != 0) {
       throw new IllegalArgumentException("Value array length must be divisible by 16 (4x4)");
     }
-    uniforms.put(getUniformLocation(name), new UniformMatrix4f(values.clone()));
+    uniformValues.setFloats(name, GLES30.GL_FLOAT_MAT4, values);
+    return this;
+  }
+
+  /**
+   * Attaches a {@link UniformBuffer} to a uniform block, such as {@code layout(std140) uniform Name
+   * { ... };}, so that the shader reads the block from it. Any number of shaders can share one
+   * buffer; its data is uploaded by the first of them to be used after it changed.
+   *
+   * @param name the name of the block, not of an instance of it
+   */
+  public Shader setUniformBuffer(String name, UniformBuffer buffer) {
+    int blockIndex = getUniformBlockIndex(name);
+    int blockSize = getUniformBlockSize(blockIndex);
+    if (buffer.getSize() < blockSize) {
+      throw new IllegalArgumentException(
+          "Uniform buffer of "
+              + buffer.getSize()
+              + " bytes is smaller than uniform block "
+              + name
+              + " of "
+              + blockSize
+              + " bytes");
+    }
+    GLES30.glUniformBlockBinding(programId, blockIndex, buffer.getBindingPoint());
+    GLError.maybeThrowGLException("Failed to set uniform block binding", "glUniformBlockBinding");
+    UniformBuffer owned = ownedUniformBuffers.get(name);
+    if (owned != null && owned != buffer) {
+      ownedUniformBuffers.remove(name);
+      owned.close();
+    }
+    uniformBuffers.put(name, buffer);
+    uniformBufferList.clear();
+    for (UniformBuffer attached : uniformBuffers.values()) {
+      if (!uniformBufferList.contains(attached)) {
+        uniformBufferList.add(attached);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Sets the contents of a uniform block, such as {@code layout(std140) uniform Name { ... };}.
+   *
+   * <p>The shader creates a {@link UniformBuffer} of its own for the block, sized to the block, and
+   * uploads the data to it the next time the shader is used. Unlike other uniforms the data stays
+   * set until it is replaced, so drawing several objects with different data means setting it
+   * before each draw. Data that many shaders share belongs in a buffer attached with {@link
+   * #setUniformBuffer} instead.
+   *
+   * @param name the name of the block, not of an instance of it
+   * @param values the data in the block's std140 layout, which only the application knows
+   * @param count the number of floats from the start of {@code values} to upload, no more than the
+   *     size of the block
+   */
+  public Shader setUniformBlock(String name, float[] values, int count) {
+    UniformBuffer buffer = ownedUniformBuffers.get(name);
+    if (buffer == null) {
+      buffer = new UniformBuffer(render, getUniformBlockSize(getUniformBlockIndex(name)));
+      try {
+        setUniformBuffer(name, buffer);
+      } catch (Throwable t) {
+        buffer.close();
+        throw t;
+      }
+      ownedUniformBuffers.put(name, buffer);
+    }
+    buffer.setFloats(0, values, count);
     return this;
   }
 
@@ -394,201 +463,172 @@ public class Shader implements Closeable {
     if (programId == 0) {
       throw new IllegalStateException("Attempted to use freed shader");
     }
-    GLES30.glUseProgram(programId);
-    GLError.maybeThrowGLException("Failed to use shader program", "glUseProgram");
-    GLES30.glBlendFuncSeparate(
+    // The state tracker skips whatever the previous draw already set.
+    GLState state = render.getGLState();
+    state.useProgram(programId);
+    state.setBlendFunc(
         sourceRgbBlend.glesEnum,
         destRgbBlend.glesEnum,
         sourceAlphaBlend.glesEnum,
         destAlphaBlend.glesEnum);
-    GLError.maybeThrowGLException("Failed to set blend mode", "glBlendFuncSeparate");
-    GLES30.glDepthMask(depthWrite);
-    GLError.maybeThrowGLException("Failed to set depth write mask", "glDepthMask");
-    if (depthTest) {
-      GLES30.glEnable(GLES30.GL_DEPTH_TEST);
-      GLError.maybeThrowGLException("Failed to enable depth test", "glEnable");
-    } else {
-      GLES30.glDisable(GLES30.GL_DEPTH_TEST);
-      GLError.maybeThrowGLException("Failed to disable depth test", "glDisable");
-    }
-    try {
-      // Remove all non-texture uniforms from the map after setting them, since they're stored as
-      // part of the program.
-      ArrayList<Integer> obsoleteEntries = new ArrayList<>(uniforms.size());
-      for (Map.Entry<Integer, Uniform> entry : uniforms.entrySet()) {
-        try {
-          entry.getValue().use(entry.getKey());
-          if (!(entry.getValue() instanceof UniformTexture)) {
-            obsoleteEntries.add(entry.getKey());
-          }
-        } catch (GLException e) {
-          String name = uniformNames.get(entry.getKey());
-          throw new IllegalArgumentException("Error setting uniform `" + name + "'", e);
-        }
+    state.setDepthMask(depthWrite);
+    state.setDepthTest(depthTest);
+    lowLevelUpdateUniforms();
+    // Texture bindings are not stored in the program, and other shaders may have replaced them.
+    for (int i = 0; i < uniformValues.getSamplerCount(); ++i) {
+      UniformValues.Uniform sampler = uniformValues.getSampler(i);
+      if (sampler.texture != null) {
+        bindTexture(state, sampler);
       }
-      uniforms.keySet().removeAll(obsoleteEntries);
-    } finally {
-      GLES30.glActiveTexture(GLES30.GL_TEXTURE0);
-      GLError.maybeLogGLError(Log.WARN, TAG, "Failed to set active texture", "glActiveTexture");
     }
   }
 
-  private static interface Uniform {
-    public void use(int location);
-  }
-
-  private static class UniformTexture implements Uniform {
-    private final int textureUnit;
-    private final Texture texture;
-
-    public UniformTexture(int textureUnit, Texture texture) {
-      this.textureUnit = textureUnit;
-      this.texture = texture;
-    }
-
-    public int getTextureUnit() {
-      return textureUnit;
+  /**
+   * Uploads the uniforms that changed since the shader was last used, without touching any other
+   * state. This is enough to draw again after the shader has been used if nothing else was used
+   * in between, as in {@link RenderQueue#flush}.
+   */
+  /* package-private */
+  void lowLevelUpdateUniforms() {
+    if (programId == 0) {
+      throw new IllegalStateException("Attempted to use freed shader");
     }
-
-    @Override
-    public void use(int location) {
-      if (texture.getTextureId() == 0) {
-        throw new IllegalStateException("Tried to draw with freed texture");
+    // Uniform values are stored as part of the program, so only changed ones need uploading.
+    for (int i = 0; i < uniformValues.getDirtyCount(); ++i) {
+      UniformValues.Uniform uniform = uniformValues.getDirty(i);
+      try {
+        uploadUniform(uniform);
+      } catch (GLException e) {
+        throw new IllegalArgumentException("Error setting uniform `" + uniform.name + "'", e);
       }
-      GLES30.glActiveTexture(GLES30.GL_TEXTURE0 + textureUnit);
-      GLError.maybeThrowGLException("Failed to set active texture", "glActiveTexture");
-      GLES30.glBindTexture(texture.getTarget().glesEnum, texture.getTextureId());
-      GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
-      GLES30.glUniform1i(location, textureUnit);
-      GLError.maybeThrowGLException("Failed to set shader texture uniform", "glUniform1i");
     }
-  }
-
-  private static class UniformInt implements Uniform {
-    private final int[] values;
-
-    public UniformInt(int[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniform1iv(location, values.length, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 1i", "glUniform1iv");
-    }
-  }
-
-  private static class Uniform1f implements Uniform {
-    private final float[] values;
-
-    public Uniform1f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniform1fv(location, values.length, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 1f", "glUniform1fv");
-    }
-  }
-
-  private static class Uniform2f implements Uniform {
-    private final float[] values;
-
-    public Uniform2f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniform2fv(location, values.length / 2, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 2f", "glUniform2fv");
-    }
-  }
-
-  private static class Uniform3f implements Uniform {
-    private final float[] values;
-
-    public Uniform3f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniform3fv(location, values.length / 3, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 3f", "glUniform3fv");
-    }
-  }
-
-  private static class Uniform4f implements Uniform {
-    private final float[] values;
-
-    public Uniform4f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniform4fv(location, values.length / 4, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform 4f", "glUniform4fv");
-    }
-  }
-
-  private static class UniformMatrix2f implements Uniform {
-    private final float[] values;
-
-    public UniformMatrix2f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniformMatrix2fv(location, values.length / 4, /*transpose=*/ false, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform matrix 2f", "glUniformMatrix2fv");
-    }
-  }
-
-  private static class UniformMatrix3f implements Uniform {
-    private final float[] values;
-
-    public UniformMatrix3f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniformMatrix3fv(location, values.length / 9, /*transpose=*/ false, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform matrix 3f", "glUniformMatrix3fv");
-    }
-  }
-
-  private static class UniformMatrix4f implements Uniform {
-    private final float[] values;
-
-    public UniformMatrix4f(float[] values) {
-      this.values = values;
-    }
-
-    @Override
-    public void use(int location) {
-      GLES30.glUniformMatrix4fv(location, values.length / 16, /*transpose=*/ false, values, 0);
-      GLError.maybeThrowGLException("Failed to set shader uniform matrix 4f", "glUniformMatrix4fv");
-    }
-  }
-
-  private int getUniformLocation(String name) {
-    Integer locationObject = uniformLocations.get(name);
-    if (locationObject != null) {
-      return locationObject;
-    }
-    int location = GLES30.glGetUniformLocation(programId, name);
-    GLError.maybeThrowGLException("Failed to find uniform", "glGetUniformLocation");
-    if (location == -1) {
-      throw new IllegalArgumentException("Shader uniform does not exist: " + name);
-    }
-    uniformLocations.put(name, Integer.valueOf(location));
-    uniformNames.put(Integer.valueOf(location), name);
-    return location;
+    uniformValues.clearDirty();
+    // Uniform buffers keep their binding points, so only changed data needs uploading.
+    for (int i = 0; i < uniformBufferList.size(); ++i) {
+      uniformBufferList.get(i).upload();
+    }
+  }
+
+  /** Returns whether the blend functions make draws with the shader depend on what is beneath. */
+  /* package-private */
+  boolean isBlended() {
+    return sourceRgbBlend != BlendFactor.ONE
+        || destRgbBlend != BlendFactor.ZERO
+        || sourceAlphaBlend != BlendFactor.ONE
+        || destAlphaBlend != BlendFactor.ZERO;
+  }
+
+  private int getUniformBlockIndex(String name) {
+    int blockIndex = GLES30.glGetUniformBlockIndex(programId, name);
+    GLError.maybeThrowGLException("Failed to find uniform block", "glGetUniformBlockIndex");
+    if (blockIndex == GLES30.GL_INVALID_INDEX) {
+      throw new IllegalArgumentException("Shader uniform block does not exist: " + name);
+    }
+    return blockIndex;
+  }
+
+  private int getUniformBlockSize(int blockIndex) {
+    final int[] blockSize = new int[1];
+    GLES30.glGetActiveUniformBlockiv(
+        programId, blockIndex, GLES30.GL_UNIFORM_BLOCK_DATA_SIZE, blockSize, 0);
+    GLError.maybeThrowGLException("Failed to query uniform block size", "glGetActiveUniformBlockiv");
+    return blockSize[0];
+  }
+
+  private void reflectUniforms() {
+    final int[] uniformCount = new int[1];
+    GLES30.glGetProgramiv(programId, GLES30.GL_ACTIVE_UNIFORMS, uniformCount, 0);
+    GLError.maybeThrowGLException("Failed to query active uniforms", "glGetProgramiv");
+    final int[] size = new int[1];
+    final int[] type = new int[1];
+    for (int i = 0; i < uniformCount[0]; ++i) {
+      String name = GLES30.glGetActiveUniform(programId, i, size, 0, type, 0);
+      GLError.maybeThrowGLException("Failed to query active uniform", "glGetActiveUniform");
+      int location = GLES30.glGetUniformLocation(programId, name);
+      GLError.maybeThrowGLException("Failed to find uniform", "glGetUniformLocation");
+      if (location == -1) {
+        // Members of uniform blocks have no location; they are set through uniform buffers.
+        continue;
+      }
+      // Arrays are reported by the name of their first element.
+      if (name.endsWith("[0]")) {
+        name = name.substring(0, name.length() - 3);
+      }
+      uniformValues.add(name, location, type[0], size[0]);
+    }
+    uniformValues.allocate();
+  }
+
+  private void uploadUniform(UniformValues.Uniform uniform) {
+    float[] floatValues = uniformValues.getFloatValues();
+    int[] intValues = uniformValues.getIntValues();
+    int location = uniform.location;
+    int count = uniform.count;
+    int offset = uniform.offset;
+    switch (uniform.type) {
+      case GLES30.GL_FLOAT:
+        GLES30.glUniform1fv(location, count, floatValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 1f", "glUniform1fv");
+        break;
+      case GLES30.GL_FLOAT_VEC2:
+        GLES30.glUniform2fv(location, count, floatValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 2f", "glUniform2fv");
+        break;
+      case GLES30.GL_FLOAT_VEC3:
+        GLES30.glUniform3fv(location, count, floatValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 3f", "glUniform3fv");
+        break;
+      case GLES30.GL_FLOAT_VEC4:
+        GLES30.glUniform4fv(location, count, floatValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 4f", "glUniform4fv");
+        break;
+      case GLES30.GL_FLOAT_MAT2:
+        GLES30.glUniformMatrix2fv(location, count, /*transpose=*/ false, floatValues, offset);
+        GLError.maybeThrowGLException(
+            "Failed to set shader uniform matrix 2f", "glUniformMatrix2fv");
+        break;
+      case GLES30.GL_FLOAT_MAT3:
+        GLES30.glUniformMatrix3fv(location, count, /*transpose=*/ false, floatValues, offset);
+        GLError.maybeThrowGLException(
+            "Failed to set shader uniform matrix 3f", "glUniformMatrix3fv");
+        break;
+      case GLES30.GL_FLOAT_MAT4:
+        GLES30.glUniformMatrix4fv(location, count, /*transpose=*/ false, floatValues, offset);
+        GLError.maybeThrowGLException(
+            "Failed to set shader uniform matrix 4f", "glUniformMatrix4fv");
+        break;
+      case GLES30.GL_INT_VEC2:
+      case GLES30.GL_BOOL_VEC2:
+        GLES30.glUniform2iv(location, count, intValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 2i", "glUniform2iv");
+        break;
+      case GLES30.GL_INT_VEC3:
+      case GLES30.GL_BOOL_VEC3:
+        GLES30.glUniform3iv(location, count, intValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 3i", "glUniform3iv");
+        break;
+      case GLES30.GL_INT_VEC4:
+      case GLES30.GL_BOOL_VEC4:
+        GLES30.glUniform4iv(location, count, intValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 4i", "glUniform4iv");
+        break;
+      default:
+        // int, bool and samplers.
+        GLES30.glUniform1iv(location, count, intValues, offset);
+        GLError.maybeThrowGLException("Failed to set shader uniform 1i", "glUniform1iv");
+        break;
+    }
+  }
+
+  private void bindTexture(GLState state, UniformValues.Uniform sampler) {
+    Texture texture = sampler.texture;
+    if (texture.getTextureId() == 0) {
+      throw new IllegalStateException("Tried to draw with freed texture");
+    }
+    state.bindTexture(
+        uniformValues.getTextureUnit(sampler),
+        texture.getTarget().glesEnum,
+        texture.getTextureId());
   }
 
   private static int createShader(int type, String code) {
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import java.util.Arrays;
+
+/**
+ * Hands out ranges of a ring of equally sized regions, one region per frame, and keeps track of
+ * the fences that say when the GPU is done with a region so it can be written again.
+ *
+ * <p>This is the bookkeeping behind {@link StreamingBuffer}, kept free of OpenGL calls: the fences
+ * are created and waited for through {@link Fences}, so the allocator can be driven without a GPU.
+ *
+ * <p>Each frame starts with {@link #beginFrame}, which moves on to the next region, first waiting
+ * for the fence of the frame that last used it if the GPU hasn't passed it yet. {@link #allocate}
+ * then hands out consecutive ranges of that region until it is full, and {@link #endFrame} puts a
+ * fence after the frame's commands. With three regions, the CPU can fill one while the GPU is
+ * still reading the two before.
+ */
+public class StreamingAllocator {
+  /** The fences guarding the regions, as created by {@code glFenceSync}. */
+  public interface Fences {
+    /** Inserts a fence after all commands issued so far, and returns its non-zero handle. */
+    long insert();
+
+    /** Returns whether the GPU has passed a fence, without waiting for it. */
+    boolean isSignaled(long fence);
+
+    /** Blocks until the GPU has passed a fence. */
+    void waitFor(long fence);
+
+    void delete(long fence);
+  }
+
+  private final Fences fences;
+  private final int regionCount;
+  private int regionSize;
+  // The fence after the last frame that used each region, or 0 if there is none.
+  private final long[] regionFences;
+
+  private int region = -1;
+  private boolean inFrame = false;
+  private long frame = 0;
+  // Bytes handed out of the current region, and bytes asked for including what didn't fit.
+  private int usedBytes = 0;
+  private int requestedBytes = 0;
+  private int lastFrameRequestedBytes = 0;
+
+  private int stallCount = 0;
+  private int overflowCount = 0;
+
+  /**
+   * @param regionCount the number of frames whose data can be in use at once, usually 3
+   * @param regionSize the number of bytes each frame can allocate
+   */
+  public StreamingAllocator(int regionCount, int regionSize, Fences fences) {
+    if (regionCount < 1) {
+      throw new IllegalArgumentException("Region count must be positive, got " + regionCount);
+    }
+    if (regionSize <= 0) {
+      throw new IllegalArgumentException("Region size must be positive, got " + regionSize);
+    }
+    this.regionCount = regionCount;
+    this.regionSize = regionSize;
+    this.fences = fences;
+    this.regionFences = new long[regionCount];
+  }
+
+  /**
+   * Starts a frame in the next region, waiting for the GPU to finish the frame that used it last if
+   * it hasn't yet.
+   */
+  public void beginFrame() {
+    if (inFrame) {
+      throw new IllegalStateException("Frame already begun");
+    }
+    region = (region + 1) % regionCount;
+    long fence = regionFences[region];
+    if (fence != 0) {
+      if (!fences.isSignaled(fence)) {
+        ++stallCount;
+        fences.waitFor(fence);
+      }
+      fences.delete(fence);
+      regionFences[region] = 0;
+    }
+    usedBytes = 0;
+    requestedBytes = 0;
+    ++frame;
+    inFrame = true;
+  }
+
+  /**
+   * Allocates a range of the current frame's region.
+   *
+   * @param alignment the alignment of the range in bytes, a power of two
+   * @return the byte offset of the range from the start of the first region, or -1 if the region
+   *     has no room left
+   */
+  public int allocate(int size, int alignment) {
+    if (!inFrame) {
+      throw new IllegalStateException("Allocation outside of a frame");
+    }
+    if (size < 0 || alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+      throw new IllegalArgumentException(
+          "Invalid allocation of " + size + " bytes aligned to " + alignment);
+    }
+    int start = (usedBytes + alignment - 1) & -alignment;
+    // Where the range would end if every allocation of the frame had fit.
+    requestedBytes = ((requestedBytes + alignment - 1) & -alignment) + size;
+    if (start + size > regionSize) {
+      ++overflowCount;
+      return -1;
+    }
+    usedBytes = start + size;
+    return region * regionSize + start;
+  }
+
+  /** Ends the frame, guarding its region with a fence after the commands issued so far. */
+  public void endFrame() {
+    if (!inFrame) {
+      throw new IllegalStateException("Frame not begun");
+    }
+    regionFences[region] = fences.insert();
+    lastFrameRequestedBytes = requestedBytes;
+    inFrame = false;
+  }
+
+  /**
+   * Changes the size of the regions, outside of a frame. All fences are dropped, so the storage of
+   * the old regions must no longer be written, like after it was replaced with {@code
+   * glBufferData}.
+   */
+  public void resize(int regionSize) {
+    if (inFrame) {
+      throw new IllegalStateException("Can't resize during a frame");
+    }
+    if (regionSize <= 0) {
+      throw new IllegalArgumentException("Region size must be positive, got " + regionSize);
+    }
+    deleteFences();
+    this.regionSize = regionSize;
+  }
+
+  /** Deletes all fences. Call when the allocator is no longer used. */
+  public void deleteFences() {
+    for (int i = 0; i < regionCount; ++i) {
+      if (regionFences[i] != 0) {
+        fences.delete(regionFences[i]);
+      }
+    }
+    Arrays.fill(regionFences, 0);
+  }
+
+  /** Returns the number of the current frame, which {@link #beginFrame} increases. */
+  public long getFrame() {
+    return frame;
+  }
+
+  public boolean isInFrame() {
+    return inFrame;
+  }
+
+  public int getRegionCount() {
+    return regionCount;
+  }
+
+  public int getRegionSize() {
+    return regionSize;
+  }
+
+  /** Returns the size of all regions together. */
+  public int getTotalSize() {
+    return regionCount * regionSize;
+  }
+
+  /** Returns the bytes allocated in the current frame so far, including alignment. */
+  public int getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Returns the bytes the last ended frame asked for, including allocations that didn't fit. A
+   * region at least this big would have held them all.
+   */
+  public int getLastFrameRequestedBytes() {
+    return lastFrameRequestedBytes;
+  }
+
+  /** Returns how many times {@link #beginFrame} had to wait for the GPU. */
+  public int getStallCount() {
+    return stallCount;
+  }
+
+  /** Returns how many allocations didn't fit into their region. */
+  public int getOverflowCount() {
+    return overflowCount;
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import android.opengl.GLES30;
+import android.util.Log;
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A GPU buffer for data that is replaced every frame, such as the point cloud and the plane
+ * outlines.
+ *
+ * <p>Setting a regular {@link VertexBuffer} or {@link IndexBuffer} that the GPU may still be
+ * reading can make the driver wait for the GPU. A streaming buffer instead writes each frame's data
+ * into a region of its own, three frames apart, through {@code glMapBufferRange} with {@code
+ * GL_MAP_UNSYNCHRONIZED_BIT}, and only waits in the rare case that the GPU is still reading a region
+ * three frames later. See {@link StreamingAllocator} for the bookkeeping.
+ *
+ * <p>Vertex and index buffers constructed with a streaming buffer take a range of it each time they
+ * are set, which is valid until the end of the frame: they must be set in every frame they are
+ * drawn in. {@link SampleRender} has one, see {@link SampleRender#getStreamingBuffer}, whose frames
+ * are those of the render loop. If a frame needs more room than a region has, the data that doesn't
+ * fit is set the regular way, and the regions are made bigger before the next frame.
+ */
+public class StreamingBuffer implements Closeable {
+  private static final String TAG = StreamingBuffer.class.getSimpleName();
+
+  private static final int REGION_COUNT = 3;
+  // Enough for vertex attributes and indices of all types.
+  private static final int ALIGNMENT = 4;
+  // Mapping through this target doesn't disturb the index buffer binding of the bound vertex array.
+  private static final int TARGET = GLES30.GL_COPY_WRITE_BUFFER;
+  private static final int MAP_FLAGS =
+      GLES30.GL_MAP_WRITE_BIT
+          | GLES30.GL_MAP_INVALIDATE_RANGE_BIT
+          | GLES30.GL_MAP_UNSYNCHRONIZED_BIT;
+  private static final long WAIT_TIMEOUT_NANOSECONDS = 1000000000L;
+
+  private final int[] bufferId = {0};
+  private final StreamingAllocator allocator;
+
+  /**
+   * Constructs a {@link StreamingBuffer}.
+   *
+   * @param regionSize the number of bytes that can be streamed per frame at first
+   */
+  public StreamingBuffer(SampleRender render, int regionSize) {
+    allocator = new StreamingAllocator(REGION_COUNT, regionSize, new GLFences());
+    try {
+      // Clear VAO to prevent unintended state change.
+      render.getGLState().bindVertexArray(0);
+
+      GLES30.glGenBuffers(1, bufferId, 0);
+      GLError.maybeThrowGLException("Failed to generate buffers", "glGenBuffers");
+      allocateStorage();
+    } catch (Throwable t) {
+      close();
+      throw t;
+    }
+  }
+
+  /**
+   * Starts a frame, moving on to the next region. If the last frame didn't fit into its region, the
+   * regions are made bigger first.
+   */
+  public void beginFrame() {
+    int requestedBytes = allocator.getLastFrameRequestedBytes();
+    if (requestedBytes > allocator.getRegionSize()) {
+      int regionSize = allocator.getRegionSize();
+      while (regionSize < requestedBytes) {
+        regionSize *= 2;
+      }
+      allocator.resize(regionSize);
+      // Replacing the storage keeps the old one for draws still reading it.
+      allocateStorage();
+    }
+    allocator.beginFrame();
+  }
+
+  /** Ends the frame, after the draws reading its data have been issued. */
+  public void endFrame() {
+    allocator.endFrame();
+  }
+
+  /** Returns the allocator, for its statistics. */
+  public StreamingAllocator getAllocator() {
+    return allocator;
+  }
+
+  @Override
+  public void close() {
+    allocator.deleteFences();
+    if (bufferId[0] != 0) {
+      GLES30.glDeleteBuffers(1, bufferId, 0);
+      GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free buffer object", "glDeleteBuffers");
+      bufferId[0] = 0;
+    }
+  }
+
+  /* package-private */
+  int getBufferId() {
+    return bufferId[0];
+  }
+
+  /** Returns the frame that ranges written now are valid for. */
+  /* package-private */
+  long getFrame() {
+    return allocator.getFrame();
+  }
+
+  /**
+   * Copies the contents of the <i>direct</i> buffer {@code entries}, from the start to its limit,
+   * into a range of the current frame's region.
+   *
+   * @return the byte offset of the range, or -1 if it doesn't fit or no frame has begun
+   */
+  /* package-private */
+  int write(Buffer entries, int numberOfBytesPerEntry) {
+    if (bufferId[0] == 0) {
+      throw new IllegalStateException("Tried to use freed streaming buffer");
+    }
+    if (!allocator.isInFrame()) {
+      return -1;
+    }
+    int size = entries.limit() * numberOfBytesPerEntry;
+    int offset = allocator.allocate(size, ALIGNMENT);
+    if (offset < 0 || size == 0) {
+      return offset;
+    }
+    GLES30.glBindBuffer(TARGET, bufferId[0]);
+    GLError.maybeThrowGLException("Failed to bind streaming buffer", "glBindBuffer");
+    ByteBuffer range = (ByteBuffer) GLES30.glMapBufferRange(TARGET, offset, size, MAP_FLAGS);
+    GLError.maybeThrowGLException("Failed to map streaming buffer", "glMapBufferRange");
+    if (range == null) {
+      throw new IllegalStateException("Streaming buffer could not be mapped");
+    }
+    try {
+      range.order(ByteOrder.nativeOrder());
+      entries.rewind();
+      if (entries instanceof FloatBuffer) {
+        range.asFloatBuffer().put((FloatBuffer) entries);
+      } else if (entries instanceof IntBuffer) {
+        range.asIntBuffer().put((IntBuffer) entries);
+      } else if (entries instanceof ShortBuffer) {
+        range.asShortBuffer().put((ShortBuffer) entries);
+      } else if (entries instanceof ByteBuffer) {
+        range.put((ByteBuffer) entries);
+      } else {
+        throw new IllegalArgumentException("Unsupported buffer type " + entries.getClass());
+      }
+    } finally {
+      if (!GLES30.glUnmapBuffer(TARGET)) {
+        // The contents were lost, for example to a display mode change; they'll be set again.
+        Log.w(TAG, "Streaming buffer contents were corrupted while mapped");
+      }
+    }
+    return offset;
+  }
+
+  private void allocateStorage() {
+    GLES30.glBindBuffer(TARGET, bufferId[0]);
+    GLError.maybeThrowGLException("Failed to bind streaming buffer", "glBindBuffer");
+    GLES30.glBufferData(TARGET, allocator.getTotalSize(), null, GLES30.GL_STREAM_DRAW);
+    GLError.maybeThrowGLException("Failed to allocate streaming buffer", "glBufferData");
+  }
+
+  private static class GLFences implements StreamingAllocator.Fences {
+    @Override
+    public long insert() {
+      long fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+      GLError.maybeThrowGLException("Failed to create fence", "glFenceSync");
+      return fence;
+    }
+
+    @Override
+    public boolean isSignaled(long fence) {
+      return clientWaitSync(fence, /*flags=*/ 0, /*timeout=*/ 0);
+    }
+
+    @Override
+    public void waitFor(long fence) {
+      // Flush, or the fence may never be reached.
+      while (!clientWaitSync(fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_TIMEOUT_NANOSECONDS)) {
+        Log.w(TAG, "Still waiting for the GPU to release a streaming buffer region");
+      }
+    }
+
+    @Override
+    public void delete(long fence) {
+      GLES30.glDeleteSync(fence);
+      GLError.maybeLogGLError(Log.WARN, TAG, "Failed to delete fence", "glDeleteSync");
+    }
+
+    private static boolean clientWaitSync(long fence, int flags, long timeout) {
+      int result = GLES30.glClientWaitSync(fence, flags, timeout);
+      if (result == GLES30.GL_WAIT_FAILED) {
+        GLError.maybeThrowGLException("Failed to wait for fence", "glClientWaitSync");
+        throw new IllegalStateException("Failed to wait for fence");
+      }
+      return result == GLES30.GL_ALREADY_SIGNALED || result == GLES30.GL_CONDITION_SATISFIED;
+    }
+  }
+}
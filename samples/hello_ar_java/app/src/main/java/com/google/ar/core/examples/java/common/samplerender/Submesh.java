@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+/**
+ * A range of the index buffer of a {@link Mesh} that is drawn with one material.
+ *
+ * <p>All submeshes of a mesh share its vertex array object, so drawing several of them only binds
+ * the vertex data once.
+ */
+public class Submesh {
+  private final int indexOffset;
+  private final int indexCount;
+  private final String material;
+
+  /**
+   * @param indexOffset the first index of the range, in indices (not bytes)
+   * @param indexCount the number of indices in the range
+   * @param material the name of the material, or null if the range has none
+   */
+  public Submesh(int indexOffset, int indexCount, String material) {
+    if (indexOffset < 0 || indexCount < 0) {
+      throw new IllegalArgumentException("Submesh range must not be negative");
+    }
+    this.indexOffset = indexOffset;
+    this.indexCount = indexCount;
+    this.material = material;
+  }
+
+  public int getIndexOffset() {
+    return indexOffset;
+  }
+
+  public int getIndexCount() {
+    return indexCount;
+  }
+
+  /** Returns the name of the material of the range, or null if it has none. */
+  public String getMaterial() {
+    return material;
+  }
+}
@@ -22,12 +22,16 @@ import android.opengl.GLES30;
 import android.util.Log;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 /** A GPU-side texture. */
 public class Texture implements Closeable {
   private static final String TAG = Texture.class.getSimpleName();
 
+  private final SampleRender render;
   private final int[] textureId = {0};
   private final Target target;
 
@@ -97,6 +101,7 @@ public class Texture implements Closeable {
   }
 
   public Texture(SampleRender render, Target target, WrapMode wrapMode, boolean useMipmaps) {
+    this.render = render;
     this.target = target;
 
     GLES30.glGenTextures(1, textureId, 0);
@@ -105,8 +110,7 @@ public class Texture implements Closeable {
     int minFilter = useMipmaps ? GLES30.GL_LINEAR_MIPMAP_LINEAR : GLES30.GL_LINEAR;
 
     try {
-      GLES30.glBindTexture(target.glesEnum, textureId[0]);
-      GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
+      render.getGLState().bindTexture(target.glesEnum, textureId[0]);
       GLES30.glTexParameteri(target.glesEnum, GLES30.GL_TEXTURE_MIN_FILTER, minFilter);
       GLError.maybeThrowGLException("Failed to set texture parameter", "glTexParameteri");
       GLES30.glTexParameteri(target.glesEnum, GLES30.GL_TEXTURE_MAG_FILTER, GLES30.GL_LINEAR);
@@ -142,8 +146,7 @@ public class Texture implements Closeable {
       bitmap.copyPixelsToBuffer(buffer);
       buffer.rewind();
 
-      GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, texture.getTextureId());
-      GLError.maybeThrowGLException("Failed to bind texture", "glBindTexture");
+      render.getGLState().bindTexture(GLES30.GL_TEXTURE_2D, texture.getTextureId());
       GLES30.glTexImage2D(
           GLES30.GL_TEXTURE_2D,
           /*level=*/ 0,
@@ -168,11 +171,88 @@ public class Texture implements Closeable {
     return texture;
   }
 
+  /**
+   * Create a {@link Target.TEXTURE_2D} texture holding raw RGBA 32-bit float data, such as a
+   * table of values to be read with {@code texelFetch}. 32-bit float textures can't be filtered,
+   * so the texture samples the nearest texel and has no mipmaps.
+   *
+   * @param data {@code width * height * 4} floats, row by row. Must be a direct buffer.
+   */
+  public static Texture createFromFloatData(
+      SampleRender render, int width, int height, FloatBuffer data) {
+    return createFromRawData(
+        render, width, height, data, GLES30.GL_RGBA32F, GLES30.GL_FLOAT, "floats");
+  }
+
+  /**
+   * Create a {@link Target.TEXTURE_2D} texture holding raw RGBA 16-bit float data, like {@link
+   * #createFromFloatData} in half the memory, for values that keep enough precision in 11
+   * significant bits. The texture also samples the nearest texel and has no mipmaps.
+   *
+   * @param data {@code width * height * 4} half floats, row by row, as their IEEE 754 bits. Must be
+   *     a direct buffer.
+   */
+  public static Texture createFromHalfFloatData(
+      SampleRender render, int width, int height, ShortBuffer data) {
+    return createFromRawData(
+        render, width, height, data, GLES30.GL_RGBA16F, GLES30.GL_HALF_FLOAT, "half floats");
+  }
+
+  private static Texture createFromRawData(
+      SampleRender render,
+      int width,
+      int height,
+      Buffer data,
+      int internalFormat,
+      int type,
+      String typeName) {
+    if (!data.isDirect()) {
+      throw new IllegalArgumentException("Texture data must be a direct buffer");
+    }
+    if (data.limit() != width * height * 4) {
+      throw new IllegalArgumentException(
+          "Texture data has "
+              + data.limit()
+              + " "
+              + typeName
+              + ", expected "
+              + width * height * 4);
+    }
+    Texture texture =
+        new Texture(render, Target.TEXTURE_2D, WrapMode.CLAMP_TO_EDGE, /*useMipmaps=*/ false);
+    try {
+      render.getGLState().bindTexture(GLES30.GL_TEXTURE_2D, texture.getTextureId());
+      GLES30.glTexParameteri(
+          GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MIN_FILTER, GLES30.GL_NEAREST);
+      GLError.maybeThrowGLException("Failed to set texture parameter", "glTexParameteri");
+      GLES30.glTexParameteri(
+          GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MAG_FILTER, GLES30.GL_NEAREST);
+      GLError.maybeThrowGLException("Failed to set texture parameter", "glTexParameteri");
+      data.rewind();
+      GLES30.glTexImage2D(
+          GLES30.GL_TEXTURE_2D,
+          /*level=*/ 0,
+          internalFormat,
+          width,
+          height,
+          /*border=*/ 0,
+          GLES30.GL_RGBA,
+          type,
+          data);
+      GLError.maybeThrowGLException("Failed to populate texture data", "glTexImage2D");
+    } catch (Throwable t) {
+      texture.close();
+      throw t;
+    }
+    return texture;
+  }
+
   @Override
   public void close() {
     if (textureId[0] != 0) {
       GLES30.glDeleteTextures(1, textureId, 0);
       GLError.maybeLogGLError(Log.WARN, TAG, "Failed to free texture", "glDeleteTextures");
+      render.getGLState().onTextureDeleted(textureId[0]);
       textureId[0] = 0;
     }
   }
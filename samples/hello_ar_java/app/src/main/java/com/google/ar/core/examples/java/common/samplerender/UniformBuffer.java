@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import android.opengl.GLES30;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A uniform buffer object, holding the data of a uniform block such as {@code layout(std140)
+ * uniform Camera { ... };} for any number of shaders at once.
+ *
+ * <p>Data that is the same for every draw in a frame, like the camera matrices and the light
+ * estimate, is best kept in a uniform buffer that is attached to every shader using it with {@link
+ * Shader#setUniformBuffer}. It is then uploaded once, by the first draw after it changed, instead of
+ * being set on every shader. Each uniform buffer keeps a binding point of its own for its lifetime,
+ * so drawing doesn't have to bind anything either.
+ *
+ * <p>Values are written at byte offsets into the std140 layout of the block, which {@link Layout}
+ * computes. Only the bytes that changed since the last upload are uploaded again.
+ */
+public class UniformBuffer implements Closeable {
+  private static final int MAT4_SIZE = 16;
+
+  private final SampleRender render;
+  private final ByteBuffer data;
+  private final GpuBuffer buffer;
+  private int bindingPoint = -1;
+  // The bytes changed since the last upload; none if dirtyStart is not below dirtyEnd.
+  private int dirtyStart;
+  private int dirtyEnd = 0;
+
+  /**
+   * Computes the byte offsets of the members of a {@code layout(std140)} uniform block.
+   *
+   * <p>Add the members in the order they are declared in the shader; each method returns the
+   * offset of the member it adds. Vectors are aligned to their size, {@code vec3} to that of a
+   * {@code vec4}, and matrices and the elements of arrays take up whole multiples of 16 bytes.
+   */
+  public static class Layout {
+    private int size = 0;
+
+    public int addFloat() {
+      return add(4, 4);
+    }
+
+    public int addInt() {
+      return add(4, 4);
+    }
+
+    /** Adds a {@code bool}, which takes up as much space as an {@code int}. */
+    public int addBool() {
+      return add(4, 4);
+    }
+
+    public int addVec2() {
+      return add(8, 8);
+    }
+
+    public int addVec3() {
+      return add(16, 12);
+    }
+
+    public int addVec4() {
+      return add(16, 16);
+    }
+
+    public int addMat4() {
+      return add(16, 64);
+    }
+
+    public int addVec3Array(int length) {
+      return add(16, 16 * length);
+    }
+
+    public int addVec4Array(int length) {
+      return add(16, 16 * length);
+    }
+
+    public int addMat4Array(int length) {
+      return add(16, 64 * length);
+    }
+
+    /** Returns the size of the block in bytes, rounded up to a multiple of 16. */
+    public int getSize() {
+      return align(size, 16);
+    }
+
+    private int add(int alignment, int memberSize) {
+      int offset = align(size, alignment);
+      size = offset + memberSize;
+      return offset;
+    }
+
+    private static int align(int offset, int alignment) {
+      return (offset + alignment - 1) / alignment * alignment;
+    }
+  }
+
+  /**
+   * Constructs a uniform buffer of the given size, with all bytes set to zero.
+   *
+   * @param size the size of the data in bytes, at least the size of the blocks it is attached to
+   */
+  public UniformBuffer(SampleRender render, int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Uniform buffer size must be positive, got " + size);
+    }
+    this.render = render;
+    this.data = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    this.dirtyStart = size;
+    // Allocate the whole buffer up front, so that later uploads only replace data.
+    this.buffer =
+        new GpuBuffer(render, GLES30.GL_UNIFORM_BUFFER, /*numberOfBytesPerEntry=*/ 1, data);
+    try {
+      bindingPoint = render.allocateUniformBufferBindingPoint();
+      GLES30.glBindBufferBase(GLES30.GL_UNIFORM_BUFFER, bindingPoint, buffer.getBufferId());
+      GLError.maybeThrowGLException("Failed to bind uniform buffer", "glBindBufferBase");
+    } catch (Throwable t) {
+      close();
+      throw t;
+    }
+  }
+
+  @Override
+  public void close() {
+    buffer.free();
+    if (bindingPoint >= 0) {
+      render.releaseUniformBufferBindingPoint(bindingPoint);
+      bindingPoint = -1;
+    }
+  }
+
+  /** Returns the size of the data in bytes. */
+  public int getSize() {
+    return data.capacity();
+  }
+
+  /** Sets a {@code float} member. */
+  public UniformBuffer setFloat(int offset, float v0) {
+    putFloat(offset, v0);
+    return this;
+  }
+
+  /** Sets an {@code int} member. */
+  public UniformBuffer setInt(int offset, int v0) {
+    checkRange(offset, 4);
+    if (data.getInt(offset) != v0) {
+      data.putInt(offset, v0);
+      markDirty(offset, 4);
+    }
+    return this;
+  }
+
+  /** Sets a {@code bool} member. */
+  public UniformBuffer setBool(int offset, boolean v0) {
+    return setInt(offset, v0 ? 1 : 0);
+  }
+
+  /** Sets a {@code vec2} member. */
+  public UniformBuffer setVec2(int offset, float[] values) {
+    if (values.length != 2) {
+      throw new IllegalArgumentException("Value array length must be 2");
+    }
+    return setFloats(offset, values, 2);
+  }
+
+  /** Sets a {@code vec3} member. */
+  public UniformBuffer setVec3(int offset, float[] values) {
+    if (values.length != 3) {
+      throw new IllegalArgumentException("Value array length must be 3");
+    }
+    return setFloats(offset, values, 3);
+  }
+
+  /** Sets a {@code vec4} member. */
+  public UniformBuffer setVec4(int offset, float[] values) {
+    if (values.length != 4) {
+      throw new IllegalArgumentException("Value array length must be 4");
+    }
+    return setFloats(offset, values, 4);
+  }
+
+  /** Sets a {@code mat4} member. */
+  public UniformBuffer setMat4(int offset, float[] values) {
+    if (values.length != MAT4_SIZE) {
+      throw new IllegalArgumentException("Value array length must be 16 (4x4)");
+    }
+    return setFloats(offset, values, MAT4_SIZE);
+  }
+
+  /** Sets a {@code vec3} array member, whose elements are padded to 16 bytes each. */
+  public UniformBuffer setVec3Array(int offset, float[] values) {
+    if (values.length % 3 != 0) {
+      throw new IllegalArgumentException("Value array length must be divisible by 3");
+    }
+    checkRange(offset, values.length / 3 * 16);
+    for (int i = 0; i < values.length; i += 3) {
+      int elementOffset = offset + i / 3 * 16;
+      putFloat(elementOffset, values[i]);
+      putFloat(elementOffset + 4, values[i + 1]);
+      putFloat(elementOffset + 8, values[i + 2]);
+    }
+    return this;
+  }
+
+  /** Sets a {@code vec4} array member. */
+  public UniformBuffer setVec4Array(int offset, float[] values) {
+    if (values.length % 4 != 0) {
+      throw new IllegalArgumentException("Value array length must be divisible by 4");
+    }
+    return setFloats(offset, values, values.length);
+  }
+
+  /** Sets a {@code mat4} array member. */
+  public UniformBuffer setMat4Array(int offset, float[] values) {
+    if (values.length % MAT4_SIZE != 0) {
+      throw new IllegalArgumentException("Value array length must be divisible by 16 (4x4)");
+    }
+    return setFloats(offset, values, values.length);
+  }
+
+  /**
+   * Copies floats into the buffer as they are, for data that is already laid out like the block.
+   *
+   * @param offset the byte offset to copy to
+   * @param count the number of floats from the start of {@code values} to copy
+   */
+  public UniformBuffer setFloats(int offset, float[] values, int count) {
+    checkRange(offset, count * GpuBuffer.FLOAT_SIZE);
+    for (int i = 0; i < count; ++i) {
+      putFloat(offset + i * GpuBuffer.FLOAT_SIZE, values[i]);
+    }
+    return this;
+  }
+
+  /* package-private */
+  int getBindingPoint() {
+    return bindingPoint;
+  }
+
+  /** Uploads the bytes changed since the last upload, if any. */
+  /* package-private */
+  void upload() {
+    if (dirtyStart >= dirtyEnd) {
+      return;
+    }
+    if (buffer.getBufferId() == 0) {
+      throw new IllegalStateException("Tried to use freed uniform buffer");
+    }
+    buffer.setRange(data, dirtyStart, dirtyEnd - dirtyStart);
+    dirtyStart = data.capacity();
+    dirtyEnd = 0;
+  }
+
+  private void putFloat(int offset, float value) {
+    checkRange(offset, GpuBuffer.FLOAT_SIZE);
+    if (data.getFloat(offset) != value) {
+      data.putFloat(offset, value);
+      markDirty(offset, GpuBuffer.FLOAT_SIZE);
+    }
+  }
+
+  private void markDirty(int offset, int size) {
+    dirtyStart = Math.min(dirtyStart, offset);
+    dirtyEnd = Math.max(dirtyEnd, offset + size);
+  }
+
+  private void checkRange(int offset, int size) {
+    if (offset < 0 || offset + size > data.capacity()) {
+      throw new IllegalArgumentException(
+          "Data of "
+              + size
+              + " bytes at offset "
+              + offset
+              + " exceeds uniform buffer size of "
+              + data.capacity());
+    }
+  }
+}
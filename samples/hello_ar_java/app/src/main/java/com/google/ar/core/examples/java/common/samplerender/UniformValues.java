@@ -0,0 +1,327 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES30;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of the active uniforms of a {@link Shader}, and which of them changed since they were
+ * last uploaded.
+ *
+ * <p>The values live in one float and one int array, so setting a uniform only copies the values,
+ * and a uniform is only listed as changed if a value or the number of elements set differs from
+ * what it already holds. None of this needs a GL context; the shader reads the lists and uploads.
+ */
+/* package-private */
+class UniformValues {
+  private final Map<String, Uniform> uniforms = new HashMap<>();
+  private final List<Uniform> samplerList = new ArrayList<>();
+  private float[] floatValues = new float[0];
+  private int[] intValues = new int[0];
+  private Uniform[] samplers = new Uniform[0];
+  private Uniform[] dirtyUniforms = new Uniform[0];
+  private int dirtyUniformCount = 0;
+  private int floatCount = 0;
+  private int intCount = 0;
+
+  /** An active uniform of the program, and where its value is kept. */
+  static class Uniform {
+    final String name;
+    final int location;
+    final int type;
+    final int components;
+    final boolean isInt;
+    final boolean isSampler;
+    /** The number of elements, which is 1 unless the uniform is an array. */
+    final int size;
+    /** The index of the first value in the float or the int values. */
+    final int offset;
+    /** The number of elements last set, and to be uploaded. */
+    int count = 0;
+    Texture texture;
+    private boolean dirty = false;
+
+    private Uniform(String name, int location, int type, int size, int offset) {
+      this.name = name;
+      this.location = location;
+      this.type = type;
+      this.components = getComponentCount(type);
+      this.isSampler = isSamplerType(type);
+      this.isInt = isSampler || isIntType(type);
+      this.size = size;
+      this.offset = offset;
+    }
+  }
+
+  /**
+   * Adds an active uniform of the program, as reflected when it was linked. Call {@link
+   * #allocate} once all of them have been added.
+   *
+   * @param size the number of elements, which is 1 unless the uniform is an array
+   */
+  void add(String name, int location, int type, int size) {
+    Uniform uniform;
+    if (isIntType(type) || isSamplerType(type)) {
+      uniform = new Uniform(name, location, type, size, intCount);
+      intCount += uniform.components * size;
+    } else {
+      uniform = new Uniform(name, location, type, size, floatCount);
+      floatCount += uniform.components * size;
+    }
+    uniforms.put(name, uniform);
+    if (uniform.isSampler) {
+      samplerList.add(uniform);
+    }
+  }
+
+  /**
+   * Allocates the storage for the uniforms added so far, and gives every sampler a texture unit of
+   * its own, in the order the samplers were added. The units are marked to be uploaded.
+   */
+  void allocate() {
+    floatValues = new float[floatCount];
+    intValues = new int[intCount];
+    dirtyUniforms = new Uniform[uniforms.size()];
+    dirtyUniformCount = 0;
+    samplers = samplerList.toArray(new Uniform[0]);
+    // Samplers keep the same texture unit for the lifetime of the program.
+    for (int unit = 0; unit < samplers.length; ++unit) {
+      Uniform sampler = samplers[unit];
+      updateCount(sampler, 1, putInt(sampler.offset, unit));
+    }
+  }
+
+  Uniform get(String name) {
+    Uniform uniform = uniforms.get(name);
+    if (uniform == null) {
+      throw new IllegalArgumentException("Shader uniform does not exist: " + name);
+    }
+    return uniform;
+  }
+
+  /**
+   * Looks up a uniform to be set to {@code count} elements of the given type. Integer types only
+   * need to match in their number of components, since {@code bool} uniforms are set like {@code
+   * int} ones. Samplers are rejected: their value is the texture unit assigned by {@link
+   * #allocate}, and overwriting it would bind the texture to another sampler's unit.
+   */
+  Uniform get(String name, int type, int count) {
+    Uniform uniform = get(name);
+    boolean matches =
+        isIntType(type)
+            ? !uniform.isSampler
+                && uniform.isInt
+                && uniform.components == getComponentCount(type)
+            : uniform.type == type;
+    if (!matches) {
+      throw new IllegalArgumentException("Shader uniform has a different type: " + name);
+    }
+    if (count > uniform.size) {
+      throw new IllegalArgumentException(
+          "Shader uniform " + name + " has " + uniform.size + " elements, not " + count);
+    }
+    return uniform;
+  }
+
+  void setTexture(String name, Texture texture) {
+    Uniform uniform = get(name);
+    if (!uniform.isSampler) {
+      throw new IllegalArgumentException("Shader uniform is not a sampler: " + name);
+    }
+    uniform.texture = texture;
+  }
+
+  void setInt(String name, int value) {
+    Uniform uniform = get(name, GLES30.GL_INT, 1);
+    updateCount(uniform, 1, putInt(uniform.offset, value));
+  }
+
+  void setFloat(String name, float value) {
+    Uniform uniform = get(name, GLES30.GL_FLOAT, 1);
+    updateCount(uniform, 1, putFloat(uniform.offset, value));
+  }
+
+  void setBools(String name, boolean[] values) {
+    Uniform uniform = get(name, GLES30.GL_INT, values.length);
+    boolean changed = false;
+    for (int i = 0; i < values.length; ++i) {
+      changed |= putInt(uniform.offset + i, values[i] ? 1 : 0);
+    }
+    updateCount(uniform, values.length, changed);
+  }
+
+  void setInts(String name, int[] values) {
+    Uniform uniform = get(name, GLES30.GL_INT, values.length);
+    boolean changed = false;
+    for (int i = 0; i < values.length; ++i) {
+      changed |= putInt(uniform.offset + i, values[i]);
+    }
+    updateCount(uniform, values.length, changed);
+  }
+
+  /** Sets a {@code float}, vector or matrix uniform, or an array of them, of the given type. */
+  void setFloats(String name, int type, float[] values) {
+    int count = values.length / getComponentCount(type);
+    Uniform uniform = get(name, type, count);
+    boolean changed = false;
+    for (int i = 0; i < values.length; ++i) {
+      changed |= putFloat(uniform.offset + i, values[i]);
+    }
+    updateCount(uniform, count, changed);
+  }
+
+  /** Returns the float values of all uniforms, each starting at its {@link Uniform#offset}. */
+  float[] getFloatValues() {
+    return floatValues;
+  }
+
+  /** Returns the int values of all uniforms, each starting at its {@link Uniform#offset}. */
+  int[] getIntValues() {
+    return intValues;
+  }
+
+  int getSamplerCount() {
+    return samplers.length;
+  }
+
+  Uniform getSampler(int index) {
+    return samplers[index];
+  }
+
+  int getTextureUnit(Uniform sampler) {
+    return intValues[sampler.offset];
+  }
+
+  /** Returns the number of uniforms that changed since {@link #clearDirty} was last called. */
+  int getDirtyCount() {
+    return dirtyUniformCount;
+  }
+
+  /** Returns a changed uniform, in the order they were first changed. */
+  Uniform getDirty(int index) {
+    return dirtyUniforms[index];
+  }
+
+  /** Marks every uniform as uploaded. */
+  void clearDirty() {
+    for (int i = 0; i < dirtyUniformCount; ++i) {
+      dirtyUniforms[i].dirty = false;
+      dirtyUniforms[i] = null;
+    }
+    dirtyUniformCount = 0;
+  }
+
+  private boolean putFloat(int index, float value) {
+    if (floatValues[index] == value) {
+      return false;
+    }
+    floatValues[index] = value;
+    return true;
+  }
+
+  private boolean putInt(int index, int value) {
+    if (intValues[index] == value) {
+      return false;
+    }
+    intValues[index] = value;
+    return true;
+  }
+
+  private void updateCount(Uniform uniform, int count, boolean changed) {
+    if (!changed && count == uniform.count) {
+      return;
+    }
+    uniform.count = count;
+    if (!uniform.dirty) {
+      uniform.dirty = true;
+      dirtyUniforms[dirtyUniformCount++] = uniform;
+    }
+  }
+
+  /** Returns the number of floats or ints in one element of a uniform, or 0 if unsupported. */
+  static int getComponentCount(int type) {
+    switch (type) {
+      case GLES30.GL_FLOAT:
+      case GLES30.GL_INT:
+      case GLES30.GL_BOOL:
+        return 1;
+      case GLES30.GL_FLOAT_VEC2:
+      case GLES30.GL_INT_VEC2:
+      case GLES30.GL_BOOL_VEC2:
+        return 2;
+      case GLES30.GL_FLOAT_VEC3:
+      case GLES30.GL_INT_VEC3:
+      case GLES30.GL_BOOL_VEC3:
+        return 3;
+      case GLES30.GL_FLOAT_VEC4:
+      case GLES30.GL_INT_VEC4:
+      case GLES30.GL_BOOL_VEC4:
+      case GLES30.GL_FLOAT_MAT2:
+        return 4;
+      case GLES30.GL_FLOAT_MAT3:
+        return 9;
+      case GLES30.GL_FLOAT_MAT4:
+        return 16;
+      default:
+        return isSamplerType(type) ? 1 : 0;
+    }
+  }
+
+  private static boolean isIntType(int type) {
+    switch (type) {
+      case GLES30.GL_INT:
+      case GLES30.GL_INT_VEC2:
+      case GLES30.GL_INT_VEC3:
+      case GLES30.GL_INT_VEC4:
+      case GLES30.GL_BOOL:
+      case GLES30.GL_BOOL_VEC2:
+      case GLES30.GL_BOOL_VEC3:
+      case GLES30.GL_BOOL_VEC4:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isSamplerType(int type) {
+    switch (type) {
+      case GLES30.GL_SAMPLER_2D:
+      case GLES30.GL_SAMPLER_3D:
+      case GLES30.GL_SAMPLER_CUBE:
+      case GLES30.GL_SAMPLER_2D_SHADOW:
+      case GLES30.GL_SAMPLER_2D_ARRAY:
+      case GLES30.GL_SAMPLER_2D_ARRAY_SHADOW:
+      case GLES30.GL_SAMPLER_CUBE_SHADOW:
+      case GLES30.GL_INT_SAMPLER_2D:
+      case GLES30.GL_INT_SAMPLER_3D:
+      case GLES30.GL_INT_SAMPLER_CUBE:
+      case GLES30.GL_INT_SAMPLER_2D_ARRAY:
+      case GLES30.GL_UNSIGNED_INT_SAMPLER_2D:
+      case GLES30.GL_UNSIGNED_INT_SAMPLER_3D:
+      case GLES30.GL_UNSIGNED_INT_SAMPLER_CUBE:
+      case GLES30.GL_UNSIGNED_INT_SAMPLER_2D_ARRAY:
+      case GLES11Ext.GL_SAMPLER_EXTERNAL_OES:
+        return true;
+      default:
+        return false;
+    }
+  }
+}
@@ -33,6 +33,9 @@ public class VertexBuffer implements Closeable {
   private final GpuBuffer buffer;
   private final int numberOfEntriesPerVertex;
   private final Boolean isInt;
+  // Both 0 unless the buffer holds one attribute of interleaved vertices.
+  private final int byteStride;
+  private final int attributeByteOffset;
 
   /**
    * Construct a {@link VertexBuffer} populated with initial data.
@@ -49,6 +52,24 @@ public class VertexBuffer implements Closeable {
    * instead.
    */
   public VertexBuffer(SampleRender render, int numberOfEntriesPerVertex, FloatBuffer entries) {
+    this(render, numberOfEntriesPerVertex, entries, /*streamingBuffer=*/ null);
+  }
+
+  /**
+   * Construct a {@link VertexBuffer} for data that is replaced every frame, populated with initial
+   * data like {@link #VertexBuffer(SampleRender, int, FloatBuffer)}.
+   *
+   * <p>Each call to {@link #set} writes the data to a range of {@code streamingBuffer} for the
+   * current frame instead of the buffer's own storage, without waiting for draws of earlier frames
+   * still reading it. The data is only valid for that frame, so it must be set again before the
+   * buffer is drawn in the next one. The {@code streamingBuffer} argument may be null, in which case
+   * the buffer behaves like any other.
+   */
+  public VertexBuffer(
+      SampleRender render,
+      int numberOfEntriesPerVertex,
+      FloatBuffer entries,
+      StreamingBuffer streamingBuffer) {
     if (entries != null && entries.limit() % numberOfEntriesPerVertex != 0) {
       throw new IllegalArgumentException(
           "If non-null, vertex buffer data must be divisible by the number of data points per"
@@ -56,7 +77,11 @@ public class VertexBuffer implements Closeable {
     }
     this.isInt = false;
     this.numberOfEntriesPerVertex = numberOfEntriesPerVertex;
-    buffer = new GpuBuffer(GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, entries);
+    this.byteStride = 0;
+    this.attributeByteOffset = 0;
+    buffer =
+        new GpuBuffer(
+            render, GLES30.GL_ARRAY_BUFFER, GpuBuffer.FLOAT_SIZE, entries, streamingBuffer);
   }
 
   public VertexBuffer(SampleRender render, int numberOfEntriesPerVertex, IntBuffer entries, Boolean intDataType) {
@@ -68,12 +93,45 @@ public class VertexBuffer implements Closeable {
     if(intDataType) {
       this.isInt = true;
       this.numberOfEntriesPerVertex = numberOfEntriesPerVertex;
-      buffer = new GpuBuffer(GLES30.GL_ARRAY_BUFFER, GpuBuffer.INT_SIZE, entries);
+      this.byteStride = 0;
+      this.attributeByteOffset = 0;
+      buffer = new GpuBuffer(render, GLES30.GL_ARRAY_BUFFER, GpuBuffer.INT_SIZE, entries);
     } else {
       throw new IllegalArgumentException("For int data");
     }
   }
 
+  /**
+   * Construct a {@link VertexBuffer} for one attribute of interleaved vertices, stored in {@code
+   * interleaved} with a size of one byte per entry. Each attribute of the vertices gets its own
+   * {@link VertexBuffer} sharing the same {@link GpuBuffer}, which is freed when any of them is
+   * closed. The contents can't be {@link #set}.
+   *
+   * @param byteStride the number of bytes from one vertex to the next
+   * @param attributeByteOffset the offset of the attribute in bytes from the start of each vertex
+   */
+  /* package-private */
+  VertexBuffer(
+      GpuBuffer interleaved,
+      int numberOfEntriesPerVertex,
+      boolean isInt,
+      int byteStride,
+      int attributeByteOffset) {
+    if (byteStride <= 0 || interleaved.getSize() % byteStride != 0) {
+      throw new IllegalArgumentException(
+          "Interleaved vertex data must be divisible by the size of a vertex");
+    }
+    if (attributeByteOffset < 0
+        || attributeByteOffset + numberOfEntriesPerVertex * GpuBuffer.FLOAT_SIZE > byteStride) {
+      throw new IllegalArgumentException("Vertex attribute must lie within a vertex");
+    }
+    this.isInt = isInt;
+    this.numberOfEntriesPerVertex = numberOfEntriesPerVertex;
+    this.byteStride = byteStride;
+    this.attributeByteOffset = attributeByteOffset;
+    this.buffer = interleaved;
+  }
+
   /**
    * Populate with new data.
    *
@@ -88,6 +146,9 @@ public class VertexBuffer implements Closeable {
    * specified during construction.
    */
   public void set(FloatBuffer entries) {
+    if (byteStride != 0) {
+      throw new IllegalStateException("Interleaved vertex buffers can't be set");
+    }
     if (entries != null && entries.limit() % numberOfEntriesPerVertex != 0) {
       throw new IllegalArgumentException(
           "If non-null, vertex buffer data must be divisible by the number of data points per"
@@ -106,6 +167,23 @@ public class VertexBuffer implements Closeable {
     return buffer.getBufferId();
   }
 
+  /* package-private */
+  int getByteOffset() {
+    return buffer.getByteOffset();
+  }
+
+  /** Returns the number of bytes from one vertex to the next, or 0 if they are tightly packed. */
+  /* package-private */
+  int getByteStride() {
+    return byteStride;
+  }
+
+  /** Returns the offset of the attribute in bytes from the start of each vertex. */
+  /* package-private */
+  int getAttributeByteOffset() {
+    return attributeByteOffset;
+  }
+
   /* package-private */
   int getNumberOfEntriesPerVertex() {
     return numberOfEntriesPerVertex;
@@ -118,6 +196,9 @@ public class VertexBuffer implements Closeable {
 
   /* package-private */
   int getNumberOfVertices() {
+    if (byteStride != 0) {
+      return buffer.getSize() / byteStride;
+    }
     return buffer.getSize() / numberOfEntriesPerVertex;
   }
 }
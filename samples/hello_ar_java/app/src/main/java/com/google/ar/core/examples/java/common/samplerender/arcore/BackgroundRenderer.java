@@ -62,6 +62,7 @@ public class BackgroundRenderer {
   private final FloatBuffer cameraTexCoords =
       ByteBuffer.allocateDirect(COORDS_BUFFER_SIZE).order(ByteOrder.nativeOrder()).asFloatBuffer();
 
+  private final SampleRender render;
   private final Mesh mesh;
   private final VertexBuffer cameraTexCoordsVertexBuffer;
   private Shader backgroundShader;
@@ -79,6 +80,7 @@ public class BackgroundRenderer {
    * SampleRender.Renderer#onSurfaceCreated()}.
    */
   public BackgroundRenderer(SampleRender render) {
+    this.render = render;
     cameraColorTexture =
         new Texture(
             render,
@@ -194,7 +196,7 @@ public class BackgroundRenderer {
   /** Update depth texture with Image contents. */
   public void updateCameraDepthTexture(Image image) {
     // SampleRender abstraction leaks here
-    GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, cameraDepthTexture.getTextureId());
+    render.getGLState().bindTexture(GLES30.GL_TEXTURE_2D, cameraDepthTexture.getTextureId());
     GLES30.glTexImage2D(
         GLES30.GL_TEXTURE_2D,
         0,
@@ -15,16 +15,17 @@
  */
 package com.google.ar.core.examples.java.common.samplerender.arcore;
 
-import android.opengl.Matrix;
 import com.google.ar.core.Camera;
 import com.google.ar.core.Plane;
 import com.google.ar.core.Pose;
 import com.google.ar.core.TrackingState;
+import com.google.ar.core.examples.java.common.math.Matrices;
 import com.google.ar.core.examples.java.common.samplerender.IndexBuffer;
 import com.google.ar.core.examples.java.common.samplerender.Mesh;
 import com.google.ar.core.examples.java.common.samplerender.SampleRender;
 import com.google.ar.core.examples.java.common.samplerender.Shader;
 import com.google.ar.core.examples.java.common.samplerender.Shader.BlendFactor;
+import com.google.ar.core.examples.java.common.samplerender.StreamingBuffer;
 import com.google.ar.core.examples.java.common.samplerender.Texture;
 import com.google.ar.core.examples.java.common.samplerender.VertexBuffer;
 import java.io.IOException;
@@ -122,8 +123,11 @@ public class PlaneRenderer {
                 BlendFactor.ONE_MINUS_SRC_ALPHA) // ALPHA (dest)
             .setDepthWrite(false);
 
-    indexBufferObject = new IndexBuffer(render, /*entries=*/ null);
-    vertexBufferObject = new VertexBuffer(render, COORDS_PER_VERTEX, /*entries=*/ null);
+    // The polygons of all planes are set again every frame, so they are streamed.
+    StreamingBuffer streamingBuffer = render.getStreamingBuffer();
+    indexBufferObject = new IndexBuffer(render, /*entries=*/ null, streamingBuffer);
+    vertexBufferObject =
+        new VertexBuffer(render, COORDS_PER_VERTEX, /*entries=*/ null, streamingBuffer);
     VertexBuffer[] vertexBuffers = {vertexBufferObject};
     mesh = new Mesh(render, Mesh.PrimitiveMode.TRIANGLE_STRIP, indexBufferObject, vertexBuffers);
   }
@@ -280,8 +284,8 @@ public class PlaneRenderer {
 
       // Build the ModelView and ModelViewProjection matrices
       // for calculating cube position and light.
-      Matrix.multiplyMM(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
-      Matrix.multiplyMM(modelViewProjectionMatrix, 0, cameraProjection, 0, modelViewMatrix, 0);
+      Matrices.multiplyAffine(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
+      Matrices.multiply(modelViewProjectionMatrix, 0, cameraProjection, 0, modelViewMatrix, 0);
 
       // Populate the shader uniforms for this frame.
       shader.setMat4("u_Model", modelMatrix);
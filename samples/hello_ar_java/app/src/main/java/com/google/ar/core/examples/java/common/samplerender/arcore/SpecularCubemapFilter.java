@@ -145,6 +145,7 @@ public class SpecularCubemapFilter implements Closeable {
     public float level;
   }
 
+  private final SampleRender render;
   private final int resolution;
   private final int numberOfImportanceSamples;
   private final int numberOfMipmapLevels;
@@ -173,6 +174,7 @@ public class SpecularCubemapFilter implements Closeable {
    */
   public SpecularCubemapFilter(SampleRender render, int resolution, int numberOfImportanceSamples)
       throws IOException {
+    this.render = render;
     this.resolution = resolution;
     this.numberOfImportanceSamples = numberOfImportanceSamples;
     this.numberOfMipmapLevels = log2(resolution) + 1;
@@ -209,6 +211,9 @@ public class SpecularCubemapFilter implements Closeable {
         GLES30.glDeleteFramebuffers(framebufferChunks.length, framebufferChunks, 0);
         GLError.maybeLogGLError(
             Log.WARN, TAG, "Failed to free framebuffers", "glDeleteFramebuffers");
+        for (int framebuffer : framebufferChunks) {
+          render.getGLState().onFramebufferDeleted(framebuffer);
+        }
       }
     }
     if (radianceCubemap != null) {
@@ -235,8 +240,7 @@ public class SpecularCubemapFilter implements Closeable {
    */
   public void update(ArImage[] images) {
     try {
-      GLES30.glBindTexture(GLES30.GL_TEXTURE_CUBE_MAP, radianceCubemap.getTextureId());
-      GLError.maybeThrowGLException("Failed to bind radiance cubemap texture", "glBindTexture");
+      render.getGLState().bindTexture(GLES30.GL_TEXTURE_CUBE_MAP, radianceCubemap.getTextureId());
 
       if (images.length != NUMBER_OF_CUBE_FACES) {
         throw new IllegalArgumentException(
@@ -282,11 +286,9 @@ public class SpecularCubemapFilter implements Closeable {
       // cubemap.
       for (int level = 0; level < numberOfMipmapLevels; ++level) {
         int mipmapResolution = resolution >> level;
-        GLES30.glViewport(0, 0, mipmapResolution, mipmapResolution);
-        GLError.maybeThrowGLException("Failed to set viewport dimensions", "glViewport");
+        render.getGLState().setViewport(0, 0, mipmapResolution, mipmapResolution);
         for (int chunkIndex = 0; chunkIndex < shaders.length; ++chunkIndex) {
-          GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffers[level][chunkIndex]);
-          GLError.maybeThrowGLException("Failed to bind cubemap framebuffer", "glBindFramebuffer");
+          render.getGLState().bindFramebuffer(framebuffers[level][chunkIndex]);
           shaders[chunkIndex].setInt("u_RoughnessLevel", level);
           shaders[chunkIndex].lowLevelUse();
           mesh.lowLevelDraw();
@@ -314,8 +316,7 @@ public class SpecularCubemapFilter implements Closeable {
 
   private void initializeLdCubemap() {
     // Initialize mipmap levels of LD cubemap.
-    GLES30.glBindTexture(GLES30.GL_TEXTURE_CUBE_MAP, ldCubemap.getTextureId());
-    GLError.maybeThrowGLException("Could not bind LD cubemap texture", "glBindTexture");
+    render.getGLState().bindTexture(GLES30.GL_TEXTURE_CUBE_MAP, ldCubemap.getTextureId());
     for (int level = 0; level < numberOfMipmapLevels; ++level) {
       int mipmapResolution = resolution >> level;
       for (int face = 0; face < NUMBER_OF_CUBE_FACES; ++face) {
@@ -387,8 +388,7 @@ public class SpecularCubemapFilter implements Closeable {
       GLError.maybeThrowGLException("Could not create cubemap framebuffers", "glGenFramebuffers");
       for (Chunk chunk : chunks) {
         // Set the drawbuffers
-        GLES30.glBindFramebuffer(GLES30.GL_FRAMEBUFFER, framebufferChunks[chunk.chunkIndex]);
-        GLError.maybeThrowGLException("Could not bind framebuffer", "glBindFramebuffer");
+        render.getGLState().bindFramebuffer(framebufferChunks[chunk.chunkIndex]);
         GLES30.glDrawBuffers(chunk.chunkSize, ATTACHMENT_ENUMS, 0);
         GLError.maybeThrowGLException("Could not bind draw buffers", "glDrawBuffers");
         // Since GLES doesn't support glFramebufferTexture, we will use each cubemap face as a
@@ -21,7 +21,6 @@ import android.content.res.Resources;
 import android.media.Image;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.MenuItem;
@@ -50,6 +49,14 @@ import com.google.ar.core.Session;
 import com.google.ar.core.Trackable;
 import com.google.ar.core.TrackingFailureReason;
 import com.google.ar.core.TrackingState;
+import com.google.ar.core.examples.java.common.animation.AnimationBaker;
+import com.google.ar.core.examples.java.common.animation.AnimationLod;
+import com.google.ar.core.examples.java.common.animation.Animator;
+import com.google.ar.core.examples.java.common.animation.BakedAnimation;
+import com.google.ar.core.examples.java.common.animation.FrameTimeSource;
+import com.google.ar.core.examples.java.common.animation.PoseEvaluator;
+import com.google.ar.core.examples.java.common.animation.SkinningPalette;
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
 import com.google.ar.core.examples.java.common.helpers.CameraPermissionHelper;
 import com.google.ar.core.examples.java.common.helpers.DepthSettings;
 import com.google.ar.core.examples.java.common.helpers.DisplayRotationHelper;
@@ -59,12 +66,17 @@ import com.google.ar.core.examples.java.common.helpers.SnackbarHelper;
 import com.google.ar.core.examples.java.common.helpers.TapHelper;
 import com.google.ar.core.examples.java.common.helpers.TrackingStateHelper;
 import com.google.ar.core.examples.java.common.helpers.Pokemon;
+import com.google.ar.core.examples.java.common.math.Matrices;
 import com.google.ar.core.examples.java.common.samplerender.Framebuffer;
 import com.google.ar.core.examples.java.common.samplerender.GLError;
+import com.google.ar.core.examples.java.common.samplerender.InstanceBatcher;
+import com.google.ar.core.examples.java.common.samplerender.InstanceBuffer;
 import com.google.ar.core.examples.java.common.samplerender.Mesh;
+import com.google.ar.core.examples.java.common.samplerender.RenderQueue;
 import com.google.ar.core.examples.java.common.samplerender.SampleRender;
 import com.google.ar.core.examples.java.common.samplerender.Shader;
 import com.google.ar.core.examples.java.common.samplerender.Texture;
+import com.google.ar.core.examples.java.common.samplerender.UniformBuffer;
 import com.google.ar.core.examples.java.common.samplerender.VertexBuffer;
 import com.google.ar.core.examples.java.common.samplerender.arcore.BackgroundRenderer;
 import com.google.ar.core.examples.java.common.samplerender.arcore.PlaneRenderer;
@@ -79,9 +91,13 @@ import com.google.ar.core.exceptions.UnavailableUserDeclinedInstallationExceptio
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is a simple augmented reality (AR) game using the ARCore API.
@@ -112,6 +128,28 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
   private static final float Z_NEAR = 0.1f;
   private static final float Z_FAR = 100f;
 
+  // Dual quaternion skinning sends half the data per joint and keeps volume where joints twist,
+  // but drops any scale in the joint transforms.
+  private static final SkinningPalette.Mode SKINNING_MODE = SkinningPalette.Mode.LINEAR;
+
+  // Radius of a sphere around a Pokemon's anchor that holds the whole model, in meters.
+  private static final float POKEMON_BOUNDING_RADIUS = 0.5f;
+
+  // The rate the clips of skinned Pokemon are baked at, and whether the baked texture holds half
+  // floats, which halves its size and the bandwidth of reading it but rounds translations to 11
+  // significant bits.
+  private static final float BAKED_FRAMES_PER_SECOND = 30f;
+  private static final boolean BAKE_HALF_FLOATS = true;
+
+  // The per-instance attributes of instanced Pokemon draws. They must match the attributes of
+  // TestShader.vert with INSTANCING defined. The animation instance, a clip and a time offset, is
+  // only read with BAKED_ANIMATION defined.
+  private static final InstanceBuffer.Layout INSTANCE_LAYOUT = new InstanceBuffer.Layout();
+  private static final int INSTANCE_ANIMATION_OFFSET = INSTANCE_LAYOUT.addVec2(/*location=*/ 7);
+  private static final int INSTANCE_MODEL_OFFSET = INSTANCE_LAYOUT.addMat4(/*location=*/ 8);
+  private static final int INSTANCE_TINT_OFFSET = INSTANCE_LAYOUT.addVec4(/*location=*/ 12);
+  private static final float[] DEFAULT_TINT = {1f, 1f, 1f, 1f};
+
   private static final int CUBEMAP_RESOLUTION = 16;
   private static final int CUBEMAP_NUMBER_OF_IMPORTANCE_SAMPLES = 32;
 
@@ -152,9 +190,6 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
   private VertexBuffer pointCloudVertexBuffer;
   private Mesh pointCloudMesh;
   private Shader pointCloudShader;
-  // Keep track of the last point cloud rendered to avoid updating the VBO if point cloud
-  // was not changed.  Do this using the timestamp since we can't compare PointCloud objects.
-  private long lastPointCloudTimestamp = 0;
 
   // Virtual objects (Pokemon)
   private final ArrayList<Pokemon> pokemans = new ArrayList<>();
@@ -162,8 +197,34 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
   private Mesh bulbasaurMesh;
   private Mesh pokemonMesh;
   private Shader pokemonShader;
+  // Draws all Pokemon without a skeleton, which share the rest pose, as instances.
+  private Shader pokemonInstancedShader;
+  // The baked clips of each skinned mesh, and the instanced shader that reads them.
+  private final Map<Mesh, BakedPokemon> bakedPokemon = new HashMap<>();
   private final ArrayList<Anchor> anchors = new ArrayList<>();
   private String selectedPokemon;
+  // Advances with the camera frames, so animations stay in step with the background.
+  private final FrameTimeSource animationClock = new FrameTimeSource();
+  // Seconds since the first frame, which baked animations are played by.
+  private long animationStartNanos = 0;
+  private float animationSeconds = 0f;
+  // The packed skinning palette of the Pokemon being drawn.
+  private final float[] jointPalette =
+      new float[SkinningPalette.MAX_JOINTS * SKINNING_MODE.getFloatsPerJoint()];
+  // Poses of all Pokemon are evaluated together, off the GL thread when there are many.
+  private final PoseEvaluator poseEvaluator = new PoseEvaluator();
+  private Animator[] visibleAnimators = new Animator[0];
+  // Far away Pokemon are animated less often and in less detail, hidden ones not at all.
+  private final AnimationLod animationLod = AnimationLod.createDefault();
+
+  // Uploaded once per frame and read by every shader, so that draws only set their model matrix.
+  private UniformBuffer cameraUniforms;
+  private UniformBuffer lightingUniforms;
+  // Collects the Pokemon draws, so they can be issued sorted by shader, mesh and depth.
+  private RenderQueue renderQueue;
+  // Collects the Pokemon that can be drawn as instances, and draws each species in one call.
+  private InstanceBatcher instanceBatcher;
+  private final float[] instance = new float[INSTANCE_LAYOUT.getStride()];
 
   // Environmental HDR
   private Texture dfgTexture;
@@ -174,7 +235,7 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
   private final float[] viewMatrix = new float[16];
   private final float[] projectionMatrix = new float[16];
   private final float[] modelViewMatrix = new float[16]; // view x model
-  private final float[] modelViewProjectionMatrix = new float[16]; // projection x view x model
+  private final float[] viewProjectionMatrix = new float[16]; // projection x view
   private final float[] sphericalHarmonicsCoefficients = new float[9 * 3];
   private final float[] viewInverseMatrix = new float[16];
   private final float[] worldLightDirection = {0.0f, 0.0f, 0.0f, 0.0f};
@@ -233,6 +294,7 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
       session.close();
       session = null;
     }
+    poseEvaluator.shutdown();
 
     super.onDestroy();
   }
@@ -350,6 +412,10 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
       planeRenderer = new PlaneRenderer(render);
       backgroundRenderer = new BackgroundRenderer(render);
       virtualSceneFramebuffer = new Framebuffer(render, /*width=*/ 1, /*height=*/ 1);
+      cameraUniforms = new UniformBuffer(render, UniformBlocks.CAMERA_LAYOUT.getSize());
+      lightingUniforms = new UniformBuffer(render, UniformBlocks.LIGHTING_LAYOUT.getSize());
+      renderQueue = new RenderQueue(render, Z_FAR);
+      instanceBatcher = new InstanceBatcher(render, INSTANCE_LAYOUT);
 
       cubemapFilter =
           new SpecularCubemapFilter(
@@ -372,8 +438,7 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
         is.read(buffer.array());
       }
       // SampleRender abstraction leaks here.
-      GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, dfgTexture.getTextureId());
-      GLError.maybeThrowGLException("Failed to bind DFG texture", "glBindTexture");
+      render.getGLState().bindTexture(GLES30.GL_TEXTURE_2D, dfgTexture.getTextureId());
       GLES30.glTexImage2D(
           GLES30.GL_TEXTURE_2D,
           /*level=*/ 0,
@@ -390,12 +455,17 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
       pointCloudShader =
           Shader.createFromAssets(
                   render, "shaders/point_cloud.vert", "shaders/point_cloud.frag", /*defines=*/ null)
+              .setUniformBuffer("Camera", cameraUniforms)
               .setVec4(
                   "u_Color", new float[] {31.0f / 255.0f, 188.0f / 255.0f, 210.0f / 255.0f, 1.0f})
               .setFloat("u_PointSize", 5.0f);
       // four entries per vertex: X, Y, Z, confidence
       pointCloudVertexBuffer =
-          new VertexBuffer(render, /*numberOfEntriesPerVertex=*/ 4, /*entries=*/ null);
+          new VertexBuffer(
+              render,
+              /*numberOfEntriesPerVertex=*/ 4,
+              /*entries=*/ null,
+              render.getStreamingBuffer());
       final VertexBuffer[] pointCloudVertexBuffers = {pointCloudVertexBuffer};
       pointCloudMesh =
           new Mesh(
@@ -420,20 +490,20 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
       selectedPokemon = "Charmander";
       // One shader fits all? Copium
       pokemonShader =
-          Shader.createFromAssets(
-                  render,
-                  "shaders/TestShader.vert",
-                  "shaders/environmental_hdr.frag",
-                  /*defines=*/ new HashMap<String, String>() {
-                    {
-                      put(
-                          "NUMBER_OF_MIPMAP_LEVELS",
-                          Integer.toString(cubemapFilter.getNumberOfMipmapLevels()));
-                    }
-                  })
-              .setTexture("u_AlbedoTexture", virtualObjectAlbedoTexture)
-              .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
-              .setTexture("u_DfgTexture", dfgTexture);
+          createPokemonShader(
+              render, virtualObjectAlbedoTexture, /*instanced=*/ false, /*baked=*/ null);
+      pokemonInstancedShader =
+          createPokemonShader(
+              render, virtualObjectAlbedoTexture, /*instanced=*/ true, /*baked=*/ null);
+      // Instanced Pokemon share the palette block, so it is set once: they are all at rest.
+      float[] identity = new float[16];
+      Matrices.setIdentity(identity, 0);
+      float[] restPalette = new float[SKINNING_MODE.getFloatsPerJoint()];
+      int restPaletteSize = SkinningPalette.pack(SKINNING_MODE, identity, restPalette);
+      pokemonInstancedShader.setUniformBlock(
+          SKINNING_MODE.getBlockName(), restPalette, restPaletteSize);
+      bakeAnimations(render, virtualObjectAlbedoTexture, charmanderMesh);
+      bakeAnimations(render, virtualObjectAlbedoTexture, bulbasaurMesh);
 
     } catch (IOException e) {
       Log.e(TAG, "Failed to read a required asset file", e);
@@ -441,6 +511,113 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
     }
   }
 
+  /**
+   * Creates the shader of the Pokemon, which reads the model matrix from the u_Model uniform, or
+   * from per-instance attributes laid out as {@link #INSTANCE_LAYOUT} if {@code instanced}.
+   *
+   * @param baked the clips the instanced shader reads joint matrices of, or null to read them
+   *     from the palette block
+   */
+  private Shader createPokemonShader(
+      SampleRender render, Texture albedoTexture, boolean instanced, BakedAnimation baked)
+      throws IOException {
+    return Shader.createFromAssets(
+            render,
+            "shaders/TestShader.vert",
+            "shaders/environmental_hdr.frag",
+            /*defines=*/ new HashMap<String, String>() {
+              {
+                put(
+                    "NUMBER_OF_MIPMAP_LEVELS",
+                    Integer.toString(cubemapFilter.getNumberOfMipmapLevels()));
+                put("MAX_WEIGHTS", Integer.toString(ColladaParser.DEFAULT_MAX_WEIGHTS));
+                put("MAX_JOINTS", Integer.toString(SkinningPalette.MAX_JOINTS));
+                if (SKINNING_MODE == SkinningPalette.Mode.DUAL_QUATERNION) {
+                  put("DUAL_QUATERNION_SKINNING", "1");
+                }
+                if (instanced) {
+                  put("INSTANCING", "1");
+                }
+                if (baked != null) {
+                  put("BAKED_ANIMATION", "1");
+                  put("MAX_CLIPS", Integer.toString(baked.getClipCount()));
+                }
+              }
+            })
+        .setUniformBuffer("Camera", cameraUniforms)
+        .setUniformBuffer("Lighting", lightingUniforms)
+        .setTexture("u_AlbedoTexture", albedoTexture)
+        .setTexture("u_Cubemap", cubemapFilter.getFilteredCubemapTexture())
+        .setTexture("u_DfgTexture", dfgTexture);
+  }
+
+  /**
+   * Bakes the clips of a skinned mesh into a texture, so that the Pokemon playing them are drawn as
+   * instances, without evaluating any poses on the CPU. Meshes without clips keep evaluating their
+   * poses, and so does dual quaternion skinning, which the baked shader doesn't support.
+   */
+  private void bakeAnimations(SampleRender render, Texture albedoTexture, Mesh mesh)
+      throws IOException {
+    if (mesh.getSkeleton() == null
+        || mesh.getAnimationClips().isEmpty()
+        || SKINNING_MODE != SkinningPalette.Mode.LINEAR
+        || bakedPokemon.containsKey(mesh)) {
+      return;
+    }
+    BakedAnimation animation;
+    try {
+      animation =
+          AnimationBaker.bake(
+              mesh.getSkeleton(), mesh.getAnimationClips(), BAKED_FRAMES_PER_SECOND);
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "Clips don't fit in a texture, evaluating their poses instead", e);
+      return;
+    }
+    Texture texture = createBakedAnimationTexture(render, animation);
+    Shader shader =
+        createPokemonShader(render, albedoTexture, /*instanced=*/ true, animation)
+            .setTexture("u_AnimationTexture", texture)
+            .setVec4Array("u_AnimationClips", animation.getClipTable());
+    bakedPokemon.put(mesh, new BakedPokemon(animation, shader));
+  }
+
+  private static Texture createBakedAnimationTexture(
+      SampleRender render, BakedAnimation animation) {
+    if (BAKE_HALF_FLOATS) {
+      short[] texels = animation.getHalfTexels();
+      ShortBuffer data =
+          ByteBuffer.allocateDirect(texels.length * 2)
+              .order(ByteOrder.nativeOrder())
+              .asShortBuffer();
+      data.put(texels);
+      return Texture.createFromHalfFloatData(
+          render, animation.getWidth(), animation.getHeight(), data);
+    }
+    float[] texels = animation.getTexels();
+    FloatBuffer data =
+        ByteBuffer.allocateDirect(texels.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    data.put(texels);
+    return Texture.createFromFloatData(render, animation.getWidth(), animation.getHeight(), data);
+  }
+
+  /**
+   * Returns the baked clip a Pokemon plays, or -1 if its pose has to be evaluated on the CPU: its
+   * mesh isn't baked, or it does more than play one clip at normal speed.
+   */
+  private int getBakedClip(Pokemon pokemon) {
+    Animator animator = pokemon.getAnimator();
+    BakedPokemon baked = bakedPokemon.get(pokemon.getMesh());
+    if (animator == null
+        || baked == null
+        || animator.getAnimation() == null
+        || animator.getLayerCount() != 1
+        || animator.getBaseLayer().isFading()
+        || animator.getSpeed() != 1f) {
+      return -1;
+    }
+    return baked.animation.findClip(animator.getAnimation().getName());
+  }
+
   @Override
   public void onSurfaceChanged(SampleRender render, int width, int height) {
     displayRotationHelper.onSurfaceChanged(width, height);
@@ -479,7 +656,14 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
       messageSnackbarHelper.showError(this, "Camera not available. Try restarting the app.");
       return;
     }
+    // Updating the camera texture binds it behind the back of SampleRender.
+    render.getGLState().invalidate();
     Camera camera = frame.getCamera();
+    animationClock.setFrameTimestamp(frame.getTimestamp());
+    if (animationStartNanos == 0) {
+      animationStartNanos = animationClock.getTimeNanos();
+    }
+    animationSeconds = (animationClock.getTimeNanos() - animationStartNanos) * 1e-9f;
 
     // Update BackgroundRenderer state to match the depth settings.
     try {
@@ -554,16 +738,14 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
 
     // Get camera matrix and draw.
     camera.getViewMatrix(viewMatrix, 0);
+    updateCamera(viewMatrix, projectionMatrix);
 
     // Visualize tracked points.
     // Use try-with-resources to automatically release the point cloud.
     try (PointCloud pointCloud = frame.acquirePointCloud()) {
-      if (pointCloud.getTimestamp() > lastPointCloudTimestamp) {
-        pointCloudVertexBuffer.set(pointCloud.getPoints());
-        lastPointCloudTimestamp = pointCloud.getTimestamp();
-      }
-      Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
-      pointCloudShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
+      // The points are streamed, which is only valid for this frame, so they are set every frame
+      // even if the point cloud didn't change.
+      pointCloudVertexBuffer.set(pointCloud.getPoints());
       render.draw(pointCloudMesh, pointCloudShader);
     }
 
@@ -581,6 +763,9 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
 
     // Visualize anchors created by touch.
     render.clear(virtualSceneFramebuffer, 0f, 0f, 0f, 0f);
+    updateAnimations();
+    renderQueue.begin(viewMatrix);
+    instanceBatcher.begin();
     for (Pokemon pokemon :pokemans) {
       Anchor anchor = pokemon.getAnchor();
       if (anchor.getTrackingState() != TrackingState.TRACKING) {
@@ -588,32 +773,83 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
       }
 
       Mesh pokemesh = pokemon.getMesh();
+      Animator animator = pokemon.getAnimator();
+      int bakedClip = getBakedClip(pokemon);
 
       // Get the current pose of an Anchor in world space. The Anchor pose is updated
       // during calls to session.update() as ARCore refines its estimate of the world.
+      if (animator == null || bakedClip >= 0) {
+        // Pokemon without a skeleton all look the same but for their pose, and baked ones only
+        // differ in their clip and time, so all those of a species are drawn with a single
+        // instanced draw call.
+        anchor.getPose().toMatrix(instance, INSTANCE_MODEL_OFFSET);
+        System.arraycopy(DEFAULT_TINT, 0, instance, INSTANCE_TINT_OFFSET, DEFAULT_TINT.length);
+        Shader shader = pokemonInstancedShader;
+        instance[INSTANCE_ANIMATION_OFFSET] = 0f;
+        instance[INSTANCE_ANIMATION_OFFSET + 1] = 0f;
+        if (bakedClip >= 0) {
+          shader = bakedPokemon.get(pokemesh).shader;
+          instance[INSTANCE_ANIMATION_OFFSET] = bakedClip;
+          instance[INSTANCE_ANIMATION_OFFSET + 1] = pokemon.getAnimationTimeOffset();
+        }
+        instanceBatcher.add(pokemesh, shader, virtualSceneFramebuffer, instance);
+        continue;
+      }
       anchor.getPose().toMatrix(modelMatrix, 0);
 
-      // Calculate model/view/projection matrices
-      Matrix.multiplyMM(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
-      Matrix.multiplyMM(modelViewProjectionMatrix, 0, projectionMatrix, 0, modelViewMatrix, 0);
-
-      // Update shader properties and draw
-      pokemonShader.setMat4("u_ModelView", modelViewMatrix);
-      pokemonShader.setMat4("u_ModelViewProjection", modelViewProjectionMatrix);
-      //virtualObjectShader.setMat4("jointTransforms[MAX_JOINTS]", modelViewProjectionMatrix);
-
-      // Animate Models
-      // TODO: ANIMATION XD
-
-
-
-      render.draw(pokemesh, pokemonShader, virtualSceneFramebuffer);
+      // Queue the draw with the pose updateAnimations() evaluated. The camera and lighting are
+      // already in their uniform buffers, so the model matrix and the palette are all that change
+      // between draws.
+      int paletteSize =
+          SkinningPalette.pack(SKINNING_MODE, animator.getJointTransforms(), jointPalette);
+      renderQueue.add(
+          pokemesh,
+          pokemonShader,
+          virtualSceneFramebuffer,
+          modelMatrix,
+          SKINNING_MODE.getBlockName(),
+          jointPalette,
+          paletteSize);
     }
+    renderQueue.flush();
+    for (BakedPokemon baked : bakedPokemon.values()) {
+      baked.shader.setFloat("u_AnimationTime", animationSeconds);
+    }
+    instanceBatcher.flush();
 
     // Compose the virtual scene with the background.
     backgroundRenderer.drawVirtualScene(render, virtualSceneFramebuffer, Z_NEAR, Z_FAR);
   }
 
+  /**
+   * Updates the animators of all visible Pokemon. Each Pokemon has its own animator, so instances
+   * sharing a mesh can be in different poses. Pokemon outside the view keep their last pose, and
+   * those drawn with baked animations have no pose to evaluate.
+   */
+  private void updateAnimations() {
+    if (visibleAnimators.length < pokemans.size()) {
+      visibleAnimators = new Animator[pokemans.size()];
+    }
+    int count = 0;
+    for (Pokemon pokemon : pokemans) {
+      Animator animator = pokemon.getAnimator();
+      Anchor anchor = pokemon.getAnchor();
+      if (animator == null
+          || anchor.getTrackingState() != TrackingState.TRACKING
+          || getBakedClip(pokemon) >= 0) {
+        continue;
+      }
+      anchor.getPose().toMatrix(modelMatrix, 0);
+      Matrices.multiplyAffine(modelViewMatrix, 0, viewMatrix, 0, modelMatrix, 0);
+      if (animationLod.apply(
+          animator, modelViewMatrix, projectionMatrix, POKEMON_BOUNDING_RADIUS)) {
+        animator.setTimeSource(animationClock);
+        visibleAnimators[count++] = animator;
+      }
+    }
+    poseEvaluator.evaluate(visibleAnimators, count);
+  }
+
   /** Handle only one tap per frame, as taps are usually low frequency compared to frame rate. */
   private void handleTap(Frame frame, Camera camera) {
     MotionEvent tap = tapHelper.poll();
@@ -649,7 +885,11 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
           // space. This anchor is created on the Plane to place the 3D model
           // in the correct position relative both to the world and to the plane.
           Anchor newPokemonAnchor = hit.createAnchor();
-          pokemans.add(new Pokemon(pokemonMesh, pokemonShader, selectedPokemon, newPokemonAnchor));
+          Pokemon pokemon =
+              new Pokemon(pokemonMesh, pokemonShader, selectedPokemon, newPokemonAnchor);
+          // Baked animations start at the beginning of the clip, like the animator does.
+          pokemon.setAnimationTimeOffset(-animationSeconds);
+          pokemans.add(pokemon);
           // For devices that support the Depth API, shows a dialog to suggest enabling
           // depth-based occlusion. This dialog needs to be spawned on the UI thread.
           this.runOnUiThread(this::showOcclusionDialogIfNeeded);
@@ -800,16 +1040,24 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
     return false;
   }
 
+  /** Update the camera uniform buffer, which all shaders read, with the current frame's camera. */
+  private void updateCamera(float[] viewMatrix, float[] projectionMatrix) {
+    Matrices.multiply(viewProjectionMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+    Matrices.invertAffine(viewInverseMatrix, 0, viewMatrix, 0);
+    cameraUniforms
+        .setMat4(UniformBlocks.CAMERA_VIEW_OFFSET, viewMatrix)
+        .setMat4(UniformBlocks.CAMERA_PROJECTION_OFFSET, projectionMatrix)
+        .setMat4(UniformBlocks.CAMERA_VIEW_PROJECTION_OFFSET, viewProjectionMatrix)
+        .setMat4(UniformBlocks.CAMERA_VIEW_INVERSE_OFFSET, viewInverseMatrix);
+  }
+
   /** Update state based on the current frame's light estimation. */
   private void updateLightEstimation(LightEstimate lightEstimate, float[] viewMatrix) {
     if (lightEstimate.getState() != LightEstimate.State.VALID) {
-      pokemonShader.setBool("u_LightEstimateIsValid", false);
+      lightingUniforms.setBool(UniformBlocks.LIGHTING_LIGHT_ESTIMATE_IS_VALID_OFFSET, false);
       return;
     }
-    pokemonShader.setBool("u_LightEstimateIsValid", true);
-
-    Matrix.invertM(viewInverseMatrix, 0, viewMatrix, 0);
-    pokemonShader.setMat4("u_ViewInverse", viewInverseMatrix);
+    lightingUniforms.setBool(UniformBlocks.LIGHTING_LIGHT_ESTIMATE_IS_VALID_OFFSET, true);
 
     updateMainLight(
         lightEstimate.getEnvironmentalHdrMainLightDirection(),
@@ -825,9 +1073,10 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
     worldLightDirection[0] = direction[0];
     worldLightDirection[1] = direction[1];
     worldLightDirection[2] = direction[2];
-    Matrix.multiplyMV(viewLightDirection, 0, viewMatrix, 0, worldLightDirection, 0);
-    pokemonShader.setVec4("u_ViewLightDirection", viewLightDirection);
-    pokemonShader.setVec3("u_LightIntensity", intensity);
+    Matrices.multiplyVector(viewLightDirection, 0, viewMatrix, 0, worldLightDirection, 0);
+    lightingUniforms
+        .setVec4(UniformBlocks.LIGHTING_VIEW_LIGHT_DIRECTION_OFFSET, viewLightDirection)
+        .setVec3(UniformBlocks.LIGHTING_LIGHT_INTENSITY_OFFSET, intensity);
   }
 
   private void updateSphericalHarmonicsCoefficients(float[] coefficients) {
@@ -854,8 +1103,9 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
     for (int i = 0; i < 9 * 3; ++i) {
       sphericalHarmonicsCoefficients[i] = coefficients[i] * sphericalHarmonicFactors[i / 3];
     }
-    pokemonShader.setVec3Array(
-        "u_SphericalHarmonicsCoefficients", sphericalHarmonicsCoefficients);
+    lightingUniforms.setVec3Array(
+        UniformBlocks.LIGHTING_SPHERICAL_HARMONICS_COEFFICIENTS_OFFSET,
+        sphericalHarmonicsCoefficients);
   }
 
   /** Configures the session with feature settings. */
@@ -874,4 +1124,15 @@ public class HelloArActivity extends AppCompatActivity implements SampleRender.R
     }
     session.configure(config);
   }
+
+  /** The baked clips of a skinned mesh, and the instanced shader that reads them. */
+  private static class BakedPokemon {
+    final BakedAnimation animation;
+    final Shader shader;
+
+    BakedPokemon(BakedAnimation animation, Shader shader) {
+      this.animation = animation;
+      this.shader = shader;
+    }
+  }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.helloar;
+
+import com.google.ar.core.examples.java.common.samplerender.UniformBuffer;
+
+/**
+ * The std140 layouts of the Camera and Lighting uniform blocks, which the shaders of {@link
+ * HelloArActivity} share. They must match the blocks declared in the shaders.
+ */
+/* package-private */
+final class UniformBlocks {
+  static final UniformBuffer.Layout CAMERA_LAYOUT = new UniformBuffer.Layout();
+  static final int CAMERA_VIEW_OFFSET = CAMERA_LAYOUT.addMat4();
+  static final int CAMERA_PROJECTION_OFFSET = CAMERA_LAYOUT.addMat4();
+  static final int CAMERA_VIEW_PROJECTION_OFFSET = CAMERA_LAYOUT.addMat4();
+  static final int CAMERA_VIEW_INVERSE_OFFSET = CAMERA_LAYOUT.addMat4();
+
+  static final UniformBuffer.Layout LIGHTING_LAYOUT = new UniformBuffer.Layout();
+  static final int LIGHTING_VIEW_LIGHT_DIRECTION_OFFSET = LIGHTING_LAYOUT.addVec4();
+  static final int LIGHTING_LIGHT_INTENSITY_OFFSET = LIGHTING_LAYOUT.addVec3();
+  static final int LIGHTING_LIGHT_ESTIMATE_IS_VALID_OFFSET = LIGHTING_LAYOUT.addBool();
+  static final int LIGHTING_SPHERICAL_HARMONICS_COEFFICIENTS_OFFSET =
+      LIGHTING_LAYOUT.addVec3Array(9);
+
+  private UniformBlocks() {}
+}
@@ -0,0 +1,65 @@
+package com.google.ar.core.examples.java.common.colladaParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
+import com.google.ar.core.examples.java.common.animation.Skeleton;
+import com.google.ar.core.examples.java.common.animation.SkeletonTest;
+import com.google.ar.core.examples.java.common.math.Matrices;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class AnimationLoaderTest {
+
+    @Test
+    public void haunter_animatesHandsFingersAndTail() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        Skeleton skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        assertFalse(haunter.getAnimationClips().isEmpty());
+        AnimationClip clip = haunter.getAnimationClips().get(0);
+
+        int animatedNodes = 0;
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            if (clip.hasTrack(skeleton.getJointIndex(node))) {
+                animatedNodes++;
+            }
+        }
+        assertEquals(15, animatedNodes);
+        for (String name : new String[] {"Hand_L", "Finger2-3_L", "Hand_R_001", "Tail"}) {
+            assertTrue(name + " isn't animated", clip.hasTrack(skeleton.getJointIndex(skeleton.findNode(name))));
+        }
+    }
+
+    /**
+     * The clip starts in the bind pose, so every track of a joint without a
+     * parent must be in the same corrected (y up) frame as its bind transform.
+     */
+    @Test
+    public void haunter_rootTracksGetTheAxisCorrection() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        Skeleton skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        AnimationClip clip = haunter.getAnimationClips().get(0);
+        float[] bind = new float[Matrices.SIZE];
+        float[] sample = new float[AnimationClip.SAMPLE_SIZE];
+
+        int rootTracks = 0;
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            int joint = skeleton.getJointIndex(node);
+            if (skeleton.getParent(node) >= 0 || !clip.hasTrack(joint)) {
+                continue;
+            }
+            rootTracks++;
+            skeleton.getBindLocalTransform(node, bind, 0);
+            clip.sample(joint, 0, sample, 0);
+            for (int i = 0; i < AnimationClip.TRANSLATION_SIZE; i++) {
+                assertEquals(skeleton.getName(node) + " translation " + i, bind[12 + i], sample[i], 0.1f);
+            }
+        }
+        assertEquals(4, rootTracks);
+    }
+
+}
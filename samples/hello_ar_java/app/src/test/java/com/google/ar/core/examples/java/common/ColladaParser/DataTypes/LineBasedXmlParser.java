@@ -0,0 +1,89 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The line-based parser that {@link XmlParser} replaced, kept to benchmark
+ * against. It needs one tag per line and runs a few regular expressions on
+ * each. The only change is that errors are thrown instead of exiting the
+ * process.
+ *
+ * @author Karl
+ *
+ */
+public class LineBasedXmlParser {
+
+    private static final Pattern DATA = Pattern.compile(">(.+?)<");
+    private static final Pattern START_TAG = Pattern.compile("<(.+?)>");
+    private static final Pattern ATTR_NAME = Pattern.compile("(.+?)=");
+    private static final Pattern ATTR_VAL = Pattern.compile("\"(.+?)\"");
+    private static final Pattern CLOSED = Pattern.compile("(</|/>)");
+
+    /**
+     * @param path- the XML file
+     * @return The root node of the XML structure.
+     */
+    public static XmlNode loadXmlFile(InputStream path) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(path, "UTF-8"));
+        reader.readLine();
+        XmlNode node = loadNode(reader);
+        reader.close();
+        return node;
+    }
+
+    private static XmlNode loadNode(BufferedReader reader) throws IOException {
+        String line = reader.readLine().trim();
+        if (line.startsWith("</")) {
+            return null;
+        }
+        String[] startTagParts = getStartTag(line).split(" ");
+        XmlNode node = new XmlNode(startTagParts[0].replace("/", ""));
+        addAttributes(startTagParts, node);
+        addData(line, node);
+        if (CLOSED.matcher(line).find()) {
+            return node;
+        }
+        XmlNode child = null;
+        while ((child = loadNode(reader)) != null) {
+            node.addChild(child);
+        }
+        return node;
+    }
+
+    private static void addData(String line, XmlNode node) {
+        Matcher matcher = DATA.matcher(line);
+        if (matcher.find()) {
+            node.setData(matcher.group(1));
+        }
+    }
+
+    private static void addAttributes(String[] titleParts, XmlNode node) {
+        for (int i = 1; i < titleParts.length; i++) {
+            if (titleParts[i].contains("=")) {
+                addAttribute(titleParts[i], node);
+            }
+        }
+    }
+
+    private static void addAttribute(String attributeLine, XmlNode node) {
+        Matcher nameMatch = ATTR_NAME.matcher(attributeLine);
+        nameMatch.find();
+        Matcher valMatch = ATTR_VAL.matcher(attributeLine);
+        valMatch.find();
+        node.addAttribute(nameMatch.group(1), valMatch.group(1));
+    }
+
+    private static String getStartTag(String line) {
+        Matcher match = START_TAG.matcher(line);
+        match.find();
+        return match.group(1);
+    }
+
+}
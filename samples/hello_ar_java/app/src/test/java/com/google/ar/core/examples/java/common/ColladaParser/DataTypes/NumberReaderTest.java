@@ -0,0 +1,77 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class NumberReaderTest {
+
+    private static int[] readInts(String text, int count) {
+        char[] buf = text.toCharArray();
+        int[] values = new int[count];
+        assertEquals(count, NumberReader.readInts(buf, 0, buf.length, values));
+        return values;
+    }
+
+    /**
+     * @return The message of the exception reading the text throws.
+     */
+    private static String readIntsError(String text) {
+        char[] buf = text.toCharArray();
+        try {
+            NumberReader.readInts(buf, 0, buf.length, new int[NumberReader.countTokens(buf, 0, buf.length)]);
+        } catch (NumberFormatException e) {
+            return e.getMessage();
+        }
+        fail("Read \"" + text + "\" without an error");
+        return null;
+    }
+
+    @Test
+    public void readInts_readsSignedInts() {
+        assertArrayEquals(new int[] {0, 12, -3, 4, 7}, readInts(" 0\t12\n-3 +4\r\n7 ", 5));
+    }
+
+    @Test
+    public void readInts_readsTheIntLimits() {
+        assertArrayEquals(new int[] {Integer.MAX_VALUE, Integer.MIN_VALUE},
+                readInts("2147483647 -2147483648", 2));
+    }
+
+    @Test
+    public void readInts_stopsAtTheDestinationLength() {
+        char[] buf = "1 2 3".toCharArray();
+        int[] values = new int[2];
+
+        assertEquals(2, NumberReader.readInts(buf, 0, buf.length, values));
+
+        assertArrayEquals(new int[] {1, 2}, values);
+    }
+
+    @Test
+    public void readInts_overflow_throws() {
+        assertEquals("Int out of range at offset 2: \"2147483648\"", readIntsError("1 2147483648 3"));
+        assertEquals("Int out of range at offset 0: \"-2147483649\"", readIntsError("-2147483649"));
+        assertEquals("Int out of range at offset 0: \"99999999999\"", readIntsError("99999999999"));
+    }
+
+    @Test
+    public void readInts_notAnInt_reportsTheOffsetAndTheToken() {
+        assertEquals("Not an int at offset 4: \"1.5\"", readIntsError("1 2 1.5 4 5"));
+        assertEquals("Not an int at offset 2: \"-\"", readIntsError("1 - 2"));
+    }
+
+    @Test
+    public void readInts_errorInALargeArray_reportsOnlyAnExcerpt() {
+        StringBuilder text = new StringBuilder("12 x");
+        for (int i = 0; i < 100000; i++) {
+            text.append(i % 10);
+        }
+        text.append(" 1 2 3");
+
+        assertEquals("Not an int at offset 3: \"x0123456789012345678...\"", readIntsError(text.toString()));
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+/**
+ * Times welding seams of 32k to 256k corners that all share one position,
+ * to show that the time grows linearly with the corners. It has no tests,
+ * so it isn't part of the unit test run.
+ *
+ * @author Karl
+ *
+ */
+public class VertexIndexMapBenchmark {
+
+    private static final int[] CORNER_COUNTS = {1 << 15, 1 << 16, 1 << 17, 1 << 18};
+    private static final int RUNS = 5;
+
+    /**
+     * @return The fastest of a few welds of the seam, in nanoseconds.
+     */
+    private static long timeWeldSeam(int corners) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            VertexIndexMap map = VertexIndexMapTest.weldSeam(corners);
+            for (int corner = 0; corner < corners; corner++) {
+                map.get(0, corner, corners - corner);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        // Warm up, so the small seams aren't timed in the interpreter.
+        timeWeldSeam(CORNER_COUNTS[CORNER_COUNTS.length - 1]);
+        System.out.println(String.format("%8s %10s %12s", "corners", "ms", "ns/corner"));
+        for (int corners : CORNER_COUNTS) {
+            long nanos = timeWeldSeam(corners);
+            System.out.println(String.format("%8d %10.2f %12.1f", corners, nanos / 1e6, (double) nanos / corners));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VertexIndexMapTest {
+
+    /** Corners in {@link #seamSharingOnePosition_keepsProbesShort}. */
+    private static final int SEAM_CORNERS = 1 << 18;
+    /**
+     * The most slots a lookup may look at on average. A chain of duplicates
+     * per position would look at half the corners of the seam.
+     */
+    private static final double MAX_AVERAGE_PROBES = 4;
+
+    /**
+     * The worst seam for a chain of duplicates: every corner shares one
+     * position but has its own normal and texture coordinate, as where a
+     * fan of hard edges meets. Welds them all.
+     */
+    static VertexIndexMap weldSeam(int corners) {
+        VertexIndexMap map = new VertexIndexMap(1);
+        for (int corner = 0; corner < corners; corner++) {
+            if (map.get(0, corner, corners - corner) == VertexIndexMap.NOT_FOUND) {
+                map.put(0, corner, corners - corner, corner);
+            }
+        }
+        return map;
+    }
+
+    @Test
+    public void putAndGet() {
+        VertexIndexMap map = new VertexIndexMap(4);
+
+        map.put(1, 2, 3, 10);
+        map.put(1, 2, 4, 11);
+        map.put(3, 2, 1, 12);
+
+        assertEquals(3, map.size());
+        assertEquals(10, map.get(1, 2, 3));
+        assertEquals(11, map.get(1, 2, 4));
+        assertEquals(12, map.get(3, 2, 1));
+        assertEquals(VertexIndexMap.NOT_FOUND, map.get(2, 1, 3));
+    }
+
+    @Test
+    public void growing_keepsEveryEntry() {
+        VertexIndexMap map = new VertexIndexMap(0);
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            map.put(i % 7, i, i % 13, i);
+        }
+
+        assertEquals(count, map.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, map.get(i % 7, i, i % 13));
+        }
+    }
+
+    @Test
+    public void seamSharingOnePosition_keepsProbesShort() {
+        VertexIndexMap map = weldSeam(SEAM_CORNERS);
+
+        assertEquals(SEAM_CORNERS, map.size());
+        long probes = 0;
+        for (int corner = 0; corner < SEAM_CORNERS; corner++) {
+            assertEquals(corner, map.get(0, corner, SEAM_CORNERS - corner));
+            probes += map.probeLength(0, corner, SEAM_CORNERS - corner);
+        }
+        assertEquals(VertexIndexMap.NOT_FOUND, map.get(0, SEAM_CORNERS, 0));
+        double averageProbes = (double) probes / SEAM_CORNERS;
+        assertTrue("A lookup looked at " + averageProbes + " slots on average", averageProbes < MAX_AVERAGE_PROBES);
+    }
+
+}
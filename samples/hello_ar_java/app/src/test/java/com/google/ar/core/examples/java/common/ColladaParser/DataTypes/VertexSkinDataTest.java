@@ -0,0 +1,102 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class VertexSkinDataTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    /**
+     * @return Skin data for {@code maxWeights} influences, with joint i
+     *         given weight {@code weights[i]}, limited as the skin loader
+     *         does it.
+     */
+    private static VertexSkinData skin(int maxWeights, float... weights) {
+        VertexSkinData data = new VertexSkinData(maxWeights);
+        for (int joint = 0; joint < weights.length; joint++) {
+            data.addJointEffect(joint, weights[joint]);
+        }
+        data.limitJointNumber();
+        return data;
+    }
+
+    private static float sum(float[] weights) {
+        float total = 0;
+        for (float weight : weights) {
+            total += weight;
+        }
+        return total;
+    }
+
+    @Test
+    public void fewerInfluencesThanMax_keepsThemStrongestFirstAndPadsWithZeros() {
+        VertexSkinData data = skin(4, 0.25f, 0.5f, 0.25f);
+
+        assertEquals(3, data.getCount());
+        assertArrayEquals(new int[] {1, 0, 2, 0}, data.jointIds);
+        assertArrayEquals(new float[] {0.5f, 0.25f, 0.25f, 0}, data.weights, 0);
+    }
+
+    @Test
+    public void maxOne_keepsTheStrongestAtFullWeight() {
+        VertexSkinData data = skin(1, 0.2f, 0.5f, 0.3f);
+
+        assertEquals(1, data.getCount());
+        assertArrayEquals(new int[] {1}, data.jointIds);
+        assertArrayEquals(new float[] {1}, data.weights, EPSILON);
+    }
+
+    @Test
+    public void maxFour_keepsTheFourStrongestAndRenormalizes() {
+        VertexSkinData data = skin(4, 0.05f, 0.3f, 0.1f, 0.2f, 0.05f, 0.25f, 0.05f);
+
+        assertEquals(4, data.getCount());
+        assertArrayEquals(new int[] {1, 5, 3, 2}, data.jointIds);
+        float kept = 0.3f + 0.25f + 0.2f + 0.1f;
+        assertArrayEquals(new float[] {0.3f / kept, 0.25f / kept, 0.2f / kept, 0.1f / kept}, data.weights,
+                EPSILON);
+        assertEquals(1, sum(data.weights), EPSILON);
+    }
+
+    @Test
+    public void maxEight_keepsTheEightStrongestOfTen() {
+        float[] weights = {0.01f, 0.1f, 0.15f, 0.02f, 0.12f, 0.08f, 0.2f, 0.11f, 0.09f, 0.12f};
+
+        VertexSkinData data = skin(8, weights);
+
+        assertEquals(8, data.getCount());
+        // Equal weights keep the order they were added in.
+        assertArrayEquals(new int[] {6, 2, 4, 9, 7, 1, 8, 5}, data.jointIds);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(weights[data.jointIds[i]] / 0.97f, data.weights[i], EPSILON);
+        }
+        assertEquals(1, sum(data.weights), EPSILON);
+    }
+
+    @Test
+    public void maxEight_withFewerInfluences_leavesWeightsAsTheyAre() {
+        VertexSkinData data = skin(8, 0.6f, 0.4f);
+
+        assertEquals(2, data.getCount());
+        assertArrayEquals(new int[] {0, 1, 0, 0, 0, 0, 0, 0}, data.jointIds);
+        assertArrayEquals(new float[] {0.6f, 0.4f, 0, 0, 0, 0, 0, 0}, data.weights, 0);
+    }
+
+    @Test
+    public void noInfluences_isAllZeros() {
+        VertexSkinData data = skin(4);
+
+        assertEquals(0, data.getCount());
+        assertArrayEquals(new int[4], data.jointIds);
+        assertArrayEquals(new float[4], data.weights, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxZero_isRejected() {
+        new VertexSkinData(0);
+    }
+
+}
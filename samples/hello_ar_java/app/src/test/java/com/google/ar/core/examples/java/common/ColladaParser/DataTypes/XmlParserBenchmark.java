@@ -0,0 +1,35 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Times parsing the bundled model with {@link XmlParser} and with the
+ * line-based parser it replaced. It has no tests, so it isn't part of the
+ * unit test run; run its main method from the module directory.
+ *
+ * @author Karl
+ *
+ */
+public class XmlParserBenchmark {
+
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws IOException {
+        byte[] dae = XmlParserTest.readHaunter();
+        long lineBased = Long.MAX_VALUE;
+        long singlePass = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            LineBasedXmlParser.loadXmlFile(new ByteArrayInputStream(dae));
+            lineBased = Math.min(lineBased, System.nanoTime() - start);
+            start = System.nanoTime();
+            XmlParser.loadXmlFile(new ByteArrayInputStream(dae));
+            singlePass = Math.min(singlePass, System.nanoTime() - start);
+        }
+        System.out.println(String.format("Parsing %s (%d bytes), best of %d: line-based %.1f ms, "
+                + "single pass %.1f ms (%.1fx)", XmlParserTest.HAUNTER_DAE, dae.length, RUNS, lineBased / 1e6,
+                singlePass / 1e6, (double) lineBased / singlePass));
+    }
+
+}
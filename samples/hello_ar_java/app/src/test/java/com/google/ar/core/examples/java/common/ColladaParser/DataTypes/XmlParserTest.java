@@ -0,0 +1,175 @@
+package com.google.ar.core.examples.java.common.colladaParser.dataTypes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.junit.Test;
+
+public class XmlParserTest {
+
+    static final String HAUNTER_DAE = "src/main/assets/models/HaunterTest4.dae";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static XmlNode parse(String xml) {
+        return XmlParser.loadXml(xml.toCharArray(), xml.length());
+    }
+
+    static byte[] readHaunter() throws IOException {
+        InputStream in = new FileInputStream(HAUNTER_DAE);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A stream that hands out a few bytes per read and never says how many
+     * are left, like a compressed asset.
+     */
+    private static InputStream trickle(byte[] data) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1000));
+            }
+
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+    }
+
+    @Test
+    public void loadXml_readsElementsAttributesAndData() {
+        XmlNode root = parse("<?xml version=\"1.0\"?>\n<a x='1' y=\"a &amp; b\"><b>1 2 3</b><b/>"
+                + "<!-- <c/> --><d><![CDATA[<raw>]]></d></a>");
+
+        assertEquals("a", root.getName());
+        assertEquals("1", root.getAttribute("x"));
+        assertEquals("a & b", root.getAttribute("y"));
+        assertEquals(2, root.getChildren("b").size());
+        assertArrayEquals(new int[] {1, 2, 3}, root.getChild("b").getIntData());
+        assertNull(root.getChild("c"));
+        assertEquals("<raw>", root.getChild("d").getData());
+    }
+
+    /**
+     * @return The message of the exception parsing the text throws.
+     */
+    private static String parseError(String xml) {
+        try {
+            parse(xml);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        fail("Parsed \"" + xml + "\" without an error");
+        return null;
+    }
+
+    @Test
+    public void loadXml_mismatchedEndTag_fails() {
+        assertEquals("End tag </a> doesn't close <b> at offset 6", parseError("<a><b></a></b>"));
+        assertEquals("End tag </c> doesn't close <b> at offset 6", parseError("<a><b></c></a>"));
+    }
+
+    @Test
+    public void loadXml_unterminatedAttributeValue_fails() {
+        assertEquals("Unterminated value of attribute x at offset 6", parseError("<a x=\"1><b/></a>"));
+        assertEquals("Unterminated value of attribute x at offset 6", parseError("<a x=\"1"));
+        assertEquals("Expected a quoted value for attribute x at offset 5", parseError("<a x=1></a>"));
+    }
+
+    @Test
+    public void loadXml_unclosedOrStrayTags_fail() {
+        assertEquals("Unclosed element <a> at end of file at offset 10", parseError("<a><b></b>"));
+        assertEquals("Unexpected end tag </a> at offset 7", parseError("<a></a></a>"));
+        assertEquals("Unterminated end tag </a at offset 3", parseError("<a></a"));
+    }
+
+    @Test
+    public void loadXmlFile_readsPastEveryChunkBoundary() throws IOException {
+        for (int size : new int[] {1000, 64 * 1024 - 1, 64 * 1024, 64 * 1024 + 1, 200 * 1024}) {
+            StringBuilder xml = new StringBuilder("<a>");
+            String closing = "</a>";
+            while (xml.length() + closing.length() < size) {
+                xml.append('7');
+            }
+            xml.append(closing);
+            assertEquals(size, xml.length());
+
+            XmlNode root = XmlParser.loadXmlFile(trickle(xml.toString().getBytes(UTF_8)));
+
+            assertNotNull("Size " + size, root);
+            assertEquals("Size " + size, size - 7, root.getData().length());
+        }
+    }
+
+    /**
+     * Parses the bundled model with this parser and the line-based one it
+     * replaced, and checks that both see the same geometry and skeleton.
+     * {@link XmlParserBenchmark} times the two.
+     */
+    @Test
+    public void loadXmlFile_seesTheSameModelAsTheLineBasedParser() throws IOException {
+        byte[] dae = readHaunter();
+        XmlNode expected = LineBasedXmlParser.loadXmlFile(new ByteArrayInputStream(dae));
+        XmlNode actual = XmlParser.loadXmlFile(new ByteArrayInputStream(dae));
+        assertSameModel(expected, actual);
+    }
+
+    private static void assertSameModel(XmlNode expected, XmlNode actual) {
+        assertEquals(expected.getName(), actual.getName());
+        for (String library : new String[] {"library_geometries", "library_controllers",
+                "library_visual_scenes", "library_animations"}) {
+            assertEquals(library, expected.getChildren(library).size(), actual.getChildren(library).size());
+        }
+        List<XmlNode> expectedGeometries = expected.getChild("library_geometries").getChildren("geometry");
+        List<XmlNode> actualGeometries = actual.getChild("library_geometries").getChildren("geometry");
+        assertEquals(expectedGeometries.size(), actualGeometries.size());
+        for (int i = 0; i < expectedGeometries.size(); i++) {
+            XmlNode expectedMesh = expectedGeometries.get(i).getChild("mesh");
+            XmlNode actualMesh = actualGeometries.get(i).getChild("mesh");
+            List<XmlNode> expectedSources = expectedMesh.getChildren("source");
+            List<XmlNode> actualSources = actualMesh.getChildren("source");
+            assertEquals(expectedSources.size(), actualSources.size());
+            for (int j = 0; j < expectedSources.size(); j++) {
+                assertEquals(expectedSources.get(j).getAttribute("id"), actualSources.get(j).getAttribute("id"));
+                assertArrayEquals(expectedSources.get(j).getChild("float_array").getFloatData(),
+                        actualSources.get(j).getChild("float_array").getFloatData(), 0);
+            }
+            List<XmlNode> expectedTriangles = expectedMesh.getChildren("triangles");
+            List<XmlNode> actualTriangles = actualMesh.getChildren("triangles");
+            assertEquals(expectedTriangles.size(), actualTriangles.size());
+            for (int j = 0; j < expectedTriangles.size(); j++) {
+                assertArrayEquals(expectedTriangles.get(j).getChild("p").getIntData(),
+                        actualTriangles.get(j).getChild("p").getIntData());
+            }
+        }
+        XmlNode expectedSkin = expected.getChild("library_controllers").getChild("controller").getChild("skin");
+        XmlNode actualSkin = actual.getChild("library_controllers").getChild("controller").getChild("skin");
+        assertEquals(expectedSkin.getChild("bind_shape_matrix").getData(),
+                actualSkin.getChild("bind_shape_matrix").getData());
+        assertArrayEquals(expectedSkin.getChild("vertex_weights").getChild("v").getIntData(),
+                actualSkin.getChild("vertex_weights").getChild("v").getIntData());
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.google.ar.core.examples.java.common.colladaParser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.MeshData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.SubmeshData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.VertexSkinData;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlNode;
+import com.google.ar.core.examples.java.common.colladaParser.dataTypes.XmlParser;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GeometryLoaderTest {
+
+    /**
+     * Two geometries: a quad as two triangles with material A, and a quad
+     * and a pentagon in one polylist with material B. Every position has its
+     * own x coordinate, so the x of a vertex tells which position it is.
+     */
+    private static final String TWO_GEOMETRIES = "<library_geometries>"
+            + "<geometry id=\"A\"><mesh>"
+            + "<source id=\"A-positions\"><float_array count=\"12\">0 0 0 1 0 0 2 1 0 3 1 0</float_array>"
+            + "<technique_common><accessor stride=\"3\"/></technique_common></source>"
+            + "<source id=\"A-normals\"><float_array count=\"3\">0 0 1</float_array></source>"
+            + "<vertices id=\"A-vertices\"><input semantic=\"POSITION\" source=\"#A-positions\"/></vertices>"
+            + "<triangles material=\"matA\" count=\"2\">"
+            + "<input semantic=\"VERTEX\" source=\"#A-vertices\" offset=\"0\"/>"
+            + "<input semantic=\"NORMAL\" source=\"#A-normals\" offset=\"1\"/>"
+            + "<p>0 0 1 0 2 0 0 0 2 0 3 0</p>"
+            + "</triangles>"
+            + "</mesh></geometry>"
+            + "<geometry id=\"B\"><mesh>"
+            + "<source id=\"B-positions\"><float_array count=\"27\">"
+            + "10 0 0 11 0 0 12 1 0 13 1 0 14 0 1 15 0 1 16 1 1 17 1 1 18 2 1</float_array></source>"
+            + "<source id=\"B-normals\"><float_array count=\"3\">0 1 0</float_array></source>"
+            + "<source id=\"B-uvs\"><float_array count=\"2\">0.5 0.25</float_array></source>"
+            + "<vertices id=\"B-vertices\"><input semantic=\"POSITION\" source=\"#B-positions\"/></vertices>"
+            + "<polylist material=\"matB\" count=\"2\">"
+            + "<input semantic=\"VERTEX\" source=\"#B-vertices\" offset=\"0\"/>"
+            + "<input semantic=\"NORMAL\" source=\"#B-normals\" offset=\"1\"/>"
+            + "<input semantic=\"TEXCOORD\" source=\"#B-uvs\" offset=\"2\"/>"
+            + "<vcount>4 5</vcount>"
+            + "<p>0 0 0 1 0 0 2 0 0 3 0 0 4 0 0 5 0 0 6 0 0 7 0 0 8 0 0</p>"
+            + "</polylist>"
+            + "</mesh></geometry>"
+            + "</library_geometries>";
+
+    private static MeshData load(String xml, int maxWeights) {
+        XmlNode library = XmlParser.loadXml(xml.toCharArray(), xml.length());
+        GeometryLoader loader = new GeometryLoader(library,
+                Collections.<String, List<VertexSkinData>>emptyMap(), maxWeights);
+        return loader.extractModelData();
+    }
+
+    /**
+     * @return The x coordinate of the vertex each index points at.
+     */
+    private static float[] indexedX(MeshData data) {
+        int[] indices = data.getIndices();
+        float[] x = new float[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            x[i] = data.getVertices()[indices[i] * 3];
+        }
+        return x;
+    }
+
+    @Test
+    public void twoGeometries_areMergedIntoOneIndexBuffer() {
+        MeshData data = load(TWO_GEOMETRIES, 3);
+
+        // 2 triangles, then a quad and a pentagon as 2 + 3 fan triangles.
+        assertEquals(21, data.getIndices().length);
+        assertEquals(13, data.getVertexCount());
+        assertArrayEquals(new float[] {
+                0, 1, 2, 0, 2, 3,
+                10, 11, 12, 10, 12, 13,
+                14, 15, 16, 14, 16, 17, 14, 17, 18}, indexedX(data), 0);
+    }
+
+    @Test
+    public void eachPrimitive_becomesASubmeshWithItsMaterial() {
+        List<SubmeshData> submeshes = load(TWO_GEOMETRIES, 3).getSubmeshes();
+
+        assertEquals(2, submeshes.size());
+        assertEquals(0, submeshes.get(0).indexOffset);
+        assertEquals(6, submeshes.get(0).indexCount);
+        assertEquals("matA", submeshes.get(0).material);
+        assertEquals(6, submeshes.get(1).indexOffset);
+        assertEquals(15, submeshes.get(1).indexCount);
+        assertEquals("matB", submeshes.get(1).material);
+    }
+
+    @Test
+    public void positions_areRotatedToYUp() {
+        MeshData data = load(TWO_GEOMETRIES, 3);
+
+        // Position 6 of geometry B is (16, 1, 1) with z up.
+        int vertex = 4 + 6;
+        assertArrayEquals(new float[] {16, 1, -1},
+                new float[] {data.getVertices()[vertex * 3], data.getVertices()[vertex * 3 + 1],
+                        data.getVertices()[vertex * 3 + 2]}, 1e-6f);
+    }
+
+    @Test
+    public void missingAttributes_getDefaultsAndUnskinnedVerticesGetNoWeights() {
+        MeshData data = load(TWO_GEOMETRIES, 4);
+
+        // Geometry A has no texture coordinates, geometry B has one, flipped to a top-left origin.
+        assertArrayEquals(new float[] {0, 1}, new float[] {data.getTextureCoords()[0], data.getTextureCoords()[1]},
+                0);
+        assertArrayEquals(new float[] {0.5f, 0.75f},
+                new float[] {data.getTextureCoords()[4 * 2], data.getTextureCoords()[4 * 2 + 1]}, 0);
+        assertEquals(13 * 4, data.getJointIds().length);
+        assertArrayEquals(new float[13 * 4], data.getVertexWeights(), 0);
+    }
+
+}
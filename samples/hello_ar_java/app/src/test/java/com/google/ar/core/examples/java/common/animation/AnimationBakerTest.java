@@ -0,0 +1,163 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnimationBakerTest {
+
+    /** Enough frames for the fastest joints of the bundled clip. */
+    private static final float FRAMES_PER_SECOND = 120;
+    /** How far a baked matrix element may be from the one it was read from. */
+    private static final float EPSILON = 1e-4f;
+    /**
+     * How far blending two frames' matrices may be from the pose in between.
+     */
+    private static final float BLEND_ERROR = 0.01f;
+
+    private Skeleton skeleton;
+    private AnimationClip clip;
+    private BakedAnimation baked;
+    private Animator animator;
+    private int frames;
+
+    @Before
+    public void setUp() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        clip = haunter.getAnimationClips().get(0);
+        baked = AnimationBaker.bake(skeleton, Collections.singletonList(clip), FRAMES_PER_SECOND);
+        frames = (int) baked.getClipTable()[1];
+        animator = new Animator(skeleton);
+        // A clock that stands still, so that update() poses exactly the time that was set.
+        animator.setTimeSource(new FrameTimeSource());
+        animator.doAnimation(clip);
+    }
+
+    private float[] animatorPalette(float time) {
+        animator.setAnimationTime(time);
+        animator.update();
+        return animator.getJointTransforms().clone();
+    }
+
+    private float[] bakedPalette(float time) {
+        float[] palette = new float[baked.getJointCount() * Skeleton.MATRIX_SIZE];
+        baked.getPalette(0, time, palette);
+        return palette;
+    }
+
+    private float frameTime(int frame) {
+        return clip.getLength() * frame / frames;
+    }
+
+    private static void assertPaletteEquals(String message, float[] expected, float[] actual, float delta) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(message + ", joint " + i / Skeleton.MATRIX_SIZE + " element " + i % Skeleton.MATRIX_SIZE,
+                    expected[i], actual[i], delta);
+        }
+    }
+
+    private static float[] lerp(float[] a, float[] b, float progression) {
+        float[] result = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            result[i] = a[i] + (b[i] - a[i]) * progression;
+        }
+        return result;
+    }
+
+    @Test
+    public void bake_layout() {
+        assertEquals(skeleton.getJointCount(), baked.getJointCount());
+        assertEquals(1, baked.getClipCount());
+        assertEquals(0, baked.findClip(clip.getName()));
+        assertEquals(Math.round(clip.getLength() * FRAMES_PER_SECOND), frames);
+        assertEquals(frames, baked.getHeight());
+        assertEquals(baked.getJointCount() * BakedAnimation.TEXELS_PER_JOINT, baked.getWidth());
+        assertEquals(baked.getWidth() * baked.getHeight() * BakedAnimation.TEXEL_SIZE, baked.getTexels().length);
+    }
+
+    @Test
+    public void getPalette_atBakedFrames_matchesTheAnimator() {
+        for (int frame = 0; frame < frames; frame++) {
+            float time = frameTime(frame);
+            assertPaletteEquals("Frame " + frame, animatorPalette(time), bakedPalette(time), EPSILON);
+        }
+    }
+
+    @Test
+    public void getPalette_betweenFrames_blendsTheFramesEitherSide() {
+        for (int frame = 0; frame + 1 < frames; frame++) {
+            float[] before = animatorPalette(frameTime(frame));
+            float[] after = animatorPalette(frameTime(frame + 1));
+            for (float progression : new float[] {0.25f, 0.5f, 0.75f}) {
+                float time = frameTime(frame) + (frameTime(frame + 1) - frameTime(frame)) * progression;
+                float[] palette = bakedPalette(time);
+                String message = "Frame " + frame + " + " + progression;
+                assertPaletteEquals(message, lerp(before, after, progression), palette, EPSILON);
+                assertPaletteEquals(message, animatorPalette(time), palette, BLEND_ERROR);
+            }
+        }
+    }
+
+    /**
+     * Like the shader, the palette loops the clip by blending from the last
+     * frame into the first. The animator instead plays on to the last key and
+     * then jumps back. The two only agree if the clip ends where it starts,
+     * and the bundled clip doesn't.
+     */
+    @Test
+    public void getPalette_pastTheLastFrame_blendsIntoTheFirst() {
+        float[] last = animatorPalette(frameTime(frames - 1));
+        float[] first = animatorPalette(0);
+        float lastFrameTime = frameTime(frames - 1);
+
+        for (float progression : new float[] {0.25f, 0.5f, 0.75f}) {
+            float time = lastFrameTime + (clip.getLength() - lastFrameTime) * progression;
+            float[] palette = bakedPalette(time);
+            // The clip jumps far at the loop, so blend by the fraction of a
+            // frame the time rounds to this far into the clip.
+            float frame = time * baked.getClipTable()[2];
+            assertEquals(progression, frame - (frames - 1), 1e-3f);
+            assertPaletteEquals("Wrap + " + progression, lerp(last, first, frame - (frames - 1)), palette, EPSILON);
+        }
+    }
+
+    @Test
+    public void getPalette_loops() {
+        for (int frame = 0; frame < frames; frame += 37) {
+            float time = frameTime(frame) + 0.01f;
+            float[] palette = bakedPalette(time);
+            assertPaletteEquals("Next loop", palette, bakedPalette(time + clip.getLength()), EPSILON);
+            assertPaletteEquals("Previous loop", palette, bakedPalette(time - clip.getLength()), EPSILON);
+        }
+    }
+
+    @Test
+    public void getHalfTexels_areWithinHalfPrecisionOfTheTexels() {
+        float[] texels = baked.getTexels();
+        short[] halfTexels = baked.getHalfTexels();
+
+        assertEquals(texels.length, halfTexels.length);
+        for (int i = 0; i < texels.length; i++) {
+            // Half floats have 11 significant bits, so rounding is off by at most 2^-11 of the value.
+            float half = fromHalfFloat(halfTexels[i]);
+            assertEquals("Texel float " + i, texels[i], half, Math.abs(texels[i]) / 2048 + 1e-7f);
+        }
+    }
+
+    private static float fromHalfFloat(short bits) {
+        int exponent = (bits >> 10) & 0x1f;
+        float magnitude = exponent == 0
+                ? (bits & 0x3ff) * (float) Math.pow(2, -24)
+                : (1 + (bits & 0x3ff) / 1024f) * (float) Math.pow(2, exponent - 15);
+        return (bits & 0x8000) != 0 ? -magnitude : magnitude;
+    }
+
+}
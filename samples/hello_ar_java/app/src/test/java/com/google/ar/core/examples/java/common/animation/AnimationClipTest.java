@@ -0,0 +1,139 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AnimationClipTest {
+
+    /** Uneven key times that start after 0, so there are times before the first key. */
+    private static final float[] KEY_TIMES = {0.25f, 0.5f, 1, 1.5f, 2, 3, 4, 6, 8, 10};
+
+    /**
+     * @return A clip with one joint whose translation x is the key index, and
+     *         whose rotation is the identity.
+     */
+    private static AnimationClip clip(float... keyTimes) {
+        float[] translation = new float[keyTimes.length * AnimationClip.TRANSLATION_SIZE];
+        float[] rotation = new float[keyTimes.length * AnimationClip.ROTATION_SIZE];
+        for (int key = 0; key < keyTimes.length; key++) {
+            translation[key * AnimationClip.TRANSLATION_SIZE] = key;
+            rotation[key * AnimationClip.ROTATION_SIZE + 3] = 1;
+        }
+        return new AnimationClip("test", keyTimes[keyTimes.length - 1], keyTimes,
+                new float[][] {translation}, new float[][] {rotation});
+    }
+
+    @Test
+    public void findKey_returnsTheKeyAtOrBefore() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(0, clip.findKey(0.25f));
+        assertEquals(0, clip.findKey(0.49f));
+        assertEquals(1, clip.findKey(0.5f));
+        assertEquals(5, clip.findKey(3.5f));
+        assertEquals(9, clip.findKey(10));
+    }
+
+    @Test
+    public void findKey_beforeTheFirstKey_returnsTheFirst() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(0, clip.findKey(0));
+        assertEquals(0, clip.findKey(-5));
+        assertEquals(0, clip.findKey(0.1f, 4));
+        assertEquals(0, clip.findKey(0.1f, 0));
+    }
+
+    @Test
+    public void findKey_afterTheLastKey_returnsTheLast() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(9, clip.findKey(11));
+        assertEquals(9, clip.findKey(11, 9));
+        assertEquals(9, clip.findKey(11, 8));
+        assertEquals(9, clip.findKey(100, 0));
+    }
+
+    @Test
+    public void findKeyWithHint_steppingForward_matchesTheSearch() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        int key = 0;
+        for (float time = 0; time <= 11; time += 1 / 60f) {
+            key = clip.findKey(time, key);
+            assertEquals("At " + time, clip.findKey(time), key);
+        }
+    }
+
+    @Test
+    public void findKeyWithHint_withinFourKeys_findsTheKey() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        for (int steps = 0; steps <= 4; steps++) {
+            assertEquals(2 + steps, clip.findKey(KEY_TIMES[2 + steps] + 0.01f, 2));
+        }
+    }
+
+    @Test
+    public void findKeyWithHint_pastTheCursorSteps_fallsBackToTheSearch() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(7, clip.findKey(6.5f, 1));
+        assertEquals(9, clip.findKey(10, 0));
+    }
+
+    @Test
+    public void findKeyWithHint_seekingBackward_fallsBackToTheSearch() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(2, clip.findKey(1.2f, 8));
+        assertEquals(7, clip.findKey(6, 8));
+    }
+
+    @Test
+    public void findKeyWithHint_outOfRangeHint_isIgnored() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(5, clip.findKey(3.5f, -1));
+        assertEquals(5, clip.findKey(3.5f, KEY_TIMES.length));
+    }
+
+    @Test
+    public void singleKey_isFoundForAnyTimeAndSampledAsIs() {
+        AnimationClip clip = clip(2);
+        float[] sample = new float[AnimationClip.SAMPLE_SIZE];
+
+        assertEquals(0, clip.findKey(0));
+        assertEquals(0, clip.findKey(5));
+        assertEquals(0, clip.findKey(5, 0));
+        assertEquals(0, clip.getProgression(0, 5), 0);
+        clip.sample(0, 5, sample, 0);
+
+        assertArrayEquals(new float[] {0, 0, 0, 0, 0, 0, 1}, sample, 0);
+    }
+
+    @Test
+    public void getProgression_isTheFractionBetweenKeys() {
+        AnimationClip clip = clip(KEY_TIMES);
+
+        assertEquals(0, clip.getProgression(0, 0), 0);
+        assertEquals(0.5f, clip.getProgression(5, 3.5f), 1e-6f);
+        assertEquals(1, clip.getProgression(8, 11), 0);
+        // The last key has nothing to interpolate towards.
+        assertEquals(0, clip.getProgression(9, 11), 0);
+    }
+
+    @Test
+    public void sample_interpolatesTheTranslation() {
+        AnimationClip clip = clip(KEY_TIMES);
+        float[] sample = new float[AnimationClip.SAMPLE_SIZE];
+
+        clip.sample(0, 7, sample, 0);
+
+        assertEquals(7.5f, sample[0], 1e-6f);
+        assertEquals(1, sample[AnimationClip.TRANSLATION_SIZE + 3], 1e-6f);
+    }
+
+}
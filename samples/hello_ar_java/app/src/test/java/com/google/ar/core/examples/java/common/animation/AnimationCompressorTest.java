@@ -0,0 +1,143 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AnimationCompressorTest {
+
+    /** How far packing may move a rotation, on top of the angle tolerance. */
+    private static final float PACKED_ANGLE_ERROR = (float) Math.toRadians(0.05);
+
+    private static List<AnimationClip> loadClips() throws IOException {
+        List<AnimationClip> clips = SkeletonTest.loadHaunter().getAnimationClips();
+        assertFalse(clips.isEmpty());
+        return clips;
+    }
+
+    /**
+     * @return How far packing may move a translation of the clip: half a step
+     *         of 16 bits over the largest range a track covers on any axis.
+     */
+    private static float packedPositionError(AnimationClip clip) {
+        float[] value = new float[AnimationClip.TRANSLATION_SIZE];
+        float maxRange = 0;
+        for (int joint = 0; joint < clip.getJointCount(); joint++) {
+            if (!clip.hasTrack(joint)) {
+                continue;
+            }
+            for (int axis = 0; axis < AnimationClip.TRANSLATION_SIZE; axis++) {
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+                for (int key = 0; key < clip.getKeyCount(); key++) {
+                    clip.getTranslation(joint, key, value, 0);
+                    min = Math.min(min, value[axis]);
+                    max = Math.max(max, value[axis]);
+                }
+                maxRange = Math.max(maxRange, max - min);
+            }
+        }
+        // One half step on each of the three axes.
+        return (float) Math.sqrt(3) * maxRange / (2 * 0xFFFF);
+    }
+
+    /**
+     * Compares two clips at a number of times between each key of the
+     * original, not just at its keys like {@link AnimationCompressor#measure}.
+     *
+     * @return The largest position error and the largest angle error.
+     */
+    private static float[] maxErrorBetweenKeys(AnimationClip original, AnimationClip compressed,
+                                               int stepsPerKey) {
+        float[] a = new float[AnimationClip.SAMPLE_SIZE];
+        float[] b = new float[AnimationClip.SAMPLE_SIZE];
+        float[] errors = new float[2];
+        for (int key = 0; key + 1 < original.getKeyCount(); key++) {
+            float start = original.getKeyTime(key);
+            float span = original.getKeyTime(key + 1) - start;
+            for (int step = 0; step < stepsPerKey; step++) {
+                float time = start + span * step / stepsPerKey;
+                for (int joint = 0; joint < original.getJointCount(); joint++) {
+                    if (!original.hasTrack(joint)) {
+                        continue;
+                    }
+                    original.sample(joint, time, a, 0);
+                    compressed.sample(joint, time, b, 0);
+                    float dx = a[0] - b[0];
+                    float dy = a[1] - b[1];
+                    float dz = a[2] - b[2];
+                    errors[0] = Math.max(errors[0], (float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+                    float dot = Math.abs(a[3] * b[3] + a[4] * b[4] + a[5] * b[5] + a[6] * b[6]);
+                    errors[1] = Math.max(errors[1], 2 * (float) Math.acos(Math.min(1, dot)));
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Test
+    public void compress_bundledClips_staysWithinTheTolerancesAndShrinks() throws IOException {
+        for (AnimationClip clip : loadClips()) {
+            AnimationClip compressed = AnimationCompressor.compress(clip);
+            AnimationCompressor.Report report = AnimationCompressor.measure(clip, compressed);
+            float[] between = maxErrorBetweenKeys(clip, compressed, 4);
+
+            float maxPositionError = AnimationCompressor.DEFAULT_MAX_POSITION_ERROR + packedPositionError(clip);
+            float maxAngleError = AnimationCompressor.DEFAULT_MAX_ANGLE_ERROR + PACKED_ANGLE_ERROR;
+            assertTrue(report.toString(), report.maxPositionError <= maxPositionError);
+            assertTrue(report.toString(), report.maxAngleError <= maxAngleError);
+            assertTrue(clip.getName() + " between keys: " + between[0] + " units", between[0] <= maxPositionError);
+            assertTrue(clip.getName() + " between keys: " + Math.toDegrees(between[1]) + " degrees",
+                    between[1] <= maxAngleError);
+
+            assertTrue(compressed.isPacked());
+            assertTrue(report.toString(), report.keyCount < report.originalKeyCount);
+            // Packing alone takes 28 bytes per key and track down to 12.
+            assertTrue(report.toString(), report.getCompressionRatio() >= 2);
+        }
+    }
+
+    @Test
+    public void compress_keepsNameLengthAndTracks() throws IOException {
+        for (AnimationClip clip : loadClips()) {
+            AnimationClip compressed = AnimationCompressor.compress(clip);
+
+            assertEquals(clip.getName(), compressed.getName());
+            assertEquals(clip.getLength(), compressed.getLength(), 0);
+            assertEquals(clip.getJointCount(), compressed.getJointCount());
+            for (int joint = 0; joint < clip.getJointCount(); joint++) {
+                assertEquals(clip.hasTrack(joint), compressed.hasTrack(joint));
+            }
+            assertEquals(clip.getKeyTime(0), compressed.getKeyTime(0), 0);
+            assertEquals(clip.getKeyTime(clip.getKeyCount() - 1),
+                    compressed.getKeyTime(compressed.getKeyCount() - 1), 0);
+        }
+    }
+
+    @Test
+    public void compress_looserTolerances_keepFewerKeys() throws IOException {
+        AnimationClip clip = loadClips().get(0);
+
+        int exact = AnimationCompressor.compress(clip, 0, 0).getKeyCount();
+        int tight = AnimationCompressor.compress(clip).getKeyCount();
+        int loose = AnimationCompressor.compress(clip, 1e-2f, (float) Math.toRadians(1)).getKeyCount();
+
+        assertTrue(exact + " >= " + tight, exact >= tight);
+        assertTrue(tight + " >= " + loose, tight >= loose);
+        assertTrue(loose + " < " + clip.getKeyCount(), loose < clip.getKeyCount());
+    }
+
+    @Test
+    public void compress_packedClip_isReturnedAsItIs() throws IOException {
+        AnimationClip compressed = AnimationCompressor.compress(loadClips().get(0));
+
+        assertSame(compressed, AnimationCompressor.compress(compressed));
+    }
+
+}
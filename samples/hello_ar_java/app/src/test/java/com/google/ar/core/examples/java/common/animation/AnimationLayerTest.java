@@ -0,0 +1,233 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnimationLayerTest {
+
+    private static final int SAMPLE_SIZE = AnimationClip.SAMPLE_SIZE;
+    private static final int X = 0;
+    private static final int ROTATION_Z = AnimationClip.TRANSLATION_SIZE + 2;
+    private static final int ROTATION_W = AnimationClip.TRANSLATION_SIZE + 3;
+    private static final float EPSILON = 1e-5f;
+
+    private Skeleton skeleton;
+    private PosePool pool;
+    private float[] pose;
+
+    @Before
+    public void setUp() {
+        skeleton = new Skeleton(Collections.singletonList(
+                SkeletonTest.joint(0, "body", SkeletonTest.joint(1, "arm", SkeletonTest.joint(2, "hand")))), 3);
+        pool = new PosePool(skeleton, 2);
+        pose = new float[skeleton.getNodeCount() * SAMPLE_SIZE];
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            pose[node * SAMPLE_SIZE + ROTATION_W] = 1;
+        }
+    }
+
+    /**
+     * @return A clip that moves every joint along x, from {@code startX} at
+     *         time 0 to {@code endX} at time 1, and turns it from no rotation
+     *         to {@code endAngle} degrees around z.
+     */
+    private static AnimationClip clip(float startX, float endX, float endAngle) {
+        float[][] translations = new float[3][];
+        float[][] rotations = new float[3][];
+        double halfAngle = Math.toRadians(endAngle) / 2;
+        for (int joint = 0; joint < 3; joint++) {
+            translations[joint] = new float[] {startX, 0, 0, endX, 0, 0};
+            rotations[joint] = new float[] {
+                    0, 0, 0, 1,
+                    0, 0, (float) Math.sin(halfAngle), (float) Math.cos(halfAngle)};
+        }
+        return new AnimationClip("clip", 1, new float[] {0, 1}, translations, rotations);
+    }
+
+    /**
+     * @return A clip that holds every joint at {@code x} along x.
+     */
+    private static AnimationClip still(float x) {
+        return clip(x, x, 0);
+    }
+
+    private float x(String joint) {
+        return pose[skeleton.findNode(joint) * SAMPLE_SIZE + X];
+    }
+
+    private void apply(AnimationLayer layer) {
+        layer.apply(pose, skeleton, pool, false, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void crossFade_blendsFromTheOldClipToTheNew() {
+        AnimationLayer layer = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        layer.play(still(1));
+
+        layer.crossFade(still(3), 1);
+        assertTrue(layer.isFading());
+        apply(layer);
+        assertEquals("At the start", 1, x("arm"), EPSILON);
+
+        layer.advance(0.5f);
+        apply(layer);
+        assertEquals("Halfway", 2, x("arm"), EPSILON);
+
+        layer.advance(0.5f);
+        assertFalse(layer.isFading());
+        apply(layer);
+        assertEquals("At the end", 3, x("arm"), EPSILON);
+    }
+
+    @Test
+    public void crossFade_withNothingPlaying_startsTheClipAtOnce() {
+        AnimationLayer layer = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+
+        layer.crossFade(still(3), 1);
+
+        assertFalse(layer.isFading());
+        apply(layer);
+        assertEquals(3, x("body"), EPSILON);
+    }
+
+    @Test
+    public void override_blendsByTheLayerWeight() {
+        AnimationLayer base = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        base.play(still(1));
+        AnimationLayer top = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        top.play(still(3));
+        top.setWeight(0.25f);
+
+        apply(base);
+        apply(top);
+
+        assertEquals(1.5f, x("body"), EPSILON);
+    }
+
+    @Test
+    public void maskedJoints_keepTheBaseLayersPose() {
+        AnimationLayer base = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        base.play(still(1));
+        AnimationLayer arm = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        arm.play(still(3));
+        arm.setMask(JointMask.forSubtree(skeleton, "arm"));
+
+        apply(base);
+        apply(arm);
+
+        assertEquals(1, x("body"), EPSILON);
+        assertEquals(3, x("arm"), EPSILON);
+        assertEquals(3, x("hand"), EPSILON);
+    }
+
+    @Test
+    public void invertedMask_coversTheOtherJoints() {
+        AnimationLayer base = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        base.play(still(1));
+        AnimationLayer rest = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        rest.play(still(3));
+        rest.setMask(JointMask.forSubtree(skeleton, "arm").invert());
+
+        apply(base);
+        apply(rest);
+
+        assertEquals(3, x("body"), EPSILON);
+        assertEquals(1, x("arm"), EPSILON);
+        assertEquals(1, x("hand"), EPSILON);
+    }
+
+    @Test
+    public void additive_addsTheMotionSinceTheFirstKeyByWeight() {
+        AnimationLayer base = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        base.play(still(1));
+        AnimationLayer additive = new AnimationLayer(AnimationLayer.BlendMode.ADDITIVE);
+        additive.play(clip(5, 7, 90));
+        additive.setAnimationTime(1);
+        additive.setWeight(0.5f);
+
+        apply(base);
+        additive.apply(pose, skeleton, pool, true, Integer.MAX_VALUE);
+
+        // Half of the 2 units and 90 degrees the clip moved from its first key.
+        int hand = skeleton.findNode("hand") * SAMPLE_SIZE;
+        assertEquals(2, pose[hand + X], EPSILON);
+        assertEquals((float) Math.sin(Math.toRadians(22.5)), pose[hand + ROTATION_Z], EPSILON);
+        assertEquals((float) Math.cos(Math.toRadians(22.5)), pose[hand + ROTATION_W], EPSILON);
+    }
+
+    @Test
+    public void additive_atTheFirstKey_changesNothing() {
+        AnimationLayer base = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        base.play(clip(1, 1, 30));
+        base.setAnimationTime(1);
+        AnimationLayer additive = new AnimationLayer(AnimationLayer.BlendMode.ADDITIVE);
+        additive.play(clip(5, 7, 90));
+
+        apply(base);
+        float[] expected = pose.clone();
+        apply(additive);
+
+        for (int i = 0; i < pose.length; i++) {
+            assertEquals("Float " + i, expected[i], pose[i], EPSILON);
+        }
+    }
+
+    @Test
+    public void maxDepth_leavesDeeperJointsToTheLayerBeneath() {
+        AnimationLayer base = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        base.play(still(1));
+        AnimationLayer top = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        top.play(still(3));
+
+        apply(base);
+        top.apply(pose, skeleton, pool, false, 1);
+
+        assertEquals(3, x("arm"), EPSILON);
+        assertEquals(1, x("hand"), EPSILON);
+    }
+
+    @Test
+    public void apply_returnsBothPooledPoses() {
+        AnimationLayer layer = new AnimationLayer(AnimationLayer.BlendMode.OVERRIDE);
+        layer.play(still(1));
+        layer.crossFade(still(3), 1);
+        float[] first = pool.obtain();
+        float[] second = pool.obtain();
+        pool.release(second);
+        pool.release(first);
+
+        apply(layer);
+        apply(layer);
+
+        // The same buffers come back, in the same order.
+        assertSame(first, pool.obtain());
+        assertSame(second, pool.obtain());
+    }
+
+    @Test
+    public void posePool_refusesToGrowOrReleaseOutOfOrder() {
+        float[] first = pool.obtain();
+        float[] second = pool.obtain();
+        try {
+            pool.obtain();
+            fail("Obtained more poses than the pool holds");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            pool.release(first);
+            fail("Released the poses out of order");
+        } catch (IllegalStateException expected) {
+        }
+        pool.release(second);
+        pool.release(first);
+    }
+
+}
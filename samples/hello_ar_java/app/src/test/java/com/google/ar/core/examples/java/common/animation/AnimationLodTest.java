@@ -0,0 +1,104 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+import com.google.ar.core.examples.java.common.math.Matrices;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class AnimationLodTest {
+
+    private static final float BOUNDING_RADIUS = 0.3f;
+
+    /** @return The x and y scale of a 90 degree field of view, which is all the LOD reads. */
+    private static float[] projection() {
+        float[] projection = new float[Matrices.SIZE];
+        Matrices.setIdentity(projection, 0);
+        return projection;
+    }
+
+    /** @return A model-view matrix of a model {@code distance} ahead of the camera and {@code x} to the side. */
+    private static float[] modelViewAt(float x, float distance) {
+        float[] modelView = new float[Matrices.SIZE];
+        Matrices.setIdentity(modelView, 0);
+        modelView[12] = x;
+        modelView[14] = -distance;
+        return modelView;
+    }
+
+    private static Animator haunterAnimator() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        return new Animator(new Skeleton(haunter.getRootJoints(), haunter.getJointCount()));
+    }
+
+    @Test
+    public void nearBands_animateEveryJointOfTheSkin() throws IOException {
+        Animator animator = haunterAnimator();
+        AnimationLod lod = AnimationLod.createDefault();
+
+        assertTrue(lod.apply(animator, modelViewAt(0, 1), projection(), BOUNDING_RADIUS));
+        assertEquals(1, animator.getUpdateInterval());
+        assertEquals(Animator.ALL_JOINTS, animator.getMaxJointDepth());
+
+        assertTrue(lod.apply(animator, modelViewAt(0, 4), projection(), BOUNDING_RADIUS));
+        assertEquals(2, animator.getUpdateInterval());
+        assertEquals(Animator.ALL_JOINTS, animator.getMaxJointDepth());
+    }
+
+    /**
+     * Haunter's joints are at most 3 below their root, so the far band has to
+     * go shallower than that to leave anything out.
+     */
+    @Test
+    public void farBand_skipsOuterFingerSegmentsOfTheHaunter() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        Skeleton skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        AnimationClip clip = haunter.getAnimationClips().get(0);
+        Animator animator = new Animator(skeleton);
+
+        assertTrue(AnimationLod.createDefault().apply(animator, modelViewAt(0, 10), projection(),
+                BOUNDING_RADIUS));
+        assertEquals(4, animator.getUpdateInterval());
+
+        int skipped = 0;
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            if (!clip.hasTrack(skeleton.getJointIndex(node))) {
+                continue;
+            }
+            String name = skeleton.getName(node);
+            if (skeleton.getDepth(node) > animator.getMaxJointDepth()) {
+                assertTrue(name + " shouldn't be skipped", name.startsWith("Finger"));
+                skipped++;
+            } else {
+                assertFalse(name + " should be skipped", name.matches("Finger.-[23].*"));
+            }
+        }
+        assertEquals(6, skipped);
+    }
+
+    @Test
+    public void tinyModel_getsTheLastBand() throws IOException {
+        Animator animator = haunterAnimator();
+
+        assertTrue(AnimationLod.createDefault().apply(animator, modelViewAt(0, 1), projection(),
+                0.01f));
+
+        assertEquals(4, animator.getUpdateInterval());
+        assertEquals(1, animator.getMaxJointDepth());
+    }
+
+    @Test
+    public void modelOutsideTheView_isNotUpdated() throws IOException {
+        Animator animator = haunterAnimator();
+        AnimationLod lod = AnimationLod.createDefault();
+
+        assertFalse(lod.apply(animator, modelViewAt(5, 1), projection(), BOUNDING_RADIUS));
+        assertFalse(lod.apply(animator, modelViewAt(0, -1), projection(), BOUNDING_RADIUS));
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnimatorTest {
+
+    private static final int WARM_UP_UPDATES = 20000;
+    private static final int MEASURED_UPDATES = 1000;
+    private static final int FADE_UPDATES = 100;
+    /** About 60 frames a second. */
+    private static final long FRAME_NANOS = 16666667;
+
+    private ColladaParser haunter;
+    private Skeleton skeleton;
+    private AnimationClip clip;
+    private com.sun.management.ThreadMXBean threads;
+    private long timeNanos;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        haunter = SkeletonTest.loadHaunter();
+        skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        clip = haunter.getAnimationClips().get(0);
+    }
+
+    /**
+     * @return The bytes the current thread allocated during {@code updates}
+     *         calls of {@link Animator#update()}, each a frame later than the
+     *         last.
+     */
+    private long allocatedBytes(Animator animator, FrameTimeSource clock, int updates) {
+        long threadId = Thread.currentThread().getId();
+        // What reading the counter costs on its own, so it can be taken off.
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long overhead = threads.getThreadAllocatedBytes(threadId) - before;
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < updates; i++) {
+            clock.setFrameTimestamp(timeNanos += FRAME_NANOS);
+            animator.update();
+        }
+        return threads.getThreadAllocatedBytes(threadId) - before - overhead;
+    }
+
+    /**
+     * @return The bytes allocated by {@code updates} updates after
+     *         {@link #WARM_UP_UPDATES} unmeasured ones.
+     */
+    private long allocatedBytesPerUpdates(Animator animator, FrameTimeSource clock, int updates) {
+        allocatedBytes(animator, clock, WARM_UP_UPDATES);
+        return allocatedBytes(animator, clock, updates);
+    }
+
+    private Animator createAnimator(FrameTimeSource clock) {
+        Animator animator = new Animator(skeleton);
+        animator.setTimeSource(clock);
+        animator.doAnimation(clip);
+        return animator;
+    }
+
+    @Test
+    public void update_playingAClip_allocatesNothing() {
+        FrameTimeSource clock = new FrameTimeSource();
+        Animator animator = createAnimator(clock);
+
+        assertEquals(0, allocatedBytesPerUpdates(animator, clock, MEASURED_UPDATES));
+    }
+
+    @Test
+    public void update_slerpWithLayersAndLod_allocatesNothing() {
+        FrameTimeSource clock = new FrameTimeSource();
+        Animator animator = createAnimator(clock);
+        animator.setSlerp(true);
+        animator.setUpdateInterval(3);
+        animator.setMaxJointDepth(1);
+        AnimationLayer additive = animator.addLayer(AnimationLayer.BlendMode.ADDITIVE);
+        additive.setMask(JointMask.forSubtree(skeleton, "Hand_L"));
+        additive.setWeight(0.5f);
+        additive.play(clip);
+
+        assertEquals(0, allocatedBytesPerUpdates(animator, clock, MEASURED_UPDATES));
+    }
+
+    @Test
+    public void update_duringCrossFades_allocatesNothing() {
+        FrameTimeSource clock = new FrameTimeSource();
+        Animator animator = createAnimator(clock);
+        float fadeSeconds = FADE_UPDATES * FRAME_NANOS / 1e9f;
+        // Warm up the fades too, so that none of them is measured in the interpreter.
+        for (int fade = 0; fade < WARM_UP_UPDATES / FADE_UPDATES; fade++) {
+            animator.crossFade(clip, fadeSeconds);
+            allocatedBytes(animator, clock, FADE_UPDATES);
+        }
+
+        // Fades started by the test outside the measured updates.
+        long allocated = 0;
+        for (int fade = 0; fade < 10; fade++) {
+            animator.crossFade(clip, fadeSeconds);
+            allocated += allocatedBytes(animator, clock, FADE_UPDATES);
+        }
+
+        assertEquals(0, allocated);
+    }
+
+}
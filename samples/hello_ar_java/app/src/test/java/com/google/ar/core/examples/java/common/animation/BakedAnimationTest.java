@@ -0,0 +1,81 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BakedAnimationTest {
+
+    /**
+     * @return The value of a half float, decoded the long way round.
+     */
+    private static float fromHalfFloat(int bits) {
+        int exponent = (bits >> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        float magnitude;
+        if (exponent == 0x1f) {
+            magnitude = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        } else if (exponent == 0) {
+            magnitude = mantissa * (float) Math.pow(2, -24);
+        } else {
+            magnitude = (1 + mantissa / 1024f) * (float) Math.pow(2, exponent - 15);
+        }
+        return (bits & 0x8000) != 0 ? -magnitude : magnitude;
+    }
+
+    private static void assertHalf(int expected, float value) {
+        assertEquals("Half of " + value, Integer.toHexString(expected),
+                Integer.toHexString(BakedAnimation.toHalfFloat(value) & 0xffff));
+    }
+
+    @Test
+    public void toHalfFloat_convertsExactValues() {
+        assertHalf(0x0000, 0);
+        assertHalf(0x8000, -0f);
+        assertHalf(0x3c00, 1);
+        assertHalf(0xc000, -2);
+        assertHalf(0x3555, 1 / 3f);
+        assertHalf(0x7bff, 65504);
+        assertHalf(0x0400, (float) Math.pow(2, -14));
+        assertHalf(0x0001, (float) Math.pow(2, -24));
+        assertHalf(0x03ff, (float) (Math.pow(2, -14) - Math.pow(2, -24)));
+    }
+
+    @Test
+    public void toHalfFloat_everyHalfSurvivesTheRoundTrip() {
+        for (int bits = 0; bits < 0x10000; bits++) {
+            if ((bits & 0x7c00) == 0x7c00 && (bits & 0x3ff) != 0) {
+                // NaNs only have to stay NaNs.
+                continue;
+            }
+            assertHalf(bits, fromHalfFloat(bits));
+        }
+    }
+
+    @Test
+    public void toHalfFloat_roundsHalfwayToEven() {
+        for (int bits = 0; bits < 0x7bff; bits++) {
+            float below = fromHalfFloat(bits);
+            float above = fromHalfFloat(bits + 1);
+            float halfway = (below + above) / 2;
+            int even = (bits & 1) == 0 ? bits : bits + 1;
+            assertHalf(even, halfway);
+            assertHalf(bits, Math.nextDown(halfway));
+            assertHalf(bits + 1, Math.nextUp(halfway));
+        }
+    }
+
+    @Test
+    public void toHalfFloat_outOfRange_isInfinityOrZero() {
+        assertHalf(0x7c00, 65520);
+        assertHalf(0xfc00, -1e10f);
+        assertHalf(0x7c00, Float.POSITIVE_INFINITY);
+        assertHalf(0xfc00, Float.NEGATIVE_INFINITY);
+        assertHalf(0x0000, (float) Math.pow(2, -25));
+        assertHalf(0x8000, -1e-10f);
+        assertEquals(0x7c00, BakedAnimation.toHalfFloat(Float.NaN) & 0x7c00);
+        assertTrue((BakedAnimation.toHalfFloat(Float.NaN) & 0x3ff) != 0);
+    }
+
+}
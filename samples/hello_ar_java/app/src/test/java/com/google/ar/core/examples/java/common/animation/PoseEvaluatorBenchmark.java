@@ -0,0 +1,87 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+
+import java.io.IOException;
+
+/**
+ * Times a frame of 1 to 200 Haunters on the calling thread and spread over
+ * the pool of a {@link PoseEvaluator}, and prints a table that shows where
+ * the default parallel threshold breaks even. It has no tests, so it isn't
+ * part of the unit test run; run its main method from the module directory.
+ *
+ * @author Karl
+ *
+ */
+public class PoseEvaluatorBenchmark {
+
+    private static final int[] INSTANCE_COUNTS = {1, 2, 5, 10, 20, 50, 100, 200};
+    private static final int WARM_UP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 100;
+    /** About 60 frames a second. */
+    private static final long FRAME_NANOS = 16666667;
+
+    private final Skeleton skeleton;
+    private final AnimationClip clip;
+    private final FrameTimeSource clock = new FrameTimeSource();
+    private final PoseEvaluator evaluator = new PoseEvaluator();
+    private long timeNanos;
+
+    private PoseEvaluatorBenchmark() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        clip = haunter.getAnimationClips().get(0);
+    }
+
+    /**
+     * @return Haunters that each start at another point of the clip.
+     */
+    private Animator[] createHaunters(int count) {
+        Animator[] animators = new Animator[count];
+        for (int i = 0; i < count; i++) {
+            animators[i] = new Animator(skeleton);
+            animators[i].setTimeSource(clock);
+            animators[i].doAnimation(clip);
+            animators[i].setAnimationTime(clip.getLength() * i / count);
+        }
+        return animators;
+    }
+
+    /**
+     * @return The average time one frame took, in microseconds.
+     */
+    private double timeFrames(Animator[] animators, int frames) {
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            clock.setFrameTimestamp(timeNanos += FRAME_NANOS);
+            evaluator.evaluate(animators, animators.length);
+        }
+        return (System.nanoTime() - start) / 1e3 / frames;
+    }
+
+    private void run() {
+        System.out.println("PoseEvaluator, " + Runtime.getRuntime().availableProcessors()
+                + " processors, microseconds per frame");
+        System.out.println(String.format("%9s %10s %10s %8s", "haunters", "serial", "parallel", "speedup"));
+        for (int count : INSTANCE_COUNTS) {
+            Animator[] animators = createHaunters(count);
+            evaluator.setParallelThreshold(Integer.MAX_VALUE);
+            timeFrames(animators, WARM_UP_FRAMES);
+            double serial = timeFrames(animators, MEASURED_FRAMES);
+            evaluator.setParallelThreshold(1);
+            timeFrames(animators, WARM_UP_FRAMES);
+            double parallel = timeFrames(animators, MEASURED_FRAMES);
+            System.out.println(String.format("%9d %10.1f %10.1f %7.2fx", count, serial, parallel, serial / parallel));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        PoseEvaluatorBenchmark benchmark = new PoseEvaluatorBenchmark();
+        try {
+            benchmark.run();
+        } finally {
+            benchmark.evaluator.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PoseEvaluatorTest {
+
+    /** About 60 frames a second. */
+    private static final long FRAME_NANOS = 16666667;
+
+    private Skeleton skeleton;
+    private AnimationClip clip;
+    private FrameTimeSource clock;
+    private long timeNanos;
+    private PoseEvaluator evaluator;
+
+    @Before
+    public void setUp() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        clip = haunter.getAnimationClips().get(0);
+        clock = new FrameTimeSource();
+        evaluator = new PoseEvaluator();
+    }
+
+    @After
+    public void tearDown() {
+        evaluator.shutdown();
+    }
+
+    /**
+     * @return Haunters that each start at another point of the clip.
+     */
+    private Animator[] createHaunters(int count) {
+        Animator[] animators = new Animator[count];
+        for (int i = 0; i < count; i++) {
+            animators[i] = new Animator(skeleton);
+            animators[i].setTimeSource(clock);
+            animators[i].doAnimation(clip);
+            animators[i].setAnimationTime(clip.getLength() * i / count);
+        }
+        return animators;
+    }
+
+    private void nextFrame() {
+        clock.setFrameTimestamp(timeNanos += FRAME_NANOS);
+    }
+
+    @Test
+    public void evaluate_inParallel_posesLikeTheCallingThread() {
+        Animator[] serial = createHaunters(50);
+        Animator[] parallel = createHaunters(50);
+
+        for (int frame = 0; frame < 10; frame++) {
+            nextFrame();
+            evaluator.setParallelThreshold(Integer.MAX_VALUE);
+            evaluator.evaluate(serial, serial.length);
+            evaluator.setParallelThreshold(1);
+            evaluator.evaluate(parallel, parallel.length);
+        }
+
+        for (int i = 0; i < serial.length; i++) {
+            assertArrayEquals("Haunter " + i, serial[i].getJointTransforms(), parallel[i].getJointTransforms(), 0);
+        }
+    }
+
+    @Test
+    public void evaluate_onlyUpdatesTheGivenCount() {
+        Animator[] animators = createHaunters(4);
+        nextFrame();
+        evaluator.evaluate(animators, 4);
+        float[] before = animators[3].getJointTransforms().clone();
+
+        nextFrame();
+        evaluator.evaluate(animators, 3);
+
+        assertArrayEquals(before, animators[3].getJointTransforms(), 0);
+    }
+
+    @Test
+    public void evaluate_onASharedPool_leavesThePoolRunning() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        PoseEvaluator shared = new PoseEvaluator(pool);
+        shared.setParallelThreshold(1);
+        shared.evaluate(createHaunters(10), 10);
+
+        shared.shutdown();
+
+        assertFalse(pool.isShutdown());
+        pool.shutdown();
+    }
+
+}
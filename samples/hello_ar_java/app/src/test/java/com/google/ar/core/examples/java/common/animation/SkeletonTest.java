@@ -0,0 +1,86 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+import com.google.ar.core.examples.java.common.math.Matrices;
+import com.google.ar.core.examples.java.common.samplerender.Joint;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SkeletonTest {
+
+    /** The bundled skinned model, relative to the module directory tests run in. */
+    public static final String HAUNTER_DAE = "src/main/assets/models/HaunterTest4.dae";
+
+    public static ColladaParser loadHaunter() throws IOException {
+        try (InputStream in = new FileInputStream(HAUNTER_DAE)) {
+            return new ColladaParser(in);
+        }
+    }
+
+    static Joint joint(int index, String name, Joint... children) {
+        float[] transform = new float[Matrices.SIZE];
+        Matrices.setIdentity(transform, 0);
+        Joint joint = new Joint(index, name, transform);
+        for (Joint child : children) {
+            joint.addChild(child);
+        }
+        return joint;
+    }
+
+    @Test
+    public void flattensEveryRootOfAForest() {
+        List<Joint> roots = Arrays.asList(
+                joint(0, "body", joint(1, "jaw")),
+                joint(2, "hand", joint(3, "finger", joint(4, "fingertip"))),
+                joint(5, "tail"));
+
+        Skeleton skeleton = new Skeleton(roots, 6);
+
+        assertEquals(6, skeleton.getNodeCount());
+        int rootCount = 0;
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            int parent = skeleton.getParent(node);
+            assertTrue("Parents must come first", parent < node);
+            if (parent < 0) {
+                rootCount++;
+                assertEquals(0, skeleton.getDepth(node));
+            } else {
+                assertEquals(skeleton.getDepth(parent) + 1, skeleton.getDepth(node));
+            }
+        }
+        assertEquals(3, rootCount);
+        assertEquals(skeleton.findNode("hand"), skeleton.getParent(skeleton.findNode("finger")));
+        assertEquals(2, skeleton.getDepth(skeleton.findNode("fingertip")));
+    }
+
+    @Test
+    public void haunter_skeletonHoldsEverySkinJoint() throws IOException {
+        ColladaParser haunter = loadHaunter();
+
+        Skeleton skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+
+        assertEquals(4, haunter.getRootJoints().size());
+        assertEquals(27, skeleton.getJointCount());
+        assertEquals(skeleton.getJointCount(), skeleton.getNodeCount());
+        boolean[] seen = new boolean[skeleton.getJointCount()];
+        for (int node = 0; node < skeleton.getNodeCount(); node++) {
+            int joint = skeleton.getJointIndex(node);
+            assertTrue("Joint " + skeleton.getName(node) + " isn't in the skin", joint >= 0);
+            assertTrue("Joint index " + joint + " appears twice", !seen[joint]);
+            seen[joint] = true;
+        }
+        for (String name : new String[] {"RootBody", "Hand_L", "Hand_R_001", "Tail"}) {
+            assertEquals(-1, skeleton.getParent(skeleton.findNode(name)));
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package com.google.ar.core.examples.java.common.animation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+import com.google.ar.core.examples.java.common.math.Matrices;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SkinningPaletteTest {
+
+    private static final String SHADER = "src/main/assets/shaders/TestShader.vert";
+    private static final float EPSILON = 1e-4f;
+    private static final int MAX_WEIGHTS = 3;
+
+    /** std140 rounds the stride of every array up to a vec4. */
+    private static final int VEC4_BYTES = 16;
+    private static final int FLOAT_BYTES = 4;
+
+    private static float[] rotationAboutX(float degrees, float tx, float ty, float tz) {
+        float[] m = new float[Matrices.SIZE];
+        Matrices.setIdentity(m, 0);
+        float c = (float) Math.cos(Math.toRadians(degrees));
+        float s = (float) Math.sin(Math.toRadians(degrees));
+        m[5] = c;
+        m[6] = s;
+        m[9] = -s;
+        m[10] = c;
+        m[12] = tx;
+        m[13] = ty;
+        m[14] = tz;
+        return m;
+    }
+
+    private static float[] palette(float[]... jointTransforms) {
+        float[] palette = new float[jointTransforms.length * Matrices.SIZE];
+        for (int joint = 0; joint < jointTransforms.length; joint++) {
+            System.arraycopy(jointTransforms[joint], 0, palette, joint * Matrices.SIZE, Matrices.SIZE);
+        }
+        return palette;
+    }
+
+    /**
+     * Linear blend skinning straight from the joint transforms, without
+     * packing: the sum of each weighted joint transform applied to the vertex.
+     */
+    private static float[] referenceSkin(float[] jointTransforms, float[] vectors, boolean isPoint,
+                                         int[] jointIndices, float[] weights) {
+        float[] dest = new float[vectors.length];
+        float p = isPoint ? 1 : 0;
+        for (int v = 0; v < vectors.length / 3; v++) {
+            for (int i = 0; i < MAX_WEIGHTS; i++) {
+                int m = jointIndices[v * MAX_WEIGHTS + i] * Matrices.SIZE;
+                float weight = weights[v * MAX_WEIGHTS + i];
+                for (int row = 0; row < 3; row++) {
+                    dest[v * 3 + row] += weight * (jointTransforms[m + row] * vectors[v * 3]
+                            + jointTransforms[m + 4 + row] * vectors[v * 3 + 1]
+                            + jointTransforms[m + 8 + row] * vectors[v * 3 + 2]
+                            + jointTransforms[m + 12 + row] * p);
+                }
+            }
+        }
+        return dest;
+    }
+
+    private static float[] cpuSkin(SkinningPalette.Mode mode, float[] jointTransforms, float[] vectors,
+                                   boolean isPoint, int[] jointIndices, float[] weights) {
+        float[] packed = new float[SkinningPalette.MAX_JOINTS * mode.getFloatsPerJoint()];
+        SkinningPalette.pack(mode, jointTransforms, packed);
+        float[] dest = new float[vectors.length];
+        new CpuSkinner(mode, MAX_WEIGHTS).skin(packed, vectors, isPoint, jointIndices, weights, dest);
+        return dest;
+    }
+
+    private static void assertVectorsEqual(float[] expected, float[] actual, float delta) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Vertex " + i / 3 + " axis " + i % 3, expected[i], actual[i], delta);
+        }
+    }
+
+    private static float length(float[] vectors, int vertex) {
+        float x = vectors[vertex * 3], y = vectors[vertex * 3 + 1], z = vectors[vertex * 3 + 2];
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+
+    @Test
+    public void blockLayout_matchesTheShaderDeclarations() throws IOException {
+        String shader = new String(Files.readAllBytes(Paths.get(SHADER)), Charset.forName("UTF-8"));
+
+        assertTrue(shader.contains("#define MAX_JOINTS " + SkinningPalette.MAX_JOINTS + "\n"));
+        assertTrue(shader.contains("layout(std140) uniform " + SkinningPalette.Mode.LINEAR.getBlockName()));
+        assertTrue(shader.contains("mat4 u_JointMatrices[MAX_JOINTS];"));
+        assertTrue(shader.contains("layout(std140) uniform " + SkinningPalette.Mode.DUAL_QUATERNION.getBlockName()));
+        assertTrue(shader.contains("vec4 u_JointDualQuaternions[2 * MAX_JOINTS];"));
+        // std140 strides: a mat4 is four vec4 columns, a dual quaternion two vec4s.
+        assertEquals(4 * VEC4_BYTES, SkinningPalette.Mode.LINEAR.getFloatsPerJoint() * FLOAT_BYTES);
+        assertEquals(2 * VEC4_BYTES, SkinningPalette.Mode.DUAL_QUATERNION.getFloatsPerJoint() * FLOAT_BYTES);
+    }
+
+    @Test
+    public void pack_linear_writesColumnMajorMatricesAtTheMat4Stride() {
+        float[] transforms = palette(rotationAboutX(0, 1, 2, 3), rotationAboutX(90, 4, 5, 6));
+        float[] packed = new float[64];
+
+        int written = SkinningPalette.pack(SkinningPalette.Mode.LINEAR, transforms, packed);
+
+        assertEquals(32, written);
+        for (int joint = 0; joint < 2; joint++) {
+            int offset = joint * 4 * VEC4_BYTES / FLOAT_BYTES;
+            for (int column = 0; column < 4; column++) {
+                for (int row = 0; row < 4; row++) {
+                    assertEquals(transforms[joint * Matrices.SIZE + column * 4 + row],
+                            packed[offset + column * 4 + row], 0);
+                }
+            }
+        }
+        assertEquals(0, packed[written], 0);
+    }
+
+    @Test
+    public void pack_dualQuaternion_writesRealThenDualPartAtTheVec4Stride() {
+        // A quarter turn about x, then a move by (2, 4, 6).
+        float[] transforms = palette(rotationAboutX(0, 0, 0, 0), rotationAboutX(90, 2, 4, 6));
+        float[] packed = new float[32];
+
+        int written = SkinningPalette.pack(SkinningPalette.Mode.DUAL_QUATERNION, transforms, packed);
+
+        assertEquals(16, written);
+        float half = (float) Math.sqrt(0.5);
+        int real = 2 * VEC4_BYTES / FLOAT_BYTES;
+        int dual = real + VEC4_BYTES / FLOAT_BYTES;
+        // The identity first.
+        assertEquals(1, Math.abs(packed[3]), EPSILON);
+        for (int i = 4; i < 8; i++) {
+            assertEquals(0, packed[i], EPSILON);
+        }
+        float sign = Math.signum(packed[real + 3]);
+        assertEquals(half, sign * packed[real], EPSILON);
+        assertEquals(0, packed[real + 1], EPSILON);
+        assertEquals(0, packed[real + 2], EPSILON);
+        assertEquals(half, sign * packed[real + 3], EPSILON);
+        // The dual part is t * r / 2, with t = (2, 4, 6, 0) as a quaternion.
+        float[] r = {half, 0, 0, half};
+        float[] t = {2, 4, 6, 0};
+        float[] expectedDual = {
+                0.5f * (t[3] * r[0] + t[0] * r[3] + t[1] * r[2] - t[2] * r[1]),
+                0.5f * (t[3] * r[1] - t[0] * r[2] + t[1] * r[3] + t[2] * r[0]),
+                0.5f * (t[3] * r[2] + t[0] * r[1] - t[1] * r[0] + t[2] * r[3]),
+                0.5f * (t[3] * r[3] - t[0] * r[0] - t[1] * r[1] - t[2] * r[2])};
+        for (int i = 0; i < 4; i++) {
+            assertEquals(expectedDual[i], sign * packed[dual + i], EPSILON);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pack_tooManyJoints_throws() {
+        float[] transforms = new float[(SkinningPalette.MAX_JOINTS + 1) * Matrices.SIZE];
+        SkinningPalette.pack(SkinningPalette.Mode.LINEAR, transforms, new float[transforms.length]);
+    }
+
+    /**
+     * Skins random vertices with up to three weights with the pose of the
+     * bundled clip. Linear blending must match the reference exactly; dual
+     * quaternions match it for vertices on a single joint, since the joint
+     * transforms are rigid.
+     */
+    @Test
+    public void cpuSkinner_haunterPose_matchesTheReference() throws IOException {
+        ColladaParser haunter = SkeletonTest.loadHaunter();
+        Skeleton skeleton = new Skeleton(haunter.getRootJoints(), haunter.getJointCount());
+        Animator animator = new Animator(skeleton);
+        animator.setTimeSource(new FrameTimeSource());
+        animator.doAnimation(haunter.getAnimationClips().get(0));
+        animator.setAnimationTime(2.5f);
+        animator.update();
+        float[] transforms = animator.getJointTransforms();
+
+        Random random = new Random(7);
+        int vertexCount = 200;
+        float[] vectors = new float[vertexCount * 3];
+        int[] jointIndices = new int[vertexCount * MAX_WEIGHTS];
+        float[] blendedWeights = new float[vertexCount * MAX_WEIGHTS];
+        float[] singleWeights = new float[vertexCount * MAX_WEIGHTS];
+        for (int v = 0; v < vertexCount; v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                vectors[v * 3 + axis] = random.nextFloat() * 4 - 2;
+            }
+            float total = 0;
+            for (int i = 0; i < MAX_WEIGHTS; i++) {
+                jointIndices[v * MAX_WEIGHTS + i] = random.nextInt(skeleton.getJointCount());
+                blendedWeights[v * MAX_WEIGHTS + i] = random.nextFloat();
+                total += blendedWeights[v * MAX_WEIGHTS + i];
+            }
+            for (int i = 0; i < MAX_WEIGHTS; i++) {
+                blendedWeights[v * MAX_WEIGHTS + i] /= total;
+            }
+            singleWeights[v * MAX_WEIGHTS] = 1;
+        }
+
+        for (boolean isPoint : new boolean[] {true, false}) {
+            assertVectorsEqual(referenceSkin(transforms, vectors, isPoint, jointIndices, blendedWeights),
+                    cpuSkin(SkinningPalette.Mode.LINEAR, transforms, vectors, isPoint, jointIndices,
+                            blendedWeights), EPSILON);
+            assertVectorsEqual(referenceSkin(transforms, vectors, isPoint, jointIndices, singleWeights),
+                    cpuSkin(SkinningPalette.Mode.DUAL_QUATERNION, transforms, vectors, isPoint, jointIndices,
+                            singleWeights), 1e-3f);
+        }
+    }
+
+    @Test
+    public void cpuSkinner_dualQuaternion_blendsTranslationsLikeLinear() {
+        float[] transforms = palette(rotationAboutX(30, 1, 0, 0), rotationAboutX(30, 0, 2, -1));
+        float[] vectors = {0, 1, 0, 1, 1, 1};
+        int[] jointIndices = {0, 1, 0, 0, 1, 0};
+        float[] weights = {0.25f, 0.75f, 0, 0.5f, 0.5f, 0};
+
+        assertVectorsEqual(referenceSkin(transforms, vectors, true, jointIndices, weights),
+                cpuSkin(SkinningPalette.Mode.DUAL_QUATERNION, transforms, vectors, true, jointIndices, weights),
+                EPSILON);
+    }
+
+    /** Halfway between a quarter turn either way, linear blending shrinks the mesh; dual quaternions don't. */
+    @Test
+    public void cpuSkinner_opposingRotations_onlyLinearShrinks() {
+        float[] transforms = palette(rotationAboutX(90, 0, 0, 0), rotationAboutX(-90, 0, 0, 0));
+        float[] vectors = {0, 0, 1};
+        int[] jointIndices = {0, 1, 0};
+        float[] weights = {0.5f, 0.5f, 0};
+
+        float[] linear = cpuSkin(SkinningPalette.Mode.LINEAR, transforms, vectors, true, jointIndices, weights);
+        float[] dual = cpuSkin(SkinningPalette.Mode.DUAL_QUATERNION, transforms, vectors, true, jointIndices,
+                weights);
+
+        assertEquals(0, length(linear, 0), EPSILON);
+        assertEquals(1, length(dual, 0), EPSILON);
+    }
+
+    @Test
+    public void cpuSkinner_noWeight_leavesTheVertex() {
+        float[] transforms = palette(rotationAboutX(90, 1, 2, 3));
+        float[] vectors = {1, 2, 3};
+
+        for (SkinningPalette.Mode mode : SkinningPalette.Mode.values()) {
+            assertVectorsEqual(vectors,
+                    cpuSkin(mode, transforms, vectors, true, new int[MAX_WEIGHTS], new float[MAX_WEIGHTS]), 0);
+        }
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.math;
+
+import android.opengl.Matrix;
+import java.util.Random;
+
+/**
+ * Times the operations of {@link Matrices} against the {@link Matrix} calls they replace, and
+ * prints a table of nanoseconds per operation. It has no tests, so it isn't part of the unit test
+ * run; run its main method from the module directory.
+ *
+ * <p>In JVM unit tests {@link Matrix} comes from a stub {@code android.jar} whose methods throw, so
+ * its column is left empty there. It is only filled in where the real class is available, such as
+ * on a device.
+ */
+public class MatricesBenchmark {
+  private static final int MATRIX_COUNT = 1024;
+  private static final int POINT_COUNT = 4096;
+  private static final int WARM_UP_ROUNDS = 2000;
+  private static final int MEASURED_ROUNDS = 2000;
+
+  /** One pass over all the inputs, returning a value that depends on the results. */
+  private interface Operation {
+    float run();
+  }
+
+  // Affine transforms (a rotation, a scale and a translation each), back to back.
+  private final float[] matrices = new float[MATRIX_COUNT * Matrices.SIZE];
+  private final float[] results = new float[MATRIX_COUNT * Matrices.SIZE];
+  private final float[] scratch = new float[2 * Matrices.SIZE];
+  private final float[] translations = new float[MATRIX_COUNT * 3];
+  private final float[] rotations = new float[MATRIX_COUNT * Quaternions.SIZE];
+  // The same rotations as axis and angle in degrees, the way Matrix.rotateM takes them.
+  private final float[] axisAngles = new float[MATRIX_COUNT * 4];
+  // The same points as x, y, z, 1 for Matrix.multiplyMV and as tightly packed x, y, z.
+  private final float[] points = new float[POINT_COUNT * 4];
+  private final float[] transformed = new float[POINT_COUNT * 4];
+  private final float[] packedPoints = new float[POINT_COUNT * 3];
+  private final float[] packedTransformed = new float[POINT_COUNT * 3];
+
+  private MatricesBenchmark() {
+    Random random = new Random(1);
+    for (int i = 0; i < MATRIX_COUNT; ++i) {
+      float angle = random.nextFloat() * 360;
+      float x = random.nextFloat() - 0.5f;
+      float y = random.nextFloat() - 0.5f;
+      float z = random.nextFloat() - 0.5f;
+      float length = (float) Math.sqrt(x * x + y * y + z * z);
+      axisAngles[i * 4] = x / length;
+      axisAngles[i * 4 + 1] = y / length;
+      axisAngles[i * 4 + 2] = z / length;
+      axisAngles[i * 4 + 3] = angle;
+      float halfAngle = (float) Math.toRadians(angle) / 2;
+      float sin = (float) Math.sin(halfAngle);
+      rotations[i * 4] = x / length * sin;
+      rotations[i * 4 + 1] = y / length * sin;
+      rotations[i * 4 + 2] = z / length * sin;
+      rotations[i * 4 + 3] = (float) Math.cos(halfAngle);
+      for (int axis = 0; axis < 3; ++axis) {
+        translations[i * 3 + axis] = random.nextFloat() * 10 - 5;
+      }
+      float scale = 0.5f + random.nextFloat();
+      Matrices.compose(
+          matrices, i * Matrices.SIZE, translations, i * 3, rotations, i * 4, scale, scale, scale);
+    }
+    for (int i = 0; i < POINT_COUNT; ++i) {
+      for (int axis = 0; axis < 3; ++axis) {
+        points[i * 4 + axis] = random.nextFloat() * 2 - 1;
+        packedPoints[i * 3 + axis] = points[i * 4 + axis];
+      }
+      points[i * 4 + 3] = 1;
+    }
+  }
+
+  private static boolean isMatrixAvailable() {
+    try {
+      Matrix.setIdentityM(new float[Matrices.SIZE], 0);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /** Returns the average time of one operation in nanoseconds, or NaN if there is no operation. */
+  private static double time(Operation operation, int operationsPerRun) {
+    if (operation == null) {
+      return Double.NaN;
+    }
+    float sink = 0;
+    for (int round = 0; round < WARM_UP_ROUNDS; ++round) {
+      sink += operation.run();
+    }
+    long start = System.nanoTime();
+    for (int round = 0; round < MEASURED_ROUNDS; ++round) {
+      sink += operation.run();
+    }
+    long nanos = System.nanoTime() - start;
+    if (Float.isNaN(sink)) {
+      // Keeps the results alive, so the JIT can't drop the work.
+      System.out.println("NaN in the results");
+    }
+    return (double) nanos / MEASURED_ROUNDS / operationsPerRun;
+  }
+
+  private static void printRow(
+      String name, Operation matrix, Operation general, Operation specialized, int operations) {
+    System.out.println(
+        String.format(
+            "%-20s %10s %10s %12s",
+            name,
+            format(time(matrix, operations)),
+            format(time(general, operations)),
+            format(time(specialized, operations))));
+  }
+
+  private static String format(double nanos) {
+    return Double.isNaN(nanos) ? "-" : String.format("%.1f", nanos);
+  }
+
+  private Operation multiplyWithMatrix() {
+    return () -> {
+      for (int i = 1; i < MATRIX_COUNT; ++i) {
+        Matrix.multiplyMM(results, i * 16, matrices, (i - 1) * 16, matrices, i * 16);
+      }
+      return results[MATRIX_COUNT * 16 - 4];
+    };
+  }
+
+  private Operation multiply(boolean affine) {
+    return () -> {
+      for (int i = 1; i < MATRIX_COUNT; ++i) {
+        if (affine) {
+          Matrices.multiplyAffine(results, i * 16, matrices, (i - 1) * 16, matrices, i * 16);
+        } else {
+          Matrices.multiply(results, i * 16, matrices, (i - 1) * 16, matrices, i * 16);
+        }
+      }
+      return results[MATRIX_COUNT * 16 - 4];
+    };
+  }
+
+  private Operation invertWithMatrix() {
+    return () -> {
+      for (int i = 0; i < MATRIX_COUNT; ++i) {
+        Matrix.invertM(results, i * 16, matrices, i * 16);
+      }
+      return results[MATRIX_COUNT * 16 - 4];
+    };
+  }
+
+  private Operation invert(boolean affine) {
+    return () -> {
+      for (int i = 0; i < MATRIX_COUNT; ++i) {
+        if (affine) {
+          Matrices.invertAffine(results, i * 16, matrices, i * 16);
+        } else {
+          Matrices.invert(results, i * 16, matrices, i * 16);
+        }
+      }
+      return results[MATRIX_COUNT * 16 - 4];
+    };
+  }
+
+  private Operation translateRotateWithMatrix() {
+    return () -> {
+      for (int i = 0; i < MATRIX_COUNT; ++i) {
+        int m = i * 16;
+        Matrix.setIdentityM(results, m);
+        Matrix.translateM(
+            results, m, translations[i * 3], translations[i * 3 + 1], translations[i * 3 + 2]);
+        Matrix.rotateM(
+            results,
+            m,
+            axisAngles[i * 4 + 3],
+            axisAngles[i * 4],
+            axisAngles[i * 4 + 1],
+            axisAngles[i * 4 + 2]);
+      }
+      return results[MATRIX_COUNT * 16 - 4];
+    };
+  }
+
+  /** Builds translation * rotation by multiplying the two, or with one fused {@code compose}. */
+  private Operation translateRotate(boolean fused) {
+    return () -> {
+      for (int i = 0; i < MATRIX_COUNT; ++i) {
+        int m = i * 16;
+        if (fused) {
+          Matrices.compose(results, m, translations, i * 3, rotations, i * 4);
+          continue;
+        }
+        Matrices.setIdentity(scratch, 0);
+        scratch[12] = translations[i * 3];
+        scratch[13] = translations[i * 3 + 1];
+        scratch[14] = translations[i * 3 + 2];
+        Matrices.setRotate(
+            scratch,
+            16,
+            axisAngles[i * 4 + 3],
+            axisAngles[i * 4],
+            axisAngles[i * 4 + 1],
+            axisAngles[i * 4 + 2]);
+        Matrices.multiply(results, m, scratch, 0, scratch, 16);
+      }
+      return results[MATRIX_COUNT * 16 - 4];
+    };
+  }
+
+  private Operation transformWithMatrix() {
+    return () -> {
+      for (int i = 0; i < POINT_COUNT; ++i) {
+        Matrix.multiplyMV(transformed, i * 4, matrices, 0, points, i * 4);
+      }
+      return transformed[POINT_COUNT * 4 - 2];
+    };
+  }
+
+  /** Transforms the points one at a time as 4-vectors, or all at once as affine x, y, z points. */
+  private Operation transform(boolean batched) {
+    return () -> {
+      if (batched) {
+        Matrices.transformPoints(matrices, 0, packedPoints, 0, packedTransformed, 0, POINT_COUNT);
+        return packedTransformed[POINT_COUNT * 3 - 1];
+      }
+      for (int i = 0; i < POINT_COUNT; ++i) {
+        Matrices.multiplyVector(transformed, i * 4, matrices, 0, points, i * 4);
+      }
+      return transformed[POINT_COUNT * 4 - 2];
+    };
+  }
+
+  private void run() {
+    boolean matrixAvailable = isMatrixAvailable();
+    System.out.println("Nanoseconds per operation");
+    if (!matrixAvailable) {
+      System.out.println("(android.opengl.Matrix is a stub here, run on a device to compare)");
+    }
+    System.out.println(
+        String.format("%-20s %10s %10s %12s", "", "Matrix", "Matrices", "affine/fused"));
+    printRow(
+        "multiply",
+        matrixAvailable ? multiplyWithMatrix() : null,
+        multiply(false),
+        multiply(true),
+        MATRIX_COUNT - 1);
+    printRow(
+        "invert",
+        matrixAvailable ? invertWithMatrix() : null,
+        invert(false),
+        invert(true),
+        MATRIX_COUNT);
+    printRow(
+        "translate * rotate",
+        matrixAvailable ? translateRotateWithMatrix() : null,
+        translateRotate(false),
+        translateRotate(true),
+        MATRIX_COUNT);
+    printRow(
+        "transform point",
+        matrixAvailable ? transformWithMatrix() : null,
+        transform(false),
+        transform(true),
+        POINT_COUNT);
+  }
+
+  public static void main(String[] args) {
+    new MatricesBenchmark().run();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class MatricesTest {
+  private static final float EPSILON = 1e-5f;
+
+  private static float[] identity() {
+    float[] m = new float[Matrices.SIZE];
+    Matrices.setIdentity(m, 0);
+    return m;
+  }
+
+  /** Returns translation * rotation * scale, built with separate matrices and multiplied. */
+  private static float[] affine(
+      float tx, float ty, float tz, float angle, float ax, float ay, float az, float scale) {
+    float[] rotation = new float[Matrices.SIZE];
+    Matrices.setRotate(rotation, 0, angle, ax, ay, az);
+    float[] m = identity();
+    m[0] = scale;
+    m[5] = scale;
+    m[10] = scale;
+    Matrices.multiply(m, 0, rotation, 0, m, 0);
+    m[12] = tx;
+    m[13] = ty;
+    m[14] = tz;
+    return m;
+  }
+
+  @Test
+  public void invert_timesOriginal_isIdentity() {
+    Random random = new Random(1);
+    for (int i = 0; i < 100; ++i) {
+      float[] m = new float[Matrices.SIZE];
+      for (int j = 0; j < m.length; ++j) {
+        m[j] = random.nextFloat() * 2 - 1;
+      }
+      // Keep the matrix well conditioned.
+      for (int j = 0; j < 4; ++j) {
+        m[j * 5] += 4;
+      }
+      float[] inverse = new float[Matrices.SIZE];
+
+      assertTrue(Matrices.invert(inverse, 0, m, 0));
+
+      float[] product = new float[Matrices.SIZE];
+      Matrices.multiply(product, 0, m, 0, inverse, 0);
+      assertArrayEquals("Matrix " + i, identity(), product, EPSILON);
+      Matrices.multiply(product, 0, inverse, 0, m, 0);
+      assertArrayEquals("Matrix " + i, identity(), product, EPSILON);
+    }
+  }
+
+  @Test
+  public void invert_inPlaceAndAtOffsets_matchesSeparateArrays() {
+    float[] m = affine(1, 2, 3, 30, 1, 1, 0, 2);
+    float[] expected = new float[Matrices.SIZE];
+    Matrices.invert(expected, 0, m, 0);
+    float[] packed = new float[Matrices.SIZE * 2];
+    System.arraycopy(m, 0, packed, Matrices.SIZE, Matrices.SIZE);
+
+    Matrices.invert(packed, Matrices.SIZE, packed, Matrices.SIZE);
+
+    float[] actual = new float[Matrices.SIZE];
+    System.arraycopy(packed, Matrices.SIZE, actual, 0, Matrices.SIZE);
+    assertArrayEquals(expected, actual, 0);
+  }
+
+  @Test
+  public void invert_singularMatrix_returnsFalseAndLeavesResult() {
+    float[] m = identity();
+    m[10] = 0;
+    float[] result = new float[Matrices.SIZE];
+    result[3] = 42;
+
+    assertFalse(Matrices.invert(result, 0, m, 0));
+    assertFalse(Matrices.invertAffine(result, 0, m, 0));
+
+    assertEquals(42, result[3], 0);
+  }
+
+  @Test
+  public void invertAffine_matchesInvert() {
+    Random random = new Random(2);
+    for (int i = 0; i < 100; ++i) {
+      float[] m =
+          affine(
+              random.nextFloat() * 10 - 5,
+              random.nextFloat() * 10 - 5,
+              random.nextFloat() * 10 - 5,
+              random.nextFloat() * 360,
+              random.nextFloat() - 0.5f,
+              random.nextFloat() - 0.5f,
+              random.nextFloat() - 0.5f,
+              0.5f + random.nextFloat() * 2);
+      float[] expected = new float[Matrices.SIZE];
+      float[] actual = new float[Matrices.SIZE];
+
+      assertTrue(Matrices.invert(expected, 0, m, 0));
+      assertTrue(Matrices.invertAffine(actual, 0, m, 0));
+
+      assertArrayEquals("Matrix " + i, expected, actual, EPSILON);
+    }
+  }
+
+  @Test
+  public void compose_matchesTranslateTimesRotate() {
+    float[] translation = {1, -2, 3};
+    float[] rotation = new float[Quaternions.SIZE];
+    float[] rotationMatrix = new float[Matrices.SIZE];
+    Matrices.setRotate(rotationMatrix, 0, 70, 1, 2, 3);
+    Quaternions.fromMatrix(rotationMatrix, 0, rotation, 0);
+    float[] expected = identity();
+    expected[12] = 1;
+    expected[13] = -2;
+    expected[14] = 3;
+    Matrices.multiply(expected, 0, expected, 0, rotationMatrix, 0);
+    float[] actual = new float[Matrices.SIZE];
+
+    Matrices.compose(actual, 0, translation, 0, rotation, 0);
+
+    assertArrayEquals(expected, actual, EPSILON);
+  }
+
+  @Test
+  public void compose_withScale_matchesTranslateTimesRotateTimesScale() {
+    float[] translation = {4, 5, 6};
+    float[] rotationMatrix = new float[Matrices.SIZE];
+    Matrices.setRotate(rotationMatrix, 0, -120, 0, 1, 1);
+    float[] rotation = new float[Quaternions.SIZE];
+    Quaternions.fromMatrix(rotationMatrix, 0, rotation, 0);
+    float[] scale = identity();
+    scale[0] = 2;
+    scale[5] = 3;
+    scale[10] = 0.5f;
+    float[] expected = new float[Matrices.SIZE];
+    Matrices.multiply(expected, 0, rotationMatrix, 0, scale, 0);
+    expected[12] = 4;
+    expected[13] = 5;
+    expected[14] = 6;
+    float[] actual = new float[Matrices.SIZE];
+
+    Matrices.compose(actual, 0, translation, 0, rotation, 0, 2, 3, 0.5f);
+
+    assertArrayEquals(expected, actual, EPSILON);
+  }
+}
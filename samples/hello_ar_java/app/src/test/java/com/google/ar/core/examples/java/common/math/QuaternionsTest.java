@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class QuaternionsTest {
+  private static final float EPSILON = 1e-5f;
+  private static final float[] IDENTITY = {0, 0, 0, 1};
+
+  /** Returns the rotation by {@code angle} degrees around an axis. */
+  private static float[] axisAngle(float angle, float x, float y, float z) {
+    float length = (float) Math.sqrt(x * x + y * y + z * z);
+    float s = (float) Math.sin(Math.toRadians(angle) / 2) / length;
+    return new float[] {x * s, y * s, z * s, (float) Math.cos(Math.toRadians(angle) / 2)};
+  }
+
+  /** Asserts that two unit quaternions are the same rotation, where q and -q are the same. */
+  private static void assertSameRotation(String message, float[] expected, float[] actual) {
+    assertEquals(message, 1, Math.abs(Quaternions.dot(expected, 0, actual, 0)), EPSILON);
+  }
+
+  private static float[] slerp(float[] a, float[] b, float blend) {
+    float[] dest = new float[Quaternions.SIZE];
+    Quaternions.slerp(a, 0, b, 0, blend, dest, 0);
+    return dest;
+  }
+
+  private static float[] roundTrip(float[] q) {
+    float[] m = new float[Matrices.SIZE];
+    Quaternions.toMatrix(q, 0, m, 0);
+    float[] result = new float[Quaternions.SIZE];
+    Quaternions.fromMatrix(m, 0, result, 0);
+    return result;
+  }
+
+  @Test
+  public void slerp_atTheEnds_returnsTheInputs() {
+    float[] a = axisAngle(30, 1, 0, 0);
+    float[] b = axisAngle(120, 0, 1, 1);
+
+    assertArrayEquals(a, slerp(a, b, 0), EPSILON);
+    assertArrayEquals(b, slerp(a, b, 1), EPSILON);
+  }
+
+  @Test
+  public void slerp_movesAtConstantAngularSpeed() {
+    float[] b = axisAngle(160, 1, 0, 0);
+
+    for (int step = 0; step <= 8; ++step) {
+      float blend = step / 8f;
+      assertArrayEquals(
+          "Blend " + blend, axisAngle(160 * blend, 1, 0, 0), slerp(IDENTITY, b, blend), EPSILON);
+    }
+  }
+
+  @Test
+  public void slerp_takesTheShortWayAround() {
+    float[] a = axisAngle(10, 0, 0, 1);
+    float[] b = axisAngle(90, 0, 0, 1);
+    float[] negatedB = {-b[0], -b[1], -b[2], -b[3]};
+
+    assertArrayEquals(axisAngle(50, 0, 0, 1), slerp(a, negatedB, 0.5f), EPSILON);
+  }
+
+  @Test
+  public void slerp_nearlyEqualInputs_staysNormalized() {
+    float[] a = axisAngle(20, 0, 1, 0);
+    float[] b = axisAngle(20.5f, 0, 1, 0);
+
+    float[] halfway = slerp(a, b, 0.5f);
+
+    assertEquals(1, Quaternions.dot(halfway, 0, halfway, 0), EPSILON);
+    assertSameRotation("Halfway", axisAngle(20.25f, 0, 1, 0), halfway);
+  }
+
+  @Test
+  public void fromMatrix_ofToMatrix_roundTrips() {
+    Random random = new Random(3);
+    for (int i = 0; i < 1000; ++i) {
+      float[] q =
+          axisAngle(
+              random.nextFloat() * 360,
+              random.nextFloat() - 0.5f,
+              random.nextFloat() - 0.5f,
+              random.nextFloat() - 0.5f);
+
+      assertSameRotation("Rotation " + i, q, roundTrip(q));
+    }
+  }
+
+  @Test
+  public void fromMatrix_halfTurns_roundTrip() {
+    // A trace of -1, where w is 0 and each of the other branches is taken.
+    float[][] halfTurns = {
+      axisAngle(180, 1, 0, 0),
+      axisAngle(180, 0, 1, 0),
+      axisAngle(180, 0, 0, 1),
+      axisAngle(180, 1, 1, 0),
+      axisAngle(180, 1, -2, 3),
+      axisAngle(179.9f, 0, 1, 1),
+    };
+    for (float[] q : halfTurns) {
+      assertSameRotation(Arrays.toString(q), q, roundTrip(q));
+    }
+  }
+
+  @Test
+  public void fromMatrix_ignoresScale() {
+    float[] q = axisAngle(75, 2, 1, 0);
+    float[] m = new float[Matrices.SIZE];
+    float[] translation = {1, 2, 3};
+    Matrices.compose(m, 0, translation, 0, q, 0, 2, 0.5f, 3);
+    float[] result = new float[Quaternions.SIZE];
+
+    Quaternions.fromMatrix(m, 0, result, 0);
+
+    assertSameRotation("Scaled", q, result);
+  }
+}
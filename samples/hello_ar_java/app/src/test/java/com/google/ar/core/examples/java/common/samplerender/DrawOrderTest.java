@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests the sort keys and the radix sort of {@link RenderQueue}, which need no GL context. */
+public class DrawOrderTest {
+  private static final boolean OPAQUE = false;
+  private static final boolean BLENDED = true;
+
+  private static int[] sortedDraws(DrawOrder drawOrder) {
+    drawOrder.sort();
+    int[] draws = new int[drawOrder.size()];
+    for (int i = 0; i < draws.length; ++i) {
+      draws[i] = drawOrder.get(i);
+    }
+    return draws;
+  }
+
+  @Test
+  public void createKey_ordersFramebufferThenBlendingThenShaderThenMeshThenDepth() {
+    long base = DrawOrder.createKey(0, 1, 1, OPAQUE, 0.5f);
+
+    assertTrue(
+        DrawOrder.createKey(1, 0, 0, OPAQUE, 0f) > DrawOrder.createKey(0, 9, 9, BLENDED, 1f));
+    assertTrue(
+        DrawOrder.createKey(0, 0, 0, BLENDED, 1f) > DrawOrder.createKey(0, 9, 9, OPAQUE, 1f));
+    assertTrue(DrawOrder.createKey(0, 2, 0, OPAQUE, 0f) > base);
+    assertTrue(DrawOrder.createKey(0, 1, 2, OPAQUE, 0f) > base);
+    assertTrue(DrawOrder.createKey(0, 1, 1, OPAQUE, 0.6f) > base);
+    assertTrue(DrawOrder.createKey(0, 1, 1, OPAQUE, 0.4f) < base);
+  }
+
+  @Test
+  public void createKey_blendedDepthComesBeforeShaderAndMesh() {
+    long near = DrawOrder.createKey(0, 0, 0, BLENDED, 0.1f);
+    long far = DrawOrder.createKey(0, 9, 9, BLENDED, 0.9f);
+
+    assertTrue(far < near);
+  }
+
+  @Test
+  public void createKey_clampsDepthAndSharesTheLastShaderAndMeshIndex() {
+    assertEquals(
+        DrawOrder.createKey(0, 0, 0, OPAQUE, 0f), DrawOrder.createKey(0, 0, 0, OPAQUE, -5f));
+    assertEquals(
+        DrawOrder.createKey(0, 0, 0, OPAQUE, 1f), DrawOrder.createKey(0, 0, 0, OPAQUE, 5f));
+    assertEquals(
+        DrawOrder.createKey(0, 4095, 4095, OPAQUE, 0f),
+        DrawOrder.createKey(0, 5000, 9000, OPAQUE, 0f));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void createKey_framebufferOutOfRange_throws() {
+    DrawOrder.createKey(DrawOrder.MAX_FRAMEBUFFERS, 0, 0, OPAQUE, 0f);
+  }
+
+  @Test
+  public void sort_drawsOpaqueFrontToBackThenBlendedBackToFront() {
+    DrawOrder drawOrder = new DrawOrder();
+    drawOrder.add(0, 0, 0, BLENDED, 0.2f); // 0
+    drawOrder.add(0, 0, 0, OPAQUE, 0.7f); // 1
+    drawOrder.add(0, 0, 0, BLENDED, 0.9f); // 2
+    drawOrder.add(0, 0, 0, OPAQUE, 0.1f); // 3
+    drawOrder.add(0, 0, 0, BLENDED, 0.5f); // 4
+    drawOrder.add(0, 0, 0, OPAQUE, 0.4f); // 5
+
+    assertArrayEquals(new int[] {3, 5, 1, 2, 4, 0}, sortedDraws(drawOrder));
+  }
+
+  @Test
+  public void sort_keepsFramebuffersInOrderOfFirstUse() {
+    DrawOrder drawOrder = new DrawOrder();
+    drawOrder.add(1, 0, 0, OPAQUE, 0.1f); // 0
+    drawOrder.add(0, 0, 0, BLENDED, 0.9f); // 1
+    drawOrder.add(1, 0, 0, OPAQUE, 0.0f); // 2
+    drawOrder.add(0, 0, 0, OPAQUE, 0.5f); // 3
+
+    assertArrayEquals(new int[] {3, 1, 2, 0}, sortedDraws(drawOrder));
+  }
+
+  @Test
+  public void sort_isStableForEqualKeys() {
+    DrawOrder drawOrder = new DrawOrder();
+    for (int draw = 0; draw < 100; ++draw) {
+      drawOrder.add(0, draw % 2, 0, OPAQUE, 0.5f);
+    }
+
+    int[] draws = sortedDraws(drawOrder);
+
+    for (int i = 0; i < 50; ++i) {
+      assertEquals(2 * i, draws[i]);
+      assertEquals(2 * i + 1, draws[50 + i]);
+    }
+  }
+
+  @Test
+  public void sort_matchesAComparisonSortOfTheKeys() {
+    Random random = new Random(42);
+    DrawOrder drawOrder = new DrawOrder();
+    int drawCount = 1000;
+    long[] keys = new long[drawCount];
+    for (int draw = 0; draw < drawCount; ++draw) {
+      int framebuffer = random.nextInt(2);
+      int shader = random.nextInt(6);
+      int mesh = random.nextInt(10);
+      boolean blended = random.nextInt(4) == 0;
+      float depth = random.nextFloat();
+      keys[draw] = DrawOrder.createKey(framebuffer, shader, mesh, blended, depth);
+      drawOrder.add(framebuffer, shader, mesh, blended, depth);
+    }
+
+    int[] draws = sortedDraws(drawOrder);
+
+    for (int i = 1; i < drawCount; ++i) {
+      long previous = keys[draws[i - 1]];
+      long current = keys[draws[i]];
+      assertTrue("Keys out of order at " + i, previous <= current);
+      if (previous == current) {
+        assertTrue("Equal keys swapped at " + i, draws[i - 1] < draws[i]);
+      }
+    }
+  }
+
+  @Test
+  public void sort_reducesStateChanges() {
+    DrawOrder drawOrder = new DrawOrder();
+    // Three shaders and four meshes, interleaved as badly as possible.
+    for (int draw = 0; draw < 24; ++draw) {
+      drawOrder.add(0, draw % 3, draw % 4, OPAQUE, (24 - draw) / 24f);
+    }
+    assertEquals(1, drawOrder.countFramebufferChanges());
+    assertEquals(24, drawOrder.countShaderChanges());
+    assertEquals(24, drawOrder.countMeshChanges());
+
+    drawOrder.sort();
+
+    assertEquals(1, drawOrder.countFramebufferChanges());
+    assertEquals(3, drawOrder.countShaderChanges());
+    // Each shader is used with every mesh.
+    assertEquals(12, drawOrder.countMeshChanges());
+  }
+
+  @Test
+  public void clear_emptiesTheOrder() {
+    DrawOrder drawOrder = new DrawOrder();
+    for (int draw = 0; draw < 40; ++draw) {
+      drawOrder.add(0, 0, 0, OPAQUE, 0f);
+    }
+
+    drawOrder.clear();
+    drawOrder.add(0, 1, 1, OPAQUE, 0f);
+
+    assertEquals(1, drawOrder.size());
+    assertEquals(0, drawOrder.get(0));
+    assertEquals(1, drawOrder.countShaderChanges());
+  }
+}
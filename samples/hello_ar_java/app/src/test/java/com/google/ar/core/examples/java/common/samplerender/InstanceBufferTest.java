@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/** Tests the attribute layout of {@link InstanceBuffer}, which needs no GL context. */
+public class InstanceBufferTest {
+  private static int[] locations(InstanceBuffer.Layout layout) {
+    int[] locations = new int[layout.getAttributeCount()];
+    for (int i = 0; i < locations.length; ++i) {
+      locations[i] = layout.getLocation(i);
+    }
+    return locations;
+  }
+
+  private static int[] sizes(InstanceBuffer.Layout layout) {
+    int[] sizes = new int[layout.getAttributeCount()];
+    for (int i = 0; i < sizes.length; ++i) {
+      sizes[i] = layout.getSize(i);
+    }
+    return sizes;
+  }
+
+  private static int[] offsets(InstanceBuffer.Layout layout) {
+    int[] offsets = new int[layout.getAttributeCount()];
+    for (int i = 0; i < offsets.length; ++i) {
+      offsets[i] = layout.getOffset(i);
+    }
+    return offsets;
+  }
+
+  @Test
+  public void addMat4_takesFourLocationsOfOneColumnEach() {
+    InstanceBuffer.Layout layout = new InstanceBuffer.Layout();
+
+    int offset = layout.addMat4(/*location=*/ 8);
+
+    assertEquals(0, offset);
+    assertEquals(16, layout.getStride());
+    assertArrayEquals(new int[] {8, 9, 10, 11}, locations(layout));
+    assertArrayEquals(new int[] {4, 4, 4, 4}, sizes(layout));
+    assertArrayEquals(new int[] {0, 4, 8, 12}, offsets(layout));
+  }
+
+  @Test
+  public void attributes_arePackedInTheOrderAdded() {
+    InstanceBuffer.Layout layout = new InstanceBuffer.Layout();
+
+    int animation = layout.addVec2(/*location=*/ 7);
+    int model = layout.addMat4(/*location=*/ 8);
+    int tint = layout.addVec4(/*location=*/ 12);
+    int scale = layout.addFloat(/*location=*/ 13);
+    int normal = layout.addVec3(/*location=*/ 14);
+
+    assertArrayEquals(
+        new int[] {0, 2, 18, 22, 23}, new int[] {animation, model, tint, scale, normal});
+    assertEquals(26, layout.getStride());
+    assertArrayEquals(new int[] {7, 8, 9, 10, 11, 12, 13, 14}, locations(layout));
+    assertArrayEquals(new int[] {0, 2, 6, 10, 14, 18, 22, 23}, offsets(layout));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void addMat4_overAUsedLocation_isRejected() {
+    InstanceBuffer.Layout layout = new InstanceBuffer.Layout();
+    layout.addVec4(/*location=*/ 10);
+
+    layout.addMat4(/*location=*/ 8);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void sameLocationTwice_isRejected() {
+    InstanceBuffer.Layout layout = new InstanceBuffer.Layout();
+    layout.addVec2(/*location=*/ 7);
+
+    layout.addFloat(/*location=*/ 7);
+  }
+}
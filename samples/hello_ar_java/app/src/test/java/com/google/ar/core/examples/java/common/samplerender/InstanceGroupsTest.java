@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+/** Tests how {@link InstanceBatcher} groups its instances into draws, without a GL context. */
+public class InstanceGroupsTest {
+  private static final int STRIDE = 2;
+
+  // Stand-ins for meshes, shaders and framebuffers, which are only compared by identity.
+  private final Object pawn = new Object();
+  private final Object haunter = new Object();
+  private final Object lit = new Object();
+  private final Object unlit = new Object();
+  private final Object offscreen = new Object();
+
+  private final InstanceGroups<Object, Object, Object> groups = new InstanceGroups<>(STRIDE);
+
+  private static float[] instances(InstanceGroups<?, ?, ?> groups, int group) {
+    return Arrays.copyOf(groups.getInstances(group), groups.getInstanceCount(group) * STRIDE);
+  }
+
+  @Test
+  public void sameMeshShaderAndFramebuffer_shareAGroupInTheOrderAdded() {
+    assertEquals(0, groups.add(pawn, lit, null, new float[] {1, 1}));
+    assertEquals(1, groups.add(haunter, lit, null, new float[] {2, 2}));
+    assertEquals(0, groups.add(pawn, lit, null, new float[] {3, 3}));
+    assertEquals(0, groups.add(pawn, lit, null, new float[] {4, 4}));
+
+    assertEquals(2, groups.size());
+    assertArrayEquals(new float[] {1, 1, 3, 3, 4, 4}, instances(groups, 0), 0);
+    assertArrayEquals(new float[] {2, 2}, instances(groups, 1), 0);
+    assertSame(pawn, groups.getMesh(0));
+    assertSame(haunter, groups.getMesh(1));
+  }
+
+  @Test
+  public void anotherShaderOrFramebuffer_startsAnotherGroup() {
+    groups.add(pawn, lit, null, new float[] {1, 1});
+    groups.add(pawn, unlit, null, new float[] {2, 2});
+    groups.add(pawn, lit, offscreen, new float[] {3, 3});
+    groups.add(pawn, unlit, null, new float[] {4, 4});
+
+    assertEquals(3, groups.size());
+    assertSame(unlit, groups.getShader(1));
+    assertNull(groups.getFramebuffer(1));
+    assertSame(offscreen, groups.getFramebuffer(2));
+    assertArrayEquals(new float[] {2, 2, 4, 4}, instances(groups, 1), 0);
+  }
+
+  @Test
+  public void instances_copyOnlyTheStrideAndGrow() {
+    float[] instance = {0, 0, 99};
+    for (int i = 0; i < 100; ++i) {
+      instance[0] = i;
+      instance[1] = -i;
+      groups.add(pawn, lit, null, instance);
+    }
+
+    assertEquals(100, groups.getInstanceCount(0));
+    float[] data = groups.getInstances(0);
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(i, data[i * STRIDE], 0);
+      assertEquals(-i, data[i * STRIDE + 1], 0);
+    }
+  }
+
+  @Test
+  public void clear_dropsTheGroupsButKeepsTheirStorage() {
+    groups.add(pawn, lit, null, new float[] {1, 1});
+    groups.add(pawn, lit, null, new float[] {2, 2});
+    float[] storage = groups.getInstances(0);
+
+    groups.clear();
+    assertEquals(0, groups.size());
+    groups.add(haunter, unlit, null, new float[] {3, 3});
+
+    assertSame(storage, groups.getInstances(0));
+    assertSame(haunter, groups.getMesh(0));
+    assertArrayEquals(new float[] {3, 3}, instances(groups, 0), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shortInstance_isRejected() {
+    groups.add(pawn, lit, null, new float[] {1});
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.ar.core.examples.java.common.animation.AnimationClip;
+import com.google.ar.core.examples.java.common.animation.AnimationCompressor;
+import com.google.ar.core.examples.java.common.colladaParser.ColladaParser;
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+import de.javagl.obj.ObjReader;
+import de.javagl.obj.ObjUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/** Writes the bundled models with {@link MeshFileWriter} and reads them back. */
+public class MeshFileTest {
+  private static final String OBJ = "src/main/assets/models/pocketCharmander.obj";
+  private static final String DAE = "src/main/assets/models/HaunterTest4.dae";
+
+  private static ByteBuffer write(MeshFileWriter writer) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.write(out);
+    return ByteBuffer.wrap(out.toByteArray());
+  }
+
+  /** Checks that an attribute of the interleaved vertices holds the given stream. */
+  private static void assertAttribute(MeshFile meshFile, int attribute, Buffer expected) {
+    ByteBuffer vertices = meshFile.getVertices();
+    int components = meshFile.getComponentsPerVertex(attribute);
+    assertEquals(expected instanceof IntBuffer, meshFile.isIntAttribute(attribute));
+    assertEquals(meshFile.getVertexCount() * components, expected.limit());
+    for (int vertex = 0; vertex < meshFile.getVertexCount(); ++vertex) {
+      for (int c = 0; c < components; ++c) {
+        int position =
+            vertex * meshFile.getVertexStride() + meshFile.getAttributeOffset(attribute) + c * 4;
+        int entry = vertex * components + c;
+        if (expected instanceof IntBuffer) {
+          assertEquals(((IntBuffer) expected).get(entry), vertices.getInt(position));
+        } else {
+          assertEquals(((FloatBuffer) expected).get(entry), vertices.getFloat(position), 0);
+        }
+      }
+    }
+  }
+
+  private static void assertIndices(IntBuffer expected, IntBuffer actual) {
+    assertEquals(expected.limit(), actual.limit());
+    for (int i = 0; i < expected.limit(); ++i) {
+      assertEquals(expected.get(i), actual.get(i));
+    }
+  }
+
+  private static List<Joint> flatten(List<Joint> joints, List<Joint> dest) {
+    for (Joint joint : joints) {
+      dest.add(joint);
+      flatten(joint.children, dest);
+    }
+    return dest;
+  }
+
+  @Test
+  public void obj_survivesTheRoundTrip() throws IOException {
+    Obj obj;
+    MeshFileWriter writer;
+    try (InputStream in = new FileInputStream(OBJ)) {
+      obj = ObjUtils.convertToRenderable(ObjReader.read(in));
+    }
+    try (InputStream in = new FileInputStream(OBJ)) {
+      writer = MeshFileWriter.fromObj(in);
+    }
+
+    MeshFile meshFile = MeshFile.read(write(writer));
+
+    assertIndices(ObjData.getFaceVertexIndices(obj, 3), meshFile.getIndices());
+    assertEquals(3, meshFile.getAttributeCount());
+    assertAttribute(meshFile, 0, ObjData.getVertices(obj));
+    assertAttribute(meshFile, 1, ObjData.getTexCoords(obj, 2));
+    assertAttribute(meshFile, 2, ObjData.getNormals(obj));
+    assertEquals(0, meshFile.getMaxWeights());
+    assertEquals(0, meshFile.getJointCount());
+    assertTrue(meshFile.getRootJoints().isEmpty());
+    assertTrue(meshFile.getAnimationClips().isEmpty());
+  }
+
+  @Test
+  public void vertices_areInterleavedInTheOrderTheStreamsWereAdded() throws IOException {
+    MeshFileWriter writer =
+        new MeshFileWriter()
+            .setIndices(IntBuffer.wrap(new int[] {0, 1, 1}))
+            .addStream(3, FloatBuffer.wrap(new float[] {-1, 2, 3, 4, -5, 6}))
+            .addStream(2, IntBuffer.wrap(new int[] {7, 8, 9, 10}))
+            .addStream(1, FloatBuffer.wrap(new float[] {11, 12}));
+
+    MeshFile meshFile = MeshFile.read(write(writer));
+
+    assertEquals(2, meshFile.getVertexCount());
+    assertEquals(6 * 4, meshFile.getVertexStride());
+    assertEquals(0, meshFile.getAttributeOffset(0));
+    assertEquals(3 * 4, meshFile.getAttributeOffset(1));
+    assertEquals(5 * 4, meshFile.getAttributeOffset(2));
+    assertTrue(meshFile.isIntAttribute(1));
+    ByteBuffer vertices = meshFile.getVertices();
+    float[] floats = new float[12];
+    vertices.asFloatBuffer().get(floats);
+    int[] ints = new int[12];
+    vertices.asIntBuffer().get(ints);
+    assertArrayEquals(new float[] {-1, 2, 3}, Arrays.copyOfRange(floats, 0, 3), 0);
+    assertArrayEquals(new int[] {7, 8}, Arrays.copyOfRange(ints, 3, 5));
+    assertEquals(11, floats[5], 0);
+    assertArrayEquals(new float[] {4, -5, 6}, Arrays.copyOfRange(floats, 6, 9), 0);
+    assertArrayEquals(new int[] {9, 10}, Arrays.copyOfRange(ints, 9, 11));
+    assertEquals(12, floats[11], 0);
+    assertArrayEquals(new float[] {-1, -5, 3}, meshFile.getBoundsMin(), 0);
+    assertArrayEquals(new float[] {4, 2, 6}, meshFile.getBoundsMax(), 0);
+  }
+
+  @Test
+  public void dae_survivesTheRoundTripWithItsSkeletonAndClips() throws IOException {
+    int maxWeights = ColladaParser.DEFAULT_MAX_WEIGHTS;
+    ColladaParser daeData;
+    MeshFileWriter writer;
+    try (InputStream in = new FileInputStream(DAE)) {
+      daeData = new ColladaParser(in, maxWeights);
+    }
+    try (InputStream in = new FileInputStream(DAE)) {
+      writer = MeshFileWriter.fromDae(in, maxWeights);
+    }
+
+    MeshFile meshFile = MeshFile.read(write(writer));
+
+    assertIndices(daeData.getFaceVertexIndices(3), meshFile.getIndices());
+    assertAttribute(meshFile, 0, daeData.getVertices());
+    assertAttribute(meshFile, 1, daeData.getTexCoords(2));
+    assertAttribute(meshFile, 2, daeData.getNormals());
+    assertAttribute(meshFile, 3, daeData.getJointIDs());
+    assertAttribute(meshFile, 4, daeData.getVertexWeights());
+    assertEquals(maxWeights, meshFile.getMaxWeights());
+
+    List<Joint> expectedJoints = flatten(daeData.getRootJoints(), new ArrayList<Joint>());
+    List<Joint> joints = flatten(meshFile.getRootJoints(), new ArrayList<Joint>());
+    assertEquals(daeData.getJointCount(), meshFile.getJointCount());
+    assertEquals(expectedJoints.size(), joints.size());
+    for (int i = 0; i < joints.size(); ++i) {
+      assertEquals(expectedJoints.get(i).index, joints.get(i).index);
+      assertEquals(expectedJoints.get(i).name, joints.get(i).name);
+      assertEquals(expectedJoints.get(i).children.size(), joints.get(i).children.size());
+      assertArrayEquals(
+          expectedJoints.get(i).getLocalBindTransform(), joints.get(i).getLocalBindTransform(), 0);
+    }
+
+    Submesh[] expectedSubmeshes = daeData.getSubmeshes();
+    Submesh[] submeshes = meshFile.getSubmeshes();
+    assertEquals(expectedSubmeshes.length, submeshes.length);
+    for (int i = 0; i < submeshes.length; ++i) {
+      assertEquals(expectedSubmeshes[i].getIndexOffset(), submeshes[i].getIndexOffset());
+      assertEquals(expectedSubmeshes[i].getIndexCount(), submeshes[i].getIndexCount());
+      assertEquals(expectedSubmeshes[i].getMaterial(), submeshes[i].getMaterial());
+    }
+
+    List<AnimationClip> expectedClips = daeData.getAnimationClips();
+    List<AnimationClip> clips = meshFile.getAnimationClips();
+    assertTrue(!expectedClips.isEmpty());
+    assertEquals(expectedClips.size(), clips.size());
+    for (int i = 0; i < clips.size(); ++i) {
+      assertSameClip(AnimationCompressor.compress(expectedClips.get(i)), clips.get(i));
+    }
+  }
+
+  private static void assertSameClip(AnimationClip expected, AnimationClip actual) {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getLength(), actual.getLength(), 0);
+    assertTrue(actual.isPacked());
+    assertEquals(expected.getKeyCount(), actual.getKeyCount());
+    for (int key = 0; key < expected.getKeyCount(); ++key) {
+      assertEquals(expected.getKeyTime(key), actual.getKeyTime(key), 0);
+    }
+    assertEquals(expected.getJointCount(), actual.getJointCount());
+    for (int joint = 0; joint < expected.getJointCount(); ++joint) {
+      assertEquals(expected.hasTrack(joint), actual.hasTrack(joint));
+      if (!expected.hasTrack(joint)) {
+        continue;
+      }
+      assertArrayEquals(
+          expected.getPackedTranslations(joint), actual.getPackedTranslations(joint));
+      assertArrayEquals(
+          expected.getTranslationRange(joint), actual.getTranslationRange(joint), 0);
+      assertArrayEquals(expected.getPackedRotations(joint), actual.getPackedRotations(joint));
+    }
+  }
+
+  @Test
+  public void read_rejectsOtherVersionsAndTruncatedData() throws IOException {
+    ByteBuffer data =
+        write(
+            new MeshFileWriter()
+                .setIndices(IntBuffer.wrap(new int[] {0}))
+                .addStream(3, FloatBuffer.wrap(new float[] {1, 2, 3})));
+    ByteBuffer oldVersion = ByteBuffer.wrap(data.array().clone());
+    oldVersion.put(4, (byte) (MeshFile.VERSION - 1));
+    ByteBuffer truncated = ByteBuffer.wrap(data.array(), 0, data.capacity() - 4).slice();
+
+    for (ByteBuffer invalid : new ByteBuffer[] {oldVersion, truncated}) {
+      try {
+        MeshFile.read(invalid);
+        fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+}
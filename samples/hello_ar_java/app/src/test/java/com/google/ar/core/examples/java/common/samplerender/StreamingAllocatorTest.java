@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+/** Drives {@link StreamingAllocator} with fake fences in place of {@code glFenceSync}. */
+public class StreamingAllocatorTest {
+  private static final int REGION_SIZE = 256;
+
+  /** Fences that the test signals by hand, recording what the allocator does with them. */
+  private static class FakeFences implements StreamingAllocator.Fences {
+    private long nextFence = 1;
+    final Set<Long> live = new HashSet<>();
+    final Set<Long> signaled = new HashSet<>();
+    final List<Long> waitedFor = new ArrayList<>();
+
+    @Override
+    public long insert() {
+      long fence = nextFence++;
+      live.add(fence);
+      return fence;
+    }
+
+    @Override
+    public boolean isSignaled(long fence) {
+      assertTrue("Queried deleted fence " + fence, live.contains(fence));
+      return signaled.contains(fence);
+    }
+
+    @Override
+    public void waitFor(long fence) {
+      assertTrue("Waited for deleted fence " + fence, live.contains(fence));
+      waitedFor.add(fence);
+      signaled.add(fence);
+    }
+
+    @Override
+    public void delete(long fence) {
+      assertTrue("Deleted fence " + fence + " twice", live.remove(fence));
+    }
+
+    void signalAll() {
+      signaled.addAll(live);
+    }
+  }
+
+  @Test
+  public void allocate_handsOutConsecutiveAlignedRangesOfTheCurrentRegion() {
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, new FakeFences());
+    allocator.beginFrame();
+
+    assertEquals(0, allocator.allocate(10, 4));
+    assertEquals(12, allocator.allocate(4, 4));
+    assertEquals(16, allocator.allocate(8, 16));
+    assertEquals(32, allocator.allocate(1, 16));
+    assertEquals(33, allocator.getUsedBytes());
+  }
+
+  @Test
+  public void beginFrame_rotatesThroughTheRegions() {
+    FakeFences fences = new FakeFences();
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, fences);
+
+    for (int frame = 0; frame < 7; ++frame) {
+      fences.signalAll();
+      allocator.beginFrame();
+      assertEquals(frame + 1, allocator.getFrame());
+      assertEquals((frame % 3) * REGION_SIZE, allocator.allocate(16, 4));
+      allocator.endFrame();
+    }
+    assertEquals(0, allocator.getStallCount());
+  }
+
+  @Test
+  public void beginFrame_deletesTheFenceOfTheRegionItReuses() {
+    FakeFences fences = new FakeFences();
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, fences);
+
+    for (int frame = 0; frame < 3; ++frame) {
+      allocator.beginFrame();
+      allocator.endFrame();
+    }
+    assertEquals(3, fences.live.size());
+
+    fences.signalAll();
+    allocator.beginFrame();
+    assertEquals(2, fences.live.size());
+    assertFalse(fences.live.contains(1L));
+  }
+
+  @Test
+  public void allocate_overflow_returnsMinusOneAndCountsRequestedBytes() {
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, new FakeFences());
+    allocator.beginFrame();
+
+    assertEquals(0, allocator.allocate(200, 4));
+    assertEquals(-1, allocator.allocate(100, 4));
+    // Smaller allocations can still fit after one that didn't.
+    assertEquals(200, allocator.allocate(40, 4));
+    allocator.endFrame();
+
+    assertEquals(1, allocator.getOverflowCount());
+    assertEquals(340, allocator.getLastFrameRequestedBytes());
+  }
+
+  @Test
+  public void getLastFrameRequestedBytes_includesAlignment() {
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, new FakeFences());
+    allocator.beginFrame();
+    allocator.allocate(3, 4);
+    allocator.allocate(4, 4);
+    assertEquals(0, allocator.getLastFrameRequestedBytes());
+    allocator.endFrame();
+
+    assertEquals(8, allocator.getLastFrameRequestedBytes());
+  }
+
+  @Test
+  public void beginFrame_unsignaledFence_waitsAndCountsStall() {
+    FakeFences fences = new FakeFences();
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, fences);
+    for (int frame = 0; frame < 3; ++frame) {
+      allocator.beginFrame();
+      allocator.endFrame();
+    }
+
+    // The GPU finished the second frame but not the first, whose region comes up next.
+    fences.signaled.add(2L);
+    allocator.beginFrame();
+    assertEquals(1, allocator.getStallCount());
+    assertEquals(1, fences.waitedFor.size());
+    assertEquals(1L, (long) fences.waitedFor.get(0));
+    allocator.endFrame();
+
+    allocator.beginFrame();
+    assertEquals(1, allocator.getStallCount());
+    assertEquals(1, fences.waitedFor.size());
+  }
+
+  @Test
+  public void resize_dropsAllFencesAndChangesTheRegions() {
+    FakeFences fences = new FakeFences();
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, fences);
+    for (int frame = 0; frame < 3; ++frame) {
+      allocator.beginFrame();
+      allocator.endFrame();
+    }
+
+    allocator.resize(1024);
+    assertTrue(fences.live.isEmpty());
+    assertEquals(3 * 1024, allocator.getTotalSize());
+
+    // No fence is left to wait for, even though none was signaled.
+    allocator.beginFrame();
+    assertEquals(0, allocator.getStallCount());
+    assertEquals(0, allocator.allocate(1000, 4));
+    allocator.endFrame();
+    allocator.beginFrame();
+    assertEquals(1024, allocator.allocate(1000, 4));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void resize_duringFrame_throws() {
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, new FakeFences());
+    allocator.beginFrame();
+    allocator.resize(1024);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void allocate_outsideFrame_throws() {
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, new FakeFences());
+    allocator.allocate(4, 4);
+  }
+
+  @Test
+  public void deleteFences_deletesEveryLiveFence() {
+    FakeFences fences = new FakeFences();
+    StreamingAllocator allocator = new StreamingAllocator(3, REGION_SIZE, fences);
+    for (int frame = 0; frame < 2; ++frame) {
+      allocator.beginFrame();
+      allocator.endFrame();
+    }
+
+    allocator.deleteFences();
+    assertTrue(fences.live.isEmpty());
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.common.samplerender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.opengl.GLES30;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the uniform values of {@link Shader} and which of them it uploads, without GL. */
+public class UniformValuesTest {
+  private UniformValues values;
+
+  @Before
+  public void setUp() {
+    values = new UniformValues();
+    values.add("u_Color", 0, GLES30.GL_FLOAT_VEC4, 1);
+    values.add("u_Texture", 1, GLES30.GL_SAMPLER_2D, 1);
+    values.add("u_Lights", 2, GLES30.GL_FLOAT_VEC3, 4);
+    values.add("u_Enabled", 3, GLES30.GL_BOOL, 1);
+    values.add("u_Shadow", 4, GLES30.GL_SAMPLER_2D, 1);
+    values.add("u_Counts", 5, GLES30.GL_INT, 3);
+    values.allocate();
+    // Drop the texture units, which start out to be uploaded.
+    values.clearDirty();
+  }
+
+  private String[] dirtyNames() {
+    String[] names = new String[values.getDirtyCount()];
+    for (int i = 0; i < names.length; ++i) {
+      names[i] = values.getDirty(i).name;
+    }
+    return names;
+  }
+
+  private void assertRejected(Runnable set) {
+    try {
+      set.run();
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void allocate_givesEverySamplerItsOwnUnitToUpload() {
+    UniformValues fresh = new UniformValues();
+    fresh.add("u_Color", 0, GLES30.GL_FLOAT_VEC4, 1);
+    fresh.add("u_Albedo", 1, GLES30.GL_SAMPLER_2D, 1);
+    fresh.add("u_Depth", 2, GLES30.GL_SAMPLER_2D, 1);
+
+    fresh.allocate();
+
+    assertEquals(2, fresh.getSamplerCount());
+    assertEquals(0, fresh.getTextureUnit(fresh.getSampler(0)));
+    assertEquals(1, fresh.getTextureUnit(fresh.getSampler(1)));
+    // Unit 0 is already the value of a fresh uniform, but its count of 1 still has to be set.
+    assertEquals(2, fresh.getDirtyCount());
+  }
+
+  @Test
+  public void settingUniforms_listsEachChangedOneOnceInOrder() {
+    values.setFloats("u_Lights", GLES30.GL_FLOAT_VEC3, new float[] {1, 2, 3});
+    values.setInt("u_Enabled", 1);
+    values.setFloats("u_Lights", GLES30.GL_FLOAT_VEC3, new float[] {4, 5, 6});
+
+    assertArrayEquals(new String[] {"u_Lights", "u_Enabled"}, dirtyNames());
+  }
+
+  @Test
+  public void clearDirty_uploadsNothingUntilAValueChanges() {
+    values.setFloats("u_Color", GLES30.GL_FLOAT_VEC4, new float[] {1, 0, 0, 1});
+    values.clearDirty();
+
+    values.setFloats("u_Color", GLES30.GL_FLOAT_VEC4, new float[] {1, 0, 0, 1});
+    assertEquals(0, values.getDirtyCount());
+
+    values.setFloats("u_Color", GLES30.GL_FLOAT_VEC4, new float[] {1, 0, 0, 0.5f});
+    assertArrayEquals(new String[] {"u_Color"}, dirtyNames());
+  }
+
+  @Test
+  public void changingTheArrayCount_isUploadedEvenWithTheSameValues() {
+    values.setInts("u_Counts", new int[] {7, 8, 9});
+    values.clearDirty();
+
+    values.setInts("u_Counts", new int[] {7, 8});
+
+    assertArrayEquals(new String[] {"u_Counts"}, dirtyNames());
+    assertEquals(2, values.getDirty(0).count);
+  }
+
+  @Test
+  public void values_areStoredAtEachUniformsOffset() {
+    values.setFloats("u_Color", GLES30.GL_FLOAT_VEC4, new float[] {1, 2, 3, 4});
+    values.setFloats("u_Lights", GLES30.GL_FLOAT_VEC3, new float[] {5, 6, 7, 8, 9, 10});
+    values.setBools("u_Enabled", new boolean[] {true});
+    values.setInts("u_Counts", new int[] {11, 12, 13});
+
+    float[] floats = values.getFloatValues();
+    int lights = values.get("u_Lights").offset;
+    assertArrayEquals(new float[] {1, 2, 3, 4}, Arrays.copyOfRange(floats, 0, 4), 0);
+    assertArrayEquals(
+        new float[] {5, 6, 7, 8, 9, 10, 0, 0, 0, 0, 0, 0},
+        Arrays.copyOfRange(floats, lights, lights + 12),
+        0);
+    int[] ints = values.getIntValues();
+    assertEquals(1, ints[values.get("u_Enabled").offset]);
+    int counts = values.get("u_Counts").offset;
+    assertArrayEquals(new int[] {11, 12, 13}, Arrays.copyOfRange(ints, counts, counts + 3));
+    // The samplers keep their units.
+    assertEquals(0, values.getTextureUnit(values.get("u_Texture")));
+    assertEquals(1, values.getTextureUnit(values.get("u_Shadow")));
+  }
+
+  @Test
+  public void intAndBoolSetters_rejectSamplers() {
+    assertRejected(() -> values.setInt("u_Texture", 1));
+    assertRejected(() -> values.setBools("u_Shadow", new boolean[] {true}));
+    assertRejected(() -> values.setInts("u_Texture", new int[] {1}));
+
+    assertEquals(0, values.getTextureUnit(values.get("u_Texture")));
+    assertEquals(0, values.getDirtyCount());
+  }
+
+  @Test
+  public void setTexture_onlyTakesSamplers() {
+    assertRejected(() -> values.setTexture("u_Enabled", null));
+
+    values.setTexture("u_Shadow", null);
+
+    // Textures are bound on every use, so setting one uploads nothing.
+    assertEquals(0, values.getDirtyCount());
+  }
+
+  @Test
+  public void mismatchedTypesAndCounts_areRejected() {
+    assertRejected(() -> values.setFloat("u_Color", 1));
+    assertRejected(() -> values.setFloats("u_Color", GLES30.GL_FLOAT_VEC3, new float[] {1, 2, 3}));
+    assertRejected(() -> values.setInts("u_Counts", new int[] {1, 2, 3, 4}));
+    assertRejected(() -> values.setFloats("u_Lights", GLES30.GL_FLOAT_VEC3, new float[5 * 3]));
+    assertRejected(() -> values.setInt("u_Missing", 1));
+
+    assertEquals(0, values.getDirtyCount());
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.core.examples.java.helloar;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+/**
+ * Checks the uniform block layouts of {@link HelloArActivity} against the blocks declared in the
+ * shaders, laid out by the std140 rules.
+ */
+public class UniformBlocksTest {
+  private static final String SHADERS = "src/main/assets/shaders/";
+  private static final String[] CAMERA_SHADERS = {
+    "TestShader.vert", "environmental_hdr.vert", "environmental_hdr.frag", "point_cloud.vert"
+  };
+  private static final String LIGHTING_SHADER = "environmental_hdr.frag";
+
+  private static final Pattern MEMBER =
+      Pattern.compile("(?:(?:highp|mediump|lowp)\\s+)?(\\w+)\\s+(\\w+)(?:\\[(\\d+)\\])?\\s*;");
+
+  /** A uniform block as declared in a shader, with the std140 offsets of its members. */
+  private static class Block {
+    final List<String> names = new ArrayList<>();
+    final List<Integer> offsets = new ArrayList<>();
+    int size;
+
+    int offsetOf(String name) {
+      int member = names.indexOf(name);
+      if (member < 0) {
+        throw new AssertionError("Block has no member " + name);
+      }
+      return offsets.get(member);
+    }
+  }
+
+  /** Reads a uniform block from a shader and lays out its members by the std140 rules. */
+  private static Block readBlock(String shader, String blockName) throws IOException {
+    String source = new String(Files.readAllBytes(Paths.get(SHADERS + shader)), UTF_8);
+    source = source.replaceAll("//[^\n]*", "");
+    Matcher declaration =
+        Pattern.compile("layout\\(std140\\)\\s*uniform\\s+" + blockName + "\\s*\\{([^}]*)\\}")
+            .matcher(source);
+    if (!declaration.find()) {
+      throw new AssertionError(shader + " doesn't declare uniform block " + blockName);
+    }
+    Block block = new Block();
+    Matcher member = MEMBER.matcher(declaration.group(1));
+    int end = 0;
+    while (member.find()) {
+      String type = member.group(1);
+      int alignment = getBaseAlignment(type);
+      int size = getSize(type);
+      if (member.group(3) != null) {
+        // Array elements are padded to the alignment of a vec4.
+        alignment = 16;
+        size = align(size, 16) * Integer.parseInt(member.group(3));
+      }
+      int offset = align(end, alignment);
+      block.names.add(member.group(2));
+      block.offsets.add(offset);
+      end = offset + size;
+    }
+    block.size = align(end, 16);
+    return block;
+  }
+
+  private static int getBaseAlignment(String type) {
+    switch (type) {
+      case "float":
+      case "int":
+      case "bool":
+        return 4;
+      case "vec2":
+        return 8;
+      case "vec3":
+      case "vec4":
+      case "mat4":
+        return 16;
+      default:
+        throw new AssertionError("Unexpected uniform block member type " + type);
+    }
+  }
+
+  private static int getSize(String type) {
+    switch (type) {
+      case "vec2":
+        return 8;
+      case "vec3":
+        return 12;
+      case "vec4":
+        return 16;
+      case "mat4":
+        return 64;
+      default:
+        return 4;
+    }
+  }
+
+  private static int align(int offset, int alignment) {
+    return (offset + alignment - 1) / alignment * alignment;
+  }
+
+  @Test
+  public void cameraLayout_matchesTheCameraBlockOfEveryShader() throws IOException {
+    for (String shader : CAMERA_SHADERS) {
+      Block block = readBlock(shader, "Camera");
+      assertEquals(shader, block.offsetOf("u_View"), UniformBlocks.CAMERA_VIEW_OFFSET);
+      assertEquals(shader, block.offsetOf("u_Projection"), UniformBlocks.CAMERA_PROJECTION_OFFSET);
+      assertEquals(
+          shader, block.offsetOf("u_ViewProjection"), UniformBlocks.CAMERA_VIEW_PROJECTION_OFFSET);
+      assertEquals(
+          shader, block.offsetOf("u_ViewInverse"), UniformBlocks.CAMERA_VIEW_INVERSE_OFFSET);
+      assertEquals(shader, block.size, UniformBlocks.CAMERA_LAYOUT.getSize());
+    }
+  }
+
+  @Test
+  public void lightingLayout_matchesTheLightingBlock() throws IOException {
+    Block block = readBlock(LIGHTING_SHADER, "Lighting");
+
+    assertEquals(
+        block.offsetOf("u_ViewLightDirection"), UniformBlocks.LIGHTING_VIEW_LIGHT_DIRECTION_OFFSET);
+    assertEquals(block.offsetOf("u_LightIntensity"), UniformBlocks.LIGHTING_LIGHT_INTENSITY_OFFSET);
+    assertEquals(
+        block.offsetOf("u_LightEstimateIsValid"),
+        UniformBlocks.LIGHTING_LIGHT_ESTIMATE_IS_VALID_OFFSET);
+    assertEquals(
+        block.offsetOf("u_SphericalHarmonicsCoefficients"),
+        UniformBlocks.LIGHTING_SPHERICAL_HARMONICS_COEFFICIENTS_OFFSET);
+    assertEquals(block.size, UniformBlocks.LIGHTING_LAYOUT.getSize());
+  }
+
+  @Test
+  public void layouts_haveTheStd140Offsets() {
+    assertArrayEquals(
+        new int[] {0, 64, 128, 192, 256},
+        new int[] {
+          UniformBlocks.CAMERA_VIEW_OFFSET,
+          UniformBlocks.CAMERA_PROJECTION_OFFSET,
+          UniformBlocks.CAMERA_VIEW_PROJECTION_OFFSET,
+          UniformBlocks.CAMERA_VIEW_INVERSE_OFFSET,
+          UniformBlocks.CAMERA_LAYOUT.getSize()
+        });
+    // The bool fits in the last 4 bytes of the vec3, and each vec3 of the array takes 16 bytes.
+    assertArrayEquals(
+        new int[] {0, 16, 28, 32, 32 + 9 * 16},
+        new int[] {
+          UniformBlocks.LIGHTING_VIEW_LIGHT_DIRECTION_OFFSET,
+          UniformBlocks.LIGHTING_LIGHT_INTENSITY_OFFSET,
+          UniformBlocks.LIGHTING_LIGHT_ESTIMATE_IS_VALID_OFFSET,
+          UniformBlocks.LIGHTING_SPHERICAL_HARMONICS_COEFFICIENTS_OFFSET,
+          UniformBlocks.LIGHTING_LAYOUT.getSize()
+        });
+  }
+}